@@ -0,0 +1,113 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Diffs a player payload of {@code tagCount} tags where one in ten tags changed,
+ *    which is the shape of a typical setTags call against a cached user state.
+ * The array variants diff a {@code tagCount} long string array with the same share of changes.
+ */
+@State(Scope.Benchmark)
+public class JSONUtilsBenchmark {
+
+   @Param({"10", "100", "500", "1000"})
+   public int tagCount;
+
+   private JSONObject current;
+   private JSONObject changedTo;
+   private JSONObject currentWithArray;
+   private JSONObject changedToWithArray;
+   private Set<String> includeFields;
+
+   @Setup
+   public void setup() throws JSONException {
+      current = buildPlayer(tagCount, 0);
+      changedTo = buildPlayer(tagCount, 10);
+      includeFields = new HashSet<>(Collections.singletonList("app_id"));
+      currentWithArray = buildPlayer(tagCount, 0).put("segments", buildArray(tagCount, 0));
+      changedToWithArray = buildPlayer(tagCount, 0).put("segments", buildArray(tagCount, 10));
+   }
+
+   static JSONArray buildArray(int length, int changeEvery) {
+      JSONArray array = new JSONArray();
+      for (int i = 0; i < length; i++) {
+         boolean changed = changeEvery > 0 && i % changeEvery == 0;
+         array.put(changed ? "changed_" + i : "value_" + i);
+      }
+      return array;
+   }
+
+   static JSONObject buildPlayer(int tagCount, int changeEvery) throws JSONException {
+      JSONObject tags = new JSONObject();
+      for (int i = 0; i < tagCount; i++) {
+         boolean changed = changeEvery > 0 && i % changeEvery == 0;
+         tags.put("tag_" + i, changed ? "changed_" + i : "value_" + i);
+      }
+
+      return new JSONObject()
+         .put("app_id", "b2f7f966-d8cc-11e4-bed1-df8f05be55ba")
+         .put("identifier", "push_token")
+         .put("device_type", 1)
+         .put("language", "en")
+         .put("timezone", -28_800)
+         .put("sdk", "031500")
+         .put("lat", 37.7749)
+         .put("long", -122.4194)
+         .put("external_user_id", "")
+         .put("tags", tags)
+         .put("channels", new JSONArray().put("push"));
+   }
+
+   @Benchmark
+   public JSONObject generateJsonDiff() {
+      return JSONUtils.generateJsonDiff(current, changedTo, null, includeFields);
+   }
+
+   @Benchmark
+   public JSONObject generateJsonDiffUnchanged() {
+      return JSONUtils.generateJsonDiff(current, current, null, null);
+   }
+
+   @Benchmark
+   public JSONObject generateJsonDiffArray() {
+      return JSONUtils.generateJsonDiff(currentWithArray, changedToWithArray, null, includeFields);
+   }
+}
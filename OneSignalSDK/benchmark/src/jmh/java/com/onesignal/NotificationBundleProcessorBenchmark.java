@@ -0,0 +1,95 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.os.Bundle;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Converts an FCM data bundle into the JSON payload and {@link OSNotificationPayload},
+ *    which runs for every notification the device receives.
+ */
+@State(Scope.Benchmark)
+public class NotificationBundleProcessorBenchmark {
+
+   private Bundle bundle;
+   private JSONObject payloadJson;
+
+   @Setup
+   public void setup() throws JSONException {
+      JSONObject additionalData = new JSONObject()
+         .put("deep_link", "app://product/1234")
+         .put("campaign", "spring_sale")
+         .put("discount", 15)
+         .put("actionButtons", new JSONArray()
+            .put(new JSONObject().put("id", "shop").put("text", "Shop now"))
+            .put(new JSONObject().put("id", "later").put("text", "Later")));
+      JSONObject custom = new JSONObject()
+         .put("i", "9764eaeb-10ce-45b1-a66d-8f95938aaa51")
+         .put("ti", "4b2a2d8c-2b7a-4c5f-9a4b-0d0e5b2d6a11")
+         .put("tn", "Spring sale")
+         .put("u", "https://onesignal.com/sale")
+         .put("a", additionalData);
+
+      bundle = new Bundle();
+      bundle.putString("custom", custom.toString());
+      bundle.putString("alert", "Everything in the store is 15% off until Sunday");
+      bundle.putString("title", "Spring sale");
+      bundle.putString("sicon", "ic_stat_onesignal_default");
+      bundle.putString("bicon", "https://onesignal.com/images/sale_banner.png");
+      bundle.putString("licon", "https://onesignal.com/images/logo.png");
+      bundle.putString("sound", "chime");
+      bundle.putString("grp", "sales");
+      bundle.putString("bgac", "FF9A1B32");
+      bundle.putString("pri", "6");
+      bundle.putString("collapse_key", "do_not_collapse");
+      bundle.putString("from", "703322744261");
+      bundle.putString("google.message_id", "0:1589384020124960%f1e1a3d5f9fd7ecd");
+      bundle.putLong("google.sent_time", 1_589_384_020_000L);
+      bundle.putInt("google.ttl", 259_200);
+
+      payloadJson = NotificationBundleProcessor.bundleAsJSONObject(bundle);
+   }
+
+   @Benchmark
+   public JSONObject bundleAsJSONObject() {
+      return NotificationBundleProcessor.bundleAsJSONObject(bundle);
+   }
+
+   @Benchmark
+   public OSNotificationPayload OSNotificationPayloadFrom() {
+      return NotificationBundleProcessor.OSNotificationPayloadFrom(payloadJson);
+   }
+}
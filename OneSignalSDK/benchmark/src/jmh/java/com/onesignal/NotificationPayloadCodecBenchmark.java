@@ -0,0 +1,124 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes and reads a typical push payload through {@link NotificationPayloadCodec}, the extra work each
+ *    notification row does for its payload to be stored compressed.
+ * The plain variants are the text full_data column rows used before DB version 10.
+ */
+@State(Scope.Benchmark)
+public class NotificationPayloadCodecBenchmark {
+
+   private String fullData;
+   private MatrixCursor plainRow;
+   private MatrixCursor compressedRow;
+
+   @Setup
+   public void setup() throws JSONException {
+      fullData = buildPayload(0).toString();
+      plainRow = newRow(fullData, null);
+
+      ContentValues values = new ContentValues();
+      NotificationPayloadCodec.put(values, fullData);
+      compressedRow = newRow(null, values.getAsByteArray(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED));
+   }
+
+   private static MatrixCursor newRow(String fullData, byte[] compressed) {
+      MatrixCursor cursor = new MatrixCursor(NotificationPayloadCodec.COLUMNS);
+      cursor.addRow(new Object[] { fullData, compressed });
+      cursor.moveToFirst();
+      return cursor;
+   }
+
+   @Benchmark
+   public ContentValues putPlain() {
+      ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, fullData);
+      return values;
+   }
+
+   @Benchmark
+   public ContentValues putCompressed() {
+      ContentValues values = new ContentValues();
+      NotificationPayloadCodec.put(values, fullData);
+      return values;
+   }
+
+   // Restore parses every payload it reads, so include that to put inflating in proportion
+   @Benchmark
+   public JSONObject readPlain() throws JSONException {
+      return new JSONObject(NotificationPayloadCodec.read(plainRow));
+   }
+
+   @Benchmark
+   public JSONObject readCompressed() throws JSONException {
+      return new JSONObject(NotificationPayloadCodec.read(compressedRow));
+   }
+
+   // Sized like a typical push with additional data, a big picture and action buttons
+   static JSONObject buildPayload(int index) throws JSONException {
+      JSONObject additionalData = new JSONObject();
+      for (int i = 0; i < 8; i++)
+         additionalData.put("key_" + i, "value_" + i + "_" + index);
+
+      JSONArray buttons = new JSONArray();
+      for (int i = 0; i < 3; i++)
+         buttons.put(new JSONObject().put("i", "button_" + i).put("n", "Button " + i));
+
+      return new JSONObject()
+         .put("alert", "Message " + index + " with enough body text to wrap onto a second line of the shade")
+         .put("title", "Title " + index)
+         .put("bicon", "https://img.onesignal.com/n/" + index + "/big_picture.png")
+         .put("licon", "https://img.onesignal.com/n/" + index + "/large_icon.png")
+         .put("grp", "group_" + (index % 4))
+         .put("pri", 5)
+         .put("google.sent_time", 1_600_000_000_000L + index)
+         .put("google.ttl", 259_200)
+         .put("o", buttons.toString())
+         .put("custom", new JSONObject()
+            .put("i", "notification_" + index)
+            .put("u", "https://onesignal.com/landing/" + index)
+            .put("a", additionalData)
+            .toString());
+   }
+}
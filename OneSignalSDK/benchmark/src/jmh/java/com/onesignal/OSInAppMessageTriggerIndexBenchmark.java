@@ -0,0 +1,141 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Work done by OSInAppMessageController after a single addTrigger call.
+ * The linear benchmarks evaluate every message and scan every trigger of every message for redisplay,
+ *    like the controller did before OSInAppMessageTriggerIndex. The indexed benchmarks only touch the
+ *    messages with a trigger on the changed key.
+ * Messages are the same as in {@link OSTriggerControllerBenchmark}.
+ */
+@State(Scope.Benchmark)
+public class OSInAppMessageTriggerIndexBenchmark {
+
+   @Param({"10", "100", "500"})
+   public int messageCount;
+
+   @Param({"20", "200"})
+   public int triggerCount;
+
+   private OSTriggerController triggerController;
+   private List<OSInAppMessage> messages;
+   private OSInAppMessageTriggerIndex index;
+   private int changes;
+
+   @Setup
+   public void setup() throws JSONException {
+      triggerController = new OSTriggerController(new OSDynamicTriggerController.OSDynamicTriggerControllerObserver() {
+         @Override
+         public void messageTriggerConditionChanged() {
+         }
+      });
+
+      Map<String, Object> triggers = new HashMap<>();
+      for (int i = 0; i < triggerCount; i++)
+         triggers.put("prop_" + i, i % 2 == 0 ? (Object) i : "value_" + i);
+      triggerController.addTriggers(triggers);
+
+      messages = new ArrayList<>(messageCount);
+      for (int i = 0; i < messageCount; i++)
+         messages.add(new OSInAppMessage(OSTriggerControllerBenchmark.buildMessage(i, triggerCount)));
+      index = new OSInAppMessageTriggerIndex(messages);
+   }
+
+   private Collection<String> nextChangedKey() {
+      int property = changes++ % triggerCount;
+      triggerController.addTriggers(Collections.<String, Object>singletonMap("prop_" + property, property));
+      return Collections.singletonList("prop_" + property);
+   }
+
+   @Benchmark
+   public int linearEvaluate() {
+      nextChangedKey();
+      int displayable = 0;
+      for (OSInAppMessage message : messages) {
+         if (triggerController.evaluateMessageTriggers(message))
+            displayable++;
+      }
+      return displayable;
+   }
+
+   @Benchmark
+   public int indexedEvaluate() {
+      BitSet positions = index.messagesToEvaluate(nextChangedKey());
+      int displayable = 0;
+      for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+         if (triggerController.evaluateMessageTriggers(messages.get(position)))
+            displayable++;
+      }
+      return displayable;
+   }
+
+   @Benchmark
+   public int linearTriggerOnMessage() {
+      Collection<String> changedKeys = nextChangedKey();
+      int affected = 0;
+      for (OSInAppMessage message : messages) {
+         if (isTriggerOnMessage(message, changedKeys))
+            affected++;
+      }
+      return affected;
+   }
+
+   @Benchmark
+   public int indexedTriggerOnMessage() {
+      return index.messagesWithTriggerOn(nextChangedKey()).cardinality();
+   }
+
+   // The per message check OSTriggerController used before the index
+   private static boolean isTriggerOnMessage(OSInAppMessage message, Collection<String> newTriggersKeys) {
+      for (String triggerKey : newTriggersKeys) {
+         for (ArrayList<OSTrigger> andConditions : message.triggers) {
+            for (OSTrigger trigger : andConditions) {
+               if (triggerKey.equals(trigger.property))
+                  return true;
+            }
+         }
+      }
+      return false;
+   }
+}
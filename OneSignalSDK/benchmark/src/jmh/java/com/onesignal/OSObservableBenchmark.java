@@ -0,0 +1,90 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notifies {@code observerCount} observers of a state change, the work done on each
+ *    permission, subscription and email state change.
+ * Observers are notified on the calling thread since there is no main Looper running here.
+ */
+@State(Scope.Benchmark)
+public class OSObservableBenchmark {
+
+   static class ChangedState {
+      final int value;
+
+      ChangedState(int value) {
+         this.value = value;
+      }
+   }
+
+   static class ChangedObserver {
+      int lastValue;
+
+      void changed(ChangedState state) {
+         lastValue = state.value;
+      }
+   }
+
+   @Param({"1", "10", "100"})
+   public int observerCount;
+
+   private OSObservable<Object, ChangedState> observable;
+   private final ChangedState state = new ChangedState(1);
+   // Keeps the weakly observed observers from being collected
+   private List<ChangedObserver> observers;
+
+   @Setup
+   public void setup() {
+      observable = new OSObservable<>("changed", false);
+      observers = new ArrayList<>(observerCount);
+      for (int i = 0; i < observerCount; i++) {
+         ChangedObserver observer = new ChangedObserver();
+         observers.add(observer);
+         if (i % 2 == 0)
+            observable.addObserver(observer);
+         else
+            observable.addObserverStrong(observer);
+      }
+   }
+
+   @Benchmark
+   public boolean notifyChange() {
+      return observable.notifyChange(state);
+   }
+}
@@ -0,0 +1,120 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates every cached In-App Message against the local triggers, the same pass
+ *    OSInAppMessageController makes each time a trigger is added or removed.
+ * Only custom triggers are used so the results don't depend on session timers.
+ */
+@State(Scope.Benchmark)
+public class OSTriggerControllerBenchmark {
+
+   private static final String[] OPERATORS = { "equal", "greater", "less_or_equal", "not_equal", "in", "exists" };
+
+   @Param({"10", "100", "500"})
+   public int messageCount;
+
+   @Param({"20", "200"})
+   public int triggerCount;
+
+   private OSTriggerController triggerController;
+   private List<OSInAppMessage> messages;
+
+   @Setup
+   public void setup() throws JSONException {
+      triggerController = new OSTriggerController(new OSDynamicTriggerController.OSDynamicTriggerControllerObserver() {
+         @Override
+         public void messageTriggerConditionChanged() {
+         }
+      });
+
+      Map<String, Object> triggers = new HashMap<>();
+      for (int i = 0; i < triggerCount; i++)
+         triggers.put("prop_" + i, i % 2 == 0 ? (Object) i : "value_" + i);
+      triggerController.addTriggers(triggers);
+
+      messages = new ArrayList<>(messageCount);
+      for (int i = 0; i < messageCount; i++)
+         messages.add(new OSInAppMessage(buildMessage(i, triggerCount)));
+   }
+
+   static JSONObject buildMessage(int index, int triggerCount) throws JSONException {
+      // 3 OR groups of 3 AND conditions, most of which fail on their last condition
+      JSONArray orConditions = new JSONArray();
+      for (int or = 0; or < 3; or++) {
+         JSONArray andConditions = new JSONArray();
+         for (int and = 0; and < 3; and++) {
+            int property = (index * 7 + or * 3 + and) % triggerCount;
+            String operator = OPERATORS[(index + or + and) % OPERATORS.length];
+            Object value;
+            if (operator.equals("in"))
+               value = new JSONArray().put("value_" + property).put("other");
+            else
+               value = property % 2 == 0 ? (Object) (property - and) : "value_" + property;
+
+            andConditions.put(new JSONObject()
+               .put("id", "trigger_" + index + "_" + or + "_" + and)
+               .put("kind", "custom")
+               .put("property", "prop_" + property)
+               .put("operator", operator)
+               .put("value", value));
+         }
+         orConditions.put(andConditions);
+      }
+
+      return new JSONObject()
+         .put("id", "message_" + index)
+         .put("variants", new JSONObject().put("all", new JSONObject().put("default", "variant_" + index)))
+         .put("triggers", orConditions);
+   }
+
+   @Benchmark
+   public int evaluateMessageTriggers() {
+      int displayable = 0;
+      for (OSInAppMessage message : messages) {
+         if (triggerController.evaluateMessageTriggers(message))
+            displayable++;
+      }
+      return displayable;
+   }
+}
@@ -0,0 +1,124 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import com.android.internal.util.XmlUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes a prefs file the way SharedPreferencesImpl does on every flush, which rewrites every key in the file.
+ * coldFlush is PREFS_ONESIGNAL holding {@code keyCount} other keys, hotFlush is PREFS_ONESIGNAL_HOT which only
+ *    ever holds {@link OneSignalPrefs#HOT_KEYS}.
+ * coldSave and hotSave add OneSignalPrefs' own buffering around that: a key is routed to its file,
+ *    buffered, snapshotted, written and cleared the way WritePrefHandlerThread flushes it.
+ */
+@State(Scope.Benchmark)
+public class OneSignalPrefsFlushBenchmark {
+
+   private static final String COLD_KEY = "COLD_KEY";
+
+   @Param({"10", "100", "1000", "5000"})
+   public int keyCount;
+
+   // What SharedPreferences holds in memory for each file, a flush writes all of it
+   private Map<String, Map<String, Object>> files;
+   private Map<String, OneSignalPrefs.PrefsBuffer> buffers;
+   private long saveTime;
+
+   @Setup
+   public void setup() {
+      Map<String, Object> coldFile = new HashMap<>();
+      for (int i = 0; i < keyCount; i++)
+         coldFile.put("KEY_" + i, "{\"tags\":{\"key\":\"value_" + i + "\"}}");
+      coldFile.put(COLD_KEY, System.currentTimeMillis());
+
+      Map<String, Object> hotFile = new HashMap<>();
+      for (String key : OneSignalPrefs.HOT_KEYS)
+         hotFile.put(key, System.currentTimeMillis());
+
+      files = new HashMap<>();
+      files.put(OneSignalPrefs.PREFS_ONESIGNAL, coldFile);
+      files.put(OneSignalPrefs.PREFS_ONESIGNAL_HOT, hotFile);
+
+      buffers = new HashMap<>();
+      buffers.put(OneSignalPrefs.PREFS_ONESIGNAL, new OneSignalPrefs.PrefsBuffer());
+      buffers.put(OneSignalPrefs.PREFS_ONESIGNAL_HOT, new OneSignalPrefs.PrefsBuffer());
+   }
+
+   @Benchmark
+   public byte[] coldFlush() throws IOException, XmlPullParserException {
+      return write(files.get(OneSignalPrefs.PREFS_ONESIGNAL));
+   }
+
+   @Benchmark
+   public byte[] hotFlush() throws IOException, XmlPullParserException {
+      return write(files.get(OneSignalPrefs.PREFS_ONESIGNAL_HOT));
+   }
+
+   @Benchmark
+   public byte[] coldSave() throws IOException, XmlPullParserException {
+      return saveAndFlush(COLD_KEY);
+   }
+
+   @Benchmark
+   public byte[] hotSave() throws IOException, XmlPullParserException {
+      return saveAndFlush(OneSignalPrefs.PREFS_OS_LAST_SESSION_TIME);
+   }
+
+   private byte[] saveAndFlush(String key) throws IOException, XmlPullParserException {
+      String fileName = OneSignalPrefs.fileNameFor(OneSignalPrefs.PREFS_ONESIGNAL, key);
+      OneSignalPrefs.PrefsBuffer buffer = buffers.get(fileName);
+      // A new value each call, a flush that changes nothing is skipped
+      buffer.put(key, new OneSignalPrefs.LongWrite(++saveTime));
+
+      HashMap<String, OneSignalPrefs.PendingWrite> dirty = buffer.snapshot();
+      Map<String, Object> file = files.get(fileName);
+      for (Map.Entry<String, OneSignalPrefs.PendingWrite> entry : dirty.entrySet())
+         file.put(entry.getKey(), entry.getValue().value);
+      byte[] written = write(file);
+      buffer.clearFlushed(dirty);
+      return written;
+   }
+
+   private static byte[] write(Map<String, Object> file) throws IOException, XmlPullParserException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      XmlUtils.writeMapXml(file, out);
+      return out.toByteArray();
+   }
+}
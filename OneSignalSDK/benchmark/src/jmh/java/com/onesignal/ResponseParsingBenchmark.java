@@ -0,0 +1,138 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.util.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Scanner;
+
+import static com.onesignal.OSInAppMessageController.IN_APP_MESSAGES_JSON_KEY;
+
+/**
+ * Reads an on_session response of {@code messageCount} in-app messages the way OneSignalRestClient used to,
+ *    Scanner("\\A") into a JSONObject, against the pre-sized byte reader and the streaming on_session parser.
+ * The html variants read a 1MB in-app message html response, which isn't streamed.
+ */
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+   @Param({"50", "500"})
+   public int messageCount;
+
+   private byte[] onSessionBody;
+   private byte[] htmlBody;
+
+   @Setup
+   public void setup() throws Exception {
+      onSessionBody = buildOnSessionResponse(messageCount).getBytes("UTF-8");
+
+      StringBuilder html = new StringBuilder();
+      while (html.length() < 1_000_000)
+         html.append("<div class=\"content\"><p>In-app message body \u2713</p></div>");
+      htmlBody = new JSONObject().put("html", html.toString()).put("display_duration", 0.0).toString().getBytes("UTF-8");
+   }
+
+   @Benchmark
+   public JSONArray onSessionScanner() throws JSONException {
+      return new JSONObject(readWithScanner(new ByteArrayInputStream(onSessionBody))).getJSONArray(IN_APP_MESSAGES_JSON_KEY);
+   }
+
+   @Benchmark
+   public JSONArray onSessionReadResponseBody() throws IOException, JSONException {
+      String response = OneSignalRestClient.readResponseBody(new ByteArrayInputStream(onSessionBody), onSessionBody.length);
+      return new JSONObject(response).getJSONArray(IN_APP_MESSAGES_JSON_KEY);
+   }
+
+   @Benchmark
+   public JSONArray onSessionStreaming() throws IOException, JSONException {
+      JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(onSessionBody), "UTF-8"));
+      try {
+         return UserStateSynchronizer.SessionResponse.parse(reader).inAppMessages;
+      } finally {
+         reader.close();
+      }
+   }
+
+   @Benchmark
+   public String htmlScanner() throws JSONException {
+      return new JSONObject(readWithScanner(new ByteArrayInputStream(htmlBody))).getString("html");
+   }
+
+   @Benchmark
+   public String htmlReadResponseBody() throws IOException, JSONException {
+      return new JSONObject(OneSignalRestClient.readResponseBody(new ByteArrayInputStream(htmlBody), htmlBody.length)).getString("html");
+   }
+
+   // The response reading OneSignalRestClient used before readResponseBody
+   private static String readWithScanner(InputStream inputStream) {
+      Scanner scanner = new Scanner(inputStream, "UTF-8");
+      String response = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+      scanner.close();
+      return response;
+   }
+
+   static String buildOnSessionResponse(int messageCount) throws JSONException {
+      JSONArray messages = new JSONArray();
+      for (int i = 0; i < messageCount; i++) {
+         JSONObject trigger = new JSONObject()
+            .put("id", "trigger_" + i)
+            .put("kind", "custom")
+            .put("property", "level")
+            .put("operator", "greater")
+            .put("value", i);
+
+         JSONObject message = new JSONObject()
+            .put("id", "a4b3e6d8-0000-0000-0000-" + String.format("%012d", i))
+            .put("variants", new JSONObject().put("all", new JSONObject().put("default", "variant_" + i)))
+            .put("triggers", new JSONArray().put(new JSONArray().put(trigger)))
+            .put("redisplay", new JSONObject().put("limit", 10).put("delay", 60))
+            .put("display_duration", 12.5);
+         messages.put(message);
+      }
+
+      return new JSONObject()
+         .put("id", "a2f7f967-e8cc-11e4-bed1-118f05be4511")
+         .put("success", true)
+         .put(IN_APP_MESSAGES_JSON_KEY, messages)
+         .toString();
+   }
+}
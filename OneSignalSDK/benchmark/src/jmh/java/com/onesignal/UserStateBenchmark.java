@@ -0,0 +1,81 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Iterator;
+
+/**
+ * Compares the synced and pending {@link UserStatePush} the way UserStateSynchronizer does
+ *    before every player update and on_session call.
+ */
+@State(Scope.Benchmark)
+public class UserStateBenchmark {
+
+   @Param({"10", "100", "1000"})
+   public int tagCount;
+
+   private UserState currentState;
+   private UserState toSyncState;
+
+   @Setup
+   public void setup() throws JSONException {
+      currentState = newState("CURRENT_STATE", JSONUtilsBenchmark.buildPlayer(tagCount, 0));
+      toSyncState = newState("TOSYNC_STATE", JSONUtilsBenchmark.buildPlayer(tagCount, 10));
+   }
+
+   private static UserState newState(String persistKey, JSONObject syncValues) throws JSONException {
+      UserState state = new UserStatePush(persistKey, false);
+      Iterator<String> keys = syncValues.keys();
+      while (keys.hasNext()) {
+         String key = keys.next();
+         state.syncValues.put(key, syncValues.get(key));
+      }
+      state.dependValues.put("subscribableStatus", 1);
+      state.dependValues.put("androidPermission", true);
+      state.dependValues.put("userSubscribePref", true);
+      return state;
+   }
+
+   @Benchmark
+   public JSONObject generateJsonDiff() {
+      return currentState.generateJsonDiff(toSyncState, false);
+   }
+
+   @Benchmark
+   public JSONObject generateJsonDiffSessionCall() {
+      return currentState.generateJsonDiff(currentState, true);
+   }
+}
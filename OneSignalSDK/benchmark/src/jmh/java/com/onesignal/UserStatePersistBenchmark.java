@@ -0,0 +1,78 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds what UserState persists after a single tag change: the full sync values JSON, as UserState wrote
+ *    before the change log, against the {@link UserStateChangeLog} entry it appends now.
+ */
+@State(Scope.Benchmark)
+public class UserStatePersistBenchmark {
+
+   @Param({"10", "100", "1000", "5000"})
+   public int tagCount;
+
+   private JSONObject syncValues;
+   private JSONObject tags;
+   private UserStateChangeLog changeLog;
+   private int change;
+
+   @Setup
+   public void setup() throws JSONException {
+      syncValues = JSONUtilsBenchmark.buildPlayer(tagCount, 0);
+      tags = syncValues.getJSONObject("tags");
+      changeLog = new UserStateChangeLog(syncValues, 0);
+   }
+
+   @Benchmark
+   public String fullWrite() throws JSONException {
+      changeTag();
+      return syncValues.toString();
+   }
+
+   @Benchmark
+   public String changeLogEntry() throws JSONException {
+      changeTag();
+      return changeLog.diff(syncValues).toString();
+   }
+
+   // A new value each call so there is always a change to persist
+   private void changeTag() throws JSONException {
+      tags.put("tag_" + (change % tagCount), "changed_" + change);
+      change++;
+   }
+}
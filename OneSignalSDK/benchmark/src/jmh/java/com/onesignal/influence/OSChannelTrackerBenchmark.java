@@ -0,0 +1,187 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal.influence;
+
+import com.onesignal.OSLogger;
+import com.onesignal.OSSharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the notification ids inside the indirect attribution window, done on every
+ *    session start and outcome send.
+ * Half of the stored notifications are older than the default window.
+ */
+@State(Scope.Benchmark)
+public class OSChannelTrackerBenchmark {
+
+   @Param({"10", "50", "100"})
+   public int notificationCount;
+
+   private OSChannelTracker tracker;
+
+   @Setup
+   public void setup() throws JSONException {
+      InMemorySharedPreferences preferences = new InMemorySharedPreferences();
+      long now = System.currentTimeMillis();
+      JSONArray lastReceived = new JSONArray();
+      for (int i = 0; i < notificationCount; i++) {
+         long receivedMinutesAgo = i % 2 == 0 ? 5 : 48 * 60;
+         lastReceived.put(new JSONObject()
+            .put("notification_id", "notification_" + i)
+            .put("time", now - receivedMinutesAgo * 60 * 1_000L));
+      }
+      preferences.saveString(
+         preferences.getPreferencesName(),
+         OSInfluenceDataRepository.PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
+         lastReceived.toString()
+      );
+
+      tracker = new OSNotificationTracker(new OSInfluenceDataRepository(preferences), new NoOpLogger());
+   }
+
+   @Benchmark
+   public JSONArray getLastReceivedIds() {
+      return tracker.getLastReceivedIds();
+   }
+
+   private static class InMemorySharedPreferences implements OSSharedPreferences {
+
+      private final Map<String, Object> values = new HashMap<>();
+
+      @Override
+      public String getOutcomesV2KeyName() {
+         return "PREFS_OS_OUTCOMES_V2";
+      }
+
+      @Override
+      public String getPreferencesName() {
+         return "OneSignal";
+      }
+
+      private Object get(String prefsName, String key, Object defValue) {
+         Object value = values.get(prefsName + "." + key);
+         return value != null ? value : defValue;
+      }
+
+      private void save(String prefsName, String key, Object value) {
+         values.put(prefsName + "." + key, value);
+      }
+
+      @Override
+      public String getString(String prefsName, String key, String defValue) {
+         return (String) get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveString(String prefsName, String key, String value) {
+         save(prefsName, key, value);
+      }
+
+      @Override
+      public boolean getBool(String prefsName, String key, boolean defValue) {
+         return (Boolean) get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveBool(String prefsName, String key, boolean value) {
+         save(prefsName, key, value);
+      }
+
+      @Override
+      public int getInt(String prefsName, String key, int defValue) {
+         return (Integer) get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveInt(String prefsName, String key, int value) {
+         save(prefsName, key, value);
+      }
+
+      @Override
+      public long getLong(String prefsName, String key, long defValue) {
+         return (Long) get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveLong(String prefsName, String key, long value) {
+         save(prefsName, key, value);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Set<String> getStringSet(String prefsName, String key, Set<String> defValue) {
+         return (Set<String>) get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveStringSet(String prefsName, String key, Set<String> value) {
+         save(prefsName, key, value);
+      }
+
+      @Override
+      public Object getObject(String prefsName, String key, Object defValue) {
+         return get(prefsName, key, defValue);
+      }
+
+      @Override
+      public void saveObject(String prefsName, String key, Object value) {
+         save(prefsName, key, value);
+      }
+   }
+
+   private static class NoOpLogger implements OSLogger {
+
+      @Override
+      public void verbose(String message) {
+      }
+
+      @Override
+      public void debug(String message) {
+      }
+
+      @Override
+      public void warning(String message) {
+      }
+
+      @Override
+      public void error(String message, Throwable throwable) {
+      }
+   }
+}
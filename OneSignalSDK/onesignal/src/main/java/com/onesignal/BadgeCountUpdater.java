@@ -27,12 +27,15 @@
 
 package com.onesignal;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.service.notification.StatusBarNotification;
 import android.support.annotation.RequiresApi;
 
@@ -40,13 +43,32 @@ import com.onesignal.OneSignalDbContract.NotificationTable;
 import com.onesignal.shortcutbadger.ShortcutBadgeException;
 import com.onesignal.shortcutbadger.ShortcutBadger;
 
-import static com.onesignal.NotificationLimitManager.MAX_NUMBER_OF_NOTIFICATIONS_STR;
+import static com.onesignal.NotificationLimitManager.MAX_NUMBER_OF_NOTIFICATIONS_INT;
 
 class BadgeCountUpdater {
 
    // Cache for manifest setting.
    private static int badgesEnabled = -1;
 
+   static final String HANDLER_THREAD_NAME = "OSH_BadgeCount";
+   // Trust the in-memory unread count for this long before counting rows again,
+   //    rows expiring by TTL or age don't produce a write that could update it
+   static final long RECONCILE_INTERVAL_MS = 60_000L;
+   static final long APPLY_DEBOUNCE_MS = 500L;
+
+   private static final Object LOCK = new Object();
+   // -1 until the rows were counted
+   private static int unreadCount = -1;
+   private static long lastReconcileTime;
+   private static int reconcileCount;
+
+   private static Handler applyHandler;
+   private static boolean applyScheduled;
+   private static int pendingCount;
+   // -1 so the first count is always applied
+   private static int appliedCount = -1;
+   private static int appliedBroadcasts;
+
    private static boolean areBadgeSettingsEnabled(Context context) {
       if (badgesEnabled != -1)
          return (badgesEnabled == 1);
@@ -72,6 +94,10 @@ class BadgeCountUpdater {
       return areBadgeSettingsEnabled(context) && OSUtils.areNotificationsEnabled(context);
    }
 
+   /**
+    * Recomputes the badge count. On pre-M devices this counts the unread rows in the notification table,
+    *    which also reconciles the in-memory count used by {@link #updateAfterInserts}
+    */
    static void update(OneSignalDb db, Context context) {
       if (!areBadgesEnabled(context))
          return;
@@ -82,6 +108,71 @@ class BadgeCountUpdater {
          updateFallback(db, context);
    }
 
+   /**
+    * Same as {@link #update} after notifications were only inserted. On pre-M devices the in-memory unread count
+    *    is incremented instead of querying the table, unless it was never counted or is due for a reconcile.
+    */
+   static void updateAfterInserts(OneSignalDb db, Context context, int insertedUnread) {
+      if (!areBadgesEnabled(context))
+         return;
+
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+         updateStandard(context);
+         return;
+      }
+
+      int count;
+      synchronized (LOCK) {
+         boolean stale = unreadCount < 0 ||
+            System.currentTimeMillis() - lastReconcileTime >= RECONCILE_INTERVAL_MS;
+         if (stale)
+            count = -1;
+         else {
+            unreadCount += insertedUnread;
+            count = unreadCount;
+         }
+      }
+
+      if (count < 0)
+         updateFallback(db, context);
+      else
+         updateCount(Math.min(count, MAX_NUMBER_OF_NOTIFICATIONS_INT), context);
+   }
+
+   /**
+    * Called after every OneSignal notification was marked as dismissed
+    */
+   static void clearCount(Context context) {
+      synchronized (LOCK) {
+         unreadCount = 0;
+         lastReconcileTime = System.currentTimeMillis();
+      }
+      updateCount(0, context);
+   }
+
+   /**
+    * Whether a row about to be inserted matches {@link OneSignalDbHelper#recentUninteractedWithNotificationsWhere()}
+    */
+   static boolean countsAsUnread(ContentValues values) {
+      Integer opened = values.getAsInteger(NotificationTable.COLUMN_NAME_OPENED);
+      Integer isSummary = values.getAsInteger(NotificationTable.COLUMN_NAME_IS_SUMMARY);
+      if ((opened != null && opened != 0) || (isSummary != null && isSummary != 0))
+         return false;
+
+      Long expireTime = values.getAsLong(NotificationTable.COLUMN_NAME_EXPIRE_TIME);
+      if (expireTime == null)
+         return true;
+
+      boolean useTtl = OneSignalPrefs.getBool(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_RESTORE_TTL_FILTER, true);
+      return !useTtl || expireTime > System.currentTimeMillis() / 1_000L;
+   }
+
+   static int getReconcileCount() {
+      synchronized (LOCK) {
+         return reconcileCount;
+      }
+   }
+
    @RequiresApi(api = Build.VERSION_CODES.M)
    private static void updateStandard(Context context) {
       StatusBarNotification[] activeNotifs = OneSignalNotificationManager.getActiveNotifications(context);
@@ -96,28 +187,64 @@ class BadgeCountUpdater {
       updateCount(runningCount, context);
    }
 
+   // COUNT(*) so the full_data JSON of every row isn't read just to count them
    private static void updateFallback(OneSignalDb db, Context context) {
       Cursor cursor = db.query(
          NotificationTable.TABLE_NAME,
-         null,
+         new String[] { "COUNT(*)" },
          OneSignalDbHelper.recentUninteractedWithNotificationsWhere().toString(),
          null,                                                    // Where args
          null,                                                    // group by
          null,                                                    // filter by row groups
-         null,                                                     // sort order, new to old
-         MAX_NUMBER_OF_NOTIFICATIONS_STR
+         null                                                     // sort order
       );
 
-      int notificationCount = cursor.getCount();
+      int notificationCount = cursor.moveToFirst() ? cursor.getInt(0) : 0;
       cursor.close();
 
-      updateCount(notificationCount, context);
+      synchronized (LOCK) {
+         unreadCount = notificationCount;
+         lastReconcileTime = System.currentTimeMillis();
+         reconcileCount++;
+      }
+
+      updateCount(Math.min(notificationCount, MAX_NUMBER_OF_NOTIFICATIONS_INT), context);
    }
 
+   /**
+    * Applies the count through ShortcutBadger. Launchers are notified with a broadcast, so a burst of updates
+    *    is debounced into a single broadcast of the latest count, skipped when the launcher already shows it.
+    */
    static void updateCount(int count, Context context) {
       if (!areBadgeSettingsEnabled(context))
          return;
 
+      synchronized (LOCK) {
+         pendingCount = count;
+         if (applyScheduled)
+            return;
+         applyScheduled = true;
+      }
+
+      final Context appContext = context.getApplicationContext();
+      getApplyHandler().postDelayed(new Runnable() {
+         @Override
+         public void run() {
+            applyPendingCount(appContext);
+         }
+      }, APPLY_DEBOUNCE_MS);
+   }
+
+   private static void applyPendingCount(Context context) {
+      int count;
+      synchronized (LOCK) {
+         applyScheduled = false;
+         count = pendingCount;
+         if (count == appliedCount)
+            return;
+         appliedBroadcasts++;
+      }
+
       try {
          ShortcutBadger.applyCountOrThrow(context, count);
       } catch (ShortcutBadgeException e) {
@@ -125,6 +252,30 @@ class BadgeCountUpdater {
          // Can throw if:
          //    - Badges are not support on the device.
          //    - App does not have a default launch Activity.
+         // The count is not recorded as applied so the next update tries it again
+         return;
+      }
+
+      // Only this handler's thread applies counts, so nothing else wrote appliedCount since it was read above
+      synchronized (LOCK) {
+         appliedCount = count;
+      }
+   }
+
+   static int getAppliedBroadcasts() {
+      synchronized (LOCK) {
+         return appliedBroadcasts;
+      }
+   }
+
+   static Handler getApplyHandler() {
+      synchronized (LOCK) {
+         if (applyHandler == null) {
+            HandlerThread handlerThread = new HandlerThread(HANDLER_THREAD_NAME);
+            handlerThread.start();
+            applyHandler = new Handler(handlerThread.getLooper());
+         }
+         return applyHandler;
       }
    }
 }
@@ -48,6 +48,7 @@ import android.support.annotation.RequiresApi;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationManagerCompat;
 import android.text.SpannableString;
+import android.util.DisplayMetrics;
 import android.text.style.StyleSpan;
 import android.widget.RemoteViews;
 
@@ -59,12 +60,13 @@ import org.json.JSONObject;
 
 import java.lang.reflect.Field;
 import java.math.BigInteger;
-import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static com.onesignal.OSUtils.getResourceString;
@@ -77,6 +79,9 @@ class GenerateNotification {
    //   notification Intent.
    public static final String BUNDLE_KEY_ONESIGNAL_DATA = "onesignalData";
 
+   // BigPictureStyle shows the picture at most this tall
+   private static final int BIG_PICTURE_MAX_HEIGHT_DP = 256;
+
    private static Context currentContext = null;
    private static String packageName = null;
    private static Resources contextResources = null;
@@ -86,6 +91,8 @@ class GenerateNotification {
    private static class OneSignalNotificationBuilder {
       NotificationCompat.Builder compatBuilder;
       boolean hasLargeIcon;
+      // Images from URLs in the payload by payload key (licon, bicon, bg_img), loaded together before building the notification
+      Map<String, Bitmap> remoteImages;
    }
 
    private static void setStatics(Context inContext) {
@@ -256,13 +263,15 @@ class GenerateNotification {
          notifBuilder.setVisibility(lockScreenVisibility);
       } catch (Throwable t) {} // Can throw if an old android support lib is used or parse error
 
-      Bitmap largeIcon = getLargeIcon(gcmBundle);
+      oneSignalNotificationBuilder.remoteImages = loadRemoteImages(gcmBundle);
+
+      Bitmap largeIcon = getLargeIcon(gcmBundle, oneSignalNotificationBuilder.remoteImages.get("licon"));
       if (largeIcon != null) {
          oneSignalNotificationBuilder.hasLargeIcon = true;
          notifBuilder.setLargeIcon(largeIcon);
       }
 
-      Bitmap bigPictureIcon = getBitmap(gcmBundle.optString("bicon", null));
+      Bitmap bigPictureIcon = getBitmap(gcmBundle.optString("bicon", null), oneSignalNotificationBuilder.remoteImages.get("bicon"));
       if (bigPictureIcon != null)
          notifBuilder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPictureIcon).setSummaryText(message));
 
@@ -355,7 +364,7 @@ class GenerateNotification {
       addNotificationActionButtons(gcmBundle, notifBuilder, notificationId, null);
       
       try {
-         addBackgroundImage(gcmBundle, notifBuilder);
+         addBackgroundImage(gcmBundle, notifBuilder, oneSignalNotificationBuilder.remoteImages.get("bg_img"));
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not set background notification image!", t);
       }
@@ -520,15 +529,16 @@ class GenerateNotification {
       Notification summaryNotification;
       Integer summaryNotificationId = null;
    
-      String firstFullData = null;
+      Long firstRowId = null;
       Collection<SpannableString> summaryList = null;
       
       OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(currentContext);
       Cursor cursor = null;
       
       try {
-         String[] retColumn = { NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
-             NotificationTable.COLUMN_NAME_FULL_DATA,
+         // The payload is only needed for the newest row, it is read separately below
+         String[] retColumn = { NotificationTable._ID,
+             NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
              NotificationTable.COLUMN_NAME_IS_SUMMARY,
              NotificationTable.COLUMN_NAME_TITLE,
              NotificationTable.COLUMN_NAME_MESSAGE };
@@ -575,24 +585,27 @@ class GenerateNotification {
                      spannableString.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0, title.length(), 0);
                   summaryList.add(spannableString);
 
-                  if (firstFullData == null)
-                     firstFullData = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA));
+                  if (firstRowId == null)
+                     firstRowId = cursor.getLong(cursor.getColumnIndex(NotificationTable._ID));
                }
             } while (cursor.moveToNext());
-
-            if (updateSummary && firstFullData != null) {
-               try {
-                  gcmBundle = new JSONObject(firstFullData);
-               } catch (JSONException e) {
-                  e.printStackTrace();
-               }
-            }
          }
       }
       finally {
          if (cursor != null && !cursor.isClosed())
             cursor.close();
       }
+
+      if (updateSummary && firstRowId != null) {
+         String firstFullData = readFullData(dbHelper, firstRowId);
+         if (firstFullData != null) {
+            try {
+               gcmBundle = new JSONObject(firstFullData);
+            } catch (JSONException e) {
+               e.printStackTrace();
+            }
+         }
+      }
       
       if (summaryNotificationId == null) {
          summaryNotificationId = random.nextInt();
@@ -763,6 +776,20 @@ class GenerateNotification {
      return getNewBaseIntent(summaryNotificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, gcmBundle.toString()).putExtra("summary", group);
    }
    
+   private static String readFullData(OneSignalDbHelper dbHelper, long rowId) {
+      Cursor cursor = dbHelper.query(
+          NotificationTable.TABLE_NAME,
+          NotificationPayloadCodec.COLUMNS,
+          NotificationTable._ID + " = " + rowId,
+          null, null, null, null);
+
+      try {
+         return cursor.moveToFirst() ? NotificationPayloadCodec.read(cursor) : null;
+      } finally {
+         cursor.close();
+      }
+   }
+
    private static void createSummaryIdDatabaseEntry(OneSignalDbHelper dbHelper, String group, int id) {
       // There currently isn't a visible notification from for this groupid.
       // Save the group summary notification id so it can be updated later.
@@ -775,7 +802,7 @@ class GenerateNotification {
 
    // Keep 'throws Throwable' as 'onesignal_bgimage_notif_layout' may not be available
    //    This maybe the case if a jar is used instead of an aar.
-   private static void addBackgroundImage(JSONObject gcmBundle, NotificationCompat.Builder notifBuilder) throws Throwable {
+   private static void addBackgroundImage(JSONObject gcmBundle, NotificationCompat.Builder notifBuilder, Bitmap remoteImage) throws Throwable {
       // Required to right align image
       if (android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
          return;
@@ -786,7 +813,7 @@ class GenerateNotification {
 
       if (jsonStrBgImage != null) {
          jsonBgImage = new JSONObject(jsonStrBgImage);
-         bg_image = getBitmap(jsonBgImage.optString("img", null));
+         bg_image = getBitmap(jsonBgImage.optString("img", null), remoteImage);
       }
 
       if (bg_image == null)
@@ -848,8 +875,8 @@ class GenerateNotification {
       return null;
    }
 
-   private static Bitmap getLargeIcon(JSONObject gcmBundle) {
-      Bitmap bitmap = getBitmap(gcmBundle.optString("licon"));
+   private static Bitmap getLargeIcon(JSONObject gcmBundle, Bitmap remoteImage) {
+      Bitmap bitmap = getBitmap(gcmBundle.optString("licon"), remoteImage);
       if (bitmap == null)
          bitmap = getBitmapFromAssetsOrResourceName("ic_onesignal_large_icon_default");
       
@@ -920,23 +947,62 @@ class GenerateNotification {
       return null;
    }
 
-   private static Bitmap getBitmapFromURL(String location) {
+   /**
+    * Downloads the large icon, big picture and background image of the payload in parallel instead of one
+    *    after the other, each decoded close to the size it is displayed at.
+    * The large icon is still resized to fit exactly by {@link #resizeBitmapForLargeIconArea(Bitmap)}.
+    */
+   private static Map<String, Bitmap> loadRemoteImages(JSONObject gcmBundle) {
+      DisplayMetrics displayMetrics = contextResources.getDisplayMetrics();
+      int pictureHeight = (int) (BIG_PICTURE_MAX_HEIGHT_DP * displayMetrics.density);
+      int largeIconWidth = pictureHeight, largeIconHeight = pictureHeight;
       try {
-         return BitmapFactory.decodeStream(new URL(location).openConnection().getInputStream());
-      } catch (Throwable t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image!", t);
+         largeIconWidth = (int) contextResources.getDimension(android.R.dimen.notification_large_icon_width);
+         largeIconHeight = (int) contextResources.getDimension(android.R.dimen.notification_large_icon_height);
+      } catch (Throwable t) {}
+
+      Map<String, OSNotificationImageLoader.ImageRequest> requests = new HashMap<>();
+      addRemoteImageRequest(requests, "licon", gcmBundle.optString("licon", null), largeIconWidth, largeIconHeight);
+      addRemoteImageRequest(requests, "bicon", gcmBundle.optString("bicon", null), displayMetrics.widthPixels, pictureHeight);
+
+      // Background images are only used from Jelly Bean, see addBackgroundImage
+      String jsonStrBgImage = gcmBundle.optString("bg_img", null);
+      if (jsonStrBgImage != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+         try {
+            addRemoteImageRequest(requests, "bg_img", new JSONObject(jsonStrBgImage).optString("img", null), displayMetrics.widthPixels, pictureHeight);
+         } catch (JSONException e) {}
       }
 
-      return null;
+      Map<String, Bitmap> remoteImages = new HashMap<>();
+      if (requests.isEmpty())
+         return remoteImages;
+
+      Map<String, Bitmap> bitmaps = OSNotificationImageLoader.getInstance(currentContext).loadAll(new ArrayList<>(requests.values()));
+      for (Map.Entry<String, OSNotificationImageLoader.ImageRequest> request : requests.entrySet())
+         remoteImages.put(request.getKey(), bitmaps.get(request.getValue().key));
+      return remoteImages;
+   }
+
+   private static void addRemoteImageRequest(Map<String, OSNotificationImageLoader.ImageRequest> requests, String payloadKey, String name, int targetWidth, int targetHeight) {
+      if (name == null)
+         return;
+      String trimmedName = name.trim();
+      if (isRemoteImage(trimmedName))
+         requests.put(payloadKey, new OSNotificationImageLoader.ImageRequest(trimmedName, targetWidth, targetHeight));
+   }
+
+   private static boolean isRemoteImage(String trimmedName) {
+      return trimmedName.startsWith("http://") || trimmedName.startsWith("https://");
    }
 
-   private static Bitmap getBitmap(String name) {
+   // remoteImage is the loaded bitmap when name is a URL, see loadRemoteImages
+   private static Bitmap getBitmap(String name, Bitmap remoteImage) {
       if (name == null)
          return null;
       String trimmedName = name.trim();
       
-      if (trimmedName.startsWith("http://") || trimmedName.startsWith("https://"))
-         return getBitmapFromURL(trimmedName);
+      if (isRemoteImage(trimmedName))
+         return remoteImage;
 
       return getBitmapFromAssetsOrResourceName(name);
    }
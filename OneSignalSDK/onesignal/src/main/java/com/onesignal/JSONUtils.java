@@ -2,13 +2,17 @@ package com.onesignal;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +25,9 @@ class JSONUtils {
      * Returns a JSONObject of the differences between cur and changedTo.
      * If baseOutput is added changes will be applied to this JSONObject.
      * includeFields will always be added to the returned JSONObject if they are in cur.
+     * <br/><br/>
+     * Both objects are walked once, nested values are compared and copied structurally
+     *    without serializing them to strings.
      */
     static JSONObject generateJsonDiff(JSONObject cur, JSONObject changedTo, JSONObject baseOutput, Set<String> includeFields) {
         if (cur == null)
@@ -50,9 +57,9 @@ class JSONUtils {
                         if (baseOutput != null && baseOutput.has(key))
                             outValue = baseOutput.getJSONObject(key);
                         JSONObject returnedJson = generateJsonDiff(curValue, (JSONObject) value, outValue, includeFields);
-                        String returnedJsonStr = returnedJson.toString();
-                        if (!returnedJsonStr.equals("{}"))
-                            output.put(key, new JSONObject(returnedJsonStr));
+                        // When there is an outValue the changes were applied to it and it is already in output
+                        if (outValue == null && returnedJson.length() > 0)
+                            output.put(key, returnedJson);
                     }
                     else if (value instanceof JSONArray)
                         handleJsonArray(key, (JSONArray) value, cur.getJSONArray(key), output);
@@ -73,7 +80,7 @@ class JSONUtils {
                 }
                 else {
                     if (value instanceof JSONObject)
-                        output.put(key, new JSONObject(value.toString()));
+                        output.put(key, copyJSONObject((JSONObject) value));
                     else if (value instanceof JSONArray)
                         handleJsonArray(key, (JSONArray) value, null, output);
                     else
@@ -89,45 +96,70 @@ class JSONUtils {
 
     private static void handleJsonArray(String key, JSONArray newArray, JSONArray curArray, JSONObject output) throws JSONException {
         if (key.endsWith("_a") || key.endsWith("_d")) {
-            output.put(key, newArray);
+            output.put(key, copyJSONArray(newArray));
             return;
         }
 
-        String arrayStr = toStringNE(newArray);
-
         JSONArray newOutArray = new JSONArray();
         JSONArray remOutArray = new JSONArray();
-        String curArrayStr = curArray == null ? null : toStringNE(curArray);
 
+        // Hashed membership keeps the diff linear, and unlike matching against the joined array string
+        //    a value is not treated as present because it is a substring of another one.
+        Set<String> curValues = curArray == null ? null : stringSetOf(curArray);
         for (int i = 0; i < newArray.length(); i++) {
             String arrayValue = (String)newArray.get(i);
-            if (curArray == null || !curArrayStr.contains(arrayValue))
+            if (curValues == null || !curValues.contains(arrayValue))
                 newOutArray.put(arrayValue);
         }
 
         if (curArray != null) {
+            Set<String> newValues = stringSetOf(newArray);
             for (int i = 0; i < curArray.length(); i++) {
                 String arrayValue = curArray.getString(i);
-                if (!arrayStr.contains(arrayValue))
+                if (!newValues.contains(arrayValue))
                     remOutArray.put(arrayValue);
             }
         }
 
-        if (!newOutArray.toString().equals("[]"))
+        if (newOutArray.length() > 0)
             output.put(key + "_a", newOutArray);
-        if (!remOutArray.toString().equals("[]"))
+        if (remOutArray.length() > 0)
             output.put(key + "_d", remOutArray);
     }
 
-    static String toStringNE(JSONArray jsonArray) {
-        String strArray = "[";
+    private static Set<String> stringSetOf(JSONArray jsonArray) throws JSONException {
+        Set<String> values = new HashSet<>(jsonArray.length() * 2);
+        for (int i = 0; i < jsonArray.length(); i++)
+            values.add(jsonArray.getString(i));
+        return values;
+    }
 
-        try {
-            for (int i = 0; i < jsonArray.length(); i++)
-                strArray += "\"" + jsonArray.getString(i) + "\"";
-        } catch (JSONException ignored) {}
+    /**
+     * Deep copy of the JSONObject, nested JSONObjects and JSONArrays are copied and other values are immutable
+     */
+    static JSONObject copyJSONObject(JSONObject jsonObject) throws JSONException {
+        JSONObject copy = new JSONObject();
+        Iterator<String> keys = jsonObject.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            copy.put(key, copyJSONValue(jsonObject.get(key)));
+        }
+        return copy;
+    }
 
-        return strArray + "]";
+    static JSONArray copyJSONArray(JSONArray jsonArray) throws JSONException {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < jsonArray.length(); i++)
+            copy.put(copyJSONValue(jsonArray.get(i)));
+        return copy;
+    }
+
+    private static Object copyJSONValue(Object value) throws JSONException {
+        if (value instanceof JSONObject)
+            return copyJSONObject((JSONObject) value);
+        if (value instanceof JSONArray)
+            return copyJSONArray((JSONArray) value);
+        return value;
     }
 
     static JSONObject getJSONObjectWithoutBlankValues(JSONObject jsonObject, String getKey) {
@@ -261,4 +293,65 @@ class JSONUtils {
         return object;
     }
 
+    /**
+     * Reads the object the reader is positioned on into a JSONObject.
+     * Lets callers pull only the parts of a large response they need straight off a stream
+     *    while skipping the rest with {@link JsonReader#skipValue()}.
+     */
+    static JSONObject readJSONObject(@NonNull JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            object.put(name, readJSONValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * Reads the array the reader is positioned on into a JSONArray.
+     */
+    static JSONArray readJSONArray(@NonNull JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext())
+            array.put(readJSONValue(reader));
+        reader.endArray();
+        return array;
+    }
+
+    private static Object readJSONValue(@NonNull JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readJSONObject(reader);
+            case BEGIN_ARRAY:
+                return readJSONArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return parseJSONNumber(reader.nextString());
+            case STRING:
+                return reader.nextString();
+            default:
+                throw new JSONException("Unexpected token " + token + " reading JSON value");
+        }
+    }
+
+    // Matches the types JSONTokener produces so values read either way compare the same
+    private static Object parseJSONNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE)
+                    return (int) longValue;
+                return longValue;
+            } catch (NumberFormatException ignored) {}
+        }
+        return Double.parseDouble(number);
+    }
 }
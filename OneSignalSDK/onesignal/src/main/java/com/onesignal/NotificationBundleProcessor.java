@@ -96,11 +96,6 @@ class NotificationBundleProcessor {
          
          notifJob.overrideSettings = overrideSettings;
          ProcessJobForDisplay(notifJob);
-
-         // Delay to prevent CPU spikes.
-         //    Normally more than one notification is restored at a time.
-         if (notifJob.restoring)
-            OSUtils.sleep(100);
       } catch (JSONException e) {
          e.printStackTrace();
       }
@@ -180,19 +175,11 @@ class NotificationBundleProcessor {
       try {
          JSONObject customJSON = getCustomJSONObject(notifiJob.jsonPayload);
    
-         OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(notifiJob.context);
-
          // Count any notifications with duplicated android notification ids as dismissed.
          // -1 is used to note never displayed
-         if (notifiJob.isNotificationToDisplay()) {
-            String whereStr = NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + notifiJob.getAndroidIdWithoutCreate();
-
-            ContentValues values = new ContentValues();
-            values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
-
-            dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
-            BadgeCountUpdater.update(dbHelper, context);
-         }
+         Integer androidIdToDismiss = null;
+         if (notifiJob.isNotificationToDisplay())
+            androidIdToDismiss = notifiJob.getAndroidIdWithoutCreate();
 
          // Save just received notification to DB
          ContentValues values = new ContentValues();
@@ -217,12 +204,15 @@ class NotificationBundleProcessor {
          long expireTime = sentTime + ttl;
          values.put(NotificationTable.COLUMN_NAME_EXPIRE_TIME, expireTime);
 
-         values.put(NotificationTable.COLUMN_NAME_FULL_DATA, jsonPayload.toString());
-
-         dbHelper.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+         NotificationPayloadCodec.put(values, jsonPayload.toString());
 
-         if (!opened)
-            BadgeCountUpdater.update(dbHelper, context);
+         // Dismissing an old row and saving this one, plus the badge recount, happen in one batched transaction
+         NotificationIngestQueue.ingest(context, new NotificationIngestQueue.Entry(
+            customJSON.optString("i"),
+            androidIdToDismiss,
+            values,
+            androidIdToDismiss != null || !opened
+         ));
       } catch (JSONException e) {
          e.printStackTrace();
       }
@@ -134,6 +134,11 @@ public abstract class NotificationExtenderService extends JobIntentService {
          return;
       }
 
+      if (NotificationRestoreEngine.isBatch(bundle)) {
+         processRestoreBatch(NotificationRestoreEngine.getBatch(this, bundle));
+         return;
+      }
+
       String jsonStrPayload = bundle.getString("json_payload");
       if (jsonStrPayload == null) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "json_payload key is nonexistent from bundle passed to NotificationExtenderService: " + bundle);
@@ -158,6 +163,29 @@ public abstract class NotificationExtenderService extends JobIntentService {
       }
    }
 
+   // Restored notifications are sent as one work item, developer code is called for each in order
+   private void processRestoreBatch(List<NotificationRestoreEngine.RestoreItem> items) {
+      long startNanos = System.nanoTime();
+      long rateLimitWaitMs = 0;
+      for (NotificationRestoreEngine.RestoreItem item : items) {
+         try {
+            currentJsonPayload = new JSONObject(item.jsonPayload);
+         } catch (JSONException e) {
+            e.printStackTrace();
+            continue;
+         }
+
+         currentlyRestoring = true;
+         currentBaseOverrideSettings = new OverrideSettings();
+         currentBaseOverrideSettings.androidNotificationId = item.androidNotificationId;
+         restoreTimestamp = item.timestamp;
+
+         rateLimitWaitMs += NotificationRestoreEngine.acquireDisplaySlot();
+         processJsonObject(currentJsonPayload, true);
+      }
+      NotificationRestoreEngine.recordMetrics(items.size(), startNanos, rateLimitWaitMs, true);
+   }
+
    void processJsonObject(JSONObject currentJsonPayload, boolean restoring) {
       OSNotificationReceivedResult receivedResult = new OSNotificationReceivedResult();
       receivedResult.payload = NotificationBundleProcessor.OSNotificationPayloadFrom(currentJsonPayload);
@@ -200,11 +228,6 @@ public abstract class NotificationExtenderService extends JobIntentService {
          }
          else
             NotificationBundleProcessor.ProcessJobForDisplay(createNotifJobFromCurrent());
-
-         // Delay to prevent CPU spikes.
-         //    Normally more than one notification is restored at a time.
-         if (restoring)
-            OSUtils.sleep(100);
       }
    }
 
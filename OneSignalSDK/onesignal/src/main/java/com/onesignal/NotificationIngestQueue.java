@@ -0,0 +1,223 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes received notifications to the notification table using group commit.
+ * <br/><br/>
+ * Each notification needs an update (dismiss rows reusing its android notification id) and an insert.
+ * Instead of a transaction per statement, the calling thread queues its entry and either commits everything
+ *    queued so far in one transaction or waits for the thread already committing to include it.
+ * A burst of pushes received on several threads is written in a few transactions with a single badge
+ *    recount per batch, while every caller still returns only once its row is in the table.
+ * A batch whose transaction rolls back is queued once more before its entries are reported as not saved.
+ */
+class NotificationIngestQueue {
+
+   static class Entry {
+      @Nullable final String notificationId;
+      @Nullable final Integer androidIdToDismiss;
+      @NonNull final ContentValues values;
+      final boolean updatesBadge;
+
+      private boolean saved;
+      private int dismissedRows;
+      private int attempts;
+      private boolean done;
+
+      Entry(@Nullable String notificationId, @Nullable Integer androidIdToDismiss, @NonNull ContentValues values, boolean updatesBadge) {
+         this.notificationId = notificationId;
+         this.androidIdToDismiss = androidIdToDismiss;
+         this.values = values;
+         this.updatesBadge = updatesBadge;
+      }
+   }
+
+   private static final String SQL_DISMISS_BY_ANDROID_NOTIFICATION_ID =
+      "UPDATE " + NotificationTable.TABLE_NAME +
+      " SET " + NotificationTable.COLUMN_NAME_DISMISSED + " = 1" +
+      " WHERE " + NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = ?";
+
+   // A rolled back batch is retried once, a DB error that outlasts that is not going to clear up mid burst
+   private static final int MAX_COMMIT_ATTEMPTS = 2;
+
+   private static final Object LOCK = new Object();
+   private static ArrayList<Entry> pending = new ArrayList<>();
+   private static boolean committing;
+   private static long committedBatches;
+
+   /**
+    * Blocks until the entry has been written or its batch failed to commit
+    * @return true if the entry's row was committed to the notification table
+    */
+   static boolean ingest(Context context, Entry entry) {
+      boolean interrupted = false;
+      synchronized (LOCK) {
+         pending.add(entry);
+      }
+
+      while (true) {
+         List<Entry> batch;
+         synchronized (LOCK) {
+            if (entry.done)
+               break;
+
+            if (committing) {
+               try {
+                  LOCK.wait();
+               } catch (InterruptedException e) {
+                  // The row must be written before returning, keep waiting and restore the flag after
+                  interrupted = true;
+               }
+               continue;
+            }
+
+            committing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+         }
+
+         boolean transactionCommitted = false;
+         try {
+            transactionCommitted = commit(context, batch);
+            if (transactionCommitted)
+               onCommitted(context, batch);
+         } finally {
+            synchronized (LOCK) {
+               for (Entry batchEntry : batch) {
+                  batchEntry.attempts++;
+                  if (transactionCommitted || batchEntry.attempts >= MAX_COMMIT_ATTEMPTS)
+                     batchEntry.done = true;
+                  else
+                     pending.add(batchEntry);
+               }
+               if (transactionCommitted)
+                  committedBatches++;
+               committing = false;
+               LOCK.notifyAll();
+            }
+         }
+      }
+
+      if (interrupted)
+         Thread.currentThread().interrupt();
+
+      if (!entry.saved)
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Notification " + entry.notificationId + " was not saved after " + entry.attempts + " attempts");
+      return entry.saved;
+   }
+
+   static long getCommittedBatches() {
+      synchronized (LOCK) {
+         return committedBatches;
+      }
+   }
+
+   static int getPendingCount() {
+      synchronized (LOCK) {
+         return pending.size();
+      }
+   }
+
+   private static boolean commit(Context context, final List<Entry> batch) {
+      final OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(context);
+      boolean transactionCommitted = false;
+      try {
+         transactionCommitted = dbHelper.runInTransaction(NotificationTable.TABLE_NAME, new OneSignalDbHelper.TransactionBody() {
+            @Override
+            public void run(@NonNull SQLiteDatabase writableDb) {
+               for (Entry entry : batch)
+                  write(dbHelper, writableDb, entry);
+            }
+         });
+      } finally {
+         // Nothing in a rolled back transaction was written, a retry starts these entries over
+         if (!transactionCommitted) {
+            for (Entry entry : batch) {
+               entry.saved = false;
+               entry.dismissedRows = 0;
+            }
+         }
+      }
+      return transactionCommitted;
+   }
+
+   private static void onCommitted(Context context, List<Entry> batch) {
+      boolean updateBadge = false;
+      boolean dismissedRows = false;
+      int insertedUnread = 0;
+      OSNotificationDedupIndex dedupIndex = OSNotificationDedupIndex.getInstance(context);
+      for (Entry entry : batch) {
+         if (entry.saved) {
+            dedupIndex.onNotificationSaved(entry.notificationId);
+            if (BadgeCountUpdater.countsAsUnread(entry.values))
+               insertedUnread++;
+         }
+         updateBadge |= entry.updatesBadge;
+         dismissedRows |= entry.dismissedRows > 0;
+      }
+
+      if (!updateBadge)
+         return;
+
+      OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(context);
+      // Only a batch that purely added rows can update the unread count without counting them again
+      if (dismissedRows)
+         BadgeCountUpdater.update(dbHelper, context);
+      else
+         BadgeCountUpdater.updateAfterInserts(dbHelper, context, insertedUnread);
+   }
+
+   // A failed statement only undoes itself, so one bad row does not roll back the rest of the batch
+   private static void write(OneSignalDbHelper dbHelper, SQLiteDatabase writableDb, Entry entry) {
+      try {
+         if (entry.androidIdToDismiss != null) {
+            SQLiteStatement dismiss = dbHelper.compileWriteStatement(writableDb, SQL_DISMISS_BY_ANDROID_NOTIFICATION_ID);
+            dismiss.bindLong(1, entry.androidIdToDismiss);
+            entry.dismissedRows = dismiss.executeUpdateDelete();
+         }
+
+         dbHelper.insertWithCompiledStatement(writableDb, NotificationTable.TABLE_NAME, null, entry.values);
+         entry.saved = true;
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error saving notification " + entry.notificationId, t);
+      }
+   }
+}
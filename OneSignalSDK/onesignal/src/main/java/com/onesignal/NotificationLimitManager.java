@@ -23,7 +23,7 @@ class NotificationLimitManager {
    // Even though it says 50 in the error it is really a limit of 49.
    // See NotificationManagerService.java in the AOSP source
    //
-   private static final int MAX_NUMBER_OF_NOTIFICATIONS_INT = 49;
+   static final int MAX_NUMBER_OF_NOTIFICATIONS_INT = 49;
    static final String MAX_NUMBER_OF_NOTIFICATIONS_STR = Integer.toString(MAX_NUMBER_OF_NOTIFICATIONS_INT);
 
    private static int getMaxNumberOfNotificationsInt() {
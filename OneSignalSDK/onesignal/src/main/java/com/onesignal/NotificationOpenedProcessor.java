@@ -128,7 +128,7 @@ class NotificationOpenedProcessor {
    }
 
    private static void addChildNotifications(JSONArray dataArray, String summaryGroup, OneSignalDbHelper writableDb) {
-      String[] retColumn = { NotificationTable.COLUMN_NAME_FULL_DATA };
+      String[] retColumn = NotificationPayloadCodec.COLUMNS;
       String[] whereArgs = { summaryGroup };
 
       Cursor cursor = writableDb.query(
@@ -145,8 +145,9 @@ class NotificationOpenedProcessor {
          cursor.moveToFirst();
          do {
             try {
-               String jsonStr = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA));
-               dataArray.put(new JSONObject(jsonStr));
+               String jsonStr = NotificationPayloadCodec.read(cursor);
+               if (jsonStr != null)
+                  dataArray.put(new JSONObject(jsonStr));
             } catch (JSONException e) {
                OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not parse JSON of sub notification in group: " + summaryGroup);
             }
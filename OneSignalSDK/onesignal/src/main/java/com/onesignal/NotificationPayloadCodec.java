@@ -0,0 +1,130 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes the push payload of a notification row.
+ * <br/><br/>
+ * Payloads are kept for a week so they are stored deflate compressed in
+ *    {@link NotificationTable#COLUMN_NAME_FULL_DATA_COMPRESSED}. Short payloads, and rows written
+ *    before DB version 10, use the plain {@link NotificationTable#COLUMN_NAME_FULL_DATA} text column.
+ * Only select the payload columns when the payload is needed, summary and badge queries work off the other columns.
+ */
+class NotificationPayloadCodec {
+
+   // Shorter payloads rarely shrink enough to pay for inflating them on every read
+   static final int MIN_COMPRESS_LENGTH = 128;
+
+   static final String[] COLUMNS = {
+      NotificationTable.COLUMN_NAME_FULL_DATA,
+      NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED
+   };
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   static void put(@NonNull ContentValues values, @NonNull String fullData) {
+      if (fullData.length() >= MIN_COMPRESS_LENGTH) {
+         byte[] uncompressed = fullData.getBytes(UTF_8);
+         byte[] compressed = compress(uncompressed);
+         if (compressed.length < uncompressed.length) {
+            values.put(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED, compressed);
+            return;
+         }
+      }
+
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, fullData);
+   }
+
+   /**
+    * @return the payload JSON of the current row, null if the row has none or it could not be inflated
+    */
+   static @Nullable String read(@NonNull Cursor cursor) {
+      int compressedIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED);
+      if (compressedIndex != -1 && !cursor.isNull(compressedIndex)) {
+         try {
+            return new String(decompress(cursor.getBlob(compressedIndex)), UTF_8);
+         } catch (DataFormatException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not inflate notification payload", e);
+            return null;
+         }
+      }
+
+      int index = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA);
+      if (index == -1)
+         return null;
+      return cursor.getString(index);
+   }
+
+   private static byte[] compress(byte[] bytes) {
+      Deflater deflater = new Deflater();
+      try {
+         deflater.setInput(bytes);
+         deflater.finish();
+         ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+         byte[] buffer = new byte[1_024];
+         while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            output.write(buffer, 0, count);
+         }
+         return output.toByteArray();
+      } finally {
+         deflater.end();
+      }
+   }
+
+   private static byte[] decompress(byte[] bytes) throws DataFormatException {
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(bytes);
+         ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 4);
+         byte[] buffer = new byte[1_024];
+         while (!inflater.finished()) {
+            int count = inflater.inflate(buffer);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+               throw new DataFormatException("Truncated notification payload");
+            output.write(buffer, 0, count);
+         }
+         return output.toByteArray();
+      } finally {
+         inflater.end();
+      }
+   }
+}
@@ -0,0 +1,253 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.SparseArray;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Displays restored notifications in batches.
+ * <br/><br/>
+ * {@link NotificationRestorer} selects the rows to restore and hands their android notification ids over as a
+ *    single work item, to {@link RestoreJobService} or to the app's {@link NotificationExtenderService}.
+ * Only the ids go into the Intent, payloads are read back from the notification table by the service
+ *    so a batch of large payloads can't exceed the binder transaction limit.
+ * Both services display the batch in order on their own work thread, GenerateNotification is not safe to call
+ *    from several threads at once and a group's summary is rebuilt after each of its children.
+ * Both paths take a token from a shared {@link OSTokenBucket} before each notification instead of sleeping
+ *    a fixed time between them.
+ */
+class NotificationRestoreEngine {
+
+   static final String BATCH_ANDROID_IDS_KEY = "android_notif_ids";
+
+   // Android sheds notification posts above 10 per second per package, restored children in a group
+   //    also update their summary, so stay well under that;
+   // E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
+   private static final int RESTORE_BURST = 5;
+   private static final int RESTORES_PER_SECOND = 4;
+
+   private static final OSTokenBucket rateLimiter = new OSTokenBucket(RESTORE_BURST, RESTORES_PER_SECOND);
+
+   private static RestoreMetrics lastMetrics;
+
+   static class RestoreItem {
+      final int androidNotificationId;
+      final String jsonPayload;
+      final long timestamp;
+
+      RestoreItem(int androidNotificationId, String jsonPayload, long timestamp) {
+         this.androidNotificationId = androidNotificationId;
+         this.jsonPayload = jsonPayload;
+         this.timestamp = timestamp;
+      }
+   }
+
+   static class RestoreMetrics {
+      final int notificationCount;
+      final long durationMs;
+      final long rateLimitWaitMs;
+      final boolean usedExtender;
+
+      RestoreMetrics(int notificationCount, long durationMs, long rateLimitWaitMs, boolean usedExtender) {
+         this.notificationCount = notificationCount;
+         this.durationMs = durationMs;
+         this.rateLimitWaitMs = rateLimitWaitMs;
+         this.usedExtender = usedExtender;
+      }
+
+      @Override
+      public String toString() {
+         return "RestoreMetrics{" +
+            "notificationCount=" + notificationCount +
+            ", durationMs=" + durationMs +
+            ", rateLimitWaitMs=" + rateLimitWaitMs +
+            ", usedExtender=" + usedExtender +
+            '}';
+      }
+   }
+
+   /**
+    * @param cursor - Rows selected with at least {@link NotificationTable#COLUMN_NAME_ANDROID_NOTIFICATION_ID}
+    */
+   static @NonNull int[] readAndroidIds(Cursor cursor) {
+      int[] androidIds = new int[cursor.getCount()];
+      if (!cursor.moveToFirst())
+         return androidIds;
+
+      int androidIdIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID);
+      int i = 0;
+      do {
+         androidIds[i++] = cursor.getInt(androidIdIndex);
+      } while (cursor.moveToNext());
+      return androidIds;
+   }
+
+   static Intent putBatch(Intent intent, int[] androidIds) {
+      return intent.putExtra(BATCH_ANDROID_IDS_KEY, androidIds)
+                   .putExtra("restoring", true);
+   }
+
+   static boolean isBatch(Bundle extras) {
+      return extras.containsKey(BATCH_ANDROID_IDS_KEY);
+   }
+
+   /**
+    * Reads the payloads of a batch, in the order of its ids.
+    * Rows opened or dismissed since the batch was enqueued are skipped.
+    */
+   @WorkerThread
+   static @NonNull List<RestoreItem> getBatch(Context context, Bundle extras) {
+      List<RestoreItem> items = new ArrayList<>();
+      int[] androidIds = extras.getIntArray(BATCH_ANDROID_IDS_KEY);
+      if (androidIds == null || androidIds.length == 0) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Restore batch is missing its ids: " + extras);
+         return items;
+      }
+
+      StringBuilder where = new StringBuilder(
+         NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
+         NotificationTable.COLUMN_NAME_OPENED    + " = 0 AND " +
+         NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " IN ("
+      );
+      for (int i = 0; i < androidIds.length; i++)
+         where.append(i == 0 ? "" : ",").append(androidIds[i]);
+      where.append(")");
+
+      SparseArray<RestoreItem> itemsById = new SparseArray<>(androidIds.length);
+      Cursor cursor = null;
+      try {
+         cursor = OneSignalDbHelper.getInstance(context).query(
+            NotificationTable.TABLE_NAME,
+            NotificationRestorer.COLUMNS_FOR_RESTORE,
+            where.toString(),
+            null,
+            null, // group by
+            null, // filter by row groups
+            null  // sort order, the order of the ids is kept below
+         );
+         readItems(cursor, itemsById);
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error reading notifications to restore! ", t);
+      } finally {
+         if (cursor != null && !cursor.isClosed())
+            cursor.close();
+      }
+
+      for (int androidId : androidIds) {
+         RestoreItem item = itemsById.get(androidId);
+         if (item != null)
+            items.add(item);
+      }
+      return items;
+   }
+
+   private static void readItems(Cursor cursor, SparseArray<RestoreItem> itemsById) {
+      if (!cursor.moveToFirst())
+         return;
+
+      int androidIdIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID);
+      int createdTimeIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_CREATED_TIME);
+      do {
+         String jsonPayload = NotificationPayloadCodec.read(cursor);
+         if (jsonPayload == null)
+            continue;
+
+         int androidId = cursor.getInt(androidIdIndex);
+         itemsById.put(androidId, new RestoreItem(androidId, jsonPayload, cursor.getLong(createdTimeIndex)));
+      } while (cursor.moveToNext());
+   }
+
+   /**
+    * Blocks until a notification may be posted.
+    * @return time spent waiting in milliseconds
+    */
+   static long acquireDisplaySlot() {
+      return rateLimiter.acquire();
+   }
+
+   /**
+    * Displays every item of the batch in order on the calling thread, returning once all of them are done.
+    */
+   @WorkerThread
+   static void restoreBatch(Context context, List<RestoreItem> items) {
+      if (items.isEmpty())
+         return;
+
+      long startNanos = System.nanoTime();
+      long rateLimitWaitMs = 0;
+      for (RestoreItem item : items) {
+         rateLimitWaitMs += acquireDisplaySlot();
+         display(context, item);
+      }
+
+      recordMetrics(items.size(), startNanos, rateLimitWaitMs, false);
+   }
+
+   private static void display(Context context, RestoreItem item) {
+      BundleCompat bundle = new BundleCompatBundle();
+      bundle.putString("json_payload", item.jsonPayload);
+      bundle.putInt("android_notif_id", item.androidNotificationId);
+      bundle.putLong("timestamp", item.timestamp);
+      bundle.putBoolean("restoring", true);
+
+      try {
+         NotificationBundleProcessor.ProcessFromGCMIntentService(context, bundle, null);
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error restoring notification " + item.androidNotificationId, t);
+      }
+   }
+
+   static void recordMetrics(int notificationCount, long startNanos, long rateLimitWaitMs, boolean usedExtender) {
+      RestoreMetrics metrics = new RestoreMetrics(
+         notificationCount,
+         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+         rateLimitWaitMs,
+         usedExtender
+      );
+      synchronized (NotificationRestoreEngine.class) {
+         lastMetrics = metrics;
+      }
+      OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Restored notifications: " + metrics);
+   }
+
+   static synchronized RestoreMetrics getLastMetrics() {
+      return lastMetrics;
+   }
+}
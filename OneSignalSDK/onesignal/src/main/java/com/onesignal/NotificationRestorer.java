@@ -36,7 +36,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Build;
-import android.os.Process;
 import android.service.notification.StatusBarNotification;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
@@ -84,13 +83,14 @@ class NotificationRestorer {
    static final String[] COLUMNS_FOR_RESTORE = {
        NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
        NotificationTable.COLUMN_NAME_FULL_DATA,
+       NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED,
        NotificationTable.COLUMN_NAME_CREATED_TIME
    };
 
-   // Delay to prevent logcat messages and possibly skipping some notifications
-   //    This prevents the following error;
-   // E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
-   private static final int DELAY_BETWEEN_NOTIFICATION_RESTORES_MS = 200;
+   // The batch Intent only carries ids, the service reads COLUMNS_FOR_RESTORE itself
+   static final String[] COLUMNS_FOR_RESTORE_BATCH = {
+       NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID
+   };
 
    static final int DEFAULT_TTL_IF_NOT_IN_PAYLOAD = 259_200;
 
@@ -99,13 +99,12 @@ class NotificationRestorer {
    public static boolean restored;
 
    static void asyncRestore(final Context context) {
-      new Thread(new Runnable() {
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.BACKGROUND, new Runnable() {
          @Override
          public void run() {
-            Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
             restore(context);
          }
-      }, "OS_RESTORE_NOTIFS").start();
+      });
    }
 
    @WorkerThread
@@ -138,7 +137,7 @@ class NotificationRestorer {
       try {
          cursor = dbHelper.query(
             NotificationTable.TABLE_NAME,
-            COLUMNS_FOR_RESTORE,
+            COLUMNS_FOR_RESTORE_BATCH,
             dbQuerySelection.toString(),
             null,
             null, // group by
@@ -146,7 +145,7 @@ class NotificationRestorer {
             NotificationTable._ID + " DESC", // sort order, new to old
             NotificationLimitManager.MAX_NUMBER_OF_NOTIFICATIONS_STR // limit
          );
-         showNotificationsFromCursor(context, cursor, DELAY_BETWEEN_NOTIFICATION_RESTORES_MS);
+         showNotificationsFromCursor(context, cursor);
          BadgeCountUpdater.update(dbHelper, context);
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error restoring notification records! ", t);
@@ -181,48 +180,30 @@ class NotificationRestorer {
 
    /**
     * Restores a set of notifications back to the notification shade based on an SQL cursor.
+    * All rows are sent as a single work item, see {@link NotificationRestoreEngine} for how it is
+    *    displayed without spiking CPU and I/O on the device.
     * @param context - Context required to start JobIntentService
-    * @param cursor - Source cursor to generate notifications from
-    * @param delay - Delay to slow down process to ensure we don't spike CPU and I/O on the device.
+    * @param cursor - Source cursor with the android notification ids to restore, see {@link #COLUMNS_FOR_RESTORE_BATCH}
     */
-   static void showNotificationsFromCursor(Context context, Cursor cursor, int delay) {
-      if (!cursor.moveToFirst())
+   static void showNotificationsFromCursor(Context context, Cursor cursor) {
+      int[] androidIds = NotificationRestoreEngine.readAndroidIds(cursor);
+      if (androidIds.length == 0)
          return;
 
-      boolean useExtender = (NotificationExtenderService.getIntent(context) != null);
-
-      do {
-         if (useExtender) {
-            Intent intent = NotificationExtenderService.getIntent(context);
-            addRestoreExtras(intent, cursor);
-            NotificationExtenderService.enqueueWork(context,
-                  intent.getComponent(),
-                  NotificationExtenderService.EXTENDER_SERVICE_JOB_ID,
-                  intent,
-                  false);
-         }
-         else {
-            Intent intent = addRestoreExtras(new Intent(), cursor);
-            ComponentName componentName = new ComponentName(context, RestoreJobService.class);
-            RestoreJobService.enqueueWork(context, componentName, RestoreJobService.RESTORE_SERVICE_JOB_ID, intent, false);
-         }
-
-         if (delay > 0)
-            OSUtils.sleep(delay);
-      } while (cursor.moveToNext());
-   }
-
-   private static Intent addRestoreExtras(Intent intent, Cursor cursor) {
-      int existingId = cursor.getInt(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID));
-      String fullData = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA));
-      Long datetime = cursor.getLong(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_CREATED_TIME));
-
-      intent.putExtra("json_payload", fullData)
-            .putExtra("android_notif_id", existingId)
-            .putExtra("restoring", true)
-            .putExtra("timestamp", datetime);
-
-      return intent;
+      Intent extenderIntent = NotificationExtenderService.getIntent(context);
+      if (extenderIntent != null) {
+         NotificationRestoreEngine.putBatch(extenderIntent, androidIds);
+         NotificationExtenderService.enqueueWork(context,
+               extenderIntent.getComponent(),
+               NotificationExtenderService.EXTENDER_SERVICE_JOB_ID,
+               extenderIntent,
+               false);
+      }
+      else {
+         Intent intent = NotificationRestoreEngine.putBatch(new Intent(), androidIds);
+         ComponentName componentName = new ComponentName(context, RestoreJobService.class);
+         RestoreJobService.enqueueWork(context, componentName, RestoreJobService.RESTORE_SERVICE_JOB_ID, intent, false);
+      }
    }
 
    private static final int RESTORE_NOTIFICATIONS_DELAY_MS = 15_000;
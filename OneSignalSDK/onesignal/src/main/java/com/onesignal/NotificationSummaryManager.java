@@ -132,7 +132,7 @@ class NotificationSummaryManager {
       try {
          cursor = dbHelper.query(
              NotificationTable.TABLE_NAME,
-             NotificationRestorer.COLUMNS_FOR_RESTORE,
+             NotificationRestorer.COLUMNS_FOR_RESTORE_BATCH,
             NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " +
              NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
              NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " +
@@ -143,7 +143,7 @@ class NotificationSummaryManager {
              null
          );
    
-         NotificationRestorer.showNotificationsFromCursor(context, cursor, 0);
+         NotificationRestorer.showNotificationsFromCursor(context, cursor);
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error restoring notification records! ", t);
       } finally {
@@ -0,0 +1,203 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.AtomicFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores each large String value, such as cached HTTP responses and user state JSON, in its own file.
+ * Keeping these out of SharedPreferences means they are only read when asked for and only
+ *    rewritten when they change, instead of on every load and flush of the whole XML file.
+ * Writes are atomic, a crash mid write leaves the previous value in place.
+ * A value can also have a change log, entries are appended to it without rewriting the value.
+ */
+class OSBlobStore {
+
+   static final String DIRECTORY_NAME = "onesignal_blobs";
+   private static final String LOG_DIRECTORY_NAME = "logs";
+
+   // Larger files are memory mapped instead of copied through a read buffer
+   static final int MEMORY_MAP_MIN_BYTES = 256 * 1024;
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private final File directory;
+   private final File logDirectory;
+
+   OSBlobStore(@NonNull File directory) {
+      this.directory = directory;
+      this.logDirectory = new File(directory, LOG_DIRECTORY_NAME);
+   }
+
+   static @NonNull File getDirectory(@NonNull Context context) {
+      return new File(context.getFilesDir(), DIRECTORY_NAME);
+   }
+
+   /**
+    * Returns null if nothing is stored for the key
+    */
+   @Nullable String read(@NonNull String key) throws IOException {
+      AtomicFile file = fileFor(key);
+      FileInputStream inputStream;
+      try {
+         inputStream = file.openRead();
+      } catch (FileNotFoundException e) {
+         return null;
+      }
+
+      return readFully(inputStream);
+   }
+
+   /**
+    * Replaces the stored value, a null value deletes it
+    */
+   void write(@NonNull String key, @Nullable String value) throws IOException {
+      AtomicFile file = fileFor(key);
+      if (value == null) {
+         file.delete();
+         return;
+      }
+
+      if (!directory.exists() && !directory.mkdirs())
+         throw new IOException("Could not create " + directory);
+
+      FileOutputStream outputStream = file.startWrite();
+      try {
+         outputStream.write(value.getBytes(UTF_8));
+         file.finishWrite(outputStream);
+      } catch (IOException e) {
+         file.failWrite(outputStream);
+         throw e;
+      }
+   }
+
+   /**
+    * Appends single line entries to the key's change log
+    */
+   void appendToLog(@NonNull String key, @NonNull List<String> entries) throws IOException {
+      if (!logDirectory.exists() && !logDirectory.mkdirs())
+         throw new IOException("Could not create " + logDirectory);
+
+      StringBuilder lines = new StringBuilder();
+      for (String entry : entries)
+         lines.append(entry).append('\n');
+
+      FileOutputStream outputStream = new FileOutputStream(logFileFor(key), true);
+      try {
+         outputStream.write(lines.toString().getBytes(UTF_8));
+         outputStream.getFD().sync();
+      } finally {
+         outputStream.close();
+      }
+   }
+
+   /**
+    * Returns the key's change log entries in the order they were appended.
+    * A last entry that was only partly written, from a crash mid append, is left out.
+    */
+   @NonNull List<String> readLog(@NonNull String key) throws IOException {
+      List<String> entries = new ArrayList<>();
+      FileInputStream inputStream;
+      try {
+         inputStream = new FileInputStream(logFileFor(key));
+      } catch (FileNotFoundException e) {
+         return entries;
+      }
+
+      String log = readFully(inputStream);
+      int start = 0;
+      int end;
+      while ((end = log.indexOf('\n', start)) != -1) {
+         if (end > start)
+            entries.add(log.substring(start, end));
+         start = end + 1;
+      }
+      return entries;
+   }
+
+   void deleteLog(@NonNull String key) {
+      logFileFor(key).delete();
+   }
+
+   private static @NonNull String readFully(@NonNull FileInputStream inputStream) throws IOException {
+      try {
+         FileChannel channel = inputStream.getChannel();
+         long size = channel.size();
+         if (size >= MEMORY_MAP_MIN_BYTES) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return UTF_8.decode(buffer).toString();
+         }
+
+         byte[] bytes = new byte[(int)size];
+         int read = 0;
+         while (read < bytes.length) {
+            int count = inputStream.read(bytes, read, bytes.length - read);
+            if (count == -1)
+               break;
+            read += count;
+         }
+         return new String(bytes, 0, read, UTF_8);
+      } finally {
+         inputStream.close();
+      }
+   }
+
+   private @NonNull AtomicFile fileFor(@NonNull String key) {
+      return new AtomicFile(new File(directory, encodeFileName(key)));
+   }
+
+   private @NonNull File logFileFor(@NonNull String key) {
+      return new File(logDirectory, encodeFileName(key));
+   }
+
+   private static @NonNull String encodeFileName(@NonNull String key) {
+      try {
+         // Keys can contain any character, encoding them keeps each key to one safe file name
+         return URLEncoder.encode(key, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         // UTF-8 is always supported
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,224 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded LRU of files in a directory, for responses that are worth not downloading again.
+ * <br/><br/>
+ * Files are evicted least recently used first once their total size goes over the limit.
+ * The order is tracked in memory and loaded in modified time order the first time the directory is used,
+ *    since modified times can have a resolution of seconds. Reading a file also updates its modified time
+ *    so the order carries over to the next cold start.
+ */
+class OSDiskLruCache {
+
+   @NonNull
+   private final File directory;
+   private final long maxSize;
+
+   // File sizes by file name in access order
+   @Nullable
+   private LinkedHashMap<String, Long> index;
+   private long size;
+
+   OSDiskLruCache(@NonNull File directory, long maxSize) {
+      this.directory = directory;
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * @return a file name for the key, only keeping characters that are safe in file names
+    */
+   static @NonNull String fileNameForKey(@NonNull String key) {
+      return key.replaceAll("[^A-Za-z0-9_.-]", "-");
+   }
+
+   synchronized @Nullable byte[] get(@NonNull String name) {
+      if (!index().containsKey(name))
+         return null;
+
+      byte[] data = readFile(new File(directory, name));
+      if (data == null) {
+         remove(name);
+         return null;
+      }
+
+      touch(name);
+      return data;
+   }
+
+   /**
+    * Marks the file as the most recently used one without reading it
+    */
+   synchronized void touch(@NonNull String name) {
+      if (index().get(name) != null)
+         new File(directory, name).setLastModified(System.currentTimeMillis());
+   }
+
+   /**
+    * Writes the file, evicting the least recently used files if needed to stay under the size limit
+    * @return false if the data is larger than the whole cache or couldn't be written
+    */
+   synchronized boolean put(@NonNull String name, @NonNull byte[] data) {
+      remove(name);
+      if (data.length > maxSize)
+         return false;
+
+      File file = new File(directory, name);
+      if (!writeFile(file, data))
+         return false;
+
+      index().put(name, (long) data.length);
+      size += data.length;
+      trim();
+      return true;
+   }
+
+   synchronized void remove(@NonNull String name) {
+      Long length = index().remove(name);
+      if (length != null)
+         size -= length;
+      new File(directory, name).delete();
+   }
+
+   /**
+    * @return the file names, least recently used first
+    */
+   synchronized @NonNull List<String> names() {
+      return new ArrayList<>(index().keySet());
+   }
+
+   synchronized long size() {
+      index();
+      return size;
+   }
+
+   @NonNull
+   private LinkedHashMap<String, Long> index() {
+      if (index != null)
+         return index;
+
+      index = new LinkedHashMap<>(16, 0.75f, true);
+      File[] files = directory.listFiles();
+      if (files == null)
+         return index;
+
+      Arrays.sort(files, new Comparator<File>() {
+         @Override
+         public int compare(File lhs, File rhs) {
+            long lhsModified = lhs.lastModified();
+            long rhsModified = rhs.lastModified();
+            return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+         }
+      });
+
+      for (File file : files) {
+         long length = file.length();
+         index.put(file.getName(), length);
+         size += length;
+      }
+      return index;
+   }
+
+   private void trim() {
+      Iterator<Map.Entry<String, Long>> iterator = index().entrySet().iterator();
+      while (size > maxSize && iterator.hasNext()) {
+         Map.Entry<String, Long> oldest = iterator.next();
+         new File(directory, oldest.getKey()).delete();
+         size -= oldest.getValue();
+         iterator.remove();
+      }
+   }
+
+   private static boolean writeFile(@NonNull File file, @NonNull byte[] data) {
+      File parent = file.getParentFile();
+      if (parent != null && !parent.exists() && !parent.mkdirs())
+         return false;
+
+      OutputStream outputStream = null;
+      try {
+         outputStream = new FileOutputStream(file);
+         outputStream.write(data);
+         return true;
+      } catch (IOException e) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Failed to write " + file.getName() + " to the disk cache", e);
+         file.delete();
+         return false;
+      } finally {
+         closeQuietly(outputStream);
+      }
+   }
+
+   private static @Nullable byte[] readFile(@NonNull File file) {
+      InputStream inputStream = null;
+      try {
+         inputStream = new FileInputStream(file);
+         byte[] data = new byte[(int) file.length()];
+         int read = 0;
+         while (read < data.length) {
+            int count = inputStream.read(data, read, data.length - read);
+            if (count == -1)
+               return null;
+            read += count;
+         }
+         return data;
+      } catch (IOException e) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Failed to read " + file.getName() + " from the disk cache", e);
+         return null;
+      } finally {
+         closeQuietly(inputStream);
+      }
+   }
+
+   private static void closeQuietly(@Nullable Closeable closeable) {
+      if (closeable == null)
+         return;
+      try {
+         closeable.close();
+      } catch (IOException e) { }
+   }
+}
@@ -1,8 +1,8 @@
 package com.onesignal;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.TimerTask;
+import java.util.HashMap;
+import java.util.concurrent.ScheduledFuture;
 
 import com.onesignal.OSTrigger.OSTriggerOperator;
 
@@ -19,12 +19,13 @@ class OSDynamicTriggerController {
     // Assume last time an In-App Message was displayed a very very long time ago.
     private static final long DEFAULT_LAST_IN_APP_TIME_AGO = 999_999;
 
-    private final ArrayList<String> scheduledMessages;
+    // Trigger ids with a pending evaluation, mapped to the scheduled evaluation so it can be cancelled
+    private final HashMap<String, ScheduledFuture<?>> scheduledMessages;
 
     static Date sessionLaunchTime = new Date();
 
     OSDynamicTriggerController(OSDynamicTriggerControllerObserver triggerObserver) {
-        scheduledMessages = new ArrayList<>();
+        scheduledMessages = new HashMap<>();
         observer = triggerObserver;
     }
 
@@ -62,23 +63,45 @@ class OSDynamicTriggerController {
                 return false;
 
             // Prevents re-scheduling timers for messages that we're already waiting on
-            if (scheduledMessages.contains(trigger.triggerId))
+            if (scheduledMessages.containsKey(trigger.triggerId))
                 return false;
 
-            OSDynamicTriggerTimer.scheduleTrigger(new TimerTask() {
+            ScheduledFuture<?> scheduledTrigger = OSDynamicTriggerTimer.scheduleTrigger(new Runnable() {
                 @Override
                 public void run() {
-                    scheduledMessages.remove(trigger.triggerId);
+                    synchronized (scheduledMessages) {
+                        scheduledMessages.remove(trigger.triggerId);
+                    }
                     observer.messageTriggerConditionChanged();
                 }
             }, trigger.triggerId, offset);
 
-            scheduledMessages.add(trigger.triggerId);
+            scheduledMessages.put(trigger.triggerId, scheduledTrigger);
         }
 
         return false;
     }
 
+    /**
+     * Cancels every pending trigger evaluation.
+     * Called when the session ends, the next evaluation of the messages schedules them again.
+     */
+    void cancelScheduledTriggers() {
+        synchronized (scheduledMessages) {
+            for (ScheduledFuture<?> scheduledTrigger : scheduledMessages.values()) {
+                if (scheduledTrigger != null)
+                    scheduledTrigger.cancel(false);
+            }
+            scheduledMessages.clear();
+        }
+    }
+
+    int getScheduledTriggerCount() {
+        synchronized (scheduledMessages) {
+            return scheduledMessages.size();
+        }
+    }
+
     private static boolean evaluateTimeIntervalWithOperator(double timeInterval, double currentTimeInterval, OSTriggerOperator operator) {
         switch (operator) {
             case LESS_THAN:
@@ -1,13 +1,48 @@
 package com.onesignal;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 // Due to issues with testing the Java utility Timer class, we've created a wrapper class
 // that schedules the timer.
+// All dynamic triggers share a single scheduler thread, which times out while no trigger is pending.
 class OSDynamicTriggerTimer {
-    static void scheduleTrigger(TimerTask task, String triggerId, long delay) {
-        Timer timer = new Timer("trigger_timer:" + triggerId);
-        timer.schedule(task, delay);
+
+    static final String THREAD_NAME_PREFIX = "OSH_DynamicTriggerTimer_";
+    private static final long KEEP_ALIVE_MS = 30_000;
+
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread newThread = new Thread(runnable);
+                    newThread.setName(THREAD_NAME_PREFIX + newThread.getId());
+                    return newThread;
+                }
+            });
+            scheduler.setKeepAliveTime(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+            // Triggers cancelled on session end would otherwise sit in the queue until their delay elapses
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+                scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    static ScheduledFuture<?> scheduleTrigger(Runnable task, String triggerId, long delay) {
+        OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "Scheduling trigger " + triggerId + " to be evaluated in " + delay + "ms");
+        return getScheduler().schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    static int getPendingCount() {
+        return getScheduler().getQueue().size();
     }
-}
\ No newline at end of file
+}
@@ -3,7 +3,7 @@ package com.onesignal;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.os.Build;
-import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -15,6 +15,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -31,7 +32,8 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
     }};
 
     public static final String IN_APP_MESSAGES_JSON_KEY = "in_app_messages";
-    private static final String OS_SAVE_IN_APP_MESSAGE = "OS_SAVE_IN_APP_MESSAGE";
+    // Limits the HTML downloaded ahead of time on each on_session
+    private static final int MAX_PREFETCHED_MESSAGES = 5;
 
     OSTriggerController triggerController;
     private OSSystemConditionController systemConditionController;
@@ -41,6 +43,9 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
     //   If on_session won't be called this will be loaded from cache
     @NonNull
     private ArrayList<OSInAppMessage> messages;
+    // Trigger property to messages index of messages, rebuilt every time messages is replaced
+    @NonNull
+    private OSInAppMessageTriggerIndex triggerIndex;
     // IAMs that have been dismissed by the user
     //   This mean they have already displayed to the user
     @NonNull
@@ -68,6 +73,13 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
     Date lastTimeInAppDismissed;
     private int htmlNetworkRequestAttemptCount = 0;
 
+    // HTML of messages likely to display is prefetched into its cache after on_session
+    @NonNull
+    private final OSInAppMessageHtmlLoader htmlLoader;
+    // Time from starting to display the last IAM until its HTML was handed to the WebView
+    private long lastTimeToDisplay = -1;
+    private boolean lastDisplayUsedCachedHtml;
+
     @Nullable
     private static OSInAppMessageController sharedInstance;
 
@@ -87,12 +99,17 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
 
     protected OSInAppMessageController(OneSignalDbHelper dbHelper) {
         messages = new ArrayList<>();
+        triggerIndex = new OSInAppMessageTriggerIndex(messages);
         dismissedMessages = OSUtils.newConcurrentSet();
         messageDisplayQueue = new ArrayList<>();
         impressionedMessages = OSUtils.newConcurrentSet();
         clickedClickIds = OSUtils.newConcurrentSet();
         triggerController = new OSTriggerController(this);
         systemConditionController = new OSSystemConditionController(this);
+        htmlLoader = new OSInAppMessageHtmlLoader(new OSInAppMessageHtmlCache(
+                OSInAppMessageHtmlCache.directoryForContext(OneSignal.appContext),
+                OSInAppMessageHtmlCache.DEFAULT_MAX_MEMORY_SIZE,
+                OSInAppMessageHtmlCache.DEFAULT_MAX_DISK_SIZE));
 
         Set<String> tempDismissedSet = OneSignalPrefs.getStringSet(
                 OneSignalPrefs.PREFS_ONESIGNAL,
@@ -172,6 +189,48 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
 
         resetRedisplayMessagesBySession();
         processInAppMessageJson(json);
+        prefetchMessagesLikelyToDisplay();
+    }
+
+    /**
+     * Downloads the HTML of messages that are not displaying yet but probably will this session,
+     *    so they don't wait on a network request once their triggers are met.
+     * These are messages only waiting on time based triggers and messages with one unmet trigger.
+     */
+    private void prefetchMessagesLikelyToDisplay() {
+        List<OSInAppMessage> currentMessages = messages;
+
+        ArrayList<String> messageIds = new ArrayList<>();
+        for (OSInAppMessage message : currentMessages)
+            messageIds.add(message.messageId);
+        htmlLoader.getCache().retainMessages(messageIds);
+
+        int prefetchCount = 0;
+        for (OSInAppMessage message : currentMessages) {
+            if (prefetchCount >= MAX_PREFETCHED_MESSAGES)
+                break;
+
+            if (dismissedMessages.contains(message.messageId) || message.isDisplayedInSession())
+                continue;
+
+            synchronized (messageDisplayQueue) {
+                // Queued messages load their HTML as they are displayed
+                if (messageDisplayQueue.contains(message))
+                    continue;
+            }
+
+            if (!triggerController.isMessageNearlyTriggered(message))
+                continue;
+
+            String htmlPath = htmlPathForMessage(message);
+            String cacheKey = htmlCacheKeyForMessage(message);
+            if (htmlPath == null || cacheKey == null)
+                continue;
+
+            OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "Prefetching HTML for in app message with id: " + message.messageId);
+            htmlLoader.prefetch(cacheKey, htmlPath);
+            prefetchCount++;
+        }
     }
 
     private void resetRedisplayMessagesBySession() {
@@ -188,12 +247,31 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
             newMessages.add(message);
         }
         messages = newMessages;
+        triggerIndex = new OSInAppMessageTriggerIndex(newMessages);
 
         evaluateInAppMessages();
     }
 
     private void evaluateInAppMessages() {
-        for (OSInAppMessage message : messages) {
+        OSInAppMessageTriggerIndex index = triggerIndex;
+        evaluateInAppMessages(index, index.allMessages());
+    }
+
+    /**
+     * Only evaluates the messages a change to the keys can affect
+     */
+    private void evaluateInAppMessagesForTriggers(Collection<String> changedKeys) {
+        OSInAppMessageTriggerIndex index = triggerIndex;
+        evaluateInAppMessages(index, index.messagesToEvaluate(changedKeys));
+    }
+
+    private void evaluateInAppMessages(OSInAppMessageTriggerIndex index, BitSet positions) {
+        List<OSInAppMessage> indexedMessages = index.getMessages();
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            OSInAppMessage message = indexedMessages.get(position);
+            if (!message.isTriggerChanged())
+                index.clearTriggerChanged(position);
+
             setDataForRedisplay(message);
             if (!dismissedMessages.contains(message.messageId) && triggerController.evaluateMessageTriggers(message))
                 queueMessageForDisplay(message);
@@ -240,6 +318,13 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
         if (variantId == null)
             return;
 
+        // The request is persisted and retried until delivered so the impression is stored to disk right away,
+        //    it is only removed again if the outbox gives up on it while the app is still running
+        OneSignalPrefs.saveStringSet(
+                OneSignalPrefs.PREFS_ONESIGNAL,
+                OneSignalPrefs.PREFS_OS_IMPRESSIONED_IAMS,
+                impressionedMessages);
+
         try {
             JSONObject json = new JSONObject() {{
                 put("app_id", OneSignal.appId);
@@ -249,22 +334,21 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
                 put("first_impression", true);
             }};
 
-            OneSignalRestClient.post("in_app_messages/" + message.messageId + "/impression", json, new ResponseHandler() {
+            OneSignalRestClient.postDurable("in_app_messages/" + message.messageId + "/impression", json, new ResponseHandler() {
                 @Override
                 void onSuccess(String response) {
                     printHttpSuccessForInAppMessageRequest("impression", response);
-                    OneSignalPrefs.saveStringSet(
-                            OneSignalPrefs.PREFS_ONESIGNAL,
-                            OneSignalPrefs.PREFS_OS_IMPRESSIONED_IAMS,
-                            // Post success, store impressioned messageId to disk
-                            impressionedMessages);
                 }
 
                 @Override
                 void onFailure(int statusCode, String response, Throwable throwable) {
                     printHttpErrorForInAppMessageRequest("impression", statusCode, response);
-                    // Post failed, impressionedMessage should be removed and this way another post can be attempted
+                    // The outbox gave up on the post, impressionedMessage should be removed and this way another post can be attempted
                     impressionedMessages.remove(message.messageId);
+                    OneSignalPrefs.saveStringSet(
+                            OneSignalPrefs.PREFS_ONESIGNAL,
+                            OneSignalPrefs.PREFS_OS_IMPRESSIONED_IAMS,
+                            impressionedMessages);
                 }
             });
         } catch (JSONException e) {
@@ -417,6 +501,12 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
         clickedClickIds.add(clickId);
         // Track clickId per IAM
         message.addClickId(clickId);
+        // The request is persisted and retried until delivered so the click is stored to disk right away
+        OneSignalPrefs.saveStringSet(
+                OneSignalPrefs.PREFS_ONESIGNAL,
+                OneSignalPrefs.PREFS_OS_CLICKED_CLICK_IDS_IAMS,
+                clickedClickIds
+        );
 
         try {
             JSONObject json = new JSONObject() {{
@@ -429,22 +519,22 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
                     put("first_click", true);
             }};
 
-            OneSignalRestClient.post("in_app_messages/" + message.messageId + "/click", json, new ResponseHandler() {
+            OneSignalRestClient.postDurable("in_app_messages/" + message.messageId + "/click", json, new ResponseHandler() {
                 @Override
                 void onSuccess(String response) {
                     printHttpSuccessForInAppMessageRequest("engagement", response);
-                    // Persist success click to disk. Id already added to set before making the network call
-                    OneSignalPrefs.saveStringSet(
-                            OneSignalPrefs.PREFS_ONESIGNAL,
-                            OneSignalPrefs.PREFS_OS_CLICKED_CLICK_IDS_IAMS,
-                            clickedClickIds
-                    );
                 }
 
                 @Override
                 void onFailure(int statusCode, String response, Throwable throwable) {
                     printHttpErrorForInAppMessageRequest("engagement", statusCode, response);
+                    // The outbox gave up on the post, remove the click so it can be counted again
                     clickedClickIds.remove(action.clickId);
+                    OneSignalPrefs.saveStringSet(
+                            OneSignalPrefs.PREFS_ONESIGNAL,
+                            OneSignalPrefs.PREFS_OS_CLICKED_CLICK_IDS_IAMS,
+                            clickedClickIds
+                    );
                 }
             });
         } catch (JSONException e) {
@@ -534,6 +624,14 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
         return inAppMessageShowing ? messageDisplayQueue.get(0) : null;
     }
 
+    /**
+     * Called when a new session starts, time based triggers of the previous session no longer apply.
+     * They are scheduled again when the messages are evaluated after on_session.
+     */
+    void onSessionEnded() {
+        triggerController.dynamicTriggerController.cancelScheduledTriggers();
+    }
+
     /**
      * Called after an In-App message is closed and it's dismiss animation has completed
      */
@@ -606,13 +704,12 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
         message.setTriggerChanged(false);
         message.setDisplayedInSession(true);
 
-        new Thread(new Runnable() {
+        OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
             @Override
             public void run() {
-                Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
                 inAppMessageRepository.saveInAppMessage(message);
             }
-        }, OS_SAVE_IN_APP_MESSAGE).start();
+        });
 
         // Update the data to enable future re displays
         // Avoid calling the repository data again
@@ -638,6 +735,15 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
         return "in_app_messages/" + message.messageId + "/variants/" + variantId + "/html?app_id=" + OneSignal.appId;
     }
 
+    private static @Nullable
+    String htmlCacheKeyForMessage(OSInAppMessage message) {
+        String variantId = variantIdForMessage(message);
+        if (variantId == null)
+            return null;
+
+        return OSInAppMessageHtmlCache.keyFor(message.messageId, variantId, OSUtils.getCorrectedLanguage());
+    }
+
     private void displayMessage(@NonNull final OSInAppMessage message) {
         if (!inAppMessagingEnabled) {
             OneSignal.onesignalLog(OneSignal.LOG_LEVEL.VERBOSE, "In app messaging is currently paused, iam will not be shown!");
@@ -646,10 +752,19 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
 
         inAppMessageShowing = true;
 
+        final long displayStartTime = SystemClock.elapsedRealtime();
         String htmlPath = htmlPathForMessage(message);
-        OneSignalRestClient.get(htmlPath, new ResponseHandler() {
+        String cacheKey = htmlCacheKeyForMessage(message);
+        if (htmlPath == null || cacheKey == null) {
+            // No variant will ever be found for this message, retrying can't display it
+            inAppMessageShowing = false;
+            messageWasDismissed(message, true);
+            return;
+        }
+
+        htmlLoader.load(cacheKey, htmlPath, new OSInAppMessageHtmlLoader.HtmlLoadHandler() {
             @Override
-            void onFailure(int statusCode, String response, Throwable throwable) {
+            public void onFailure(int statusCode, String response) {
                 inAppMessageShowing = false;
 
                 printHttpErrorForInAppMessageRequest("html", statusCode, response);
@@ -670,7 +785,7 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
             }
 
             @Override
-            void onSuccess(String response) {
+            public void onLoaded(@NonNull String response, boolean fromCache) {
                 // Successful request, reset count
                 htmlNetworkRequestAttemptCount = 0;
 
@@ -681,13 +796,28 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
                     double displayDuration = jsonResponse.optDouble("display_duration");
                     message.setDisplayDuration(displayDuration);
 
+                    recordTimeToDisplay(message, displayStartTime, fromCache);
                     OneSignal.getSessionManager().onInAppMessageReceived(message.messageId);
                     WebViewManager.showHTMLString(message, htmlStr);
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
             }
-        }, null);
+        });
+    }
+
+    private void recordTimeToDisplay(@NonNull OSInAppMessage message, long displayStartTime, boolean fromCache) {
+        lastTimeToDisplay = SystemClock.elapsedRealtime() - displayStartTime;
+        lastDisplayUsedCachedHtml = fromCache;
+        OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "In app message with id, " + message.messageId + ", HTML ready to display after " + lastTimeToDisplay + "ms" + (fromCache ? " from cache" : " from network"));
+    }
+
+    long getLastTimeToDisplay() {
+        return lastTimeToDisplay;
+    }
+
+    boolean getLastDisplayUsedCachedHtml() {
+        return lastDisplayUsedCachedHtml;
     }
 
     void displayPreviewMessage(@NonNull String previewUUID) {
@@ -747,10 +877,14 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
      * - At least one Trigger has changed
      */
     private void makeRedisplayMessagesAvailableWithTriggers(Collection<String> newTriggersKeys) {
-        for (OSInAppMessage message : messages) {
-            if (redisplayedInAppMessages.contains(message) &&
-                    triggerController.isTriggerOnMessage(message, newTriggersKeys)) {
+        OSInAppMessageTriggerIndex index = triggerIndex;
+        List<OSInAppMessage> indexedMessages = index.getMessages();
+        BitSet positions = index.messagesWithTriggerOn(newTriggersKeys);
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            OSInAppMessage message = indexedMessages.get(position);
+            if (redisplayedInAppMessages.contains(message)) {
                 message.setTriggerChanged(true);
+                index.markTriggerChanged(position);
             }
         }
     }
@@ -765,13 +899,13 @@ class OSInAppMessageController implements OSDynamicTriggerControllerObserver, OS
     void addTriggers(Map<String, Object> newTriggers) {
         triggerController.addTriggers(newTriggers);
         makeRedisplayMessagesAvailableWithTriggers(newTriggers.keySet());
-        evaluateInAppMessages();
+        evaluateInAppMessagesForTriggers(newTriggers.keySet());
     }
 
     void removeTriggersForKeys(Collection<String> keys) {
         triggerController.removeTriggersForKeys(keys);
         makeRedisplayMessagesAvailableWithTriggers(keys);
-        evaluateInAppMessages();
+        evaluateInAppMessagesForTriggers(keys);
     }
 
     void setInAppMessagingEnabled(boolean enabled) {
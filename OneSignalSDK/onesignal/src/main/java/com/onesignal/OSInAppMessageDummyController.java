@@ -31,6 +31,9 @@ class OSInAppMessageDummyController extends OSInAppMessageController {
     @Override
     void receivedInAppMessageJson(@NonNull JSONArray json) throws JSONException { }
 
+    @Override
+    void onSessionEnded() { }
+
     @Override
     void onMessageActionOccurredOnMessage(@NonNull OSInAppMessage message, @NonNull JSONObject actionJson) { }
 
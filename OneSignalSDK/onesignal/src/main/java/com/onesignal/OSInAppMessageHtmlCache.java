@@ -0,0 +1,212 @@
+package com.onesignal;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Size bounded LRU cache of In-App Message HTML responses kept in memory and on disk.
+ * <br/><br/>
+ * Entries are keyed by message, variant and language since each selects a different HTML document.
+ * The ETag the response was served with is kept with it so the copy can be revalidated with a
+ *    conditional GET instead of being downloaded again.
+ * The least recently used entries are evicted first once the size of the stored responses
+ *    goes over the memory or disk limit.
+ */
+class OSInAppMessageHtmlCache {
+
+    static class Entry {
+        @NonNull
+        final String response;
+        @Nullable
+        final String eTag;
+
+        Entry(@NonNull String response, @Nullable String eTag) {
+            this.response = response;
+            this.eTag = eTag;
+        }
+
+        // Size in chars, close enough to bytes for the mostly ASCII HTML
+        int size() {
+            return response.length() + (eTag == null ? 0 : eTag.length());
+        }
+    }
+
+    static final String CACHE_DIRECTORY_NAME = "onesignal_iam_html";
+    static final int DEFAULT_MAX_MEMORY_SIZE = 512 * 1_024;
+    static final int DEFAULT_MAX_DISK_SIZE = 2 * 1_024 * 1_024;
+
+    private static final String KEY_SEPARATOR = "_";
+    private static final String ENCODING = "UTF-8";
+
+    // Access ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxMemorySize;
+    private int memorySize;
+
+    // Null when there is no Context to get the cache directory from, entries are only kept in memory
+    @Nullable
+    private final OSDiskLruCache diskCache;
+
+    OSInAppMessageHtmlCache(@Nullable File directory, int maxMemorySize, int maxDiskSize) {
+        this.diskCache = directory == null ? null : new OSDiskLruCache(directory, maxDiskSize);
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    static @Nullable
+    File directoryForContext(@Nullable Context context) {
+        if (context == null)
+            return null;
+        return new File(context.getCacheDir(), CACHE_DIRECTORY_NAME);
+    }
+
+    static @NonNull
+    String keyFor(@NonNull String messageId, @NonNull String variantId, @NonNull String language) {
+        return messageId + KEY_SEPARATOR + variantId + KEY_SEPARATOR + language;
+    }
+
+    synchronized @Nullable
+    Entry get(@NonNull String key) {
+        Entry entry = memoryCache.get(key);
+        if (diskCache == null)
+            return entry;
+
+        // Keep the disk LRU order in line with the memory one
+        String fileName = OSDiskLruCache.fileNameForKey(key);
+        if (entry != null) {
+            diskCache.touch(fileName);
+            return entry;
+        }
+
+        byte[] data = diskCache.get(fileName);
+        if (data == null)
+            return null;
+
+        entry = decodeEntry(data);
+        if (entry == null) {
+            diskCache.remove(fileName);
+            return null;
+        }
+        putInMemory(key, entry);
+        return entry;
+    }
+
+    synchronized void put(@NonNull String key, @NonNull String response, @Nullable String eTag) {
+        Entry entry = new Entry(response, eTag);
+        putInMemory(key, entry);
+
+        if (diskCache == null)
+            return;
+
+        String fileName = OSDiskLruCache.fileNameForKey(key);
+        byte[] data = encodeEntry(entry);
+        if (data == null)
+            diskCache.remove(fileName);
+        else
+            diskCache.put(fileName, data);
+    }
+
+    /**
+     * Removes the entries of messages no longer in the list of active messages
+     */
+    synchronized void retainMessages(@NonNull Collection<String> messageIds) {
+        Set<String> prefixes = new HashSet<>();
+        for (String messageId : messageIds)
+            prefixes.add(OSDiskLruCache.fileNameForKey(messageId + KEY_SEPARATOR));
+
+        Iterator<Map.Entry<String, Entry>> iterator = memoryCache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> cached = iterator.next();
+            if (!hasPrefix(OSDiskLruCache.fileNameForKey(cached.getKey()), prefixes)) {
+                memorySize -= cached.getValue().size();
+                iterator.remove();
+            }
+        }
+
+        if (diskCache == null)
+            return;
+
+        for (String fileName : diskCache.names()) {
+            if (!hasPrefix(fileName, prefixes))
+                diskCache.remove(fileName);
+        }
+    }
+
+    synchronized int getMemorySize() {
+        return memorySize;
+    }
+
+    synchronized int getMemoryEntryCount() {
+        return memoryCache.size();
+    }
+
+    synchronized long getDiskSize() {
+        return diskCache == null ? 0 : diskCache.size();
+    }
+
+    private static boolean hasPrefix(@NonNull String name, @NonNull Set<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    private void putInMemory(@NonNull String key, @NonNull Entry entry) {
+        Entry previous = memoryCache.remove(key);
+        if (previous != null)
+            memorySize -= previous.size();
+
+        // An entry larger than the whole memory cache would evict everything else, only keep it on disk
+        if (entry.size() > maxMemorySize)
+            return;
+
+        memoryCache.put(key, entry);
+        memorySize += entry.size();
+
+        Iterator<Map.Entry<String, Entry>> iterator = memoryCache.entrySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            memorySize -= iterator.next().getValue().size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * File format is the ETag on the first line, empty when there is none, followed by the response
+     */
+    private static @Nullable
+    byte[] encodeEntry(@NonNull Entry entry) {
+        String eTag = entry.eTag == null ? "" : entry.eTag;
+        try {
+            return (eTag + "\n" + entry.response).getBytes(ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable
+    Entry decodeEntry(@NonNull byte[] data) {
+        String contents;
+        try {
+            contents = new String(data, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+
+        int separator = contents.indexOf('\n');
+        if (separator < 0)
+            return null;
+
+        String eTag = contents.substring(0, separator);
+        return new Entry(contents.substring(separator + 1), eTag.isEmpty() ? null : eTag);
+    }
+}
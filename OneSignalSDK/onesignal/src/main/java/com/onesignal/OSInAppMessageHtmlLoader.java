@@ -0,0 +1,118 @@
+package com.onesignal;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Loads In-App Message HTML through a {@link OSInAppMessageHtmlCache}.
+ * <br/><br/>
+ * Messages likely to be displayed are prefetched when they are received so displaying them
+ *    doesn't wait on a network round trip. A prefetch of a cached message revalidates it with its ETag.
+ * Only one request per cache key is in flight, a display that starts while the HTML is being
+ *    prefetched waits for that request instead of making another one.
+ */
+class OSInAppMessageHtmlLoader {
+
+    interface HtmlLoadHandler {
+        void onLoaded(@NonNull String response, boolean fromCache);
+        void onFailure(int statusCode, @Nullable String response);
+    }
+
+    @NonNull
+    private final OSInAppMessageHtmlCache cache;
+
+    // Handlers waiting on the request in flight for each cache key
+    private final HashMap<String, List<HtmlLoadHandler>> requestsInFlight = new HashMap<>();
+
+    OSInAppMessageHtmlLoader(@NonNull OSInAppMessageHtmlCache cache) {
+        this.cache = cache;
+    }
+
+    @NonNull
+    OSInAppMessageHtmlCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Loads HTML to display, a cached copy is used as is so display is never delayed by revalidating it
+     */
+    void load(@NonNull String cacheKey, @NonNull String htmlPath, @NonNull HtmlLoadHandler handler) {
+        OSInAppMessageHtmlCache.Entry entry = cache.get(cacheKey);
+        if (entry != null) {
+            handler.onLoaded(entry.response, true);
+            return;
+        }
+
+        request(cacheKey, htmlPath, null, handler);
+    }
+
+    /**
+     * Downloads HTML ahead of display, or revalidates it if it is already cached
+     */
+    void prefetch(@NonNull String cacheKey, @NonNull String htmlPath) {
+        OSInAppMessageHtmlCache.Entry entry = cache.get(cacheKey);
+        request(cacheKey, htmlPath, entry == null ? null : entry.eTag, null);
+    }
+
+    boolean isRequestInFlight(@NonNull String cacheKey) {
+        synchronized (requestsInFlight) {
+            return requestsInFlight.containsKey(cacheKey);
+        }
+    }
+
+    private void request(@NonNull final String cacheKey, @NonNull String htmlPath, @Nullable String eTag, @Nullable HtmlLoadHandler handler) {
+        synchronized (requestsInFlight) {
+            List<HtmlLoadHandler> handlers = requestsInFlight.get(cacheKey);
+            if (handlers != null) {
+                if (handler != null)
+                    handlers.add(handler);
+                return;
+            }
+
+            handlers = new ArrayList<>();
+            if (handler != null)
+                handlers.add(handler);
+            requestsInFlight.put(cacheKey, handlers);
+        }
+
+        OneSignalRestClient.get(htmlPath, new OneSignalRestClient.ConditionalResponseHandler(eTag) {
+            @Override
+            void onSuccess(String response, @Nullable String eTag) {
+                cache.put(cacheKey, response, eTag);
+                for (HtmlLoadHandler handler : takeHandlers(cacheKey))
+                    handler.onLoaded(response, false);
+            }
+
+            @Override
+            void onNotModified() {
+                OSInAppMessageHtmlCache.Entry entry = cache.get(cacheKey);
+                for (HtmlLoadHandler handler : takeHandlers(cacheKey)) {
+                    // Evicted while revalidating, the display retry will download it again
+                    if (entry == null)
+                        handler.onFailure(HttpURLConnection.HTTP_NOT_MODIFIED, null);
+                    else
+                        handler.onLoaded(entry.response, true);
+                }
+            }
+
+            @Override
+            void onFailure(int statusCode, String response, Throwable throwable) {
+                for (HtmlLoadHandler handler : takeHandlers(cacheKey))
+                    handler.onFailure(statusCode, response);
+            }
+        }, null);
+    }
+
+    @NonNull
+    private List<HtmlLoadHandler> takeHandlers(@NonNull String cacheKey) {
+        synchronized (requestsInFlight) {
+            List<HtmlLoadHandler> handlers = requestsInFlight.remove(cacheKey);
+            return handlers == null ? new ArrayList<HtmlLoadHandler>() : handlers;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.onesignal;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Inverted index from trigger property to the In-App Messages using it.
+ * <br/><br/>
+ * Messages are referenced by their position in the list the index was built from, so a set of
+ *    messages is a {@link BitSet} and iterating it keeps the order the messages were received in.
+ * When a trigger changes only the messages with a trigger on that property, plus the messages that
+ *    can change without any trigger changing, need to be evaluated again.
+ * An index is immutable apart from {@link #markTriggerChanged}, a new one is built for every new list of messages.
+ */
+class OSInAppMessageTriggerIndex {
+
+    @NonNull
+    private final List<OSInAppMessage> messages;
+
+    private final HashMap<String, BitSet> messagesByProperty = new HashMap<>();
+
+    // Messages with no triggers or time based triggers, their result can change without a trigger change
+    private final BitSet alwaysEvaluated = new BitSet();
+
+    // Redisplay messages flagged by a trigger change that have not been displayed again yet
+    private final BitSet triggerChanged = new BitSet();
+
+    OSInAppMessageTriggerIndex(@NonNull List<OSInAppMessage> messages) {
+        this.messages = new ArrayList<>(messages);
+
+        for (int position = 0; position < this.messages.size(); position++) {
+            OSInAppMessage message = this.messages.get(position);
+            if (message.triggers == null || message.triggers.isEmpty()) {
+                alwaysEvaluated.set(position);
+                continue;
+            }
+
+            for (ArrayList<OSTrigger> andConditions : message.triggers) {
+                for (OSTrigger trigger : andConditions) {
+                    if (trigger.kind == OSTrigger.OSTriggerKind.SESSION_TIME ||
+                        trigger.kind == OSTrigger.OSTriggerKind.TIME_SINCE_LAST_IN_APP)
+                        alwaysEvaluated.set(position);
+
+                    if (trigger.property == null)
+                        continue;
+
+                    BitSet positions = messagesByProperty.get(trigger.property);
+                    if (positions == null) {
+                        positions = new BitSet();
+                        messagesByProperty.put(trigger.property, positions);
+                    }
+                    positions.set(position);
+                }
+            }
+        }
+    }
+
+    @NonNull
+    List<OSInAppMessage> getMessages() {
+        return messages;
+    }
+
+    @NonNull
+    BitSet allMessages() {
+        BitSet positions = new BitSet(messages.size());
+        positions.set(0, messages.size());
+        return positions;
+    }
+
+    /**
+     * @return positions of the messages with a trigger on any of the keys
+     */
+    @NonNull
+    BitSet messagesWithTriggerOn(@NonNull Collection<String> keys) {
+        BitSet positions = new BitSet(messages.size());
+        for (String key : keys) {
+            BitSet keyPositions = messagesByProperty.get(key);
+            if (keyPositions != null)
+                positions.or(keyPositions);
+        }
+        return positions;
+    }
+
+    /**
+     * @return positions of every message whose evaluation may change after the keys changed
+     */
+    @NonNull
+    BitSet messagesToEvaluate(@NonNull Collection<String> changedKeys) {
+        BitSet positions = messagesWithTriggerOn(changedKeys);
+        positions.or(alwaysEvaluated);
+        synchronized (triggerChanged) {
+            positions.or(triggerChanged);
+        }
+        return positions;
+    }
+
+    void markTriggerChanged(int position) {
+        synchronized (triggerChanged) {
+            triggerChanged.set(position);
+        }
+    }
+
+    void clearTriggerChanged(int position) {
+        synchronized (triggerChanged) {
+            triggerChanged.clear(position);
+        }
+    }
+}
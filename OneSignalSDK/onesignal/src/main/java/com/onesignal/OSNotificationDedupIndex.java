@@ -0,0 +1,228 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In memory index of the notification ids saved to the notification table, used to detect duplicate pushes
+ *    without a SQLite read for every payload received.
+ * <br/><br/>
+ * A bloom filter seeded from the table answers "never seen" on its own. Only when the filter reports the id as
+ *    maybe present is the table queried, unless the id is one of the most recently seen ones.
+ */
+class OSNotificationDedupIndex {
+
+   // 8KB of bits and 5 hashes, 8 bits per id, gives about a 2.2% false positive rate once MAX_INDEXED_IDS are added.
+   //    A false positive only costs the DB query every id made before, so this favors a small filter over a 1% rate.
+   static final int BLOOM_FILTER_BITS = 1 << 16;
+   static final int BLOOM_FILTER_HASHES = 5;
+   // Rebuild the filter from the table once this many ids were added, dropping ids the cache cleaner deleted
+   static final int MAX_INDEXED_IDS = 8_192;
+   static final int RECENT_IDS_CAPACITY = 128;
+
+   // EXISTS always returns a single row, which simpleQueryForLong needs
+   private static final String SQL_NOTIFICATION_ID_EXISTS =
+      "SELECT EXISTS(SELECT 1 FROM " + NotificationTable.TABLE_NAME +
+      " WHERE " + NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?)";
+
+   private static final Object LOCK = new Object();
+   private static OSNotificationDedupIndex sInstance;
+
+   static OSNotificationDedupIndex getInstance(Context context) {
+      if (sInstance == null) {
+         synchronized (LOCK) {
+            if (sInstance == null)
+               sInstance = new OSNotificationDedupIndex(context.getApplicationContext());
+         }
+      }
+      return sInstance;
+   }
+
+   /**
+    * Called after rows were deleted from the notification table.
+    * Deleted ids stay in the bloom filter, which only costs a DB query, but must not be reported as recent.
+    */
+   static void onNotificationsDeleted() {
+      OSNotificationDedupIndex index = sInstance;
+      if (index != null)
+         index.clearRecentIds();
+   }
+
+   private final Context context;
+   private final BitSet bloomFilter = new BitSet(BLOOM_FILTER_BITS);
+   private final LinkedHashMap<String, Boolean> recentIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+         return size() > RECENT_IDS_CAPACITY;
+      }
+   };
+   private boolean seeded;
+   private int indexedIds;
+
+   private long recentHits;
+   private long filterMisses;
+   private long dbHits;
+   private long dbMisses;
+
+   private OSNotificationDedupIndex(Context context) {
+      this.context = context;
+   }
+
+   synchronized boolean isDuplicate(@NonNull String id) {
+      if (recentIds.containsKey(id)) {
+         recentHits++;
+         return true;
+      }
+
+      if (!seeded && !seedFromDb())
+         return existsInDb(id);
+
+      if (!mightContain(id)) {
+         filterMisses++;
+         return false;
+      }
+
+      return existsInDb(id);
+   }
+
+   synchronized void onNotificationSaved(@Nullable String id) {
+      if (id == null || id.isEmpty())
+         return;
+
+      recentIds.put(id, Boolean.TRUE);
+      if (!seeded)
+         return;
+
+      add(id);
+      if (indexedIds > MAX_INDEXED_IDS) {
+         bloomFilter.clear();
+         seeded = false;
+      }
+   }
+
+   synchronized long getRecentHits() {
+      return recentHits;
+   }
+
+   synchronized long getFilterMisses() {
+      return filterMisses;
+   }
+
+   synchronized long getDbHits() {
+      return dbHits;
+   }
+
+   synchronized long getDbMisses() {
+      return dbMisses;
+   }
+
+   private synchronized void clearRecentIds() {
+      recentIds.clear();
+   }
+
+   private boolean seedFromDb() {
+      Cursor cursor = null;
+      try {
+         cursor = OneSignalDbHelper.getInstance(context).query(
+            NotificationTable.TABLE_NAME,
+            new String[] { NotificationTable.COLUMN_NAME_NOTIFICATION_ID },
+            NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " IS NOT NULL",
+            null, null, null, null);
+
+         bloomFilter.clear();
+         indexedIds = 0;
+         while (cursor.moveToNext())
+            add(cursor.getString(0));
+         seeded = true;
+         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Notification dedup index seeded with " + indexedIds + " ids");
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error seeding notification dedup index from the database", t);
+         bloomFilter.clear();
+      } finally {
+         if (cursor != null && !cursor.isClosed())
+            cursor.close();
+      }
+
+      return seeded;
+   }
+
+   private boolean existsInDb(String id) {
+      boolean exists = OneSignalDbHelper.getInstance(context).simpleQueryForLong(SQL_NOTIFICATION_ID_EXISTS, new String[] { id }) != 0;
+
+      if (exists) {
+         dbHits++;
+         recentIds.put(id, Boolean.TRUE);
+      } else
+         dbMisses++;
+
+      return exists;
+   }
+
+   private void add(String id) {
+      int hash1 = id.hashCode();
+      int hash2 = secondaryHash(id);
+      for (int i = 0; i < BLOOM_FILTER_HASHES; i++)
+         bloomFilter.set(bitIndex(hash1, hash2, i));
+      indexedIds++;
+   }
+
+   private boolean mightContain(String id) {
+      int hash1 = id.hashCode();
+      int hash2 = secondaryHash(id);
+      for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+         if (!bloomFilter.get(bitIndex(hash1, hash2, i)))
+            return false;
+      }
+      return true;
+   }
+
+   // Double hashing, (h1 + i * h2) mod m, gives k independent enough bit positions from two hashes
+   private static int bitIndex(int hash1, int hash2, int i) {
+      return (hash1 + i * hash2) & (BLOOM_FILTER_BITS - 1);
+   }
+
+   // FNV-1a over the chars, forced odd so every step of the double hash moves to a new bit
+   private static int secondaryHash(String id) {
+      int hash = 0x811c9dc5;
+      for (int i = 0; i < id.length(); i++) {
+         hash ^= id.charAt(i);
+         hash *= 0x01000193;
+      }
+      return hash | 1;
+   }
+}
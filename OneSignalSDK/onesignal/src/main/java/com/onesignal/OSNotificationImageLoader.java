@@ -0,0 +1,336 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the images of a notification from URLs in its payload: large icon, big picture and background image.
+ * <br/><br/>
+ * Images are downloaded in parallel on the {@link OSTaskScheduler.Lane#IMAGE} lane with connect and read timeouts,
+ *    so a slow host delays displaying the notification by at most {@link #LOAD_TIMEOUT_MS} instead of the sum of every download.
+ * Each image is decoded at the size it is displayed at, reading its bounds first and sampling it down while
+ *    decoding instead of decoding it at full resolution and scaling it afterwards.
+ * Downloaded images are kept in a disk LRU keyed by URL and decoded ones in a memory LRU,
+ *    so campaigns reusing the same image don't download it again.
+ */
+class OSNotificationImageLoader {
+
+   static class ImageRequest {
+      @NonNull final String url;
+      final int targetWidth;
+      final int targetHeight;
+      // The same URL decodes to a different bitmap at another size
+      @NonNull final String key;
+
+      ImageRequest(@NonNull String url, int targetWidth, int targetHeight) {
+         this.url = url;
+         this.targetWidth = targetWidth;
+         this.targetHeight = targetHeight;
+         this.key = url + "@" + targetWidth + "x" + targetHeight;
+      }
+   }
+
+   static final String CACHE_DIRECTORY_NAME = "onesignal_notification_images";
+   static final int MAX_MEMORY_SIZE = 4 * 1_024 * 1_024;
+   static final int MAX_DISK_SIZE = 10 * 1_024 * 1_024;
+   // Larger images are dropped instead of being decoded
+   static final int MAX_DOWNLOAD_SIZE = 5 * 1_024 * 1_024;
+   static final int CONNECT_TIMEOUT_MS = 5_000;
+   static final int READ_TIMEOUT_MS = 10_000;
+   // Most time loading all images of a notification can delay displaying it
+   static final int LOAD_TIMEOUT_MS = 15_000;
+
+   private static OSNotificationImageLoader sInstance;
+
+   static synchronized OSNotificationImageLoader getInstance(@NonNull Context context) {
+      if (sInstance == null)
+         sInstance = new OSNotificationImageLoader(new File(context.getCacheDir(), CACHE_DIRECTORY_NAME), MAX_MEMORY_SIZE, MAX_DISK_SIZE);
+      return sInstance;
+   }
+
+   @NonNull
+   private final LruCache<String, Bitmap> memoryCache;
+   @NonNull
+   private final OSDiskLruCache diskCache;
+   // By disk cache file name, held while an image is read from disk or downloaded
+   @NonNull
+   private final ConcurrentHashMap<String, Object> fetchLocks = new ConcurrentHashMap<>();
+
+   private long downloadCount;
+   private long diskHitCount;
+   private long memoryHitCount;
+   private long totalFetchNanos;
+   private long totalDecodeNanos;
+
+   OSNotificationImageLoader(@NonNull File directory, int maxMemorySize, int maxDiskSize) {
+      memoryCache = new LruCache<String, Bitmap>(maxMemorySize) {
+         @Override
+         protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+         }
+      };
+      diskCache = new OSDiskLruCache(directory, maxDiskSize);
+   }
+
+   /**
+    * Loads the images in parallel, waiting at most {@link #LOAD_TIMEOUT_MS} for all of them
+    * @return bitmaps by {@link ImageRequest#key}, images that failed to load or didn't load in time are missing
+    */
+   @WorkerThread
+   @NonNull
+   Map<String, Bitmap> loadAll(@NonNull List<ImageRequest> requests) {
+      final Map<String, Bitmap> bitmaps = new ConcurrentHashMap<>();
+      if (requests.isEmpty())
+         return bitmaps;
+
+      // An image requested twice at the same size, such as one URL used as both large icon and big picture, loads once
+      Map<String, ImageRequest> uniqueRequests = new LinkedHashMap<>();
+      for (ImageRequest request : requests)
+         uniqueRequests.put(request.key, request);
+
+      final CountDownLatch loaded = new CountDownLatch(uniqueRequests.size());
+      for (final ImageRequest request : uniqueRequests.values()) {
+         OSTaskScheduler.execute(OSTaskScheduler.Lane.IMAGE, new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  Bitmap bitmap = load(request);
+                  if (bitmap != null)
+                     bitmaps.put(request.key, bitmap);
+               } finally {
+                  loaded.countDown();
+               }
+            }
+         });
+      }
+
+      try {
+         // Loads still running afterwards end on their own read timeout and still fill the caches
+         if (!loaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Notification images did not load within " + LOAD_TIMEOUT_MS + "ms, displaying without them");
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+
+      // Copied so downloads still running after the timeout don't change the result
+      return new HashMap<>(bitmaps);
+   }
+
+   @WorkerThread
+   @Nullable
+   Bitmap load(@NonNull ImageRequest request) {
+      Bitmap bitmap = memoryCache.get(request.key);
+      if (bitmap != null) {
+         recordMemoryHit();
+         return bitmap;
+      }
+
+      long startNanos = System.nanoTime();
+      String fileName = fileNameForUrl(request.url);
+      byte[] data;
+      boolean fromDisk;
+      // Another size of the same image waits for its download and then reads it from disk
+      Object fetchLock = fetchLockFor(fileName);
+      synchronized (fetchLock) {
+         try {
+            data = diskCache.get(fileName);
+            fromDisk = data != null;
+            if (data == null) {
+               data = download(request.url);
+               if (data == null)
+                  return null;
+               diskCache.put(fileName, data);
+            }
+         } finally {
+            fetchLocks.remove(fileName, fetchLock);
+         }
+      }
+
+      long decodeStartNanos = System.nanoTime();
+      bitmap = decodeSampled(data, request.targetWidth, request.targetHeight);
+      long endNanos = System.nanoTime();
+      recordLoad(request.url, fromDisk, decodeStartNanos - startNanos, endNanos - decodeStartNanos);
+
+      if (bitmap != null)
+         memoryCache.put(request.key, bitmap);
+      return bitmap;
+   }
+
+   synchronized long getDownloadCount() {
+      return downloadCount;
+   }
+
+   synchronized long getDiskHitCount() {
+      return diskHitCount;
+   }
+
+   synchronized long getMemoryHitCount() {
+      return memoryHitCount;
+   }
+
+   synchronized long getTotalFetchMs() {
+      return TimeUnit.NANOSECONDS.toMillis(totalFetchNanos);
+   }
+
+   synchronized long getTotalDecodeMs() {
+      return TimeUnit.NANOSECONDS.toMillis(totalDecodeNanos);
+   }
+
+   private @NonNull Object fetchLockFor(@NonNull String fileName) {
+      Object lock = new Object();
+      Object existing = fetchLocks.putIfAbsent(fileName, lock);
+      return existing != null ? existing : lock;
+   }
+
+   void clearMemoryCache() {
+      memoryCache.evictAll();
+   }
+
+   private synchronized void recordMemoryHit() {
+      memoryHitCount++;
+   }
+
+   private synchronized void recordLoad(@NonNull String url, boolean fromDisk, long fetchNanos, long decodeNanos) {
+      if (fromDisk)
+         diskHitCount++;
+      else
+         downloadCount++;
+      totalFetchNanos += fetchNanos;
+      totalDecodeNanos += decodeNanos;
+
+      OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Loaded notification image " + url +
+         " from " + (fromDisk ? "disk" : "network") + " in " + TimeUnit.NANOSECONDS.toMillis(fetchNanos) + "ms" +
+         ", decoded in " + TimeUnit.NANOSECONDS.toMillis(decodeNanos) + "ms");
+   }
+
+   /**
+    * Decodes the image at the smallest power of 2 sample size that still covers the target size
+    */
+   static @Nullable Bitmap decodeSampled(@NonNull byte[] data, int targetWidth, int targetHeight) {
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inJustDecodeBounds = true;
+      BitmapFactory.decodeByteArray(data, 0, data.length, options);
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not decode notification image!");
+         return null;
+      }
+
+      options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+      options.inJustDecodeBounds = false;
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+   }
+
+   /**
+    * @return the largest power of 2 that keeps the sampled image at least as large as the target in both dimensions.
+    *    BitmapFactory rounds other sample sizes down to a power of 2 anyway.
+    */
+   static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+      int inSampleSize = 1;
+      if (targetWidth <= 0 || targetHeight <= 0)
+         return inSampleSize;
+
+      while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight)
+         inSampleSize *= 2;
+      return inSampleSize;
+   }
+
+   // URLs can be longer than a file name allows, so they are hashed
+   private static @NonNull String fileNameForUrl(@NonNull String url) {
+      try {
+         return OSUtils.hexDigest(url, "SHA-256");
+      } catch (Throwable t) {
+         return OSDiskLruCache.fileNameForKey(Integer.toHexString(url.hashCode()) + "_" + url.length());
+      }
+   }
+
+   private static @Nullable byte[] download(@NonNull String location) {
+      InputStream inputStream = null;
+      try {
+         HttpURLConnection connection = (HttpURLConnection) new URL(location).openConnection();
+         connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+         connection.setReadTimeout(READ_TIMEOUT_MS);
+
+         int status = connection.getResponseCode();
+         if (status != HttpURLConnection.HTTP_OK) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image! Status code: " + status);
+            return null;
+         }
+
+         int contentLength = connection.getContentLength();
+         if (contentLength > MAX_DOWNLOAD_SIZE) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Not downloading image of " + contentLength + " bytes, the limit is " + MAX_DOWNLOAD_SIZE);
+            return null;
+         }
+
+         inputStream = connection.getInputStream();
+         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(contentLength > 0 ? contentLength : 16 * 1_024);
+         byte[] buffer = new byte[8 * 1_024];
+         int count;
+         while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+            if (outputStream.size() > MAX_DOWNLOAD_SIZE) {
+               OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Stopped downloading image larger than " + MAX_DOWNLOAD_SIZE + " bytes");
+               return null;
+            }
+         }
+         return outputStream.toByteArray();
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image!", t);
+         return null;
+      } finally {
+         // Closing the stream without disconnecting lets the connection be reused for the next image from the host
+         if (inputStream != null) {
+            try {
+               inputStream.close();
+            } catch (IOException e) { }
+         }
+      }
+   }
+}
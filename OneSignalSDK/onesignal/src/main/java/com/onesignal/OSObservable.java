@@ -31,12 +31,20 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 class OSObservable<ObserverType, StateType> {
    private String methodName;
-   private List<Object> observers;
+   private final List<Object> observers;
    private boolean fireOnMainThread;
+
+   // Method to call for each observer class, getDeclaredMethod and setAccessible are only called once per class.
+   // Classes without the method map to null.
+   private final Map<Class<?>, Method> dispatchMethods = new HashMap<>();
+   private Class<?> dispatchStateClass;
    
    OSObservable(String methodName, boolean fireOnMainThread) {
       this.methodName = methodName;
@@ -45,71 +53,107 @@ class OSObservable<ObserverType, StateType> {
    }
    
    void addObserver(ObserverType observer) {
-      observers.add(new WeakReference<>(observer));
+      synchronized (observers) {
+         observers.add(new WeakReference<>(observer));
+      }
    }
    
    void addObserverStrong(ObserverType observer){
-      observers.add(observer);
+      synchronized (observers) {
+         observers.add(observer);
+      }
    }
    
    void removeObserver(ObserverType observer) {
-      for(int i = 0; i < observers.size(); i++) {
-         Object anObserver = ((WeakReference)observers.get(i)).get();
-         if (anObserver.equals(observer)) {
-            observers.remove(i);
-            break;
+      synchronized (observers) {
+         for(int i = 0; i < observers.size(); i++) {
+            Object anObserver = observers.get(i);
+            if (anObserver instanceof WeakReference)
+               anObserver = ((WeakReference)anObserver).get();
+            if (anObserver != null && anObserver.equals(observer)) {
+               observers.remove(i);
+               break;
+            }
          }
       }
    }
-   
+
+   /**
+    * Calls the observers with the state, all of them from a single post to the main thread if fireOnMainThread.
+    * Observers that were garbage collected are removed.
+    * @return true if any observer was called
+    */
    boolean notifyChange(final StateType state) {
-      boolean notified = false;
-      
-      for(Object observer : observers) {
-         final Object strongRefObserver;
-         if (observer instanceof WeakReference)
-            strongRefObserver = ((WeakReference)observer).get();
-         else
-            strongRefObserver = observer;
-         
-         if (strongRefObserver != null) {
-            Class<?> clazz = strongRefObserver.getClass();
-            try {
-               final Method method = clazz.getDeclaredMethod(methodName, state.getClass());
-               method.setAccessible(true);
-               if (fireOnMainThread) {
-                  OSUtils.runOnMainUIThread(
-                      new Runnable() {
-                          @Override
-                          public void run() {
-                              try {
-                                  method.invoke(strongRefObserver, state);
-                              } catch (IllegalAccessException e) {
-                                  e.printStackTrace();
-                              } catch (InvocationTargetException e) {
-                                  e.printStackTrace();
-                              }
-                          }
-                      }
-                 );
-               }
-               else {
-                  try {
-                     method.invoke(strongRefObserver, state);
-                  } catch (IllegalAccessException e) {
-                     e.printStackTrace();
-                  } catch (InvocationTargetException e) {
-                     e.printStackTrace();
-                  }
-               }
+      final List<Object> targets = new ArrayList<>();
+      final List<Method> methods = new ArrayList<>();
+
+      synchronized (observers) {
+         Iterator<Object> iterator = observers.iterator();
+         while (iterator.hasNext()) {
+            Object observer = iterator.next();
+            Object strongRefObserver;
+            if (observer instanceof WeakReference)
+               strongRefObserver = ((WeakReference)observer).get();
+            else
+               strongRefObserver = observer;
+
+            if (strongRefObserver == null) {
+               iterator.remove();
+               continue;
+            }
+
+            Method method = getDispatchMethod(strongRefObserver.getClass(), state.getClass());
+            if (method != null) {
+               targets.add(strongRefObserver);
+               methods.add(method);
+            }
+         }
+      }
 
-               notified = true;
-            } catch (NoSuchMethodException e) {
-               e.printStackTrace();
+      if (targets.isEmpty())
+         return false;
+
+      Runnable dispatch = new Runnable() {
+         @Override
+         public void run() {
+            for (int i = 0; i < targets.size(); i++) {
+               try {
+                  methods.get(i).invoke(targets.get(i), state);
+               } catch (IllegalAccessException e) {
+                  e.printStackTrace();
+               } catch (InvocationTargetException e) {
+                  e.printStackTrace();
+               }
             }
          }
+      };
+
+      if (fireOnMainThread)
+         OSUtils.runOnMainUIThread(dispatch);
+      else
+         dispatch.run();
+
+      return true;
+   }
+
+   // Must be called while holding the observers lock
+   private Method getDispatchMethod(Class<?> observerClass, Class<?> stateClass) {
+      if (stateClass != dispatchStateClass) {
+         dispatchMethods.clear();
+         dispatchStateClass = stateClass;
+      }
+
+      if (dispatchMethods.containsKey(observerClass))
+         return dispatchMethods.get(observerClass);
+
+      Method method = null;
+      try {
+         method = observerClass.getDeclaredMethod(methodName, stateClass);
+         method.setAccessible(true);
+      } catch (NoSuchMethodException e) {
+         e.printStackTrace();
       }
-      
-      return notified;
+      dispatchMethods.put(observerClass, method);
+      return method;
    }
 }
@@ -1,12 +1,12 @@
 package com.onesignal;
 
-import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.onesignal.influence.model.OSInfluence;
 import com.onesignal.influence.model.OSInfluenceType;
 import com.onesignal.outcomes.OSOutcomeEventsFactory;
+import com.onesignal.outcomes.domain.OSOutcomeEventsRepository;
 import com.onesignal.outcomes.model.OSOutcomeEventParams;
 import com.onesignal.outcomes.model.OSOutcomeSource;
 import com.onesignal.outcomes.model.OSOutcomeSourceBody;
@@ -14,12 +14,15 @@ import com.onesignal.outcomes.model.OSOutcomeSourceBody;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class OSOutcomeEventsController {
 
-    private static final String OS_SAVE_OUTCOMES = "OS_SAVE_OUTCOMES";
-    private static final String OS_SEND_SAVED_OUTCOMES = "OS_SEND_SAVED_OUTCOMES";
-    private static final String OS_SAVE_UNIQUE_OUTCOME_NOTIFICATIONS = "OS_SAVE_UNIQUE_OUTCOME_NOTIFICATIONS";
+
+    // Max number of cached outcomes replayed at once, also the max removed from the DB per transaction
+    static final int SAVED_OUTCOMES_BATCH_SIZE = 20;
+    // Max time to wait for every response of a batch, the REST timeout is minutes long on a stalled connection
+    static final long SAVED_OUTCOMES_BATCH_TIMEOUT_MS = 30_000;
 
     // Keeps track of unique outcome events sent for UNATTRIBUTED sessions on a per session level
     private Set<String> unattributedUniqueOutcomeEventsSentOnSession;
@@ -61,35 +64,62 @@ class OSOutcomeEventsController {
      * Cached outcomes come from the failure callback of the network request
      */
     void sendSavedOutcomes() {
-        new Thread(new Runnable() {
+        OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
             @Override
             public void run() {
-                Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
-
                 List<OSOutcomeEventParams> outcomeEvents = outcomeEventsFactory.getRepository().getSavedOutcomeEvents();
-                for (OSOutcomeEventParams event : outcomeEvents) {
-                    sendSavedOutcomeEvent(event);
-                }
+                sendSavedOutcomeEventsBatch(outcomeEvents, 0);
             }
-        }, OS_SEND_SAVED_OUTCOMES).start();
+        });
     }
 
-    private void sendSavedOutcomeEvent(@NonNull final OSOutcomeEventParams event) {
+    /**
+     * Sends the cached outcomes starting at batchStart, one batch at a time
+     * Events sent successfully are removed from the DB together once the whole batch got a response
+     * If nothing in a batch could be sent, or the batch didn't get every response within SAVED_OUTCOMES_BATCH_TIMEOUT_MS,
+     * the device is most likely offline, so the rest is left for the next attempt
+     */
+    private void sendSavedOutcomeEventsBatch(@NonNull final List<OSOutcomeEventParams> outcomeEvents, int batchStart) {
+        if (batchStart >= outcomeEvents.size())
+            return;
+
+        final int batchEnd = Math.min(batchStart + SAVED_OUTCOMES_BATCH_SIZE, outcomeEvents.size());
+        List<OSOutcomeEventParams> batch = new ArrayList<>(outcomeEvents.subList(batchStart, batchEnd));
         int deviceType = new OSUtils().getDeviceType();
         String appId = OneSignal.appId;
 
-        OneSignalApiResponseHandler responseHandler = new OneSignalApiResponseHandler() {
+        // Set by whichever comes first, the last response of the batch or the timeout
+        final AtomicBoolean batchDone = new AtomicBoolean();
+        final OSTaskScheduler.ScheduledTask batchTimeout = OSTaskScheduler.schedule(OSTaskScheduler.Lane.IO, new Runnable() {
             @Override
-            public void onSuccess(String response) {
-                outcomeEventsFactory.getRepository().removeEvent(event);
+            public void run() {
+                if (batchDone.compareAndSet(false, true))
+                    OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Cached outcomes batch timed out after " + SAVED_OUTCOMES_BATCH_TIMEOUT_MS + "ms, " +
+                            (outcomeEvents.size() - batchEnd) + " remaining cached outcomes will be reattempted on app cold start");
             }
+        }, SAVED_OUTCOMES_BATCH_TIMEOUT_MS);
 
+        OSOutcomeEventsRepository.BatchResponseHandler batchResponseHandler = new OSOutcomeEventsRepository.BatchResponseHandler() {
             @Override
-            public void onFailure(int statusCode, String response, Throwable throwable) {
+            public void onComplete(List<OSOutcomeEventParams> sentEvents, List<OSOutcomeEventParams> failedEvents) {
+                batchTimeout.cancel();
+                // Even after a timeout the events that did get sent must not be sent again
+                outcomeEventsFactory.getRepository().removeEvents(sentEvents);
+
+                if (!batchDone.compareAndSet(false, true))
+                    return;
+
+                if (sentEvents.isEmpty() && !failedEvents.isEmpty()) {
+                    OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "All " + failedEvents.size() + " cached outcomes in batch failed to send, " +
+                            (outcomeEvents.size() - batchEnd) + " remaining cached outcomes will be reattempted on app cold start");
+                    return;
+                }
+
+                sendSavedOutcomeEventsBatch(outcomeEvents, batchEnd);
             }
         };
 
-        outcomeEventsFactory.getRepository().requestMeasureOutcomeEvent(appId, deviceType, event, responseHandler);
+        outcomeEventsFactory.getRepository().requestMeasureOutcomeEvents(appId, deviceType, batch, batchResponseHandler);
     }
 
     void sendClickActionOutcomes(List<OSInAppMessageOutcome> outcomes) {
@@ -230,15 +260,14 @@ class OSOutcomeEventsController {
 
             @Override
             public void onFailure(int statusCode, String response, Throwable throwable) {
-                new Thread(new Runnable() {
+                OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
                     @Override
                     public void run() {
-                        Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
                         // Only if we need to save and retry the outcome, then we will save the timestamp for future sending
                         eventParams.setTimestamp(timestampSeconds);
                         outcomeEventsFactory.getRepository().saveOutcomeEvent(eventParams);
                     }
-                }, OS_SAVE_OUTCOMES).start();
+                });
 
                 OneSignal.onesignalLog(OneSignal.LOG_LEVEL.WARN,
                         "Sending outcome with name: " + name + " failed with status code: " + statusCode + " and response: " + response +
@@ -291,13 +320,12 @@ class OSOutcomeEventsController {
      * Save the ATTRIBUTED JSONArray of notification ids with unique outcome names to SQL
      */
     private void saveAttributedUniqueOutcomeNotifications(final OSOutcomeEventParams eventParams) {
-        new Thread(new Runnable() {
+        OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
             @Override
             public void run() {
-                Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
                 outcomeEventsFactory.getRepository().saveUniqueOutcomeNotifications(eventParams);
             }
-        }, OS_SAVE_UNIQUE_OUTCOME_NOTIFICATIONS).start();
+        });
     }
 
     /**
@@ -43,7 +43,7 @@ class OSReceiveReceiptRepository {
                     .put(APP_ID, appId)
                     .put(PLAYER_ID, playerId);
 
-            OneSignalRestClient.put("notifications/" + notificationId + "/report_received", jsonBody, responseHandler);
+            OneSignalRestClient.putDurable("notifications/" + notificationId + "/report_received", jsonBody, responseHandler);
         } catch (JSONException e) {
             OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Generating direct receive receipt:JSON Failed.", e);
         }
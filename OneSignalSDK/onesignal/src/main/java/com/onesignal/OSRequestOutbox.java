@@ -0,0 +1,397 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.onesignal.OneSignalDbContract.OutboxTable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQLite backed queue for fire and forget requests that must reach the server eventually.
+ * Requests are written to {@link OutboxTable} before they are sent and only removed once they
+ *    reach a final state, so anything still pending when the process dies is sent on the next init.
+ * A single handler thread drains the table, retrying with exponential backoff and jitter while
+ *    waiting out periods without connectivity without spending any attempts.
+ * <br/><br/>
+ * Only the requests are durable, response handlers are kept in memory. A request restored after the process
+ *    died is still sent, but nothing is told when it succeeds or is given up on.
+ */
+class OSRequestOutbox {
+
+   static final String HANDLER_THREAD_NAME = "OSH_RequestOutbox";
+
+   static final int MAX_ATTEMPTS = 10;
+   static final long BASE_BACKOFF_MS = 5_000;
+   static final long MAX_BACKOFF_MS = 30 * 60_000;
+   static final long OFFLINE_RECHECK_MS = 60_000;
+   // Requests this old are dropped, the server has most likely stopped caring about them
+   static final long MAX_REQUEST_AGE_MS = 7 * 24 * 60 * 60_000L;
+   private static final int DRAIN_BATCH_SIZE = 20;
+
+   private static OSRequestOutbox sInstance;
+
+   static synchronized OSRequestOutbox getInstance(Context context) {
+      if (sInstance == null)
+         sInstance = new OSRequestOutbox(OneSignalDbHelper.getInstance(context));
+      return sInstance;
+   }
+
+   private final OneSignalDb dbHelper;
+   private final Handler handler;
+   private final Random random = new Random();
+   // Handlers only live as long as the process, requests restored after a restart complete silently
+   private final Map<String, OneSignalRestClient.ResponseHandler> responseHandlers = new ConcurrentHashMap<>();
+
+   private final Runnable drainRunnable = new Runnable() {
+      @Override
+      public void run() {
+         sendDueRequests();
+      }
+   };
+
+   OSRequestOutbox(OneSignalDb dbHelper) {
+      this.dbHelper = dbHelper;
+      HandlerThread handlerThread = new HandlerThread(HANDLER_THREAD_NAME);
+      handlerThread.start();
+      this.handler = new Handler(handlerThread.getLooper());
+   }
+
+   void enqueue(@NonNull final String url, @NonNull final String method, @Nullable final JSONObject jsonBody, @Nullable final OneSignalRestClient.ResponseHandler responseHandler) {
+      handler.post(new Runnable() {
+         @Override
+         public void run() {
+            saveRequest(url, method, jsonBody, responseHandler);
+            sendDueRequests();
+         }
+      });
+   }
+
+   /**
+    * Sends anything left over from a previous process, called on init.
+    */
+   void scheduleDrain() {
+      scheduleDrain(0);
+   }
+
+   private void scheduleDrain(long delayMs) {
+      handler.removeCallbacks(drainRunnable);
+      handler.postDelayed(drainRunnable, delayMs);
+   }
+
+   @WorkerThread
+   void saveRequest(String url, String method, @Nullable JSONObject jsonBody, @Nullable OneSignalRestClient.ResponseHandler responseHandler) {
+      String requestId = UUID.randomUUID().toString();
+      if (responseHandler != null)
+         responseHandlers.put(requestId, responseHandler);
+
+      ContentValues values = new ContentValues();
+      values.put(OutboxTable.COLUMN_NAME_REQUEST_ID, requestId);
+      values.put(OutboxTable.COLUMN_NAME_URL, url);
+      values.put(OutboxTable.COLUMN_NAME_METHOD, method);
+      values.put(OutboxTable.COLUMN_NAME_BODY, jsonBody == null ? null : jsonBody.toString());
+      values.put(OutboxTable.COLUMN_NAME_CREATED_TIME, System.currentTimeMillis());
+      values.put(OutboxTable.COLUMN_NAME_ATTEMPTS, 0);
+      values.put(OutboxTable.COLUMN_NAME_NEXT_ATTEMPT_TIME, 0);
+      dbHelper.insert(OutboxTable.TABLE_NAME, null, values);
+   }
+
+   /**
+    * Sends every request whose next attempt time has passed, then schedules the next drain
+    *    for the earliest request still waiting on it's backoff.
+    */
+   @WorkerThread
+   void sendDueRequests() {
+      handler.removeCallbacks(drainRunnable);
+
+      // provideUserConsent() re-runs init which drains again once consent is given
+      if (OneSignal.requiresUserPrivacyConsent())
+         return;
+
+      if (!isNetworkAvailable()) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSRequestOutbox: No connectivity, checking again in " + OFFLINE_RECHECK_MS + "ms");
+         scheduleDrain(OFFLINE_RECHECK_MS);
+         return;
+      }
+
+      long now = System.currentTimeMillis();
+      deleteExpiredRequests(now);
+
+      List<OutboxRequest> dueRequests = getDueRequests(now);
+      for (OutboxRequest request : dueRequests)
+         sendRequest(request);
+
+      // A full batch means more may be due, yield to enqueue calls before sending the next one
+      if (dueRequests.size() == DRAIN_BATCH_SIZE) {
+         scheduleDrain(0);
+         return;
+      }
+
+      Long nextAttemptTime = getNextAttemptTime();
+      if (nextAttemptTime != null)
+         scheduleDrain(Math.max(0, nextAttemptTime - System.currentTimeMillis()));
+   }
+
+   @WorkerThread
+   private void sendRequest(final OutboxRequest request) {
+      final int[] statusCode = { 0 };
+      final String[] response = new String[1];
+      final Throwable[] throwable = new Throwable[1];
+      final boolean[] success = { false };
+
+      OneSignalRestClient.ResponseHandler resultHandler = new OneSignalRestClient.ResponseHandler() {
+         @Override
+         void onSuccess(String result) {
+            success[0] = true;
+            response[0] = result;
+         }
+
+         @Override
+         void onFailure(int code, String result, Throwable t) {
+            statusCode[0] = code;
+            response[0] = result;
+            throwable[0] = t;
+         }
+      };
+
+      if ("PUT".equals(request.method))
+         OneSignalRestClient.putSync(request.url, request.jsonBody, resultHandler);
+      else
+         OneSignalRestClient.postSync(request.url, request.jsonBody, resultHandler);
+
+      if (success[0]) {
+         deleteRequest(request);
+         OneSignalRestClient.ResponseHandler responseHandler = responseHandlers.remove(request.requestId);
+         if (responseHandler != null)
+            responseHandler.onSuccess(response[0]);
+         return;
+      }
+
+      int attempts = request.attempts + 1;
+      if (isRetryable(statusCode[0]) && attempts < MAX_ATTEMPTS) {
+         long backoff = getBackoffMs(attempts);
+         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSRequestOutbox: " + request.method + " " + request.url + " failed with statusCode: " + statusCode[0] + ", retrying in " + backoff + "ms");
+         updateAttempts(request, attempts, System.currentTimeMillis() + backoff);
+         return;
+      }
+
+      OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OSRequestOutbox: Giving up on " + request.method + " " + request.url + " after " + attempts + " attempt(s), last statusCode: " + statusCode[0]);
+      deleteRequest(request);
+      OneSignalRestClient.ResponseHandler responseHandler = responseHandlers.remove(request.requestId);
+      if (responseHandler != null)
+         responseHandler.onFailure(statusCode[0], response[0], throwable[0]);
+   }
+
+   /**
+    * Connection errors, timeouts, throttling and server errors are worth retrying,
+    *    any other status means the request itself was rejected and will be again.
+    */
+   static boolean isRetryable(int statusCode) {
+      return statusCode <= 0
+         || statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+         || statusCode == 429
+         || statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+   }
+
+   /**
+    * Exponential backoff capped at MAX_BACKOFF_MS with equal jitter, so a batch of requests that
+    *    failed together, or many devices recovering from the same outage, don't retry in lockstep.
+    */
+   long getBackoffMs(int attempts) {
+      long backoff = BASE_BACKOFF_MS << Math.min(attempts - 1, 20);
+      backoff = Math.min(backoff, MAX_BACKOFF_MS);
+      long half = backoff / 2;
+      return half + (long) (random.nextDouble() * half);
+   }
+
+   private boolean isNetworkAvailable() {
+      if (OneSignal.appContext == null)
+         return true;
+
+      try {
+         return new OSUtils().getNetType() != null;
+      } catch (Throwable t) {
+         // Missing ACCESS_NETWORK_STATE permission, let the request decide
+         return true;
+      }
+   }
+
+   @WorkerThread
+   private List<OutboxRequest> getDueRequests(long now) {
+      List<OutboxRequest> requests = new ArrayList<>();
+      Cursor cursor = null;
+      try {
+         cursor = dbHelper.query(
+            OutboxTable.TABLE_NAME,
+            null,
+            OutboxTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + " <= ?",
+            new String[] { String.valueOf(now) },
+            null,
+            null,
+            OutboxTable._ID + " ASC",
+            String.valueOf(DRAIN_BATCH_SIZE)
+         );
+
+         if (cursor.moveToFirst()) {
+            do {
+               requests.add(OutboxRequest.fromCursor(cursor));
+            } while (cursor.moveToNext());
+         }
+      } finally {
+         if (cursor != null && !cursor.isClosed())
+            cursor.close();
+      }
+      return requests;
+   }
+
+   @WorkerThread
+   private @Nullable Long getNextAttemptTime() {
+      Cursor cursor = null;
+      try {
+         cursor = dbHelper.query(
+            OutboxTable.TABLE_NAME,
+            new String[] { "MIN(" + OutboxTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + ")", "COUNT(*)" },
+            null,
+            null,
+            null,
+            null,
+            null
+         );
+
+         if (cursor.moveToFirst() && cursor.getInt(1) > 0)
+            return cursor.getLong(0);
+      } finally {
+         if (cursor != null && !cursor.isClosed())
+            cursor.close();
+      }
+      return null;
+   }
+
+   @WorkerThread
+   private void updateAttempts(OutboxRequest request, int attempts, long nextAttemptTime) {
+      ContentValues values = new ContentValues();
+      values.put(OutboxTable.COLUMN_NAME_ATTEMPTS, attempts);
+      values.put(OutboxTable.COLUMN_NAME_NEXT_ATTEMPT_TIME, nextAttemptTime);
+      dbHelper.update(OutboxTable.TABLE_NAME, values, OutboxTable._ID + " = ?", new String[] { String.valueOf(request.id) });
+   }
+
+   @WorkerThread
+   private void deleteRequest(OutboxRequest request) {
+      dbHelper.delete(OutboxTable.TABLE_NAME, OutboxTable._ID + " = ?", new String[] { String.valueOf(request.id) });
+   }
+
+   /**
+    * Drops requests older than MAX_REQUEST_AGE_MS, failing their handlers like any other request the outbox gives up on
+    */
+   @WorkerThread
+   private void deleteExpiredRequests(long now) {
+      String where = OutboxTable.COLUMN_NAME_CREATED_TIME + " < ?";
+      String[] whereArgs = new String[] { String.valueOf(now - MAX_REQUEST_AGE_MS) };
+
+      List<String> expiredRequestIds = new ArrayList<>();
+      Cursor cursor = null;
+      try {
+         cursor = dbHelper.query(
+            OutboxTable.TABLE_NAME,
+            new String[] { OutboxTable.COLUMN_NAME_REQUEST_ID },
+            where,
+            whereArgs,
+            null,
+            null,
+            null
+         );
+
+         if (cursor.moveToFirst()) {
+            do {
+               expiredRequestIds.add(cursor.getString(0));
+            } while (cursor.moveToNext());
+         }
+      } finally {
+         if (cursor != null && !cursor.isClosed())
+            cursor.close();
+      }
+
+      if (expiredRequestIds.isEmpty())
+         return;
+
+      OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OSRequestOutbox: Dropping " + expiredRequestIds.size() + " request(s) older than " + MAX_REQUEST_AGE_MS + "ms");
+      dbHelper.delete(OutboxTable.TABLE_NAME, where, whereArgs);
+
+      for (String requestId : expiredRequestIds) {
+         OneSignalRestClient.ResponseHandler responseHandler = responseHandlers.remove(requestId);
+         if (responseHandler != null)
+            responseHandler.onFailure(0, null, null);
+      }
+   }
+
+   private static class OutboxRequest {
+      long id;
+      String requestId;
+      String url;
+      String method;
+      JSONObject jsonBody;
+      int attempts;
+
+      static OutboxRequest fromCursor(Cursor cursor) {
+         OutboxRequest request = new OutboxRequest();
+         request.id = cursor.getLong(cursor.getColumnIndex(OutboxTable._ID));
+         request.requestId = cursor.getString(cursor.getColumnIndex(OutboxTable.COLUMN_NAME_REQUEST_ID));
+         request.url = cursor.getString(cursor.getColumnIndex(OutboxTable.COLUMN_NAME_URL));
+         request.method = cursor.getString(cursor.getColumnIndex(OutboxTable.COLUMN_NAME_METHOD));
+         request.attempts = cursor.getInt(cursor.getColumnIndex(OutboxTable.COLUMN_NAME_ATTEMPTS));
+
+         String body = cursor.getString(cursor.getColumnIndex(OutboxTable.COLUMN_NAME_BODY));
+         if (body != null) {
+            try {
+               request.jsonBody = new JSONObject(body);
+            } catch (JSONException e) {
+               OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSRequestOutbox: Stored request body is not valid JSON, sending it without a body", e);
+            }
+         }
+         return request;
+      }
+   }
+}
@@ -0,0 +1,266 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, reusable thread pools that back {@link OneSignalRestClient}.
+ * Requests run on the network pool, response handlers on the callback pool, and a single
+ *    watchdog thread disconnects any request that runs past its timeout.
+ * Idle threads time out so the SDK holds no threads while the network is quiet.
+ */
+class OSRestClientExecutor {
+
+   static final String NETWORK_THREAD_PREFIX = "OS_REST_NETWORK_";
+   static final String CALLBACK_THREAD_PREFIX = "OS_REST_CALLBACK_";
+   static final String WATCHDOG_THREAD_PREFIX = "OS_REST_WATCHDOG_";
+
+   private static final int NETWORK_POOL_SIZE = 4;
+   private static final int CALLBACK_POOL_SIZE = 2;
+   private static final long KEEP_ALIVE_MS = 30_000;
+
+   private static ThreadPoolExecutor networkExecutor;
+   private static ThreadPoolExecutor callbackExecutor;
+   private static ScheduledThreadPoolExecutor watchdogExecutor;
+
+   // Submitted tasks that have not finished yet, includes queued and running tasks
+   private static final AtomicInteger pendingNetworkTasks = new AtomicInteger();
+   private static final AtomicInteger pendingCallbackTasks = new AtomicInteger();
+   private static final AtomicInteger timedOutRequests = new AtomicInteger();
+
+   private static class NamedThreadFactory implements ThreadFactory {
+      private final String prefix;
+
+      NamedThreadFactory(String prefix) {
+         this.prefix = prefix;
+      }
+
+      @Override
+      public Thread newThread(@NonNull Runnable runnable) {
+         Thread newThread = new Thread(runnable);
+         newThread.setName(prefix + newThread.getId());
+         return newThread;
+      }
+   }
+
+   private static ThreadPoolExecutor newPool(int size, String threadPrefix) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+         size,
+         size,
+         KEEP_ALIVE_MS,
+         TimeUnit.MILLISECONDS,
+         new LinkedBlockingQueue<Runnable>(),
+         new NamedThreadFactory(threadPrefix)
+      );
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+   }
+
+   private static synchronized ThreadPoolExecutor getNetworkExecutor() {
+      if (networkExecutor == null)
+         networkExecutor = newPool(NETWORK_POOL_SIZE, NETWORK_THREAD_PREFIX);
+      return networkExecutor;
+   }
+
+   private static synchronized ThreadPoolExecutor getCallbackExecutor() {
+      if (callbackExecutor == null)
+         callbackExecutor = newPool(CALLBACK_POOL_SIZE, CALLBACK_THREAD_PREFIX);
+      return callbackExecutor;
+   }
+
+   private static synchronized ScheduledThreadPoolExecutor getWatchdogExecutor() {
+      if (watchdogExecutor == null) {
+         watchdogExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(WATCHDOG_THREAD_PREFIX));
+         watchdogExecutor.setKeepAliveTime(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+         watchdogExecutor.allowCoreThreadTimeOut(true);
+         // Cancelled watchdogs would otherwise sit in the queue until their full timeout elapses
+         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            watchdogExecutor.setRemoveOnCancelPolicy(true);
+      }
+      return watchdogExecutor;
+   }
+
+   static void executeRequest(final Runnable request) {
+      pendingNetworkTasks.incrementAndGet();
+      getNetworkExecutor().execute(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               request.run();
+            } finally {
+               pendingNetworkTasks.decrementAndGet();
+            }
+         }
+      });
+   }
+
+   static void executeCallback(final Runnable callback) {
+      pendingCallbackTasks.incrementAndGet();
+      getCallbackExecutor().execute(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               callback.run();
+            } finally {
+               pendingCallbackTasks.decrementAndGet();
+            }
+         }
+      });
+   }
+
+   // Request being run with a watchdog on each thread, lets the request register the connection it opens
+   private static final ThreadLocal<WatchedRequest> currentRequest = new ThreadLocal<>();
+
+   /**
+    * Runs the request on the calling thread, disconnecting its connection if it is still running after timeoutMs.
+    * getResponseCode() can hang past it's timeout setting so this ensures it is timing out.
+    * Interrupting the thread would not unblock a socket read, disconnect() closes the socket so the read fails.
+    */
+   static void runWithWatchdog(Runnable request, long timeoutMs) {
+      WatchedRequest watchedRequest = new WatchedRequest(Thread.currentThread().getName());
+      ScheduledFuture<?> watchdog = getWatchdogExecutor().schedule(watchedRequest, timeoutMs, TimeUnit.MILLISECONDS);
+      currentRequest.set(watchedRequest);
+      try {
+         request.run();
+      } finally {
+         currentRequest.remove();
+         watchedRequest.finish();
+         watchdog.cancel(false);
+      }
+   }
+
+   /**
+    * Registers the connection of the request running on this thread so the watchdog can disconnect it.
+    * Pass null once the response has been read so a connection going back to the keep-alive pool is never closed.
+    */
+   static void watchConnection(@Nullable HttpURLConnection connection) {
+      WatchedRequest watchedRequest = currentRequest.get();
+      if (watchedRequest != null)
+         watchedRequest.setConnection(connection);
+   }
+
+   private static class WatchedRequest implements Runnable {
+      private final String requestThreadName;
+      @Nullable
+      private HttpURLConnection connection;
+      private boolean finished;
+      private boolean timedOut;
+
+      WatchedRequest(String requestThreadName) {
+         this.requestThreadName = requestThreadName;
+      }
+
+      @Override
+      public void run() {
+         HttpURLConnection connectionToClose;
+         synchronized (this) {
+            if (finished)
+               return;
+
+            timedOut = true;
+            connectionToClose = connection;
+         }
+
+         timedOutRequests.incrementAndGet();
+         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSRestClientExecutor: Request on " + requestThreadName + " timed out, disconnecting it");
+         if (connectionToClose != null)
+            connectionToClose.disconnect();
+      }
+
+      void setConnection(@Nullable HttpURLConnection connection) {
+         synchronized (this) {
+            this.connection = connection;
+            if (!timedOut || connection == null)
+               return;
+         }
+
+         // Timed out before the connection was opened, fail it straight away
+         connection.disconnect();
+      }
+
+      synchronized void finish() {
+         finished = true;
+         connection = null;
+      }
+   }
+
+   static int getNetworkQueueSize() {
+      return networkExecutor == null ? 0 : networkExecutor.getQueue().size();
+   }
+
+   static int getNetworkThreadCount() {
+      return networkExecutor == null ? 0 : networkExecutor.getPoolSize();
+   }
+
+   static int getLargestNetworkThreadCount() {
+      return networkExecutor == null ? 0 : networkExecutor.getLargestPoolSize();
+   }
+
+   static int getCallbackQueueSize() {
+      return callbackExecutor == null ? 0 : callbackExecutor.getQueue().size();
+   }
+
+   static int getCallbackThreadCount() {
+      return callbackExecutor == null ? 0 : callbackExecutor.getPoolSize();
+   }
+
+   static int getLargestCallbackThreadCount() {
+      return callbackExecutor == null ? 0 : callbackExecutor.getLargestPoolSize();
+   }
+
+   static int getTimedOutRequestCount() {
+      return timedOutRequests.get();
+   }
+
+   /**
+    * True if the thread belongs to one of these pools and that pool has no queued or running work.
+    * Used by tests so idle pooled threads waiting on their keep alive are not treated as pending work.
+    */
+   static boolean isIdlePoolThread(Thread thread) {
+      String name = thread.getName();
+      if (name.startsWith(NETWORK_THREAD_PREFIX))
+         return pendingNetworkTasks.get() == 0;
+      if (name.startsWith(CALLBACK_THREAD_PREFIX))
+         return pendingNetworkTasks.get() == 0 && pendingCallbackTasks.get() == 0;
+      if (name.startsWith(WATCHDOG_THREAD_PREFIX))
+         return pendingNetworkTasks.get() == 0 && (watchdogExecutor == null || watchdogExecutor.getQueue().isEmpty());
+      return false;
+   }
+}
@@ -0,0 +1,96 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each phase of OneSignal.init took, in the order they ran.
+ * <br/><br/>
+ * Each phase is timed from the end of the previous one, so with asynchronous initialization
+ *    {@link #PHASE_INIT_THREAD_START} is the time the init thread waited to start.
+ */
+class OSStartupTrace {
+
+   static final String PHASE_APP_CONTEXT = "app_context";
+   static final String PHASE_INIT_THREAD_START = "init_thread_start";
+   static final String PHASE_PRIVACY_CONSENT = "privacy_consent";
+   static final String PHASE_INITIALIZATION_CHECKS = "initialization_checks";
+   static final String PHASE_USER_STATE = "user_state";
+   static final String PHASE_APP_ID_CHANGE = "app_id_change";
+   static final String PHASE_PERMISSION_STATE = "permission_state";
+   static final String PHASE_SESSION_INIT = "session_init";
+   static final String PHASE_PURCHASE_TRACKING = "purchase_tracking";
+   static final String PHASE_PENDING_TASKS = "pending_tasks";
+
+   private final LinkedHashMap<String, Long> phaseNanos = new LinkedHashMap<>();
+   private long phaseStartNanos;
+   private boolean tracing;
+
+   synchronized void start() {
+      phaseNanos.clear();
+      phaseStartNanos = System.nanoTime();
+      tracing = true;
+   }
+
+   // Phases ended when no trace was started are ignored, such as the ones of an init call that has nothing to do
+   synchronized void endPhase(@NonNull String phase) {
+      if (!tracing)
+         return;
+
+      long now = System.nanoTime();
+      phaseNanos.put(phase, now - phaseStartNanos);
+      phaseStartNanos = now;
+   }
+
+   synchronized void finish() {
+      tracing = false;
+   }
+
+   /**
+    * @return the milliseconds each phase took, in the order they ran
+    */
+   synchronized @NonNull Map<String, Long> getTimings() {
+      Map<String, Long> timings = new LinkedHashMap<>();
+      for (Map.Entry<String, Long> phase : phaseNanos.entrySet())
+         timings.put(phase.getKey(), TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+      return timings;
+   }
+
+   synchronized long getTotalMillis() {
+      long total = 0;
+      for (long nanos : phaseNanos.values())
+         total += nanos;
+      return TimeUnit.NANOSECONDS.toMillis(total);
+   }
+}
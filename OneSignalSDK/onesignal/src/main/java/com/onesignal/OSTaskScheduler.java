@@ -0,0 +1,267 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.os.Build;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, reusable thread pools for the SDK's background work, instead of a new Thread per task.
+ * <br/><br/>
+ * Work is submitted to a lane, each lane has its own pool and thread priority:
+ * <ul>
+ *    <li>{@link Lane#CALLBACK} - work ending in a call to the app's handlers, so the app hears back first</li>
+ *    <li>{@link Lane#IO} - database, prefs and network work of an SDK feature</li>
+ *    <li>{@link Lane#IMAGE} - notification image downloads, kept off IO so a slow image host can't hold it up</li>
+ *    <li>{@link Lane#BACKGROUND} - housekeeping nothing is waiting on, such as cleaning caches</li>
+ * </ul>
+ * Each lane counts its queued tasks and how long tasks waited and ran.
+ * Idle threads time out so the SDK holds no threads while it is quiet.
+ */
+class OSTaskScheduler {
+
+   enum Lane {
+      CALLBACK("OS_TASK_CALLBACK_", 2, Process.THREAD_PRIORITY_DEFAULT),
+      IO("OS_TASK_IO_", 2, Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE),
+      IMAGE("OS_TASK_IMAGE_", 3, Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE),
+      BACKGROUND("OS_TASK_BACKGROUND_", 1, Process.THREAD_PRIORITY_BACKGROUND);
+
+      final String threadPrefix;
+      final int poolSize;
+      final int threadPriority;
+
+      Lane(String threadPrefix, int poolSize, int threadPriority) {
+         this.threadPrefix = threadPrefix;
+         this.poolSize = poolSize;
+         this.threadPriority = threadPriority;
+      }
+   }
+
+   static final String TIMER_THREAD_PREFIX = "OS_TASK_TIMER_";
+
+   private static final long KEEP_ALIVE_MS = 30_000;
+
+   private static class LaneState {
+      final ThreadPoolExecutor executor;
+      // Submitted tasks that have not finished yet, includes queued and running tasks
+      final AtomicInteger pendingTasks = new AtomicInteger();
+      final AtomicLong completedTasks = new AtomicLong();
+      final AtomicLong totalWaitNanos = new AtomicLong();
+      final AtomicLong totalRunNanos = new AtomicLong();
+      final AtomicLong maxWaitNanos = new AtomicLong();
+
+      LaneState(Lane lane) {
+         executor = new ThreadPoolExecutor(
+            lane.poolSize,
+            lane.poolSize,
+            KEEP_ALIVE_MS,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new LaneThreadFactory(lane.threadPrefix, lane.threadPriority)
+         );
+         executor.allowCoreThreadTimeOut(true);
+      }
+
+      void recordRun(long waitNanos, long runNanos) {
+         completedTasks.incrementAndGet();
+         totalWaitNanos.addAndGet(waitNanos);
+         totalRunNanos.addAndGet(runNanos);
+
+         long maxWait = maxWaitNanos.get();
+         while (waitNanos > maxWait && !maxWaitNanos.compareAndSet(maxWait, waitNanos))
+            maxWait = maxWaitNanos.get();
+      }
+   }
+
+   private static class LaneThreadFactory implements ThreadFactory {
+      private final String prefix;
+      private final int priority;
+
+      LaneThreadFactory(String prefix, int priority) {
+         this.prefix = prefix;
+         this.priority = priority;
+      }
+
+      @Override
+      public Thread newThread(@NonNull final Runnable runnable) {
+         Thread newThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+               // Thread.setPriority doesn't take the Process priority values, set the Linux thread priority instead
+               Process.setThreadPriority(priority);
+               runnable.run();
+            }
+         });
+         newThread.setName(prefix + newThread.getId());
+         return newThread;
+      }
+   }
+
+   // Pools don't start threads until work is submitted so every lane is set up up front
+   private static final LaneState[] lanes = new LaneState[Lane.values().length];
+   static {
+      for (Lane lane : Lane.values())
+         lanes[lane.ordinal()] = new LaneState(lane);
+   }
+
+   private static ScheduledThreadPoolExecutor timerExecutor;
+   // Scheduled tasks whose delay has not elapsed yet
+   private static final AtomicInteger pendingTimers = new AtomicInteger();
+
+   private static synchronized ScheduledThreadPoolExecutor getTimerExecutor() {
+      if (timerExecutor == null) {
+         timerExecutor = new ScheduledThreadPoolExecutor(1, new LaneThreadFactory(TIMER_THREAD_PREFIX, Process.THREAD_PRIORITY_DEFAULT));
+         timerExecutor.setKeepAliveTime(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+         timerExecutor.allowCoreThreadTimeOut(true);
+         // Cancelled timers would otherwise sit in the queue until their delay elapses
+         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            timerExecutor.setRemoveOnCancelPolicy(true);
+      }
+      return timerExecutor;
+   }
+
+   static void execute(@NonNull Lane lane, @NonNull final Runnable task) {
+      final LaneState state = lanes[lane.ordinal()];
+      final long submitNanos = System.nanoTime();
+      state.pendingTasks.incrementAndGet();
+      state.executor.execute(new Runnable() {
+         @Override
+         public void run() {
+            long startNanos = System.nanoTime();
+            try {
+               task.run();
+            } finally {
+               state.recordRun(startNanos - submitNanos, System.nanoTime() - startNanos);
+               state.pendingTasks.decrementAndGet();
+            }
+         }
+      });
+   }
+
+   /**
+    * Handle to a task scheduled with {@link #schedule(Lane, Runnable, long)}
+    */
+   static class ScheduledTask {
+      private ScheduledFuture<?> future;
+
+      /**
+       * Stops the task from running if its delay has not elapsed yet
+       */
+      void cancel() {
+         // cancel() only succeeds before the timer ran, which is also the only case it still counts as pending
+         if (future.cancel(false))
+            pendingTimers.decrementAndGet();
+      }
+   }
+
+   /**
+    * Runs the task on the lane after delayMs, without holding a lane thread while waiting
+    */
+   static ScheduledTask schedule(@NonNull final Lane lane, @NonNull final Runnable task, long delayMs) {
+      ScheduledTask scheduledTask = new ScheduledTask();
+      pendingTimers.incrementAndGet();
+      scheduledTask.future = getTimerExecutor().schedule(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               execute(lane, task);
+            } finally {
+               pendingTimers.decrementAndGet();
+            }
+         }
+      }, delayMs, TimeUnit.MILLISECONDS);
+      return scheduledTask;
+   }
+
+   static int getQueueLength(@NonNull Lane lane) {
+      return lanes[lane.ordinal()].executor.getQueue().size();
+   }
+
+   static int getPendingTaskCount(@NonNull Lane lane) {
+      return lanes[lane.ordinal()].pendingTasks.get();
+   }
+
+   static long getCompletedTaskCount(@NonNull Lane lane) {
+      return lanes[lane.ordinal()].completedTasks.get();
+   }
+
+   static long getAverageWaitMillis(@NonNull Lane lane) {
+      LaneState state = lanes[lane.ordinal()];
+      return averageMillis(state.totalWaitNanos.get(), state.completedTasks.get());
+   }
+
+   static long getMaxWaitMillis(@NonNull Lane lane) {
+      return TimeUnit.NANOSECONDS.toMillis(lanes[lane.ordinal()].maxWaitNanos.get());
+   }
+
+   static long getAverageExecutionMillis(@NonNull Lane lane) {
+      LaneState state = lanes[lane.ordinal()];
+      return averageMillis(state.totalRunNanos.get(), state.completedTasks.get());
+   }
+
+   static int getLargestThreadCount(@NonNull Lane lane) {
+      return lanes[lane.ordinal()].executor.getLargestPoolSize();
+   }
+
+   private static long averageMillis(long totalNanos, long count) {
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+   }
+
+   /**
+    * True if the thread belongs to one of these pools and no lane has queued, running or scheduled work.
+    * Used by tests so idle pooled threads waiting on their keep alive are not treated as pending work.
+    * All lanes are checked since a task often hands work to another lane.
+    */
+   static boolean isIdlePoolThread(Thread thread) {
+      String name = thread.getName();
+      boolean poolThread = name.startsWith(TIMER_THREAD_PREFIX);
+      for (Lane lane : Lane.values())
+         poolThread = poolThread || name.startsWith(lane.threadPrefix);
+      if (!poolThread)
+         return false;
+
+      if (pendingTimers.get() > 0)
+         return false;
+      for (Lane lane : Lane.values()) {
+         if (getPendingTaskCount(lane) > 0)
+            return false;
+      }
+      return true;
+   }
+}
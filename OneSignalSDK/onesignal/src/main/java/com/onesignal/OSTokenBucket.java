@@ -0,0 +1,80 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+/**
+ * Token bucket rate limiter shared by several threads.
+ * <br/><br/>
+ * Up to {@code capacity} calls to {@link #acquire()} return right away, after that calls are spaced
+ *    out to {@code tokensPerSecond}. Tokens are reserved under the lock and the wait happens outside of it,
+ *    so a thread waiting for its turn does not block other threads from reserving theirs.
+ */
+class OSTokenBucket {
+
+   private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+   private final int capacity;
+   private final long nanosPerToken;
+
+   private double tokens;
+   private long lastRefillNanos;
+
+   OSTokenBucket(int capacity, int tokensPerSecond) {
+      this.capacity = capacity;
+      this.nanosPerToken = NANOS_PER_SECOND / tokensPerSecond;
+      this.tokens = capacity;
+      this.lastRefillNanos = System.nanoTime();
+   }
+
+   /**
+    * Blocks until a token is available and takes it.
+    * @return time spent waiting for the token in milliseconds
+    */
+   long acquire() {
+      long waitNanos;
+      synchronized (this) {
+         refill(System.nanoTime());
+         tokens -= 1;
+         waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+      }
+
+      long waitMs = (waitNanos + 999_999) / 1_000_000;
+      if (waitMs > 0)
+         OSUtils.sleep((int) waitMs);
+      return waitMs;
+   }
+
+   private void refill(long nowNanos) {
+      long elapsed = nowNanos - lastRefillNanos;
+      if (elapsed <= 0)
+         return;
+
+      tokens = Math.min(capacity, tokens + (double) elapsed / nanosPerToken);
+      lastRefillNanos = nowNanos;
+   }
+}
@@ -106,12 +106,26 @@ class OSTrigger {
     @Nullable
     public Object value;
 
+    /**
+     * {@link #value} as a double when it is a number, parsed once instead of on every evaluation
+     */
+    @Nullable
+    Double numericValue;
+
+    /**
+     * {@link #value} as a string, used for string and loosely typed equality comparisons
+     */
+    @Nullable
+    String stringValue;
+
     OSTrigger(JSONObject json) throws JSONException {
         this.triggerId = json.getString("id");
         this.kind = OSTriggerKind.fromString(json.getString("kind"));
         this.property = json.optString("property", null);
         this.operatorType = OSTriggerOperator.fromString(json.getString("operator"));
         this.value = json.opt("value");
+        this.numericValue = value instanceof Number ? ((Number) value).doubleValue() : null;
+        this.stringValue = value != null ? value.toString() : null;
     }
 
     public JSONObject toJSONObject() {
@@ -43,6 +43,32 @@ class OSTriggerController {
         return false;
     }
 
+    /**
+     * Estimates if a message is likely to be displayed soon, used to decide which messages to prefetch.
+     * This is the case if a group of AND conditions has at most one custom trigger that isn't met.
+     * Time based triggers are assumed to be met eventually and are not evaluated here,
+     * since evaluating them schedules their timers.
+     */
+    boolean isMessageNearlyTriggered(@NonNull OSInAppMessage message) {
+        for (ArrayList<OSTrigger> andConditions : message.triggers) {
+            int unmetTriggers = 0;
+            for (OSTrigger trigger : andConditions) {
+                if (trigger.kind == OSTrigger.OSTriggerKind.UNKNOWN)
+                    unmetTriggers = Integer.MAX_VALUE;
+                else if (trigger.kind == OSTrigger.OSTriggerKind.CUSTOM && !evaluateTrigger(trigger))
+                    unmetTriggers++;
+
+                if (unmetTriggers > 1)
+                    break;
+            }
+
+            if (unmetTriggers <= 1)
+                return true;
+        }
+
+        return false;
+    }
+
     private boolean evaluateAndTriggers(@NonNull ArrayList<OSTrigger> andConditions) {
         for (OSTrigger trigger : andConditions) {
             if (!this.evaluateTrigger(trigger))
@@ -83,15 +109,15 @@ class OSTriggerController {
 
         if (deviceValue instanceof String &&
                 trigger.value instanceof String &&
-                triggerMatchesStringValue((String) trigger.value, (String) deviceValue, operatorType))
+                triggerMatchesStringValue(trigger.stringValue, (String) deviceValue, operatorType))
             return true;
 
-        if (trigger.value instanceof Number &&
+        if (trigger.numericValue != null &&
                 deviceValue instanceof Number &&
-                triggerMatchesNumericValue((Number) trigger.value, (Number) deviceValue, operatorType))
+                triggerMatchesNumericValue(trigger.numericValue, ((Number) deviceValue).doubleValue(), operatorType))
             return true;
 
-        if (triggerMatchesFlex(trigger.value, deviceValue, operatorType))
+        if (triggerMatchesFlex(trigger, deviceValue, operatorType))
             return true;
 
         // No matches, evaluate to false
@@ -111,21 +137,21 @@ class OSTriggerController {
     }
 
     // Allow converting of deviceValues to other types to allow triggers to be more forgiving.
-    private boolean triggerMatchesFlex(@Nullable Object triggerValue, @NonNull Object deviceValue, @NonNull OSTriggerOperator operator) {
-        if (triggerValue == null)
+    private boolean triggerMatchesFlex(@NonNull OSTrigger trigger, @NonNull Object deviceValue, @NonNull OSTriggerOperator operator) {
+        if (trigger.stringValue == null)
             return false;
 
         // If operator is equal or not equals ignore type by comparing on toString values
         if (operator.checksEquality())
-            return triggerMatchesStringValue(triggerValue.toString(), deviceValue.toString(), operator);
+            return triggerMatchesStringValue(trigger.stringValue, deviceValue.toString(), operator);
 
         if (deviceValue instanceof String &&
-            triggerValue instanceof Number)
-            return triggerMatchesNumericValueFlex((Number) triggerValue, (String) deviceValue, operator);
+            trigger.numericValue != null)
+            return triggerMatchesNumericValueFlex(trigger.numericValue, (String) deviceValue, operator);
         return false;
     }
 
-    private boolean triggerMatchesNumericValueFlex(@NonNull Number triggerValue, @NonNull String deviceValue, @NonNull OSTriggerOperator operator) {
+    private boolean triggerMatchesNumericValueFlex(double triggerValue, @NonNull String deviceValue, @NonNull OSTriggerOperator operator) {
         double deviceDoubleValue;
         try {
             deviceDoubleValue = Double.parseDouble(deviceValue);
@@ -133,13 +159,10 @@ class OSTriggerController {
             return false;
         }
 
-        return triggerMatchesNumericValue(triggerValue.doubleValue(), deviceDoubleValue, operator);
+        return triggerMatchesNumericValue(triggerValue, deviceDoubleValue, operator);
     }
 
-    private boolean triggerMatchesNumericValue(@NonNull Number triggerValue, @NonNull Number deviceValue, @NonNull OSTriggerOperator operator) {
-        double triggerDoubleValue = triggerValue.doubleValue();
-        double deviceDoubleValue = deviceValue.doubleValue();
-
+    private boolean triggerMatchesNumericValue(double triggerDoubleValue, double deviceDoubleValue, @NonNull OSTriggerOperator operator) {
         switch (operator) {
             case EXISTS:
             case CONTAINS:
@@ -166,26 +189,6 @@ class OSTriggerController {
         }
     }
 
-    /**
-     * Part of redisplay logic
-     *
-     * If trigger key is part of message triggers, then return true, otherwise false
-     * */
-    boolean isTriggerOnMessage(OSInAppMessage message, Collection<String> newTriggersKeys) {
-        for (String triggerKey : newTriggersKeys) {
-            for (ArrayList<OSTrigger> andConditions : message.triggers) {
-                for (OSTrigger trigger : andConditions) {
-                    if (triggerKey.equals(trigger.property)) {
-                        // At least one trigger has changed
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
     /**
      * Trigger Set/Delete/Persist Logic
      */
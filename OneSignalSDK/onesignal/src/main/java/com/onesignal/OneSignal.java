@@ -256,6 +256,7 @@ public class OneSignal {
       // Default true in 4.0.0 release.
       boolean mUnsubscribeWhenNotificationsAreDisabled;
       boolean mFilterOtherGCMReceivers;
+      boolean mAsyncInit;
 
       // Exists to make wrapper SDKs simpler so they don't need to store their own variable before
       //  calling startInit().init()
@@ -386,6 +387,22 @@ public class OneSignal {
          return this;
       }
 
+      /**
+       * Runs most of the initialization on a background thread instead of the thread init is called on.
+       * Only the app context is set up before init returns, which keeps it off the app's startup time.
+       * <br/><br/>
+       * OneSignal methods called before the background initialization finishes are queued and run
+       * once it does, in the order they were called. This is {@code false} by default.
+       * Meant for calling init from your Application's {@code onCreate}.
+       * @param enable if {@code true} initialize in the background
+       * @return the builder you called this method on
+       * @see OneSignal#getStartupTimings()
+       */
+      public Builder asyncInit(boolean enable) {
+         mAsyncInit = enable;
+         return this;
+      }
+
       public void init() {
          OneSignal.init(this);
       }
@@ -402,11 +419,16 @@ public class OneSignal {
    private static int subscribableStatus;
 
    // Is the init() of OneSignal SDK finished yet
-   private static boolean initDone;
+   private static volatile boolean initDone;
    static boolean isInitDone() {
       return initDone;
    }
 
+   // Is init() running on the background init thread, see Builder.asyncInit
+   private static volatile boolean asyncInitInProgress;
+
+   private static final OSStartupTrace startupTrace = new OSStartupTrace();
+
    // Is the app in the foreground or not
    private static boolean foreground;
    static boolean isForeground() {
@@ -421,6 +443,8 @@ public class OneSignal {
 
    // the concurrent queue in which we pin pending tasks upon finishing initialization
    static ExecutorService pendingTaskExecutor;
+   // Guards moving tasks from the waiting queue to the executor since init may finish on another thread
+   private static final Object pendingTaskLock = new Object();
    public static ConcurrentLinkedQueue<Runnable> taskQueueWaitingForInit = new ConcurrentLinkedQueue<>();
    static AtomicLong lastTaskId = new AtomicLong();
 
@@ -699,9 +723,57 @@ public class OneSignal {
    }
 
    public static void init(Context context, String googleProjectNumber, String oneSignalAppId, NotificationOpenedHandler notificationOpenedHandler, NotificationReceivedHandler notificationReceivedHandler) {
+      if (asyncInitInProgress && !initDone) {
+         queueInitAfterAsyncInit(context, googleProjectNumber, oneSignalAppId, notificationOpenedHandler, notificationReceivedHandler);
+         return;
+      }
+
+      // Keep the timings of the init that did the work when init is called again
+      if (!initDone || appId == null || !appId.equals(oneSignalAppId))
+         startupTrace.start();
       mInitBuilder = createInitBuilder(notificationOpenedHandler, notificationReceivedHandler);
       OneSignal.setAppContext(context);
+      startupTrace.endPhase(OSStartupTrace.PHASE_APP_CONTEXT);
+
+      if (mInitBuilder.mAsyncInit)
+         startAsyncInit(context, googleProjectNumber, oneSignalAppId, notificationOpenedHandler, notificationReceivedHandler);
+      else
+         initStages(context, googleProjectNumber, oneSignalAppId, notificationOpenedHandler, notificationReceivedHandler);
+   }
+
+   private static void startAsyncInit(final Context context, final String googleProjectNumber, final String oneSignalAppId, final NotificationOpenedHandler notificationOpenedHandler, final NotificationReceivedHandler notificationReceivedHandler) {
+      asyncInitInProgress = true;
+      // Set before the background init starts, an Activity resumed while it runs has to see it
+      if (!initDone)
+         initLifecycleState(context);
+
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
+         @Override
+         public void run() {
+            startupTrace.endPhase(OSStartupTrace.PHASE_INIT_THREAD_START);
+            try {
+               initStages(context, googleProjectNumber, oneSignalAppId, notificationOpenedHandler, notificationReceivedHandler);
+            } finally {
+               asyncInitInProgress = false;
+            }
+         }
+      });
+   }
+
+   // An init call made while the background init is running is run after it, like the other queued calls
+   private static void queueInitAfterAsyncInit(final Context context, final String googleProjectNumber, final String oneSignalAppId, final NotificationOpenedHandler notificationOpenedHandler, final NotificationReceivedHandler notificationReceivedHandler) {
+      OneSignal.Log(LOG_LEVEL.DEBUG, "init called while initializing in the background, queuing it");
+      addTaskToQueue(new PendingTaskRunnable(new Runnable() {
+         @Override
+         public void run() {
+            init(context, googleProjectNumber, oneSignalAppId, notificationOpenedHandler, notificationReceivedHandler);
+         }
+      }));
+   }
+
+   private static void initStages(Context context, String googleProjectNumber, String oneSignalAppId, NotificationOpenedHandler notificationOpenedHandler, NotificationReceivedHandler notificationReceivedHandler) {
       setupPrivacyConsent(context);
+      startupTrace.endPhase(OSStartupTrace.PHASE_PRIVACY_CONSENT);
 
       if (requiresUserPrivacyConsent()) {
          OneSignal.Log(LOG_LEVEL.VERBOSE, "OneSignal SDK initialization delayed, user privacy consent is set to required for this application.");
@@ -735,23 +807,39 @@ public class OneSignal {
       saveFilterOtherGCMReceivers(mInitBuilder.mFilterOtherGCMReceivers);
 
       handleActivityLifecycleHandler(context);
+      startupTrace.endPhase(OSStartupTrace.PHASE_INITIALIZATION_CHECKS);
 
       OneSignalStateSynchronizer.initUserState();
+      startupTrace.endPhase(OSStartupTrace.PHASE_USER_STATE);
 
       // Verify the session is an Amazon purchase and track it
       handleAmazonPurchase();
 
       // Check and handle app id change of the current session
       handleAppIdChange();
+      startupTrace.endPhase(OSStartupTrace.PHASE_APP_ID_CHANGE);
 
       OSPermissionChangedInternalObserver.handleInternalChanges(getCurrentPermissionState(appContext));
+      startupTrace.endPhase(OSStartupTrace.PHASE_PERMISSION_STATE);
 
       // When the session reaches timeout threshold, start new session
       // This is where the LocationGMS prompt is triggered and shown to the user
       doSessionInit();
+      startupTrace.endPhase(OSStartupTrace.PHASE_SESSION_INIT);
 
-      if (mInitBuilder.mNotificationOpenedHandler != null)
-         fireCallbackForOpenedNotifications();
+      if (mInitBuilder.mNotificationOpenedHandler != null) {
+         // Opened notifications are added to the list on the main thread
+         if (mInitBuilder.mAsyncInit) {
+            OSUtils.runOnMainUIThread(new Runnable() {
+               @Override
+               public void run() {
+                  fireCallbackForOpenedNotifications();
+               }
+            });
+         }
+         else
+            fireCallbackForOpenedNotifications();
+      }
 
       if (TrackGooglePurchase.CanTrack(appContext))
          trackGooglePurchase = new TrackGooglePurchase(appContext);
@@ -760,13 +848,32 @@ public class OneSignal {
          trackFirebaseAnalytics = new TrackFirebaseAnalytics(appContext);
 
       PushRegistratorFCM.disableFirebaseInstanceIdService(appContext);
+      startupTrace.endPhase(OSStartupTrace.PHASE_PURCHASE_TRACKING);
 
       initDone = true;
 
       outcomeEventsController.sendSavedOutcomes();
 
+      // Send any durable requests that were still pending when the process last died
+      OSRequestOutbox.getInstance(appContext).scheduleDrain();
+
       // Clean up any pending tasks that were queued up before initialization
       startPendingTasks();
+      startupTrace.endPhase(OSStartupTrace.PHASE_PENDING_TASKS);
+
+      startupTrace.finish();
+      OneSignal.Log(LOG_LEVEL.DEBUG, "OneSignal init took " + startupTrace.getTotalMillis() + "ms: " + startupTrace.getTimings());
+   }
+
+   /**
+    * Returns how long each phase of the last {@code init} took in milliseconds, in the order they ran.
+    * <br/><br/>
+    * Phases that have not run yet, such as the ones run in the background with
+    * {@link Builder#asyncInit(boolean)}, are not included.
+    * @return phase names mapped to their duration in milliseconds
+    */
+   public static Map<String, Long> getStartupTimings() {
+      return startupTrace.getTimings();
    }
 
    private static void setupPrivacyConsent(Context context) {
@@ -820,12 +927,20 @@ public class OneSignal {
    }
 
    private static void handleActivityLifecycleHandler(Context context) {
-      foreground = isContextActivity(context);
+      // The background init set it on the calling thread, an Activity may have resumed since
+      if (!mInitBuilder.mAsyncInit)
+         initLifecycleState(context);
+
       if (foreground) {
-         ActivityLifecycleHandler.curActivity = (Activity) context;
          NotificationRestorer.asyncRestore(appContext);
          FocusTimeController.getInstance().appForegrounded();
       }
+   }
+
+   private static void initLifecycleState(Context context) {
+      foreground = isContextActivity(context);
+      if (foreground)
+         ActivityLifecycleHandler.curActivity = (Activity) context;
       else
          ActivityLifecycleHandler.nextResumeIsFirstActivity = true;
    }
@@ -846,6 +961,7 @@ public class OneSignal {
          if (foreground) {
             outcomeEventsController.cleanOutcomes();
             sessionManager.restartSessionIfNeeded(getAppEntryState());
+            OSInAppMessageController.getController().onSessionEnded();
          }
       } else if (foreground) {
          OSInAppMessageController.getController().initWithCachedInAppMessages();
@@ -888,46 +1004,58 @@ public class OneSignal {
    }
 
    private static void startPendingTasks() {
-      if (!taskQueueWaitingForInit.isEmpty()) {
-         pendingTaskExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-            @Override
-            public Thread newThread(@NonNull Runnable runnable) {
-               Thread newThread = new Thread(runnable);
-               newThread.setName("OS_PENDING_EXECUTOR_" + newThread.getId());
-               return newThread;
-            }
-         });
+      synchronized (pendingTaskLock) {
+         if (!taskQueueWaitingForInit.isEmpty()) {
+            pendingTaskExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+               @Override
+               public Thread newThread(@NonNull Runnable runnable) {
+                  Thread newThread = new Thread(runnable);
+                  newThread.setName("OS_PENDING_EXECUTOR_" + newThread.getId());
+                  return newThread;
+               }
+            });
 
-         while (!taskQueueWaitingForInit.isEmpty()) {
-            pendingTaskExecutor.submit(taskQueueWaitingForInit.poll());
+            while (!taskQueueWaitingForInit.isEmpty()) {
+               pendingTaskExecutor.submit(taskQueueWaitingForInit.poll());
+            }
          }
       }
    }
 
    private static void addTaskToQueue(PendingTaskRunnable task) {
-      task.taskId = lastTaskId.incrementAndGet();
-
-      if (pendingTaskExecutor == null) {
-         OneSignal.Log(LOG_LEVEL.INFO,"Adding a task to the pending queue with ID: " + task.taskId);
-         //the tasks haven't been executed yet...add them to the waiting queue
-         taskQueueWaitingForInit.add(task);
-      }
-      else if (!pendingTaskExecutor.isShutdown()) {
-         OneSignal.Log(LOG_LEVEL.INFO,"Executor is still running, add to the executor with ID: " + task.taskId);
-         try {
-            //if the executor isn't done with tasks, submit the task to the executor
-            pendingTaskExecutor.submit(task);
-         } catch (RejectedExecutionException e) {
-            OneSignal.Log(LOG_LEVEL.INFO,"Executor is shutdown, running task manually with ID: " + task.taskId);
-            // Run task manually when RejectedExecutionException occurs due to the ThreadPoolExecutor.AbortPolicy
-            // The pendingTaskExecutor is already shutdown by the time it tries to run the task
-            // Issue #669
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/669
-            task.run();
-            e.printStackTrace();
+      synchronized (pendingTaskLock) {
+         task.taskId = lastTaskId.incrementAndGet();
+
+         if (pendingTaskExecutor == null) {
+            if (!initDone || !taskQueueWaitingForInit.isEmpty()) {
+               OneSignal.Log(LOG_LEVEL.INFO,"Adding a task to the pending queue with ID: " + task.taskId);
+               //the tasks haven't been executed yet...add them to the waiting queue
+               taskQueueWaitingForInit.add(task);
+               return;
+            }
+            // Init finished on another thread after the caller checked it and nothing was queued ahead of this task
+            OneSignal.Log(LOG_LEVEL.INFO,"Init finished with no pending tasks, running task manually with ID: " + task.taskId);
          }
+         else if (!pendingTaskExecutor.isShutdown()) {
+            OneSignal.Log(LOG_LEVEL.INFO,"Executor is still running, add to the executor with ID: " + task.taskId);
+            try {
+               //if the executor isn't done with tasks, submit the task to the executor
+               pendingTaskExecutor.submit(task);
+               return;
+            } catch (RejectedExecutionException e) {
+               OneSignal.Log(LOG_LEVEL.INFO,"Executor is shutdown, running task manually with ID: " + task.taskId);
+               // Run task manually when RejectedExecutionException occurs due to the ThreadPoolExecutor.AbortPolicy
+               // The pendingTaskExecutor is already shutdown by the time it tries to run the task
+               // Issue #669
+               // https://github.com/OneSignal/OneSignal-Android-SDK/issues/669
+               e.printStackTrace();
+            }
+         }
+         else
+            OneSignal.Log(LOG_LEVEL.INFO,"Executor is shutdown, running task manually with ID: " + task.taskId);
       }
 
+      task.run();
    }
 
    private static boolean shouldRunTaskThroughQueue() {
@@ -1285,6 +1413,21 @@ public class OneSignal {
 
       LocationController.onFocusChange();
 
+      // Don't start a session while the background init is, handle the focus after it like the other queued calls
+      if (asyncInitInProgress && !initDone) {
+         addTaskToQueue(new PendingTaskRunnable(new Runnable() {
+            @Override
+            public void run() {
+               handleAppFocus();
+            }
+         }));
+         return;
+      }
+
+      handleAppFocus();
+   }
+
+   private static void handleAppFocus() {
       // Make sure without privacy consent, onAppFocus returns early
       if (shouldLogUserPrivacyConsentErrorMessageForMethodName("onAppFocus"))
          return;
@@ -1337,7 +1480,7 @@ public class OneSignal {
       if (!registerForPushFired || !locationFired || remoteParams == null || appId == null)
          return;
 
-      new Thread(new Runnable() {
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
          public void run() {
             try {
                registerUserTask();
@@ -1346,7 +1489,7 @@ public class OneSignal {
                Log(LOG_LEVEL.FATAL, "FATAL Error registering device!", t);
             }
          }
-      }, "OS_REG_USER").start();
+      });
    }
 
    private static void registerUserTask() throws JSONException {
@@ -1812,7 +1955,7 @@ public class OneSignal {
          return;
       }
 
-      new Thread(new Runnable() {
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.CALLBACK, new Runnable() {
          @Override
          public void run() {
             synchronized (pendingGetTagsHandlers) {
@@ -1837,7 +1980,7 @@ public class OneSignal {
 
             runGetTags();
          }
-      }, "OS_GETTAGS").start();
+      });
    }
 
    private static void runGetTags() {
@@ -1853,21 +1996,30 @@ public class OneSignal {
          if (pendingGetTagsHandlers.size() == 0) return;
       }
 
-      new Thread(new Runnable() {
+      // getTags can block on a network call, only the handlers are run on the CALLBACK lane
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.IO, new Runnable() {
          @Override
          public void run() {
             final UserStateSynchronizer.GetTagsResult tags = OneSignalStateSynchronizer.getTags(!getTagsCall);
             if (tags.serverSuccess) getTagsCall = true;
 
+            final List<GetTagsHandler> handlers;
             synchronized (pendingGetTagsHandlers) {
-               for (GetTagsHandler handler : pendingGetTagsHandlers) {
-                  handler.tagsAvailable(tags.result == null || tags.toString().equals("{}") ? null : tags.result);
-               }
-
+               handlers = new ArrayList<>(pendingGetTagsHandlers);
                pendingGetTagsHandlers.clear();
             }
+            if (handlers.isEmpty())
+               return;
+
+            OSTaskScheduler.execute(OSTaskScheduler.Lane.CALLBACK, new Runnable() {
+               @Override
+               public void run() {
+                  for (GetTagsHandler handler : handlers)
+                     handler.tagsAvailable(tags.result == null || tags.toString().equals("{}") ? null : tags.result);
+               }
+            });
          }
-      }, "OS_GETTAGS_CALLBACK").start();
+      });
    }
 
    /**
@@ -2219,7 +2371,7 @@ public class OneSignal {
             jsonBody.put("opened", true);
             jsonBody.put("device_type", osUtils.getDeviceType());
 
-            OneSignalRestClient.put("notifications/" + notificationId, jsonBody, new OneSignalRestClient.ResponseHandler() {
+            OneSignalRestClient.putDurable("notifications/" + notificationId, jsonBody, new OneSignalRestClient.ResponseHandler() {
                @Override
                void  onFailure(int statusCode, String response, Throwable throwable) {
                   logHttpError("sending Notification Opened Failed", statusCode, throwable, response);
@@ -2650,7 +2802,7 @@ public class OneSignal {
             values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
             dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
 
-            BadgeCountUpdater.updateCount(0, appContext);
+            BadgeCountUpdater.clearCount(appContext);
 
             cursor.close();
          }
@@ -3000,23 +3152,7 @@ public class OneSignal {
       if (id == null || "".equals(id))
          return false;
 
-      OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(context);
-
-      String[] retColumn = {NotificationTable.COLUMN_NAME_NOTIFICATION_ID};
-      String[] whereArgs = {id};
-
-      Cursor cursor = dbHelper.query(
-              NotificationTable.TABLE_NAME,
-              retColumn,
-              NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?",   // Where String
-              whereArgs,
-              null, null, null);
-
-      boolean exists = cursor.moveToFirst();
-
-      cursor.close();
-
-      if (exists) {
+      if (OSNotificationDedupIndex.getInstance(context).isDuplicate(id)) {
          Log(LOG_LEVEL.DEBUG, "Duplicate GCM message received, skip processing of " + id);
          return true;
       }
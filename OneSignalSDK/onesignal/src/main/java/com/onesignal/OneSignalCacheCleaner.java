@@ -1,7 +1,6 @@
 package com.onesignal;
 
 import android.content.Context;
-import android.os.Process;
 import android.support.annotation.WorkerThread;
 
 import com.onesignal.OneSignalDbContract.NotificationTable;
@@ -12,9 +11,6 @@ class OneSignalCacheCleaner {
 
     private final static long NOTIFICATION_CACHE_DATA_LIFETIME = 604_800L; // 7 days in second
 
-    private final static String OS_DELETE_CACHED_NOTIFICATIONS_THREAD = "OS_DELETE_CACHED_NOTIFICATIONS_THREAD";
-    private final static String OS_DELETE_CACHED_REDISPLAYED_IAMS_THREAD = "OS_DELETE_CACHED_REDISPLAYED_IAMS_THREAD";
-
     /**
      * We clean outdated cache from several places within the OneSignal SDK here
      * 1. Notifications & unique outcome events linked to notification ids (1 week)
@@ -32,16 +28,13 @@ class OneSignalCacheCleaner {
      * 2. CachedUniqueOutcomeNotificationTable.TABLE_NAME
      */
     synchronized static void cleanNotificationCache(final OneSignalDbHelper writableDb) {
-        new Thread(new Runnable() {
+        OSTaskScheduler.execute(OSTaskScheduler.Lane.BACKGROUND, new Runnable() {
             @Override
             public void run() {
-                Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
-
                 cleanCachedNotifications(writableDb);
                 cleanCachedUniqueOutcomeEventNotifications(writableDb);
             }
-
-        }, OS_DELETE_CACHED_NOTIFICATIONS_THREAD).start();
+        });
     }
 
     /**
@@ -52,17 +45,15 @@ class OneSignalCacheCleaner {
      */
     @WorkerThread
     synchronized static void cleanCachedInAppMessages(final OneSignalDbHelper dbHelper) {
-        new Thread(new Runnable() {
+        OSTaskScheduler.execute(OSTaskScheduler.Lane.BACKGROUND, new Runnable() {
             @Override
             public void run() {
-                Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
-
                 OSInAppMessageRepository inAppMessageRepository = OSInAppMessageController
                         .getController()
                         .getInAppMessageRepository(dbHelper);
                 inAppMessageRepository.cleanCachedInAppMessages();
             }
-        }, OS_DELETE_CACHED_REDISPLAYED_IAMS_THREAD).start();
+        });
     }
 
     /**
@@ -83,6 +74,7 @@ class OneSignalCacheCleaner {
                 NotificationTable.TABLE_NAME,
                 whereStr,
                 whereArgs);
+        OSNotificationDedupIndex.onNotificationsDeleted();
     }
 
     /**
@@ -51,6 +51,8 @@ class OneSignalDbContract {
 
       // JSON formatted string of the full GCM bundle
       public static final String COLUMN_NAME_FULL_DATA = "full_data";
+      // Deflate compressed UTF-8 bytes of the same JSON, rows have either this or full_data set
+      public static final String COLUMN_NAME_FULL_DATA_COMPRESSED = "full_data_compressed";
 
       public static final String INDEX_CREATE_NOTIFICATION_ID = "CREATE INDEX notification_notification_id_idx ON notification(notification_id); ";
       public static final String INDEX_CREATE_ANDROID_NOTIFICATION_ID = "CREATE INDEX notification_android_notification_id_idx ON notification(android_notification_id); ";
@@ -68,4 +70,15 @@ class OneSignalDbContract {
       public static final String COLUMN_CLICK_IDS = "click_ids";
       public static final String COLUMN_DISPLAYED_IN_SESSION = "displayed_in_session";
    }
+
+   static abstract class OutboxTable implements BaseColumns {
+      public static final String TABLE_NAME = "outbox";
+      public static final String COLUMN_NAME_REQUEST_ID = "request_id"; // Generated UUID, ties a row to it's in memory response handler
+      public static final String COLUMN_NAME_URL = "url";
+      public static final String COLUMN_NAME_METHOD = "method";
+      public static final String COLUMN_NAME_BODY = "body"; // JSON formatted request body
+      public static final String COLUMN_NAME_CREATED_TIME = "created_time";
+      public static final String COLUMN_NAME_ATTEMPTS = "attempts";
+      public static final String COLUMN_NAME_NEXT_ATTEMPT_TIME = "next_attempt_time";
+   }
 }
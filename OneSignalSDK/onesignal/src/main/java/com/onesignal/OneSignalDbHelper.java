@@ -30,22 +30,31 @@ package com.onesignal;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteCantOpenDatabaseException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.onesignal.OneSignalDbContract.InAppMessageTable;
 import com.onesignal.OneSignalDbContract.NotificationTable;
+import com.onesignal.OneSignalDbContract.OutboxTable;
 import com.onesignal.outcomes.OSOutcomeTableProvider;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.onesignal.outcomes.OSOutcomeTableProvider.SQL_CREATE_OUTCOME_ENTRIES_V1;
 import static com.onesignal.outcomes.OSOutcomeTableProvider.SQL_CREATE_OUTCOME_ENTRIES_V3;
@@ -54,7 +63,8 @@ import static com.onesignal.outcomes.OSOutcomeTableProvider.SQL_CREATE_UNIQUE_OU
 
 class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
 
-   static final int DATABASE_VERSION = 8;
+   static final int DATABASE_VERSION = 10;
+   // Serializes writes, reads don't take it since with WAL they run on their own connection
    private static final Object LOCK = new Object();
    private static final String DATABASE_NAME = "OneSignal.db";
 
@@ -63,11 +73,15 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    private static final String INT_TYPE = " INTEGER";
    private static final String FLOAT_TYPE = " FLOAT";
    private static final String TIMESTAMP_TYPE = " TIMESTAMP";
+   private static final String BLOB_TYPE = " BLOB";
    private static final String COMMA_SEP = ",";
 
    private static final int DB_OPEN_RETRY_MAX = 5;
    private static final int DB_OPEN_RETRY_BACKOFF = 400;
 
+   private static final int MAX_CACHED_WRITE_STATEMENTS = 16;
+   private static final int MAX_CACHED_READ_STATEMENTS = 8;
+
    protected static final String SQL_CREATE_ENTRIES =
            "CREATE TABLE " + NotificationTable.TABLE_NAME + " (" +
                    NotificationTable._ID + INTEGER_PRIMARY_KEY_TYPE + COMMA_SEP +
@@ -81,6 +95,7 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                    NotificationTable.COLUMN_NAME_TITLE + TEXT_TYPE + COMMA_SEP +
                    NotificationTable.COLUMN_NAME_MESSAGE + TEXT_TYPE + COMMA_SEP +
                    NotificationTable.COLUMN_NAME_FULL_DATA + TEXT_TYPE + COMMA_SEP +
+                   NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED + BLOB_TYPE + COMMA_SEP +
                    NotificationTable.COLUMN_NAME_CREATED_TIME + TIMESTAMP_TYPE + " DEFAULT (strftime('%s', 'now'))" + COMMA_SEP +
                    NotificationTable.COLUMN_NAME_EXPIRE_TIME + TIMESTAMP_TYPE +
                    ");";
@@ -95,6 +110,18 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                    InAppMessageTable.COLUMN_CLICK_IDS + TEXT_TYPE +
                    ");";
 
+   static final String SQL_CREATE_OUTBOX_ENTRIES =
+           "CREATE TABLE " + OutboxTable.TABLE_NAME + " (" +
+                   OutboxTable._ID + INTEGER_PRIMARY_KEY_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_REQUEST_ID + TEXT_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_URL + TEXT_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_METHOD + TEXT_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_BODY + TEXT_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_CREATED_TIME + INT_TYPE + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_ATTEMPTS + INT_TYPE + " DEFAULT 0" + COMMA_SEP +
+                   OutboxTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + INT_TYPE + " DEFAULT 0" +
+                   ");";
+
    protected static final String[] SQL_INDEX_ENTRIES = {
       NotificationTable.INDEX_CREATE_NOTIFICATION_ID,
       NotificationTable.INDEX_CREATE_ANDROID_NOTIFICATION_ID,
@@ -108,6 +135,25 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    private static OneSignalDbHelper sInstance;
    private static OSOutcomeTableProvider outcomeTableProvider = new OSOutcomeTableProvider();
 
+   // Every read and write holds the read lock, close() takes the write lock so it never closes statements in use
+   private final ReentrantReadWriteLock openLock = new ReentrantReadWriteLock();
+
+   // Compiled write statements keyed by SQL, only used while holding LOCK
+   private final LinkedHashMap<String, SQLiteStatement> writeStatements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+         if (size() <= MAX_CACHED_WRITE_STATEMENTS)
+            return false;
+         eldest.getValue().close();
+         return true;
+      }
+   };
+   private SQLiteDatabase writeStatementsDb;
+
+   // Compiled lookups keyed by SQL, each statement is bound and run under its own monitor
+   private final HashMap<String, SQLiteStatement> readStatements = new HashMap<>();
+   private SQLiteDatabase readStatementsDb;
+
    /**
     * Testing mock purposes
     * */
@@ -122,6 +168,9 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    OneSignalDbHelper(Context context) {
       super(context, DATABASE_NAME, null, getDbVersion());
 
+      // WAL lets reads run on their own connection while a write transaction is open
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+         setWriteAheadLoggingEnabled(true);
    }
 
    public static OneSignalDbHelper getInstance(Context context) {
@@ -144,18 +193,17 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
     * @see <a href="https://stackoverflow.com/questions/2493331/what-are-the-best-practices-for-sqlite-on-android/3689883#3689883">StackOverflow | What are best practices for SQLite on Android</a>
     */
    private SQLiteDatabase getSQLiteDatabase() {
-      synchronized (LOCK) {
-         try {
-            return getWritableDatabase();
-         } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
-            // SQLiteCantOpenDatabaseException
-            // Retry in-case of rare device issues with opening database.
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
-            // SQLiteDatabaseLockedException
-            // Retry in-case of rare device issues with locked database.
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
-            throw e;
-         }
+      // getWritableDatabase is synchronized on this helper, so readers don't need to wait on LOCK to open it
+      try {
+         return getWritableDatabase();
+      } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
+         // SQLiteCantOpenDatabaseException
+         // Retry in-case of rare device issues with opening database.
+         // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
+         // SQLiteDatabaseLockedException
+         // Retry in-case of rare device issues with locked database.
+         // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
+         throw e;
       }
    }
 
@@ -166,16 +214,14 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
     * @see OneSignalDbHelper#getSQLiteDatabase()
     */
    private SQLiteDatabase getSQLiteDatabaseWithRetries() {
-      synchronized (LOCK) {
-         int count = 0;
-         while (true) {
-            try {
-               return getSQLiteDatabase();
-            } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
-               if (++count >= DB_OPEN_RETRY_MAX)
-                  throw e;
-               SystemClock.sleep(count * DB_OPEN_RETRY_BACKOFF);
-            }
+      int count = 0;
+      while (true) {
+         try {
+            return getSQLiteDatabase();
+         } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
+            if (++count >= DB_OPEN_RETRY_MAX)
+               throw e;
+            SystemClock.sleep(count * DB_OPEN_RETRY_BACKOFF);
          }
       }
    }
@@ -184,8 +230,11 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    public Cursor query(@NonNull String table, @Nullable String[] columns, @Nullable String selection,
                        String[] selectionArgs, @Nullable String groupBy, @Nullable String having,
                        @Nullable String orderBy) {
-      synchronized (LOCK) {
+      openLock.readLock().lock();
+      try {
          return getSQLiteDatabaseWithRetries().query(table, columns, selection, selectionArgs, groupBy, having, orderBy);
+      } finally {
+         openLock.readLock().unlock();
       }
    }
 
@@ -193,96 +242,313 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    public Cursor query(@NonNull String table, @Nullable String[] columns, @Nullable String selection,
                        @Nullable String[] selectionArgs, @Nullable String groupBy, @Nullable String having,
                        @Nullable String orderBy, @Nullable String limit) {
-      synchronized (LOCK) {
+      openLock.readLock().lock();
+      try {
          return getSQLiteDatabaseWithRetries().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+      } finally {
+         openLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Runs a lookup returning a single number with a compiled statement, like {@link SQLiteStatement#simpleQueryForLong()}
+    * <br/><br/>
+    * Meant for constant SQL that runs often, such as the notification id lookup of {@link OSNotificationDedupIndex}.
+    *    The statement is compiled once and kept until the database is closed.
+    * @throws android.database.sqlite.SQLiteDoneException if the query returns no rows
+    */
+   long simpleQueryForLong(@NonNull String sql, @Nullable String[] selectionArgs) {
+      openLock.readLock().lock();
+      try {
+         SQLiteDatabase db = getSQLiteDatabaseWithRetries();
+         SQLiteStatement statement = getReadStatement(db, sql);
+         if (statement == null)
+            return DatabaseUtils.longForQuery(db, sql, selectionArgs);
+
+         synchronized (statement) {
+            statement.clearBindings();
+            if (selectionArgs != null)
+               statement.bindAllArgsAsStrings(selectionArgs);
+            return statement.simpleQueryForLong();
+         }
+      } finally {
+         openLock.readLock().unlock();
       }
    }
 
    @Override
    public void insert(@NonNull String table, @Nullable String nullColumnHack, @Nullable ContentValues values) {
-      synchronized (LOCK) {
-         SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
-         try {
-            writableDb.beginTransaction();
-            writableDb.insert(table, nullColumnHack, values);
-            writableDb.setTransactionSuccessful();
-         } finally {
+      openLock.readLock().lock();
+      try {
+         synchronized (LOCK) {
+            SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
             try {
-               writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+               writableDb.beginTransaction();
+               insertWithCompiledStatement(writableDb, table, nullColumnHack, values);
+               writableDb.setTransactionSuccessful();
             } catch (SQLException e) {
-               logger.error("Error closing transaction! ", e);
+               // Logged and dropped like SQLiteDatabase#insert does
+               logger.error("Error inserting on table: " + table, e);
+            } finally {
+               try {
+                  writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+               } catch (SQLException e) {
+                  logger.error("Error closing transaction! ", e);
+               }
             }
          }
+      } finally {
+         openLock.readLock().unlock();
       }
    }
 
    @Override
    public void insertOrThrow(@NonNull String table, @Nullable String nullColumnHack, @Nullable ContentValues values)
            throws SQLException {
-      synchronized (LOCK) {
-         SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
-         try {
-            writableDb.beginTransaction();
-            writableDb.insertOrThrow(table, nullColumnHack, values);
-            writableDb.setTransactionSuccessful();
-         } catch (Throwable t) {
-            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error inserting under table: " + table, t);
-         } finally {
-            if (writableDb != null) {
-               try {
-                  writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
-               } catch (Throwable t) {
-                  OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error closing transaction! ", t);
+      openLock.readLock().lock();
+      try {
+         synchronized (LOCK) {
+            SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
+            try {
+               writableDb.beginTransaction();
+               insertWithCompiledStatement(writableDb, table, nullColumnHack, values);
+               writableDb.setTransactionSuccessful();
+            } catch (Throwable t) {
+               OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error inserting under table: " + table, t);
+            } finally {
+               if (writableDb != null) {
+                  try {
+                     writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+                  } catch (Throwable t) {
+                     OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error closing transaction! ", t);
+                  }
                }
             }
          }
+      } finally {
+         openLock.readLock().unlock();
       }
    }
 
    @Override
    public int update(@NonNull String table, @NonNull ContentValues values, @Nullable String whereClause, @Nullable String[] whereArgs) {
       int result = 0;
-      synchronized (LOCK) {
-         SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
-         try {
-            writableDb.beginTransaction();
-            result = writableDb.update(table, values, whereClause, whereArgs);
-            writableDb.setTransactionSuccessful();
-         } catch (Throwable t) {
-            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error updating table: " + table, t);
-         } finally {
-            if (writableDb != null) {
-               try {
-                  writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
-               } catch (Throwable t) {
-                  OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error closing transaction! ", t);
+      openLock.readLock().lock();
+      try {
+         synchronized (LOCK) {
+            SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
+            try {
+               writableDb.beginTransaction();
+               result = writableDb.update(table, values, whereClause, whereArgs);
+               writableDb.setTransactionSuccessful();
+            } catch (Throwable t) {
+               OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error updating table: " + table, t);
+            } finally {
+               if (writableDb != null) {
+                  try {
+                     writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+                  } catch (Throwable t) {
+                     OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error closing transaction! ", t);
+                  }
                }
             }
          }
+      } finally {
+         openLock.readLock().unlock();
       }
       return result;
    }
 
+   interface TransactionBody {
+      void run(@NonNull SQLiteDatabase writableDb);
+   }
+
+   /**
+    * Runs several writes as one transaction under {@link #LOCK}, so they cost a single journal commit
+    *    instead of one per statement like {@link #insert} and {@link #update}
+    * <br/><br/>
+    * Errors thrown by the body roll the whole transaction back
+    */
+   boolean runInTransaction(@NonNull String table, @NonNull TransactionBody body) {
+      boolean committed = false;
+      openLock.readLock().lock();
+      try {
+         synchronized (LOCK) {
+            SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
+            try {
+               writableDb.beginTransaction();
+               body.run(writableDb);
+               writableDb.setTransactionSuccessful();
+               committed = true;
+            } catch (Throwable t) {
+               OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error in transaction on table: " + table, t);
+            } finally {
+               if (writableDb != null) {
+                  try {
+                     writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+                  } catch (Throwable t) {
+                     committed = false;
+                     OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error closing transaction! ", t);
+                  }
+               }
+            }
+         }
+      } finally {
+         openLock.readLock().unlock();
+      }
+      return committed;
+   }
+
    @Override
    public void delete(@NonNull String table, @Nullable String whereClause, @Nullable String[] whereArgs) {
-      synchronized (LOCK) {
-         SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
-         try {
-            writableDb.beginTransaction();
-            writableDb.delete(table, whereClause, whereArgs);
-            writableDb.setTransactionSuccessful();
-         } catch (SQLiteException e) {
-            logger.error("Error deleting on table: " + table, e);
-         } finally {
-            if (writableDb != null) {
-               try {
-                  writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
-               } catch (SQLiteException e) {
-                  logger.error("Error closing transaction! ", e);
+      String sql = "DELETE FROM " + table + (whereClause == null || whereClause.isEmpty() ? "" : " WHERE " + whereClause);
+      openLock.readLock().lock();
+      try {
+         synchronized (LOCK) {
+            SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
+            try {
+               writableDb.beginTransaction();
+               SQLiteStatement statement = compileWriteStatement(writableDb, sql);
+               if (whereArgs != null)
+                  statement.bindAllArgsAsStrings(whereArgs);
+               statement.executeUpdateDelete();
+               writableDb.setTransactionSuccessful();
+            } catch (SQLiteException e) {
+               logger.error("Error deleting on table: " + table, e);
+            } finally {
+               if (writableDb != null) {
+                  try {
+                     writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+                  } catch (SQLiteException e) {
+                     logger.error("Error closing transaction! ", e);
+                  }
                }
             }
          }
+      } finally {
+         openLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Inserts a row with a compiled statement cached for the table and set of columns, throwing like
+    *    {@link SQLiteDatabase#insertOrThrow}. Must be called under {@link #LOCK}, such as from a {@link TransactionBody}.
+    */
+   long insertWithCompiledStatement(@NonNull SQLiteDatabase writableDb, @NonNull String table, @Nullable String nullColumnHack, @Nullable ContentValues values)
+           throws SQLException {
+      if (values == null || values.size() == 0)
+         return writableDb.insertOrThrow(table, nullColumnHack, values);
+
+      // Sorted so the same set of columns always maps to the same statement
+      TreeSet<String> columns = new TreeSet<>(values.keySet());
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+      StringBuilder placeholders = new StringBuilder();
+      for (String column : columns) {
+         if (placeholders.length() > 0) {
+            sql.append(COMMA_SEP);
+            placeholders.append(COMMA_SEP);
+         }
+         sql.append(column);
+         placeholders.append('?');
+      }
+      sql.append(") VALUES (").append(placeholders).append(')');
+
+      SQLiteStatement statement = compileWriteStatement(writableDb, sql.toString());
+      int index = 1;
+      for (String column : columns)
+         bindValue(statement, index++, values.get(column));
+      return statement.executeInsert();
+   }
+
+   /**
+    * Returns the compiled statement for the SQL with its bindings cleared, compiling it the first time.
+    * Must be called under {@link #LOCK}, such as from a {@link TransactionBody}, since the statements are shared by all writers.
+    */
+   @NonNull
+   SQLiteStatement compileWriteStatement(@NonNull SQLiteDatabase writableDb, @NonNull String sql) {
+      if (writableDb != writeStatementsDb) {
+         closeStatements(writeStatements);
+         writeStatementsDb = writableDb;
+      }
+
+      SQLiteStatement statement = writeStatements.get(sql);
+      if (statement == null) {
+         statement = writableDb.compileStatement(sql);
+         writeStatements.put(sql, statement);
+      }
+      statement.clearBindings();
+      return statement;
+   }
+
+   /**
+    * @return the cached statement for the SQL, or null if too many lookups are cached already
+    */
+   @Nullable
+   private SQLiteStatement getReadStatement(@NonNull SQLiteDatabase db, @NonNull String sql) {
+      synchronized (readStatements) {
+         if (db != readStatementsDb) {
+            closeStatements(readStatements);
+            readStatementsDb = db;
+         }
+
+         SQLiteStatement statement = readStatements.get(sql);
+         if (statement == null && readStatements.size() < MAX_CACHED_READ_STATEMENTS) {
+            statement = db.compileStatement(sql);
+            readStatements.put(sql, statement);
+         }
+         return statement;
+      }
+   }
+
+   private static void closeStatements(@NonNull Map<String, SQLiteStatement> statements) {
+      for (SQLiteStatement statement : statements.values()) {
+         synchronized (statement) {
+            statement.close();
+         }
       }
+      statements.clear();
+   }
+
+   // Binds the same way SQLiteDatabase does for ContentValues
+   private static void bindValue(@NonNull SQLiteStatement statement, int index, @Nullable Object value) {
+      if (value == null)
+         statement.bindNull(index);
+      else if (value instanceof byte[])
+         statement.bindBlob(index, (byte[]) value);
+      else if (value instanceof Double || value instanceof Float)
+         statement.bindDouble(index, ((Number) value).doubleValue());
+      else if (value instanceof Number)
+         statement.bindLong(index, ((Number) value).longValue());
+      else if (value instanceof Boolean)
+         statement.bindLong(index, (Boolean) value ? 1 : 0);
+      else
+         statement.bindString(index, value.toString());
+   }
+
+   @Override
+   public void close() {
+      openLock.writeLock().lock();
+      try {
+         synchronized (LOCK) {
+            closeStatements(writeStatements);
+            writeStatementsDb = null;
+         }
+         synchronized (readStatements) {
+            closeStatements(readStatements);
+            readStatementsDb = null;
+         }
+         super.close();
+      } finally {
+         openLock.writeLock().unlock();
+      }
+   }
+
+   @Override
+   public void onOpen(SQLiteDatabase db) {
+      super.onOpen(db);
+      // setWriteAheadLoggingEnabled is only available from API 16
+      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+         db.enableWriteAheadLogging();
    }
 
    @Override
@@ -291,6 +557,7 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
       db.execSQL(SQL_CREATE_OUTCOME_ENTRIES_V3);
       db.execSQL(SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V2);
       db.execSQL(SQL_CREATE_IN_APP_MESSAGE_ENTRIES);
+      db.execSQL(SQL_CREATE_OUTBOX_ENTRIES);
       for (String ind : SQL_INDEX_ENTRIES) {
          db.execSQL(ind);
       }
@@ -330,6 +597,12 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
 
       if (oldVersion < 8)
          upgradeToV8(db);
+
+      if (oldVersion < 9)
+         upgradeToV9(db);
+
+      if (oldVersion < 10)
+         upgradeToV10(db);
    }
 
    // Add collapse_id field and index
@@ -385,6 +658,38 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
       outcomeTableProvider.upgradeCacheOutcomeTableRevision1To2(db);
    }
 
+   private static void upgradeToV9(SQLiteDatabase db) {
+      safeExecSQL(db, SQL_CREATE_OUTBOX_ENTRIES);
+   }
+
+   // Add full_data_compressed field and move existing payloads into it
+   private static void upgradeToV10(SQLiteDatabase db) {
+      safeExecSQL(db,
+         "ALTER TABLE " + NotificationTable.TABLE_NAME + " " +
+            "ADD COLUMN " + NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED + BLOB_TYPE + ";"
+      );
+
+      Cursor cursor = db.query(
+         NotificationTable.TABLE_NAME,
+         new String[] { NotificationTable._ID, NotificationTable.COLUMN_NAME_FULL_DATA },
+         NotificationTable.COLUMN_NAME_FULL_DATA + " IS NOT NULL",
+         null, null, null, null);
+
+      try {
+         while (cursor.moveToNext()) {
+            ContentValues values = new ContentValues();
+            NotificationPayloadCodec.put(values, cursor.getString(1));
+            if (values.containsKey(NotificationTable.COLUMN_NAME_FULL_DATA))
+               continue;
+
+            values.putNull(NotificationTable.COLUMN_NAME_FULL_DATA);
+            db.update(NotificationTable.TABLE_NAME, values, NotificationTable._ID + " = " + cursor.getLong(0), null);
+         }
+      } finally {
+         cursor.close();
+      }
+   }
+
    private static void safeExecSQL(SQLiteDatabase db, String sql) {
       try {
          db.execSQL(sql);
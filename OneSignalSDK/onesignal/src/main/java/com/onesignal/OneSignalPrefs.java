@@ -35,7 +35,13 @@ import android.os.HandlerThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 class OneSignalPrefs {
@@ -86,8 +92,11 @@ class OneSignalPrefs {
     public static final String PREFS_ONESIGNAL_SYNCED_SUBSCRIPTION = "ONESIGNAL_SYNCED_SUBSCRIPTION";
     public static final String PREFS_GT_REGISTRATION_ID = "GT_REGISTRATION_ID";
     public static final String PREFS_ONESIGNAL_USER_PROVIDED_CONSENT = "ONESIGNAL_USER_PROVIDED_CONSENT";
+    // Legacy, an ETag and the response it was sent with used to be stored under separate keys
     public static final String PREFS_OS_ETAG_PREFIX = "PREFS_OS_ETAG_PREFIX_";
     public static final String PREFS_OS_HTTP_CACHE_PREFIX = "PREFS_OS_HTTP_CACHE_PREFIX_";
+    // An ETag together with the response it was sent with
+    public static final String PREFS_OS_HTTP_CACHE_ENTRY_PREFIX = "PREFS_OS_HTTP_CACHE_ENTRY_PREFIX_";
     // On Focus Influence
     public static final String PREFS_OS_ATTRIBUTED_INFLUENCES = "PREFS_OS_ATTRIBUTED_INFLUENCES";
     // Email
@@ -107,8 +116,30 @@ class OneSignalPrefs {
     static final String PREFS_PURCHASE_TOKENS = "purchaseTokens";
     static final String PREFS_EXISTING_PURCHASES = "ExistingPurchases";
 
-    // Buffered writes to apply on WritePrefHandlerThread with a short delay
-    static HashMap<String, HashMap<String, Object>> prefsToApply;
+    // Keys rewritten on most sessions.
+    //   These are kept in their own small file so flushing them doesn't rewrite every other key in PREFS_ONESIGNAL.
+    public static final String PREFS_ONESIGNAL_HOT = PREFS_ONESIGNAL + "Hot";
+    static final Set<String> HOT_KEYS = new HashSet<>(Arrays.asList(
+        PREFS_OS_LAST_SESSION_TIME,
+        PREFS_OS_LAST_LOCATION_TIME,
+        PREFS_GT_UNSENT_ACTIVE_TIME,
+        PREFS_OS_UNSENT_ATTRIBUTED_ACTIVE_TIME,
+        PREFS_OS_ATTRIBUTED_INFLUENCES
+    ));
+    // Large JSON String values, each is stored in its own file by OSBlobStore instead of in PREFS_ONESIGNAL
+    private static final String[] BLOB_KEY_PREFIXES = {
+        PREFS_OS_HTTP_CACHE_ENTRY_PREFIX,
+        PREFS_OS_HTTP_CACHE_PREFIX,
+        PREFS_ONESIGNAL_USERSTATE_DEPENDVALYES_,
+        PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_
+    };
+
+    // Buffered writes per SharedPreferences file to apply on WritePrefHandlerThread with a short delay
+    private static HashMap<String, PrefsBuffer> prefsToApply;
+    private static PrefsBuffer blobsToWrite;
+    // Compound updates across both blob buffers synchronize on blobsToWrite
+    private static LogBuffer blobLogsToAppend;
+    private static @Nullable OSBlobStore blobStore;
     public static WritePrefHandlerThread prefsHandler;
 
     static {
@@ -120,6 +151,7 @@ class OneSignalPrefs {
 
         private static final int WRITE_CALL_DELAY_TO_BUFFER_MS = 200;
         private long lastSyncTime = 0L;
+        private boolean flushScheduled;
 
         WritePrefHandlerThread(String name) {
             super(name);
@@ -160,7 +192,10 @@ class OneSignalPrefs {
             if (mHandler == null)
                 return;
 
-            mHandler.removeCallbacksAndMessages(null);
+            // A flush is already pending, it will pick up this write as well
+            if (flushScheduled)
+                return;
+            flushScheduled = true;
 
             if (lastSyncTime == 0)
                 lastSyncTime = System.currentTimeMillis();
@@ -169,6 +204,9 @@ class OneSignalPrefs {
             Runnable runnable = new Runnable() {
                 @Override
                 public void run() {
+                    synchronized (WritePrefHandlerThread.this) {
+                        flushScheduled = false;
+                    }
                     flushBufferToDisk();
                 }
             };
@@ -176,38 +214,315 @@ class OneSignalPrefs {
         }
 
         private void flushBufferToDisk() {
-            for (String pref : prefsToApply.keySet()) {
-                SharedPreferences prefsToWrite = getSharedPrefsByName(pref);
-                SharedPreferences.Editor editor = prefsToWrite.edit();
-                HashMap<String, Object> prefHash = prefsToApply.get(pref);
-                synchronized (prefHash) {
-                    for (String key : prefHash.keySet()) {
-                        Object value = prefHash.get(key);
-                        if (value instanceof String)
-                            editor.putString(key, (String)value);
-                        else if (value instanceof Boolean)
-                            editor.putBoolean(key, (Boolean)value);
-                        else if (value instanceof Integer)
-                            editor.putInt(key, (Integer)value);
-                        else if (value instanceof Long)
-                            editor.putLong(key, (Long)value);
-                        else if (value instanceof Set)
-                            editor.putStringSet(key, (Set<String>)value);
-                    }
-                    prefHash.clear();
+            for (String prefsName : prefsToApply.keySet()) {
+                HashMap<String, PendingWrite> dirty = prefsToApply.get(prefsName).snapshot();
+                if (dirty == null)
+                    continue;
+
+                // Entries stay buffered and readable, the other files and the blobs are still flushed
+                SharedPreferences prefsToWrite = getSharedPrefsByName(prefsName);
+                if (prefsToWrite == null)
+                    continue;
+
+                SharedPreferences.Editor editor = null;
+                for (Map.Entry<String, PendingWrite> entry : dirty.entrySet()) {
+                    // Skip values that are already on disk, a flush that changes nothing doesn't rewrite the file
+                    if (entry.getValue().isPersisted(prefsToWrite, entry.getKey()))
+                        continue;
+
+                    if (editor == null)
+                        editor = prefsToWrite.edit();
+                    entry.getValue().write(editor, entry.getKey());
                 }
-                editor.apply();
+
+                // Already on a background thread, commit() avoids queuing more work on QueuedWork
+                //   which Activity.onPause and Service.onStop block on.
+                if (editor != null)
+                    editor.commit();
+
+                if (prefsName.equals(PREFS_ONESIGNAL_HOT))
+                    removeMigratedKeys(PREFS_ONESIGNAL, dirty.keySet());
+
+                // Only after the values are in SharedPreferences, so reads never miss a write
+                prefsToApply.get(prefsName).clearFlushed(dirty);
             }
 
+            flushBlobsToDisk();
+
             lastSyncTime = System.currentTimeMillis();
         }
+
+        private void flushBlobsToDisk() {
+            HashMap<String, PendingWrite> dirty;
+            List<LogBuffer.Snapshot> logs;
+            synchronized (blobsToWrite) {
+                dirty = blobsToWrite.snapshot();
+                logs = blobLogsToAppend.snapshot();
+            }
+            if (dirty == null && logs.isEmpty())
+                return;
+
+            OSBlobStore store = getBlobStore();
+            if (store == null)
+                return;
+
+            HashMap<String, PendingWrite> written = new HashMap<>();
+            Set<String> failed = new HashSet<>();
+            if (dirty != null) {
+                for (Map.Entry<String, PendingWrite> entry : dirty.entrySet()) {
+                    try {
+                        // A new value replaces its change log.
+                        //   The log goes first, a crash in between leaves an older value instead of a log
+                        //   replayed over a value it wasn't written against.
+                        store.deleteLog(entry.getKey());
+                        store.write(entry.getKey(), (String)entry.getValue().value);
+                        written.put(entry.getKey(), entry.getValue());
+                    } catch (IOException e) {
+                        // Stays buffered, so it is still readable and retried on the next flush
+                        failed.add(entry.getKey());
+                        OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not write " + entry.getKey() + " to OSBlobStore", e);
+                    }
+                }
+            }
+
+            for (LogBuffer.Snapshot log : logs) {
+                // Entries were made against the buffered value, they can only follow it to disk
+                if (failed.contains(log.key))
+                    continue;
+
+                try {
+                    store.appendToLog(log.key, log.entries);
+                    blobLogsToAppend.clearFlushed(log);
+                } catch (IOException e) {
+                    OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not append to " + log.key + " log in OSBlobStore", e);
+                }
+            }
+
+            removeMigratedKeys(PREFS_ONESIGNAL, written.keySet());
+            removeMigratedKeys(PREFS_ONESIGNAL_HOT, written.keySet());
+            blobsToWrite.clearFlushed(written);
+        }
+
+        // Keys that moved to a new store are read from where they were until first written again
+        private void removeMigratedKeys(String legacyPrefsName, Set<String> keys) {
+            SharedPreferences legacyPrefs = getSharedPrefsByName(legacyPrefsName);
+            SharedPreferences.Editor editor = null;
+            for (String key : keys) {
+                if (!legacyPrefs.contains(key))
+                    continue;
+
+                if (editor == null)
+                    editor = legacyPrefs.edit();
+                editor.remove(key);
+            }
+
+            if (editor != null)
+                editor.commit();
+        }
+    }
+
+    /**
+     * Pending writes for a single SharedPreferences file.
+     * A flush works on a snapshot so saves are never blocked on disk, entries stay readable here
+     *    until they are in SharedPreferences and are only dropped if they were not overwritten meanwhile.
+     */
+    static class PrefsBuffer {
+        private final HashMap<String, PendingWrite> pending = new HashMap<>();
+
+        synchronized void put(String key, PendingWrite value) {
+            pending.put(key, value);
+        }
+
+        synchronized @Nullable PendingWrite get(String key) {
+            return pending.get(key);
+        }
+
+        synchronized @Nullable HashMap<String, PendingWrite> snapshot() {
+            if (pending.isEmpty())
+                return null;
+            return new HashMap<>(pending);
+        }
+
+        synchronized void clearFlushed(HashMap<String, PendingWrite> flushed) {
+            for (Map.Entry<String, PendingWrite> entry : flushed.entrySet()) {
+                if (pending.get(entry.getKey()) == entry.getValue())
+                    pending.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Change log entries waiting to be appended to OSBlobStore.
+     * Saving a key's value drops its buffered entries, a flush only removes the entries it appended
+     *    and only if the value wasn't saved again meanwhile.
+     */
+    private static class LogBuffer {
+        private final HashMap<String, ArrayList<String>> pending = new HashMap<>();
+
+        static class Snapshot {
+            final String key;
+            final ArrayList<String> source;
+            final List<String> entries;
+
+            Snapshot(String key, ArrayList<String> source) {
+                this.key = key;
+                this.source = source;
+                this.entries = new ArrayList<>(source);
+            }
+        }
+
+        synchronized void append(String key, String entry) {
+            ArrayList<String> entries = pending.get(key);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                pending.put(key, entries);
+            }
+            entries.add(entry);
+        }
+
+        synchronized void clear(String key) {
+            pending.remove(key);
+        }
+
+        synchronized @NonNull List<String> get(String key) {
+            ArrayList<String> entries = pending.get(key);
+            return entries == null ? new ArrayList<String>() : new ArrayList<>(entries);
+        }
+
+        synchronized @NonNull List<Snapshot> snapshot() {
+            List<Snapshot> snapshots = new ArrayList<>();
+            for (Map.Entry<String, ArrayList<String>> entry : pending.entrySet())
+                snapshots.add(new Snapshot(entry.getKey(), entry.getValue()));
+            return snapshots;
+        }
+
+        synchronized void clearFlushed(Snapshot flushed) {
+            if (pending.get(flushed.key) != flushed.source)
+                return;
+
+            flushed.source.subList(0, flushed.entries.size()).clear();
+            if (flushed.source.isEmpty())
+                pending.remove(flushed.key);
+        }
+    }
+
+    /**
+     * A buffered value that knows its own SharedPreferences type,
+     *    the type is resolved once on save instead of for every key on each flush.
+     */
+    static abstract class PendingWrite {
+        final @Nullable Object value;
+
+        PendingWrite(@Nullable Object value) {
+            this.value = value;
+        }
+
+        abstract void write(SharedPreferences.Editor editor, String key);
+
+        abstract Object read(SharedPreferences prefs, String key);
+
+        boolean isPersisted(SharedPreferences prefs, String key) {
+            if (!prefs.contains(key))
+                return value == null;
+
+            try {
+                return value != null && value.equals(read(prefs, key));
+            } catch (ClassCastException e) {
+                // Stored as another type, overwrite it
+                return false;
+            }
+        }
+    }
+
+    private static class StringWrite extends PendingWrite {
+        StringWrite(@Nullable String value) {
+            super(value);
+        }
+
+        @Override
+        void write(SharedPreferences.Editor editor, String key) {
+            editor.putString(key, (String)value);
+        }
+
+        @Override
+        Object read(SharedPreferences prefs, String key) {
+            return prefs.getString(key, null);
+        }
+    }
+
+    private static class StringSetWrite extends PendingWrite {
+        StringSetWrite(Set<String> value) {
+            super(value);
+        }
+
+        @Override
+        void write(SharedPreferences.Editor editor, String key) {
+            editor.putStringSet(key, (Set<String>)value);
+        }
+
+        @Override
+        Object read(SharedPreferences prefs, String key) {
+            return prefs.getStringSet(key, null);
+        }
+    }
+
+    private static class BoolWrite extends PendingWrite {
+        BoolWrite(boolean value) {
+            super(value);
+        }
+
+        @Override
+        void write(SharedPreferences.Editor editor, String key) {
+            editor.putBoolean(key, (Boolean)value);
+        }
+
+        @Override
+        Object read(SharedPreferences prefs, String key) {
+            return prefs.getBoolean(key, false);
+        }
+    }
+
+    private static class IntWrite extends PendingWrite {
+        IntWrite(int value) {
+            super(value);
+        }
+
+        @Override
+        void write(SharedPreferences.Editor editor, String key) {
+            editor.putInt(key, (Integer)value);
+        }
+
+        @Override
+        Object read(SharedPreferences prefs, String key) {
+            return prefs.getInt(key, 0);
+        }
+    }
+
+    static class LongWrite extends PendingWrite {
+        LongWrite(long value) {
+            super(value);
+        }
+
+        @Override
+        void write(SharedPreferences.Editor editor, String key) {
+            editor.putLong(key, (Long)value);
+        }
+
+        @Override
+        Object read(SharedPreferences prefs, String key) {
+            return prefs.getLong(key, 0L);
+        }
     }
 
     public static void initializePool() {
         prefsToApply = new HashMap<>();
-        prefsToApply.put(PREFS_ONESIGNAL, new HashMap<String, Object>());
-        prefsToApply.put(PREFS_PLAYER_PURCHASES, new HashMap<String, Object>());
-        prefsToApply.put(PREFS_TRIGGERS, new HashMap<String, Object>());
+        prefsToApply.put(PREFS_ONESIGNAL, new PrefsBuffer());
+        prefsToApply.put(PREFS_ONESIGNAL_HOT, new PrefsBuffer());
+        prefsToApply.put(PREFS_PLAYER_PURCHASES, new PrefsBuffer());
+        prefsToApply.put(PREFS_TRIGGERS, new PrefsBuffer());
+        blobsToWrite = new PrefsBuffer();
+        blobLogsToAppend = new LogBuffer();
+        blobStore = null;
 
         prefsHandler = new WritePrefHandlerThread("OSH_WritePrefs");
     }
@@ -216,38 +531,115 @@ class OneSignalPrefs {
        prefsHandler.startDelayedWrite();
     }
 
+    static boolean isHotKey(String prefsName, String key) {
+        return PREFS_ONESIGNAL.equals(prefsName) && HOT_KEYS.contains(key);
+    }
+
+    static boolean isBlobKey(String prefsName, String key) {
+        if (!PREFS_ONESIGNAL.equals(prefsName))
+            return false;
+
+        for (String prefix : BLOB_KEY_PREFIXES) {
+            if (key.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    private static synchronized @Nullable OSBlobStore getBlobStore() {
+        if (blobStore == null && OneSignal.appContext != null)
+            blobStore = new OSBlobStore(OSBlobStore.getDirectory(OneSignal.appContext));
+        return blobStore;
+    }
+
+    // The SharedPreferences file a key is written to
+    static String fileNameFor(String prefsName, String key) {
+        return isHotKey(prefsName, key) ? PREFS_ONESIGNAL_HOT : prefsName;
+    }
+
     public static void saveString(final String prefsName, final String key, final String value) {
-        save(prefsName, key, value);
+        save(prefsName, key, new StringWrite(value));
     }
 
     public static void saveStringSet(@NonNull final String prefsName, @NonNull final String key, @NonNull final Set<String> value) {
-        save(prefsName, key, value);
+        save(prefsName, key, new StringSetWrite(value));
     }
 
     public static void saveBool(String prefsName, String key, boolean value) {
-        save(prefsName, key, value);
+        save(prefsName, key, new BoolWrite(value));
     }
 
     public static void saveInt(String prefsName, String key, int value) {
-        save(prefsName, key, value);
+        save(prefsName, key, new IntWrite(value));
     }
 
     public static void saveLong(String prefsName, String key, long value) {
-        save(prefsName, key, value);
+        save(prefsName, key, new LongWrite(value));
     }
 
     public static void saveObject(String prefsName, String key, Object value) {
-        save(prefsName, key, value);
+        if (value instanceof Boolean)
+            saveBool(prefsName, key, (Boolean)value);
+        else if (value instanceof Integer)
+            saveInt(prefsName, key, (Integer)value);
+        else if (value instanceof Long)
+            saveLong(prefsName, key, (Long)value);
+        else if (value instanceof Set)
+            saveStringSet(prefsName, key, (Set<String>)value);
+        else if (value == null || value instanceof String)
+            saveString(prefsName, key, (String)value);
     }
 
-    static private void save(String prefsName, String key, Object value) {
-        HashMap<String, Object> pref = prefsToApply.get(prefsName);
-        synchronized (pref) {
-            pref.put(key, value);
+    static private void save(String prefsName, String key, PendingWrite value) {
+        if (value instanceof StringWrite && isBlobKey(prefsName, key)) {
+            synchronized (blobsToWrite) {
+                blobsToWrite.put(key, value);
+                blobLogsToAppend.clear(key);
+            }
         }
+        else
+            prefsToApply.get(fileNameFor(prefsName, key)).put(key, value);
         startDelayedWrite();
     }
 
+    /**
+     * Appends an entry to the change log kept alongside a blob key's value.
+     * Saving the key again replaces its value and clears the log.
+     */
+    static void appendToLog(String prefsName, String key, String entry) {
+        if (!isBlobKey(prefsName, key))
+            throw new IllegalArgumentException(key + " is not stored in OSBlobStore so can't have a change log");
+
+        blobLogsToAppend.append(key, entry);
+        startDelayedWrite();
+    }
+
+    /**
+     * Entries appended to a blob key's change log since its value was last saved, oldest first.
+     * Can include an entry twice if read while that entry is being flushed, entries must be safe to apply again.
+     */
+    static @NonNull List<String> getLog(String prefsName, String key) {
+        boolean valuePending;
+        List<String> pendingEntries;
+        synchronized (blobsToWrite) {
+            valuePending = blobsToWrite.get(key) != null;
+            pendingEntries = blobLogsToAppend.get(key);
+        }
+
+        List<String> entries = new ArrayList<>();
+        OSBlobStore store = getBlobStore();
+        // A buffered value replaces the log on disk when it is flushed
+        if (!valuePending && store != null && isBlobKey(prefsName, key)) {
+            try {
+                entries.addAll(store.readLog(key));
+            } catch (IOException e) {
+                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not read " + key + " log from OSBlobStore", e);
+            }
+        }
+        entries.addAll(pendingEntries);
+        return entries;
+    }
+
     static String getString(String prefsName, String key, String defValue) {
         return (String)get(prefsName, key, String.class, defValue);
     }
@@ -274,18 +666,27 @@ class OneSignalPrefs {
 
     // If type == Object then this is a contains check
     private static @Nullable Object get(String prefsName, String key, Class type, Object defValue) {
-        HashMap<String, Object> pref = prefsToApply.get(prefsName);
+        if (isBlobKey(prefsName, key)) {
+            PendingWrite pendingWrite = blobsToWrite.get(key);
+            if (pendingWrite != null)
+                return type.equals(Object.class) ? true : pendingWrite.value;
+
+            String blob = readBlob(key);
+            if (blob != null)
+                return type.equals(Object.class) ? true : blob;
+        }
 
-        synchronized (pref) {
-            if (type.equals(Object.class) && pref.containsKey(key))
-                return true;
+        String fileName = fileNameFor(prefsName, key);
 
-            Object cachedValue = pref.get(key);
-            if (cachedValue != null || pref.containsKey(key))
-                return cachedValue;
-        }
+        PendingWrite pendingWrite = prefsToApply.get(fileName).get(key);
+        if (pendingWrite != null)
+            return type.equals(Object.class) ? true : pendingWrite.value;
+
+        SharedPreferences prefs = getSharedPrefsByName(fileName);
+        // Fall back to where hot keys were written before they had their own file
+        if (prefs != null && !fileName.equals(prefsName) && !prefs.contains(key))
+            prefs = getSharedPrefsByName(prefsName);
 
-        SharedPreferences prefs = getSharedPrefsByName(prefsName);
         if (prefs != null) {
             if (type.equals(String.class))
                return prefs.getString(key, (String)defValue);
@@ -306,6 +707,20 @@ class OneSignalPrefs {
         return defValue;
     }
 
+    // Null if there is no blob for the key, it may not have been moved out of SharedPreferences yet
+    private static @Nullable String readBlob(String key) {
+        OSBlobStore store = getBlobStore();
+        if (store == null)
+            return null;
+
+        try {
+            return store.read(key);
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not read " + key + " from OSBlobStore", e);
+            return null;
+        }
+    }
+
     static synchronized SharedPreferences getSharedPrefsByName(String prefsName) {
         if (OneSignal.appContext == null) {
             String msg = "OneSignal.appContext null, could not read " + prefsName + " from getSharedPreferences.";
@@ -121,18 +121,17 @@ public class OneSignalRemoteParams {
                return;
             }
 
-            new Thread(new Runnable() {
-               public void run() {
-                  int sleepTime = MIN_WAIT_BETWEEN_RETRIES + androidParamsRetries * INCREASE_BETWEEN_RETRIES;
-                  if (sleepTime > MAX_WAIT_BETWEEN_RETRIES)
-                     sleepTime = MAX_WAIT_BETWEEN_RETRIES;
+            int sleepTime = MIN_WAIT_BETWEEN_RETRIES + androidParamsRetries * INCREASE_BETWEEN_RETRIES;
+            if (sleepTime > MAX_WAIT_BETWEEN_RETRIES)
+               sleepTime = MAX_WAIT_BETWEEN_RETRIES;
 
-                  OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Failed to get Android parameters, trying again in " + (sleepTime / 1_000) +  " seconds.");
-                  OSUtils.sleep(sleepTime);
+            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Failed to get Android parameters, trying again in " + (sleepTime / 1_000) +  " seconds.");
+            OSTaskScheduler.schedule(OSTaskScheduler.Lane.IO, new Runnable() {
+               public void run() {
                   androidParamsRetries++;
                   makeAndroidParamsRequest(callBack);
                }
-            }, "OS_PARAMS_REQUEST").start();
+            }, sleepTime);
          }
 
          @Override
@@ -31,14 +31,22 @@ import android.net.TrafficStats;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.JsonReader;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 class OneSignalRestClient {
@@ -47,6 +55,55 @@ class OneSignalRestClient {
       void onFailure(int statusCode, String response, Throwable throwable) {}
    }
 
+   /**
+    * For GETs whose response is cached by the caller instead of in OneSignalPrefs.
+    * The ETag of the cached copy is sent as if-none-match and a 304 calls onNotModified()
+    *    so the cached copy can be used, otherwise the response is returned with its new ETag.
+    */
+   static abstract class ConditionalResponseHandler extends ResponseHandler {
+      @Nullable
+      private final String cachedETag;
+
+      ConditionalResponseHandler(@Nullable String cachedETag) {
+         this.cachedETag = cachedETag;
+      }
+
+      @Override
+      final void onSuccess(String response) {
+         onSuccess(response, null);
+      }
+
+      void onSuccess(String response, @Nullable String eTag) {}
+      void onNotModified() {}
+   }
+
+   /**
+    * For large responses where only part of the body is used.
+    * On success the body is parsed by parseResponse() straight from the connection's stream,
+    *    on the network thread, and the result is passed to onSuccess(T), so the body is never held as a String.
+    * A body that could not be parsed is reported to onFailure with the exception.
+    */
+   static abstract class StreamingResponseHandler<T> extends ResponseHandler {
+      abstract T parseResponse(@NonNull JsonReader reader) throws IOException, JSONException;
+
+      void onSuccess(T parsedResponse) {}
+
+      // Bodies that are already a String, such as one restored from the HTTP cache, are parsed the same way
+      @Override
+      final void onSuccess(String response) {
+         T parsedResponse;
+         JsonReader reader = new JsonReader(new StringReader(response));
+         try {
+            parsedResponse = parseResponse(reader);
+            reader.close();
+         } catch (IOException | JSONException | IllegalStateException e) {
+            onFailure(HttpURLConnection.HTTP_OK, response, e);
+            return;
+         }
+         onSuccess(parsedResponse);
+      }
+   }
+
    static final String CACHE_KEY_GET_TAGS = "CACHE_KEY_GET_TAGS";
    static final String CACHE_KEY_REMOTE_PARAMS = "CACHE_KEY_REMOTE_PARAMS";
 
@@ -57,49 +114,109 @@ class OneSignalRestClient {
    private static final int THREAD_ID = 10000;
    private static final int TIMEOUT = 120_000;
    private static final int GET_TIMEOUT = 60_000;
+
+   private static final int READ_BUFFER_SIZE = 8_192;
+   // Upper bound for trusting Content-Length when pre-sizing, so a bad header can't force a huge allocation
+   private static final int MAX_PRESIZED_RESPONSE_BYTES = 4 * 1_024 * 1_024;
    
    private static int getThreadTimeout(int timeout) {
       return timeout + 5_000;
    }
 
-   public static void put(final String url, final JSONObject jsonBody, final ResponseHandler responseHandler) {
+   // When enabled, responses are fully read and closed instead of calling disconnect() so
+   //    HttpURLConnection can return the socket to it's keep-alive pool for the next request.
+   private static boolean reuseConnections = true;
 
-      new Thread(new Runnable() {
+   static void setConnectionReuse(boolean enabled) {
+      reuseConnections = enabled;
+   }
+
+   // Request bodies at least this large are gzipped when request compression is enabled
+   static final int GZIP_REQUEST_MIN_BYTES = 1_024;
+   private static boolean compressRequests = false;
+
+   static void setRequestCompression(boolean enabled) {
+      compressRequests = enabled;
+   }
+
+   // Bytes of request and response bodies as sent over the wire, after any compression
+   private static final AtomicLong totalBytesSent = new AtomicLong();
+   private static final AtomicLong totalBytesReceived = new AtomicLong();
+
+   static long getTotalBytesSent() {
+      return totalBytesSent.get();
+   }
+
+   static long getTotalBytesReceived() {
+      return totalBytesReceived.get();
+   }
+
+   public static void put(final String url, final JSONObject jsonBody, final ResponseHandler responseHandler) {
+      OSRestClientExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null);
+            makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null, false);
          }
-      }, "OS_REST_ASYNC_PUT").start();
+      });
    }
 
    public static void post(final String url, final JSONObject jsonBody, final ResponseHandler responseHandler) {
-      new Thread(new Runnable() {
+      OSRestClientExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null);
+            makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null, false);
          }
-      }, "OS_REST_ASYNC_POST").start();
+      });
+   }
+
+   /**
+    * Persists the PUT to {@link OSRequestOutbox} which retries it until it succeeds, is rejected, runs out of attempts or expires.
+    * Only use for requests that are safe to send late, the responseHandler only fires once one of those happens.
+    * The responseHandler is not persisted, if the process dies first the request is still sent but the handler never fires.
+    */
+   static void putDurable(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
+      makeDurableRequest(url, "PUT", jsonBody, responseHandler);
+   }
+
+   /**
+    * POST version of {@link #putDurable(String, JSONObject, ResponseHandler)}
+    */
+   static void postDurable(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
+      makeDurableRequest(url, "POST", jsonBody, responseHandler);
+   }
+
+   private static void makeDurableRequest(String url, String method, JSONObject jsonBody, ResponseHandler responseHandler) {
+      // Without a context there is no database to persist to, fallback to a one shot request
+      if (OneSignal.appContext == null) {
+         if ("PUT".equals(method))
+            put(url, jsonBody, responseHandler);
+         else
+            post(url, jsonBody, responseHandler);
+         return;
+      }
+
+      OSRequestOutbox.getInstance(OneSignal.appContext).enqueue(url, method, jsonBody, responseHandler);
    }
 
    public static void get(final String url, final ResponseHandler responseHandler, @NonNull final String cacheKey) {
-      new Thread(new Runnable() {
+      OSRestClientExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey);
+            makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey, false);
          }
-      }, "OS_REST_ASYNC_GET").start();
+      });
    }
 
    public static void getSync(final String url, final ResponseHandler responseHandler, @NonNull String cacheKey) {
-      makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey);
+      makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey, true);
    }
 
    public static void putSync(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
-      makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null);
+      makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null, true);
    }
 
    public static void postSync(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
-      makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null);
+      makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null, true);
    }
    
-   private static void makeRequest(final String url, final String method, final JSONObject jsonBody, final ResponseHandler responseHandler, final int timeout, final String cacheKey) {
+   private static void makeRequest(final String url, final String method, final JSONObject jsonBody, final ResponseHandler responseHandler, final int timeout, final String cacheKey, boolean sync) {
       if (OSUtils.isRunningOnMainThread())
          throw new OneSignalNetworkCallException("Method: " + method + " was called from the Main Thread!");
 
@@ -107,32 +224,35 @@ class OneSignalRestClient {
       if (method != null && OneSignal.shouldLogUserPrivacyConsentErrorMessageForMethodName(null))
          return;
 
-      final Thread[] callbackThread = new Thread[1];
-      Thread connectionThread = new Thread(new Runnable() {
+      final Runnable[] callback = new Runnable[1];
+      OSRestClientExecutor.runWithWatchdog(new Runnable() {
          public void run() {
-            callbackThread[0] = startHTTPConnection(url, method, jsonBody, responseHandler, timeout, cacheKey);
+            callback[0] = startHTTPConnection(url, method, jsonBody, responseHandler, timeout, cacheKey);
          }
-      }, "OS_HTTPConnection");
-      
-      connectionThread.start();
-      
-      // getResponseCode() can hang past it's timeout setting so join it's thread to ensure it is timing out.
-      try {
-         // Sequentially wait for connectionThread to execute
-         connectionThread.join(getThreadTimeout(timeout));
-         if (connectionThread.getState() != Thread.State.TERMINATED)
-            connectionThread.interrupt();
-         if (callbackThread[0] != null)
-            callbackThread[0].join();
-      } catch (InterruptedException e) {
-         e.printStackTrace();
-      }
+      }, getThreadTimeout(timeout));
+
+      if (callback[0] == null)
+         return;
+
+      // Sync callers expect the handler to have fired by the time we return
+      if (sync)
+         callback[0].run();
+      else
+         OSRestClientExecutor.executeCallback(callback[0]);
    }
    
-   private static Thread startHTTPConnection(String url, String method, JSONObject jsonBody, ResponseHandler responseHandler, int timeout, @Nullable String cacheKey) {
+   private static Runnable startHTTPConnection(String url, String method, JSONObject jsonBody, ResponseHandler responseHandler, int timeout, @Nullable String cacheKey) {
       int httpResponse = -1;
       HttpURLConnection con = null;
-      Thread callbackThread;
+      Runnable callback;
+      // Only a connection whose response was fully consumed can be handed back to the keep-alive pool
+      boolean responseConsumed = false;
+      long bytesSent = 0;
+      CountingInputStream responseStream = null;
+      CachedResponse cachedResponse = null;
+      ConditionalResponseHandler conditionalHandler = null;
+      if (responseHandler instanceof ConditionalResponseHandler)
+         conditionalHandler = (ConditionalResponseHandler)responseHandler;
 
       if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
          TrafficStats.setThreadStatsTag(THREAD_ID);
@@ -141,12 +261,16 @@ class OneSignalRestClient {
       try {
          OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Making request to: " + BASE_URL + url);
          con = newHttpURLConnection(url);
+         OSRestClientExecutor.watchConnection(con);
 
          con.setUseCaches(false);
          con.setConnectTimeout(timeout);
          con.setReadTimeout(timeout);
          con.setRequestProperty("SDK-Version", "onesignal/android/" + OneSignal.VERSION);
          con.setRequestProperty("Accept", OS_ACCEPT_HEADER);
+         // Setting this ourselves turns off HttpURLConnection's transparent gzip so decoding is consistent
+         //    across Android versions and responses can be counted in their compressed size
+         con.setRequestProperty("Accept-Encoding", "gzip");
 
          if (jsonBody != null)
             con.setDoInput(true);
@@ -162,23 +286,29 @@ class OneSignalRestClient {
             OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + method + " SEND JSON: " + strJsonBody);
 
             byte[] sendBytes = strJsonBody.getBytes("UTF-8");
+            if (compressRequests && sendBytes.length >= GZIP_REQUEST_MIN_BYTES) {
+               sendBytes = gzip(sendBytes);
+               con.setRequestProperty("Content-Encoding", "gzip");
+            }
             con.setFixedLengthStreamingMode(sendBytes.length);
+            bytesSent = sendBytes.length;
 
             OutputStream outputStream = con.getOutputStream();
             outputStream.write(sendBytes);
+            outputStream.close();
          }
 
          if (cacheKey != null) {
-            String eTag = OneSignalPrefs.getString(
-               OneSignalPrefs.PREFS_ONESIGNAL,
-               OneSignalPrefs.PREFS_OS_ETAG_PREFIX + cacheKey,
-               null
-            );
-            if (eTag != null) {
-               con.setRequestProperty("if-none-match", eTag);
-               OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Adding header if-none-match: " + eTag);
+            cachedResponse = CachedResponse.read(cacheKey);
+            if (cachedResponse != null) {
+               con.setRequestProperty("if-none-match", cachedResponse.eTag);
+               OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Adding header if-none-match: " + cachedResponse.eTag);
             }
          }
+         else if (conditionalHandler != null && conditionalHandler.cachedETag != null) {
+            con.setRequestProperty("if-none-match", conditionalHandler.cachedETag);
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Adding header if-none-match: " + conditionalHandler.cachedETag);
+         }
 
          // Network request is made from getResponseCode()
          httpResponse = con.getResponseCode();
@@ -187,60 +317,68 @@ class OneSignalRestClient {
 
          switch (httpResponse) {
            case HttpURLConnection.HTTP_NOT_MODIFIED: // 304
-               String cachedResponse = OneSignalPrefs.getString(
-                  OneSignalPrefs.PREFS_ONESIGNAL,
-                  OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + cacheKey,
-                  null
-               );
-               OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " - Using Cached response due to 304: " + cachedResponse);
-               callbackThread = callResponseHandlerOnSuccess(responseHandler, cachedResponse);
+               if (conditionalHandler != null) {
+                  OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: GET - Cached copy of " + url + " is still current due to 304");
+                  con.getInputStream().close();
+                  responseConsumed = true;
+                  callback = callResponseHandlerOnNotModified(conditionalHandler);
+                  break;
+               }
+
+               // The ETag and the body are stored together so the body is always the one the ETag was sent with
+               String cachedBody = cachedResponse == null ? null : cachedResponse.response;
+               OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " - Using Cached response due to 304: " + cachedBody);
+               con.getInputStream().close();
+               responseConsumed = true;
+               callback = callResponseHandlerOnSuccess(responseHandler, cachedBody);
             break;
             case HttpURLConnection.HTTP_ACCEPTED:
             case HttpURLConnection.HTTP_OK: // 200
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Successfully finished request to: " + BASE_URL + url);
 
-               InputStream inputStream = con.getInputStream();
-               Scanner scanner = new Scanner(inputStream, "UTF-8");
-               String json = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
-               scanner.close();
+               responseStream = new CountingInputStream(con.getInputStream());
+               // Responses that are cached need their body as a String
+               if (responseHandler instanceof StreamingResponseHandler && cacheKey == null) {
+                  callback = parseStreamingResponse((StreamingResponseHandler<?>)responseHandler, con, responseStream);
+                  responseConsumed = true;
+                  OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " RECEIVED and parsed streamed JSON response");
+                  break;
+               }
+
+               String json = readResponseBody(con, responseStream);
+               responseConsumed = true;
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " RECEIVED JSON: " + json);
 
                if (cacheKey != null) {
                   String eTag = con.getHeaderField("etag");
                   if (eTag != null) {
                      OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Response has etag of " + eTag + " so caching the response.");
-                     OneSignalPrefs.saveString(
-                        OneSignalPrefs.PREFS_ONESIGNAL,
-                        OneSignalPrefs.PREFS_OS_ETAG_PREFIX + cacheKey,
-                        eTag
-                     );
-                     OneSignalPrefs.saveString(
-                        OneSignalPrefs.PREFS_ONESIGNAL,
-                        OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + cacheKey,
-                        json
-                     );
+                     CachedResponse.save(cacheKey, eTag, json);
                   }
                }
 
-               callbackThread = callResponseHandlerOnSuccess(responseHandler, json);
+               if (conditionalHandler != null)
+                  callback = callResponseHandlerOnSuccess(conditionalHandler, json, con.getHeaderField("etag"));
+               else
+                  callback = callResponseHandlerOnSuccess(responseHandler, json);
                break;
             default: // Request failed
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Failed request to: " + BASE_URL + url);
-               inputStream = con.getErrorStream();
+               InputStream inputStream = con.getErrorStream();
                if (inputStream == null)
                   inputStream = con.getInputStream();
 
                String jsonResponse = null;
                if (inputStream != null) {
-                  scanner = new Scanner(inputStream, "UTF-8");
-                  jsonResponse = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
-                  scanner.close();
+                  responseStream = new CountingInputStream(inputStream);
+                  jsonResponse = readResponseBody(con, responseStream);
+                  responseConsumed = true;
                   OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " RECEIVED JSON: " + jsonResponse);
                }
                else
                   OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " HTTP Code: " + httpResponse + " No response body!");
 
-               callbackThread = callResponseHandlerOnFailure(responseHandler, httpResponse, jsonResponse, null);
+               callback = callResponseHandlerOnFailure(responseHandler, httpResponse, jsonResponse, null);
          }
       } catch (Throwable t) {
          if (t instanceof java.net.ConnectException || t instanceof java.net.UnknownHostException)
@@ -248,45 +386,224 @@ class OneSignalRestClient {
          else
             OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " Error thrown from network stack. ", t);
    
-         callbackThread = callResponseHandlerOnFailure(responseHandler, httpResponse, null, t);
+         callback = callResponseHandlerOnFailure(responseHandler, httpResponse, null, t);
       }
       finally {
-         if (con != null)
+         // Response is read, the watchdog must not close a connection going back to the keep-alive pool
+         OSRestClientExecutor.watchConnection(null);
+
+         long bytesReceived = responseStream == null ? 0 : responseStream.getCount();
+         totalBytesSent.addAndGet(bytesSent);
+         totalBytesReceived.addAndGet(bytesReceived);
+         OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OneSignalRestClient: " + (method == null ? "GET" : method) + " " + url + " sent " + bytesSent + " bytes, received " + bytesReceived + " bytes");
+
+         // disconnect() closes the socket, skip it when the connection can be reused
+         if (con != null && !(reuseConnections && responseConsumed))
             con.disconnect();
       }
       
-      return callbackThread;
+      return callback;
    }
    
    
-   // These helper methods run the callback a new thread so they don't count towards the fallback thread join timer.
+   /**
+    * Response of a GET made with a cacheKey, kept with the ETag it was served with.
+    * Both are saved as one OSBlobStore value so a crash or failed write can never leave
+    *    a new ETag next to an old body, which every later 304 would then serve.
+    */
+   private static class CachedResponse {
+      @NonNull final String eTag;
+      @NonNull final String response;
+
+      CachedResponse(@NonNull String eTag, @NonNull String response) {
+         this.eTag = eTag;
+         this.response = response;
+      }
+
+      // Stored as the ETag on the first line followed by the response, ETags can't contain line breaks
+      static @Nullable CachedResponse read(@NonNull String cacheKey) {
+         String entry = OneSignalPrefs.getString(
+            OneSignalPrefs.PREFS_ONESIGNAL,
+            OneSignalPrefs.PREFS_OS_HTTP_CACHE_ENTRY_PREFIX + cacheKey,
+            null
+         );
+         if (entry == null)
+            return null;
+
+         int separator = entry.indexOf('\n');
+         if (separator <= 0)
+            return null;
+         return new CachedResponse(entry.substring(0, separator), entry.substring(separator + 1));
+      }
+
+      static void save(@NonNull String cacheKey, @NonNull String eTag, @NonNull String response) {
+         OneSignalPrefs.saveString(
+            OneSignalPrefs.PREFS_ONESIGNAL,
+            OneSignalPrefs.PREFS_OS_HTTP_CACHE_ENTRY_PREFIX + cacheKey,
+            eTag + "\n" + response
+         );
+
+         // Drop the copy saved by older versions as an ETag and a body under separate keys
+         OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_ETAG_PREFIX + cacheKey, null);
+         OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + cacheKey, null);
+      }
+   }
+
+   private static String readResponseBody(HttpURLConnection con, InputStream inputStream) throws IOException {
+      // Content-Length is the compressed size for gzip responses so it can't be used for pre-sizing
+      if ("gzip".equalsIgnoreCase(con.getContentEncoding()))
+         return readResponseBody(new GZIPInputStream(inputStream), -1);
+      return readResponseBody(inputStream, con.getContentLength());
+   }
+
+   /**
+    * Parses the body straight from the stream, then reads anything the parser didn't need
+    *    so the connection can go back to the keep-alive pool.
+    */
+   private static <T> Runnable parseStreamingResponse(final StreamingResponseHandler<T> handler, HttpURLConnection con, InputStream inputStream) throws IOException, JSONException {
+      if ("gzip".equalsIgnoreCase(con.getContentEncoding()))
+         inputStream = new GZIPInputStream(inputStream);
+
+      final T parsedResponse;
+      JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+      try {
+         parsedResponse = handler.parseResponse(reader);
+         byte[] buffer = new byte[READ_BUFFER_SIZE];
+         while (inputStream.read(buffer) != -1);
+      } finally {
+         reader.close();
+      }
+
+      return new Runnable() {
+         public void run() {
+            handler.onSuccess(parsedResponse);
+         }
+      };
+   }
+
+   static byte[] gzip(byte[] bytes) throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+      GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+      try {
+         gzipStream.write(bytes);
+      } finally {
+         gzipStream.close();
+      }
+      return outputStream.toByteArray();
+   }
+
+   private static class CountingInputStream extends FilterInputStream {
+      private long count;
+
+      CountingInputStream(InputStream in) {
+         super(in);
+      }
+
+      long getCount() {
+         return count;
+      }
+
+      @Override
+      public int read() throws IOException {
+         int value = super.read();
+         if (value != -1)
+            count++;
+         return value;
+      }
+
+      @Override
+      public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+         int read = super.read(buffer, offset, length);
+         if (read > 0)
+            count += read;
+         return read;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+         long skipped = super.skip(n);
+         count += skipped;
+         return skipped;
+      }
+   }
+
+   /**
+    * Reads the full body as UTF-8 and closes the stream.
+    * When the server sends a Content-Length the body is read straight into an exactly sized array,
+    *    otherwise it is read in READ_BUFFER_SIZE chunks into a growing buffer.
+    */
+   static String readResponseBody(InputStream inputStream, int contentLength) throws IOException {
+      try {
+         ByteArrayOutputStream outputStream;
+         if (contentLength > 0 && contentLength <= MAX_PRESIZED_RESPONSE_BYTES) {
+            byte[] body = new byte[contentLength];
+            int offset = 0;
+            int read;
+            while (offset < contentLength && (read = inputStream.read(body, offset, contentLength - offset)) != -1)
+               offset += read;
+
+            // Stream ended early or the header matched the body, either way we are done
+            int next = offset < contentLength ? -1 : inputStream.read();
+            if (next == -1)
+               return new String(body, 0, offset, "UTF-8");
+
+            // Content-Length was smaller than the actual body, keep reading the rest
+            outputStream = new ByteArrayOutputStream(contentLength * 2);
+            outputStream.write(body, 0, offset);
+            outputStream.write(next);
+         }
+         else
+            outputStream = new ByteArrayOutputStream(READ_BUFFER_SIZE);
+
+         byte[] buffer = new byte[READ_BUFFER_SIZE];
+         int read;
+         while ((read = inputStream.read(buffer)) != -1)
+            outputStream.write(buffer, 0, read);
+         return outputStream.toString("UTF-8");
+      } finally {
+         inputStream.close();
+      }
+   }
+
+   // These helper methods wrap the callback so it can be run off the network thread
+   //    and doesn't count towards the watchdog timer.
    
-   private static Thread callResponseHandlerOnSuccess(final ResponseHandler handler, final String response) {
+   private static Runnable callResponseHandlerOnSuccess(final ResponseHandler handler, final String response) {
       if (handler == null)
          return null;
       
-      Thread thread = new Thread(new Runnable() {
+      return new Runnable() {
          public void run() {
             handler.onSuccess(response);
          }
-      }, "OS_REST_SUCCESS_CALLBACK");
-      thread.start();
-      
-      return thread;
+      };
+   }
+   
+   private static Runnable callResponseHandlerOnSuccess(final ConditionalResponseHandler handler, final String response, final String eTag) {
+      return new Runnable() {
+         public void run() {
+            handler.onSuccess(response, eTag);
+         }
+      };
+   }
+
+   private static Runnable callResponseHandlerOnNotModified(final ConditionalResponseHandler handler) {
+      return new Runnable() {
+         public void run() {
+            handler.onNotModified();
+         }
+      };
    }
    
-   private static Thread callResponseHandlerOnFailure(final ResponseHandler handler, final int statusCode, final String response, final Throwable throwable) {
+   private static Runnable callResponseHandlerOnFailure(final ResponseHandler handler, final int statusCode, final String response, final Throwable throwable) {
       if (handler == null)
          return null;
    
-      Thread thread = new Thread(new Runnable() {
+      return new Runnable() {
          public void run() {
             handler.onFailure(statusCode, response, throwable);
          }
-      }, "OS_REST_FAILURE_CALLBACK");
-      thread.start();
-      
-      return thread;
+      };
    }
 
    private static HttpURLConnection newHttpURLConnection(String url) throws IOException {
@@ -43,6 +43,11 @@ public class RestoreJobService extends JobIntentService {
       if (extras == null)
          return;
 
+      if (NotificationRestoreEngine.isBatch(extras)) {
+         NotificationRestoreEngine.restoreBatch(getApplicationContext(), NotificationRestoreEngine.getBatch(getApplicationContext(), extras));
+         return;
+      }
+
       NotificationBundleProcessor.ProcessFromGCMIntentService(
             getApplicationContext(),
             new BundleCompatBundle(extras),
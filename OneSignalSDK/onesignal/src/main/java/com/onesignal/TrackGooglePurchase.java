@@ -134,7 +134,7 @@ class TrackGooglePurchase {
       if (isWaitingForPurchasesRequest)
          return;
 
-      new Thread(new Runnable() {
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.BACKGROUND, new Runnable() {
          public void run() {
             isWaitingForPurchasesRequest = true;
             try {
@@ -179,7 +179,7 @@ class TrackGooglePurchase {
             }
             isWaitingForPurchasesRequest = false;
          }
-      }).start();
+      });
    }
 
    private void sendPurchases(final ArrayList<String> skusToAdd, final ArrayList<String> newPurchaseTokens) {
@@ -1,11 +1,14 @@
 package com.onesignal;
 
+import android.support.annotation.Nullable;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 abstract class UserState {
@@ -42,10 +45,16 @@ abstract class UserState {
     // Object to synchronize on to prevent concurrent modifications on syncValues and dependValues
     private static final Object syncLock = new Object() {};
 
+    // Values are persisted in full again once this many change log entries have been appended after them
+    static final int MAX_CHANGE_LOG_ENTRIES = 50;
+
     private String persistKey;
 
     JSONObject dependValues, syncValues;
 
+    // Null until the values have been persisted in full or loaded, only changes are persisted after that
+    private @Nullable UserStateChangeLog dependValuesLog, syncValuesLog;
+
     UserState(String inPersistKey, boolean load) {
         persistKey = inPersistKey;
         if (load)
@@ -176,6 +185,7 @@ abstract class UserState {
         else {
             try {
                 dependValues = new JSONObject(dependValuesStr);
+                dependValuesLog = replayChangeLog(OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_DEPENDVALYES_ + persistKey, dependValues);
             } catch (JSONException e) {
                 e.printStackTrace();
             }
@@ -190,20 +200,51 @@ abstract class UserState {
                         OneSignalPrefs.PREFS_GT_REGISTRATION_ID,null);
                 syncValues.put("identifier", gtRegistrationId);
             }
-            else
+            else {
                 syncValues = new JSONObject(syncValuesStr);
+                syncValuesLog = replayChangeLog(OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_ + persistKey, syncValues);
+            }
         } catch (JSONException e) {
             e.printStackTrace();
         }
     }
 
+    // Applies the changes persisted after the full values, returns null if they can't all be applied
+    private static @Nullable UserStateChangeLog replayChangeLog(String prefsKey, JSONObject values) {
+        List<String> entries = OneSignalPrefs.getLog(OneSignalPrefs.PREFS_ONESIGNAL, prefsKey);
+        try {
+            for (String entry : entries)
+                UserStateChangeLog.apply(values, new JSONObject(entry));
+        } catch (JSONException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not apply " + prefsKey + " change log, will persist in full", e);
+            return null;
+        }
+        return new UserStateChangeLog(values, entries.size());
+    }
+
     void persistState() {
         synchronized(syncLock) {
-            OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL,
-                    OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_ + persistKey, syncValues.toString());
-            OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL,
-                    OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_DEPENDVALYES_ + persistKey, dependValues.toString());
+            syncValuesLog = persist(OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_ + persistKey, syncValues, syncValuesLog);
+            dependValuesLog = persist(OneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_DEPENDVALYES_ + persistKey, dependValues, dependValuesLog);
+        }
+    }
+
+    // Appends only what changed since the last persist, the full values are written on first persist and
+    //   once the change log reaches MAX_CHANGE_LOG_ENTRIES so it never takes long to replay.
+    private static UserStateChangeLog persist(String prefsKey, JSONObject values, @Nullable UserStateChangeLog changeLog) {
+        if (changeLog != null && changeLog.getEntryCount() < MAX_CHANGE_LOG_ENTRIES) {
+            try {
+                JSONObject changes = changeLog.diff(values);
+                if (changes != null)
+                    OneSignalPrefs.appendToLog(OneSignalPrefs.PREFS_ONESIGNAL, prefsKey, changes.toString());
+                return changeLog;
+            } catch (JSONException e) {
+                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not diff " + prefsKey + ", persisting in full", e);
+            }
         }
+
+        OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, prefsKey, values.toString());
+        return new UserStateChangeLog(values, 0);
     }
 
     void persistStateAfterSync(JSONObject inDependValues, JSONObject inSyncValues) {
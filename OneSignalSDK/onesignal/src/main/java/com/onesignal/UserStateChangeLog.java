@@ -0,0 +1,234 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.onesignal;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Tracks the last persisted values of a UserState JSONObject so only changes need to be persisted.
+ * diff returns the keys set or removed since the last call, nested JSONObjects such as tags are
+ *    compared one level deep so a single tag change is a single entry.
+ * Entries only set or remove keys, applying one again gives the same result.
+ */
+class UserStateChangeLog {
+
+    private static final String SET = "set";
+    private static final String REMOVE = "remove";
+    private static final String MERGE = "merge";
+
+    // Compared by text since JSONObject and JSONArray don't implement equals
+    private static class JsonText {
+        private final String text;
+
+        JsonText(Object json) {
+            text = json.toString();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof JsonText && text.equals(((JsonText)other).text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+    }
+
+    private static final Object NESTED_OBJECT = new Object();
+
+    // Persisted top level values, JSONObject values are NESTED_OBJECT with their own map in nestedValues
+    private final HashMap<String, Object> values = new HashMap<>();
+    private final HashMap<String, HashMap<String, Object>> nestedValues = new HashMap<>();
+    private int entryCount;
+
+    UserStateChangeLog(@NonNull JSONObject persisted, int entryCount) {
+        Iterator<String> keys = persisted.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            remember(key, persisted.opt(key));
+        }
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Number of entries persisted after the full values
+     */
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the changes from the last persisted values to current and records current as persisted.
+     * Returns null if nothing changed.
+     */
+    @Nullable JSONObject diff(@NonNull JSONObject current) throws JSONException {
+        JSONObject changes = new JSONObject();
+
+        JSONArray removed = removedKeys(values, current);
+        for (int i = 0; i < removed.length(); i++)
+            nestedValues.remove(removed.getString(i));
+        if (removed.length() > 0)
+            changes.put(REMOVE, removed);
+
+        JSONObject set = new JSONObject();
+        JSONObject merge = new JSONObject();
+        Iterator<String> keys = current.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = current.get(key);
+
+            HashMap<String, Object> nested = nestedValues.get(key);
+            if (nested != null && value instanceof JSONObject) {
+                JSONObject nestedChanges = diffNested(nested, (JSONObject)value);
+                if (nestedChanges != null)
+                    merge.put(key, nestedChanges);
+            }
+            else if (!values.containsKey(key) || !values.get(key).equals(persistedForm(value))) {
+                set.put(key, value);
+                remember(key, value);
+            }
+        }
+
+        if (set.length() > 0)
+            changes.put(SET, set);
+        if (merge.length() > 0)
+            changes.put(MERGE, merge);
+
+        if (changes.length() == 0)
+            return null;
+
+        entryCount++;
+        return changes;
+    }
+
+    /**
+     * Applies an entry returned from diff onto target
+     */
+    static void apply(@NonNull JSONObject target, @NonNull JSONObject changes) throws JSONException {
+        JSONArray removed = changes.optJSONArray(REMOVE);
+        if (removed != null) {
+            for (int i = 0; i < removed.length(); i++)
+                target.remove(removed.getString(i));
+        }
+
+        JSONObject set = changes.optJSONObject(SET);
+        if (set != null) {
+            Iterator<String> keys = set.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                target.put(key, set.get(key));
+            }
+        }
+
+        JSONObject merge = changes.optJSONObject(MERGE);
+        if (merge != null) {
+            Iterator<String> keys = merge.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONObject nested = target.optJSONObject(key);
+                if (nested == null) {
+                    nested = new JSONObject();
+                    target.put(key, nested);
+                }
+                apply(nested, merge.getJSONObject(key));
+            }
+        }
+    }
+
+    private static @Nullable JSONObject diffNested(@NonNull HashMap<String, Object> persisted, @NonNull JSONObject current) throws JSONException {
+        JSONObject changes = new JSONObject();
+
+        JSONArray removed = removedKeys(persisted, current);
+        if (removed.length() > 0)
+            changes.put(REMOVE, removed);
+
+        JSONObject set = new JSONObject();
+        Iterator<String> keys = current.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = current.get(key);
+            Object persistedValue = persistedForm(value);
+            if (!persistedValue.equals(persisted.get(key))) {
+                set.put(key, value);
+                persisted.put(key, persistedValue);
+            }
+        }
+        if (set.length() > 0)
+            changes.put(SET, set);
+
+        return changes.length() == 0 ? null : changes;
+    }
+
+    // Removes keys no longer in current from persisted and returns them
+    private static @NonNull JSONArray removedKeys(@NonNull HashMap<String, Object> persisted, @NonNull JSONObject current) {
+        JSONArray removed = new JSONArray();
+        Iterator<String> persistedKeys = persisted.keySet().iterator();
+        while (persistedKeys.hasNext()) {
+            String key = persistedKeys.next();
+            if (!current.has(key)) {
+                removed.put(key);
+                persistedKeys.remove();
+            }
+        }
+        return removed;
+    }
+
+    private void remember(String key, Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject)value;
+            HashMap<String, Object> nested = new HashMap<>();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String nestedKey = keys.next();
+                nested.put(nestedKey, persistedForm(object.opt(nestedKey)));
+            }
+            values.put(key, NESTED_OBJECT);
+            nestedValues.put(key, nested);
+        }
+        else {
+            values.put(key, persistedForm(value));
+            nestedValues.remove(key);
+        }
+    }
+
+    // Strings, numbers and booleans are immutable and kept as is
+    private static @NonNull Object persistedForm(@NonNull Object value) {
+        if (value instanceof JSONObject || value instanceof JSONArray)
+            return new JsonText(value);
+        return value;
+    }
+}
@@ -3,14 +3,18 @@ package com.onesignal;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import com.onesignal.OneSignalStateSynchronizer.UserStateSynchronizerType;
 import com.onesignal.OneSignal.ChangeTagsUpdateHandler;
 import com.onesignal.OneSignal.SendTagsError;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Queue;
@@ -359,12 +363,17 @@ abstract class UserStateSynchronizer {
 
         waitingForSessionResponse = true;
         addOnSessionOrCreateExtras(jsonBody);
-        OneSignalRestClient.postSync(urlStr, jsonBody, new OneSignalRestClient.ResponseHandler() {
+        OneSignalRestClient.postSync(urlStr, jsonBody, new OneSignalRestClient.StreamingResponseHandler<SessionResponse>() {
+            @Override
+            SessionResponse parseResponse(JsonReader reader) throws IOException, JSONException {
+                return SessionResponse.parse(reader);
+            }
+
             @Override
             void onFailure(int statusCode, String response, Throwable throwable) {
                 synchronized (syncLock) {
                     waitingForSessionResponse = false;
-                    OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Failed last request. statusCode: " + statusCode + "\nresponse: " + response);
+                    OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Failed last request. statusCode: " + statusCode + "\nresponse: " + response, throwable);
 
                     if (response400WithErrorsContaining(statusCode, response, "not a valid device_type"))
                         handlePlayerDeletedFromServer();
@@ -374,34 +383,35 @@ abstract class UserStateSynchronizer {
             }
 
             @Override
-            void onSuccess(String response) {
+            void onSuccess(SessionResponse sessionResponse) {
                 synchronized (syncLock) {
                     waitingForSessionResponse = false;
                     currentUserState.persistStateAfterSync(dependDiff, jsonBody);
 
-                    try {
-                        OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "doCreateOrNewSession:response: " + response);
-                        JSONObject jsonResponse = new JSONObject(response);
+                    OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "doCreateOrNewSession:response: id: " + sessionResponse.userId +
+                            ", in_app_messages: " + (sessionResponse.inAppMessages == null ? 0 : sessionResponse.inAppMessages.length()));
 
-                        if (jsonResponse.has("id")) {
-                            String newUserId = jsonResponse.optString("id");
-                            updateIdDependents(newUserId);
-                            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Device registered, UserId = " + newUserId);
-                        }
-                        else
-                            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "session sent, UserId = " + userId);
-
-                        getUserStateForModification().dependValues.put("session", false);
-                        getUserStateForModification().persistState();
+                    if (sessionResponse.userId != null) {
+                        String newUserId = sessionResponse.userId;
+                        updateIdDependents(newUserId);
+                        OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Device registered, UserId = " + newUserId);
+                    }
+                    else
+                        OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "session sent, UserId = " + userId);
 
-                        // List of in app messages to evaluate for the session
-                        if (jsonResponse.has(IN_APP_MESSAGES_JSON_KEY))
-                            OSInAppMessageController.getController().receivedInAppMessageJson(jsonResponse.getJSONArray(IN_APP_MESSAGES_JSON_KEY));
+                    getUserStateForModification().dependValues.put("session", false);
+                    getUserStateForModification().persistState();
 
-                        onSuccessfulSync(jsonBody);
-                    } catch (JSONException e) {
-                        OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR parsing on_session or create JSON Response.", e);
+                    // List of in app messages to evaluate for the session
+                    if (sessionResponse.inAppMessages != null) {
+                        try {
+                            OSInAppMessageController.getController().receivedInAppMessageJson(sessionResponse.inAppMessages);
+                        } catch (JSONException e) {
+                            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR processing in_app_messages of on_session or create JSON Response.", e);
+                        }
                     }
+
+                    onSuccessfulSync(jsonBody);
                 }
             }
         });
@@ -409,6 +419,33 @@ abstract class UserStateSynchronizer {
 
     protected abstract void onSuccessfulSync(JSONObject jsonField);
 
+    /**
+     * Fields used from a create or on_session response.
+     * The response is streamed from the connection so in_app_messages are read straight into their JSONArray
+     *    and any other fields are skipped, the body is never held as a String or a JSONObject of the whole response.
+     */
+    static class SessionResponse {
+        @Nullable String userId;
+        @Nullable JSONArray inAppMessages;
+
+        static SessionResponse parse(JsonReader reader) throws IOException, JSONException {
+            SessionResponse sessionResponse = new SessionResponse();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                JsonToken token = reader.peek();
+                if ("id".equals(name) && token == JsonToken.STRING)
+                    sessionResponse.userId = reader.nextString();
+                else if (IN_APP_MESSAGES_JSON_KEY.equals(name) && token == JsonToken.BEGIN_ARRAY)
+                    sessionResponse.inAppMessages = JSONUtils.readJSONArray(reader);
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+            return sessionResponse;
+        }
+    }
+
     private void handleNetworkFailure(int statusCode) {
         if (statusCode == HttpURLConnection.HTTP_FORBIDDEN) {
             OneSignal.Log(OneSignal.LOG_LEVEL.FATAL, "403 error updating player, omitting further retries!");
@@ -14,8 +14,6 @@ import org.json.JSONObject;
 
 abstract public class OSChannelTracker {
 
-    private static final String TIME = "time";
-
     protected OSLogger logger;
     @NonNull
     OSInfluenceDataRepository dataRepository;
@@ -25,6 +23,11 @@ abstract public class OSChannelTracker {
     JSONArray indirectIds;
     @Nullable
     String directId;
+    // Last ids received, only parsed again from the cached JSON if another tracker instance changed it
+    @Nullable
+    private OSInfluenceIdBuffer lastIds;
+    @Nullable
+    private String lastIdsJSON;
 
     OSChannelTracker(@NonNull OSInfluenceDataRepository dataRepository, OSLogger logger) {
         this.dataRepository = dataRepository;
@@ -35,15 +38,14 @@ abstract public class OSChannelTracker {
 
     abstract OSInfluenceChannel getChannelType();
 
-    abstract JSONArray getLastChannelObjectsReceivedByNewId(String id);
-
-    abstract JSONArray getLastChannelObjects() throws JSONException;
+    @NonNull
+    abstract String getLastChannelObjects();
 
     abstract int getChannelLimit();
 
     abstract int getIndirectAttributionWindow();
 
-    abstract void saveChannelObjects(JSONArray channelObjects);
+    abstract void saveChannelObjects(@NonNull String channelObjects);
 
     abstract void initInfluencedTypeFromCache();
 
@@ -60,33 +62,27 @@ abstract public class OSChannelTracker {
         logger.debug("OneSignal OSChannelTracker resetAndInitInfluence: " + getIdTag() + " finish with influenceType: " + influenceType);
     }
 
+    /**
+     * Called before a new id is added to the last ids received
+     */
+    void onNewIdReceived(@NonNull OSInfluenceIdBuffer lastIds, @NonNull String id) {
+    }
+
     /**
      * Get all received ids that may influence actions
      *
      * @return ids that happen between attribution window
      */
     public JSONArray getLastReceivedIds() {
-        JSONArray ids = new JSONArray();
-        try {
-            JSONArray lastChannelObjectReceived = getLastChannelObjects();
-            logger.debug("OneSignal ChannelTracker getLastReceivedIds lastChannelObjectReceived: " + lastChannelObjectReceived);
-
-            long attributionWindow = getIndirectAttributionWindow() * 60 * 1_000L;
-            long currentTime = System.currentTimeMillis();
-            for (int i = 0; i < lastChannelObjectReceived.length(); i++) {
-                JSONObject jsonObject = lastChannelObjectReceived.getJSONObject(i);
-                long time = jsonObject.getLong(TIME);
-                long difference = currentTime - time;
-
-                if (difference <= attributionWindow) {
-                    String id = jsonObject.getString(getIdTag());
-                    ids.put(id);
-                }
-            }
-        } catch (JSONException exception) {
-            logger.error("Generating tracker getLastReceivedIds JSONObject ", exception);
+        long attributionWindow = getIndirectAttributionWindow() * 60 * 1_000L;
+        long currentTime = System.currentTimeMillis();
+
+        JSONArray ids;
+        synchronized (this) {
+            ids = getLastIds().idsReceivedSince(currentTime - attributionWindow);
         }
 
+        logger.debug("OneSignal ChannelTracker getLastReceivedIds: " + ids);
         return ids;
     }
 
@@ -98,43 +94,49 @@ abstract public class OSChannelTracker {
         if (id == null || id.isEmpty())
             return;
 
-        JSONArray lastChannelObjectsReceived = getLastChannelObjectsReceivedByNewId(id);
-        logger.debug("OneSignal OSChannelTracker for: " + getIdTag() + " saveLastId with lastChannelObjectsReceived: " + lastChannelObjectsReceived);
+        String channelObjectToSave;
+        synchronized (this) {
+            OSInfluenceIdBuffer lastIds = getLastIds();
+            onNewIdReceived(lastIds, id);
 
-        try {
-            JSONObject newInfluenceId = new JSONObject()
-                    .put(getIdTag(), id)
-                    .put(TIME, System.currentTimeMillis());
-            lastChannelObjectsReceived.put(newInfluenceId);
-        } catch (JSONException exception) {
-            logger.error("Generating tracker newInfluenceId JSONObject ", exception);
-            // We don't have new data, stop logic
-            return;
-        }
+            // Only save the last ids without surpassing the limit
+            // Always keep the max quantity of ids possible
+            // If the attribution window increases, old ids might influence
+            lastIds.resize(getChannelLimit());
+            lastIds.add(id, System.currentTimeMillis());
 
-        int channelLimit = getChannelLimit();
-        JSONArray channelObjectToSave = lastChannelObjectsReceived;
-
-        // Only save the last ids without surpassing the limit
-        // Always keep the max quantity of ids possible
-        // If the attribution window increases, old ids might influence
-        if (lastChannelObjectsReceived.length() > channelLimit) {
-            int lengthDifference = lastChannelObjectsReceived.length() - channelLimit;
-            // If min sdk is greater than KITKAT we can refactor this logic to removeObject from JSONArray
-            channelObjectToSave = new JSONArray();
-            for (int i = lengthDifference; i < lastChannelObjectsReceived.length(); i++) {
-                try {
-                    channelObjectToSave.put(lastChannelObjectsReceived.get(i));
-                } catch (JSONException exception) {
-                    logger.error("Before KITKAT API, Generating tracker lastChannelObjectsReceived get JSONObject ", exception);
-                }
-            }
+            channelObjectToSave = lastIds.toJSON(getIdTag()).toString();
+            lastIdsJSON = channelObjectToSave;
         }
 
         logger.debug("OneSignal OSChannelTracker for: " + getIdTag() + " with channelObjectToSave: " + channelObjectToSave);
         saveChannelObjects(channelObjectToSave);
     }
 
+    /**
+     * Ids are parsed from the JSON cached in prefs once and then kept in memory.
+     * The cached JSON is compared with the last one read or written, a String compare instead of
+     *    parsing it, so changes made through another tracker on the same prefs are still picked up.
+     */
+    @NonNull
+    private OSInfluenceIdBuffer getLastIds() {
+        String channelObjects = getLastChannelObjects();
+        if (lastIds != null && channelObjects.equals(lastIdsJSON))
+            return lastIds;
+
+        JSONArray lastChannelObjectsReceived;
+        try {
+            lastChannelObjectsReceived = new JSONArray(channelObjects);
+        } catch (JSONException exception) {
+            logger.error("Generating tracker getLastIds JSONArray ", exception);
+            lastChannelObjectsReceived = new JSONArray();
+        }
+
+        lastIds = OSInfluenceIdBuffer.fromJSON(lastChannelObjectsReceived, getIdTag(), getChannelLimit());
+        lastIdsJSON = channelObjects;
+        return lastIds;
+    }
+
     /**
      * Get the current session based on state + if outcomes features are enabled.
      */
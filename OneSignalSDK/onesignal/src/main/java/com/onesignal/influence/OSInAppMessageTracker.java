@@ -7,8 +7,6 @@ import com.onesignal.influence.model.OSInfluence;
 import com.onesignal.influence.model.OSInfluenceChannel;
 import com.onesignal.influence.model.OSInfluenceType;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 class OSInAppMessageTracker extends OSChannelTracker {
@@ -31,36 +29,14 @@ class OSInAppMessageTracker extends OSChannelTracker {
     }
 
     @Override
-    JSONArray getLastChannelObjectsReceivedByNewId(String id) {
-        JSONArray lastChannelObjectReceived;
-        try {
-            lastChannelObjectReceived = getLastChannelObjects();
-        } catch (JSONException exception) {
-            logger.error("Generating IAM tracker getLastChannelObjects JSONObject ", exception);
-            return new JSONArray();
-        }
-
+    void onNewIdReceived(@NonNull OSInfluenceIdBuffer lastIds, @NonNull String id) {
         // For IAM we handle redisplay, we need to remove duplicates for new influence Id
-        // If min sdk is greater than KITKAT we can refactor this logic to removeObject from JSONArray
-        try {
-            JSONArray auxLastChannelObjectReceived = new JSONArray();
-            for (int i = 0; i < lastChannelObjectReceived.length(); i++) {
-                String objectId = lastChannelObjectReceived.getJSONObject(i).getString(getIdTag());
-                if (!id.equals(objectId)) {
-                    auxLastChannelObjectReceived.put(lastChannelObjectReceived.getJSONObject(i));
-                }
-            }
-            lastChannelObjectReceived = auxLastChannelObjectReceived;
-        } catch (JSONException exception) {
-            logger.error("Before KITKAT API, Generating tracker lastChannelObjectReceived get JSONObject ", exception);
-
-        }
-
-        return lastChannelObjectReceived;
+        lastIds.remove(id);
     }
 
+    @NonNull
     @Override
-    JSONArray getLastChannelObjects() throws JSONException {
+    String getLastChannelObjects() {
         return dataRepository.getLastIAMsReceivedData();
     }
 
@@ -75,7 +51,7 @@ class OSInAppMessageTracker extends OSChannelTracker {
     }
 
     @Override
-    void saveChannelObjects(JSONArray channelObjects) {
+    void saveChannelObjects(@NonNull String channelObjects) {
         dataRepository.saveIAMs(channelObjects);
     }
 
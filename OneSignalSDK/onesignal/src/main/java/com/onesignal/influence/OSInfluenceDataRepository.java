@@ -7,8 +7,6 @@ import com.onesignal.OSSharedPreferences;
 import com.onesignal.OneSignalRemoteParams;
 import com.onesignal.influence.model.OSInfluenceType;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 
 /**
  * Setter and Getter of Notifications received
@@ -110,34 +108,42 @@ class OSInfluenceDataRepository {
         );
     }
 
-    void saveNotifications(@NonNull JSONArray notifications) {
+    /**
+     * Saves the JSON array of notifications received as is, the trackers keep the parsed ids in memory
+     */
+    void saveNotifications(@NonNull String notifications) {
         preferences.saveString(
                 preferences.getPreferencesName(),
                 PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
-                notifications.toString());
+                notifications);
     }
 
-    void saveIAMs(@NonNull JSONArray iams) {
+    void saveIAMs(@NonNull String iams) {
         preferences.saveString(
                 preferences.getPreferencesName(),
                 PREFS_OS_LAST_IAMS_RECEIVED,
-                iams.toString());
+                iams);
     }
 
-    JSONArray getLastNotificationsReceivedData() throws JSONException {
+    /**
+     * Get the JSON array of notifications received without parsing it
+     */
+    @NonNull
+    String getLastNotificationsReceivedData() {
         String notificationsReceived = preferences.getString(
                 preferences.getPreferencesName(),
                 PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
                 "[]");
-        return notificationsReceived != null ? new JSONArray(notificationsReceived) : new JSONArray();
+        return notificationsReceived != null ? notificationsReceived : "[]";
     }
 
-    JSONArray getLastIAMsReceivedData() throws JSONException {
+    @NonNull
+    String getLastIAMsReceivedData() {
         String iamReceived = preferences.getString(
                 preferences.getPreferencesName(),
                 PREFS_OS_LAST_IAMS_RECEIVED,
                 "[]");
-        return iamReceived != null ? new JSONArray(iamReceived) : new JSONArray();
+        return iamReceived != null ? iamReceived : "[]";
     }
 
     int getNotificationLimit() {
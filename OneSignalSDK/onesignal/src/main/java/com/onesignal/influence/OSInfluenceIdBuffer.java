@@ -0,0 +1,174 @@
+package com.onesignal.influence;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Fixed capacity ring buffer of the last influence ids a channel received and when they were received.
+ * <br/><br/>
+ * Ids and times are kept in parallel arrays ordered oldest to newest, adding an id to a full buffer
+ *    overwrites the oldest one. Since the times are ordered the ids inside an attribution window
+ *    are found with a binary search on the window start.
+ */
+class OSInfluenceIdBuffer {
+
+    private static final String TIME = "time";
+
+    @NonNull
+    private String[] ids;
+    @NonNull
+    private long[] times;
+    // Physical index of the oldest entry
+    private int head;
+    private int size;
+
+    OSInfluenceIdBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new String[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * Builds a buffer from the JSON cached in prefs, keeping every entry even if there are more than the capacity.
+     * Entries that can't be parsed are skipped.
+     */
+    @NonNull
+    static OSInfluenceIdBuffer fromJSON(@NonNull JSONArray channelObjects, @NonNull String idTag, int capacity) {
+        OSInfluenceIdBuffer buffer = new OSInfluenceIdBuffer(Math.max(capacity, channelObjects.length()));
+        for (int i = 0; i < channelObjects.length(); i++) {
+            JSONObject channelObject = channelObjects.optJSONObject(i);
+            if (channelObject == null || !channelObject.has(idTag) || !channelObject.has(TIME))
+                continue;
+
+            buffer.add(channelObject.optString(idTag), channelObject.optLong(TIME));
+        }
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return ids.length;
+    }
+
+    @NonNull
+    String getId(int index) {
+        return ids[physicalIndex(index)];
+    }
+
+    long getTime(int index) {
+        return times[physicalIndex(index)];
+    }
+
+    /**
+     * Adds the id as the newest entry, overwriting the oldest entry if the buffer is full.
+     * If the clock went back since the newest entry the id is stored with that entry's time to keep the times ordered.
+     */
+    void add(@NonNull String id, long time) {
+        if (size > 0)
+            time = Math.max(time, getTime(size - 1));
+
+        if (size == ids.length) {
+            ids[head] = id;
+            times[head] = time;
+            head = (head + 1) % ids.length;
+            return;
+        }
+
+        int index = physicalIndex(size);
+        ids[index] = id;
+        times[index] = time;
+        size++;
+    }
+
+    /**
+     * Removes every entry with the id, keeping the order of the others
+     */
+    void remove(@NonNull String id) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int from = physicalIndex(i);
+            if (id.equals(ids[from]))
+                continue;
+
+            int to = physicalIndex(kept++);
+            ids[to] = ids[from];
+            times[to] = times[from];
+        }
+
+        for (int i = kept; i < size; i++)
+            ids[physicalIndex(i)] = null;
+        size = kept;
+    }
+
+    /**
+     * Changes the capacity, dropping the oldest entries if there are more than the new capacity
+     */
+    void resize(int capacity) {
+        capacity = Math.max(capacity, 1);
+        if (capacity == ids.length)
+            return;
+
+        int dropped = Math.max(size - capacity, 0);
+        String[] newIds = new String[capacity];
+        long[] newTimes = new long[capacity];
+        for (int i = dropped; i < size; i++) {
+            newIds[i - dropped] = getId(i);
+            newTimes[i - dropped] = getTime(i);
+        }
+
+        ids = newIds;
+        times = newTimes;
+        head = 0;
+        size -= dropped;
+    }
+
+    /**
+     * @return ids received at or after the time, oldest first
+     */
+    @NonNull
+    JSONArray idsReceivedSince(long time) {
+        JSONArray result = new JSONArray();
+        for (int i = firstIndexAtOrAfter(time); i < size; i++)
+            result.put(getId(i));
+        return result;
+    }
+
+    @NonNull
+    JSONArray toJSON(@NonNull String idTag) {
+        JSONArray channelObjects = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            try {
+                channelObjects.put(new JSONObject()
+                        .put(idTag, getId(i))
+                        .put(TIME, getTime(i)));
+            } catch (JSONException exception) {
+                // Keys are not null and values are never NaN or infinite
+            }
+        }
+        return channelObjects;
+    }
+
+    // Lower bound binary search over the ordered times
+    private int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTime(middle) < time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private int physicalIndex(int index) {
+        return (head + index) % ids.length;
+    }
+}
@@ -7,7 +7,6 @@ import com.onesignal.influence.model.OSInfluence;
 import com.onesignal.influence.model.OSInfluenceChannel;
 import com.onesignal.influence.model.OSInfluenceType;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -27,18 +26,9 @@ class OSNotificationTracker extends OSChannelTracker {
         return NOTIFICATION_ID;
     }
 
+    @NonNull
     @Override
-    JSONArray getLastChannelObjectsReceivedByNewId(String id) {
-        try {
-            return getLastChannelObjects();
-        } catch (JSONException exception) {
-            logger.error("Generating Notification tracker getLastChannelObjects JSONObject ", exception);
-            return new JSONArray();
-        }
-    }
-
-    @Override
-    JSONArray getLastChannelObjects() throws JSONException {
+    String getLastChannelObjects() {
         return dataRepository.getLastNotificationsReceivedData();
     }
 
@@ -58,7 +48,7 @@ class OSNotificationTracker extends OSChannelTracker {
     }
 
     @Override
-    void saveChannelObjects(JSONArray channelObjects) {
+    void saveChannelObjects(@NonNull String channelObjects) {
         dataRepository.saveNotifications(channelObjects);
     }
 
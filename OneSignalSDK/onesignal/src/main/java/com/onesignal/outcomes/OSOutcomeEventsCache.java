@@ -70,6 +70,25 @@ class OSOutcomeEventsCache {
                 OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + " = ?", new String[]{String.valueOf(event.getTimestamp())});
     }
 
+    /**
+     * Delete a batch of events from the DB with a single statement, and so a single transaction
+     */
+    @WorkerThread
+    synchronized void deleteOldOutcomeEvents(List<OSOutcomeEventParams> events) {
+        if (events.isEmpty())
+            return;
+
+        StringBuilder where = new StringBuilder(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + " IN (");
+        String[] whereArgs = new String[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            where.append(i == 0 ? "?" : ", ?");
+            whereArgs[i] = String.valueOf(events.get(i).getTimestamp());
+        }
+        where.append(")");
+
+        dbHelper.delete(OutcomeEventsTable.TABLE_NAME, where.toString(), whereArgs);
+    }
+
     /**
      * Save an outcome event to send it on the future
      * <p>
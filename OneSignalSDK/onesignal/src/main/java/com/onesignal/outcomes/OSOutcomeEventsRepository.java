@@ -6,8 +6,11 @@ import com.onesignal.influence.model.OSInfluence;
 import com.onesignal.outcomes.domain.OutcomeEventsService;
 import com.onesignal.outcomes.model.OSOutcomeEventParams;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 abstract class OSOutcomeEventsRepository implements com.onesignal.outcomes.domain.OSOutcomeEventsRepository {
 
@@ -38,6 +41,45 @@ abstract class OSOutcomeEventsRepository implements com.onesignal.outcomes.domai
         outcomeEventsCache.deleteOldOutcomeEvent(outcomeEvent);
     }
 
+    public void removeEvents(List<OSOutcomeEventParams> outcomeEvents) {
+        outcomeEventsCache.deleteOldOutcomeEvents(outcomeEvents);
+    }
+
+    /**
+     * Sends every event of the batch and calls batchResponseHandler once all of them got a response
+     */
+    public void requestMeasureOutcomeEvents(String appId, int deviceType, List<OSOutcomeEventParams> events, final BatchResponseHandler batchResponseHandler) {
+        final List<OSOutcomeEventParams> sentEvents = Collections.synchronizedList(new ArrayList<OSOutcomeEventParams>());
+        final List<OSOutcomeEventParams> failedEvents = Collections.synchronizedList(new ArrayList<OSOutcomeEventParams>());
+        final AtomicInteger pendingResponses = new AtomicInteger(events.size());
+
+        if (events.isEmpty()) {
+            batchResponseHandler.onComplete(sentEvents, failedEvents);
+            return;
+        }
+
+        for (final OSOutcomeEventParams event : events) {
+            requestMeasureOutcomeEvent(appId, deviceType, event, new OneSignalApiResponseHandler() {
+                @Override
+                public void onSuccess(String response) {
+                    sentEvents.add(event);
+                    onResponse();
+                }
+
+                @Override
+                public void onFailure(int statusCode, String response, Throwable throwable) {
+                    failedEvents.add(event);
+                    onResponse();
+                }
+
+                private void onResponse() {
+                    if (pendingResponses.decrementAndGet() == 0)
+                        batchResponseHandler.onComplete(new ArrayList<>(sentEvents), new ArrayList<>(failedEvents));
+                }
+            });
+        }
+    }
+
     public void saveUniqueOutcomeNotifications(OSOutcomeEventParams eventParams) {
         outcomeEventsCache.saveUniqueOutcomeEventParams(eventParams);
     }
@@ -9,14 +9,25 @@ import java.util.Set;
 
 public interface OSOutcomeEventsRepository {
 
+    interface BatchResponseHandler {
+        /**
+         * Called once every event in the batch got a response
+         */
+        void onComplete(List<OSOutcomeEventParams> sentEvents, List<OSOutcomeEventParams> failedEvents);
+    }
+
     List<OSOutcomeEventParams> getSavedOutcomeEvents();
 
     void saveOutcomeEvent(OSOutcomeEventParams event);
 
     void removeEvent(OSOutcomeEventParams outcomeEvent);
 
+    void removeEvents(List<OSOutcomeEventParams> outcomeEvents);
+
     void requestMeasureOutcomeEvent(String appId, int deviceType, OSOutcomeEventParams event, OneSignalApiResponseHandler responseHandler);
 
+    void requestMeasureOutcomeEvents(String appId, int deviceType, List<OSOutcomeEventParams> events, BatchResponseHandler batchResponseHandler);
+
     void saveUniqueOutcomeNotifications(OSOutcomeEventParams eventParams);
 
     List<OSInfluence> getNotCachedUniqueOutcome(String name, List<OSInfluence> influences);
@@ -0,0 +1,230 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server on localhost used as a stand-in for api.onesignal.com.
+ * Every accepted socket is served until the client closes it so keep-alive behavior can be asserted.
+ */
+public class MockHttpServer {
+
+   public static class RecordedRequest {
+      public String method;
+      public String path;
+      public Map<String, String> headers = new HashMap<>();
+      public byte[] body;
+   }
+
+   public String responseBody = "{}";
+   public int status = 200;
+   public Map<String, String> responseHeaders = new HashMap<>();
+   // Gzip the response body when the request sends Accept-Encoding: gzip
+   public boolean gzipResponses;
+
+   private final ServerSocket serverSocket;
+   private final AtomicInteger acceptedSockets = new AtomicInteger();
+   private final List<RecordedRequest> requests = Collections.synchronizedList(new ArrayList<RecordedRequest>());
+   private final List<Socket> openSockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+   public MockHttpServer() throws IOException {
+      serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+      Thread acceptThread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            acceptLoop();
+         }
+      }, "MockHttpServer_Accept");
+      acceptThread.setDaemon(true);
+      acceptThread.start();
+   }
+
+   public String getBaseUrl() {
+      return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+   }
+
+   public int getAcceptedSocketCount() {
+      return acceptedSockets.get();
+   }
+
+   public List<RecordedRequest> getRequests() {
+      synchronized (requests) {
+         return new ArrayList<>(requests);
+      }
+   }
+
+   public void shutdown() throws IOException {
+      serverSocket.close();
+      synchronized (openSockets) {
+         for (Socket socket : openSockets)
+            socket.close();
+      }
+   }
+
+   private void acceptLoop() {
+      while (!serverSocket.isClosed()) {
+         try {
+            final Socket socket = serverSocket.accept();
+            acceptedSockets.incrementAndGet();
+            openSockets.add(socket);
+            Thread connectionThread = new Thread(new Runnable() {
+               @Override
+               public void run() {
+                  serve(socket);
+               }
+            }, "MockHttpServer_Connection");
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+         } catch (IOException e) {
+            // Server was shutdown
+         }
+      }
+   }
+
+   private void serve(Socket socket) {
+      try {
+         InputStream in = socket.getInputStream();
+         OutputStream out = socket.getOutputStream();
+         RecordedRequest request;
+         while ((request = readRequest(in)) != null) {
+            requests.add(request);
+            writeResponse(out, request);
+         }
+      } catch (IOException e) {
+         // Client closed the connection
+      } finally {
+         try {
+            socket.close();
+         } catch (IOException e) { }
+      }
+   }
+
+   private static String readLine(InputStream in) throws IOException {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int b;
+      while ((b = in.read()) != -1) {
+         if (b == '\n')
+            return line.toString("UTF-8").trim();
+         line.write(b);
+      }
+      return line.size() == 0 ? null : line.toString("UTF-8").trim();
+   }
+
+   private static RecordedRequest readRequest(InputStream in) throws IOException {
+      String requestLine = readLine(in);
+      if (requestLine == null || requestLine.isEmpty())
+         return null;
+
+      RecordedRequest request = new RecordedRequest();
+      String[] parts = requestLine.split(" ");
+      request.method = parts[0];
+      request.path = parts.length > 1 ? parts[1] : "";
+
+      String header;
+      while ((header = readLine(in)) != null && !header.isEmpty()) {
+         int separator = header.indexOf(':');
+         if (separator > 0)
+            request.headers.put(header.substring(0, separator).trim().toLowerCase(Locale.US), header.substring(separator + 1).trim());
+      }
+
+      int contentLength = 0;
+      if (request.headers.containsKey("content-length"))
+         contentLength = Integer.parseInt(request.headers.get("content-length"));
+
+      byte[] body = new byte[contentLength];
+      int read = 0;
+      while (read < contentLength) {
+         int count = in.read(body, read, contentLength - read);
+         if (count == -1)
+            throw new IOException("Connection closed before request body was read");
+         read += count;
+      }
+      request.body = body;
+      return request;
+   }
+
+   private void writeResponse(OutputStream out, RecordedRequest request) throws IOException {
+      byte[] body = responseBody == null ? new byte[0] : responseBody.getBytes(StandardCharsets.UTF_8);
+      String acceptEncoding = request.headers.get("accept-encoding");
+      boolean gzipBody = gzipResponses && acceptEncoding != null && acceptEncoding.contains("gzip");
+      if (gzipBody)
+         body = gzip(body);
+
+      StringBuilder response = new StringBuilder();
+      response.append("HTTP/1.1 ").append(status).append(" Mock\r\n");
+      response.append("Content-Type: application/json\r\n");
+      if (gzipBody)
+         response.append("Content-Encoding: gzip\r\n");
+      response.append("Content-Length: ").append(body.length).append("\r\n");
+      for (Map.Entry<String, String> header : responseHeaders.entrySet())
+         response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+      response.append("\r\n");
+
+      out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+      out.write(body);
+      out.flush();
+   }
+
+   public static byte[] gzip(byte[] bytes) throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+      gzipStream.write(bytes);
+      gzipStream.close();
+      return outputStream.toByteArray();
+   }
+
+   public static byte[] gunzip(byte[] bytes) throws IOException {
+      GZIPInputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4_096];
+      int read;
+      while ((read = gzipStream.read(buffer)) != -1)
+         outputStream.write(buffer, 0, read);
+      gzipStream.close();
+      return outputStream.toByteArray();
+   }
+}
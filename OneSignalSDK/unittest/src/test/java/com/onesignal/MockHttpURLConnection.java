@@ -35,12 +35,15 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class MockHttpURLConnection extends HttpURLConnection {
-   private boolean didInterruptMockHang;
+   private volatile boolean didDisconnectMockHang;
+   private final CountDownLatch disconnected = new CountDownLatch(1);
 
-   public boolean getDidInterruptMockHang() {
-      return didInterruptMockHang;
+   public boolean getDidDisconnectMockHang() {
+      return didDisconnectMockHang;
    }
 
    public static class MockResponse {
@@ -60,7 +63,7 @@ public class MockHttpURLConnection extends HttpURLConnection {
 
    @Override
    public void disconnect() {
-
+      disconnected.countDown();
    }
 
    @Override
@@ -81,11 +84,17 @@ public class MockHttpURLConnection extends HttpURLConnection {
    @Override
    public int getResponseCode() throws IOException {
       if (mockResponse.mockThreadHang) {
+         // Like a socket read, only closing the connection unblocks it
+         boolean wasDisconnected = false;
          try {
-            Thread.sleep(120_000);
+            wasDisconnected = disconnected.await(120_000, TimeUnit.MILLISECONDS);
          } catch (InterruptedException e) {
-            didInterruptMockHang = true;
-            throw new IOException("Successfully interrupted stuck thread!");
+            Thread.currentThread().interrupt();
+         }
+
+         if (wasDisconnected) {
+            didDisconnectMockHang = true;
+            throw new IOException("Successfully disconnected stuck connection!");
          }
       }
 
@@ -94,6 +103,9 @@ public class MockHttpURLConnection extends HttpURLConnection {
 
    @Override
    public InputStream getInputStream() throws IOException {
+      if (mockResponse.responseBody == null)
+         return new ByteArrayInputStream(new byte[0]);
+
       return new ByteArrayInputStream(StandardCharsets.UTF_8.encode(mockResponse.responseBody).array());
    }
 
@@ -11,6 +11,7 @@ public class MockOneSignalAPIClient implements OneSignalAPIClient {
 
     private boolean success;
     private JSONObject lastJsonObjectSent = new JSONObject();
+    private int postCount;
 
     /**
      */
@@ -26,6 +27,14 @@ public class MockOneSignalAPIClient implements OneSignalAPIClient {
         return lastJsonObjectSent.toString();
     }
 
+    public int getPostCount() {
+        return postCount;
+    }
+
+    public void resetPostCount() {
+        postCount = 0;
+    }
+
     @Override
     public void put(String url, JSONObject jsonBody, OneSignalApiResponseHandler responseHandler) {
         lastJsonObjectSent = jsonBody;
@@ -38,6 +47,7 @@ public class MockOneSignalAPIClient implements OneSignalAPIClient {
     @Override
     public void post(String url, JSONObject jsonBody, OneSignalApiResponseHandler responseHandler) {
         lastJsonObjectSent = jsonBody;
+        postCount++;
         if (success)
             responseHandler.onSuccess("");
         else
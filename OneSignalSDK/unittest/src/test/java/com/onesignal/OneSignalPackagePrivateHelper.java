@@ -1,13 +1,17 @@
 package com.onesignal;
 
 import android.app.Activity;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.JsonReader;
 
 import com.onesignal.influence.OSTrackerFactory;
 
@@ -16,8 +20,14 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.robolectric.util.Scheduler;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +36,7 @@ import static org.robolectric.Shadows.shadowOf;
 
 public class OneSignalPackagePrivateHelper {
    public static final String IN_APP_MESSAGES_JSON_KEY = com.onesignal.OSInAppMessageController.IN_APP_MESSAGES_JSON_KEY;
+   public static final int OSOutcomeEventsController_SAVED_OUTCOMES_BATCH_SIZE = com.onesignal.OSOutcomeEventsController.SAVED_OUTCOMES_BATCH_SIZE;
 
    private static abstract class RunnableArg<T> {
       abstract void run(T object) throws Exception;
@@ -103,6 +114,50 @@ public class OneSignalPackagePrivateHelper {
       return true;
    }
 
+   public static boolean isIdleRestClientThread(Thread thread) {
+      return OSRestClientExecutor.isIdlePoolThread(thread);
+   }
+
+   public static boolean isIdleSchedulerThread(Thread thread) {
+      return OSTaskScheduler.isIdlePoolThread(thread);
+   }
+
+   public static void OSTaskScheduler_execute(String lane, Runnable task) {
+      OSTaskScheduler.execute(OSTaskScheduler.Lane.valueOf(lane), task);
+   }
+
+   public static void OSTaskScheduler_schedule(String lane, Runnable task, long delayMs) {
+      OSTaskScheduler.schedule(OSTaskScheduler.Lane.valueOf(lane), task, delayMs);
+   }
+
+   public static String OSTaskScheduler_threadPrefix(String lane) {
+      return OSTaskScheduler.Lane.valueOf(lane).threadPrefix;
+   }
+
+   public static int OSTaskScheduler_poolSize(String lane) {
+      return OSTaskScheduler.Lane.valueOf(lane).poolSize;
+   }
+
+   public static int OSTaskScheduler_getQueueLength(String lane) {
+      return OSTaskScheduler.getQueueLength(OSTaskScheduler.Lane.valueOf(lane));
+   }
+
+   public static long OSTaskScheduler_getCompletedTaskCount(String lane) {
+      return OSTaskScheduler.getCompletedTaskCount(OSTaskScheduler.Lane.valueOf(lane));
+   }
+
+   public static int OSTaskScheduler_getLargestThreadCount(String lane) {
+      return OSTaskScheduler.getLargestThreadCount(OSTaskScheduler.Lane.valueOf(lane));
+   }
+
+   public static int getLargestRestClientNetworkThreadCount() {
+      return OSRestClientExecutor.getLargestNetworkThreadCount();
+   }
+
+   public static int getLargestRestClientCallbackThreadCount() {
+      return OSRestClientExecutor.getLargestCallbackThreadCount();
+   }
+
    public static void OneSignal_sendPurchases(JSONArray purchases, boolean newAsExisting, OneSignalRestClient.ResponseHandler responseHandler) {
       OneSignal.sendPurchases(purchases, newAsExisting, responseHandler);
    }
@@ -123,6 +178,87 @@ public class OneSignalPackagePrivateHelper {
       OneSignal.setTrackerFactory(trackerFactory);
    }
 
+   public static boolean OSNotificationDedupIndex_isDuplicate(Context context, String id) {
+      return OSNotificationDedupIndex.getInstance(context).isDuplicate(id);
+   }
+
+   public static long OSNotificationDedupIndex_getRecentHits(Context context) {
+      return OSNotificationDedupIndex.getInstance(context).getRecentHits();
+   }
+
+   public static long OSNotificationDedupIndex_getFilterMisses(Context context) {
+      return OSNotificationDedupIndex.getInstance(context).getFilterMisses();
+   }
+
+   public static long OSNotificationDedupIndex_getDbHits(Context context) {
+      return OSNotificationDedupIndex.getInstance(context).getDbHits();
+   }
+
+   public static boolean NotificationIngestQueue_ingest(Context context, String notificationId, int androidNotificationId) {
+      ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, notificationId);
+      values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, androidNotificationId);
+      values.put(NotificationTable.COLUMN_NAME_OPENED, 0);
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, "{\"custom\":{\"i\":\"" + notificationId + "\"}}");
+      return NotificationIngestQueue.ingest(context, new NotificationIngestQueue.Entry(notificationId, androidNotificationId, values, true));
+   }
+
+   public static long NotificationIngestQueue_getCommittedBatches() {
+      return NotificationIngestQueue.getCommittedBatches();
+   }
+
+   public static int NotificationIngestQueue_getPendingCount() {
+      return NotificationIngestQueue.getPendingCount();
+   }
+
+   public static String NotificationPayloadCodec_read(Cursor cursor) {
+      return NotificationPayloadCodec.read(cursor);
+   }
+
+   public static void NotificationPayloadCodec_put(ContentValues values, String fullData) {
+      NotificationPayloadCodec.put(values, fullData);
+   }
+
+   public static String[] NotificationPayloadCodec_columns() {
+      return NotificationPayloadCodec.COLUMNS;
+   }
+
+   public static String[] NotificationRestorer_columnsForRestore() {
+      return com.onesignal.NotificationRestorer.COLUMNS_FOR_RESTORE;
+   }
+
+   public static void OneSignalDbHelper_createNotificationTable(SQLiteDatabase db) {
+      db.execSQL(OneSignalDbHelper.SQL_CREATE_ENTRIES);
+      for (String index : OneSignalDbHelper.SQL_INDEX_ENTRIES)
+         db.execSQL(index);
+   }
+
+   public static boolean OneSignalDbHelper_isWriteAheadLoggingEnabled(Context context) {
+      return OneSignalDbHelper.getInstance(context).getWritableDatabase().isWriteAheadLoggingEnabled();
+   }
+
+   public static long OneSignalDbHelper_simpleQueryForLong(Context context, String sql, String[] selectionArgs) {
+      return OneSignalDbHelper.getInstance(context).simpleQueryForLong(sql, selectionArgs);
+   }
+
+   public static boolean OneSignalDbHelper_insertInTransaction(Context context, final String table, final ContentValues values) {
+      return OneSignalDbHelper.getInstance(context).runInTransaction(table, new OneSignalDbHelper.TransactionBody() {
+         @Override
+         public void run(@NonNull SQLiteDatabase writableDb) {
+            writableDb.insertOrThrow(table, null, values);
+         }
+      });
+   }
+
+   public static void NotificationRestoreEngine_restoreBatch(Context context, Intent intent) {
+      NotificationRestoreEngine.restoreBatch(context, NotificationRestoreEngine.getBatch(context, intent.getExtras()));
+   }
+
+   public static int NotificationRestoreEngine_getLastRestoredCount() {
+      NotificationRestoreEngine.RestoreMetrics metrics = NotificationRestoreEngine.getLastMetrics();
+      return metrics == null ? 0 : metrics.notificationCount;
+   }
+
    public static JSONObject bundleAsJSONObject(Bundle bundle) {
       return NotificationBundleProcessor.bundleAsJSONObject(bundle);
    }
@@ -163,6 +299,55 @@ public class OneSignalPackagePrivateHelper {
 
    public static class NotificationTable extends OneSignalDbContract.NotificationTable { }
    public static class InAppMessageTable extends OneSignalDbContract.InAppMessageTable { }
+   public static JSONArray UserStateSynchronizer_parseSessionResponseInAppMessages(String response) throws IOException, JSONException {
+      return UserStateSynchronizer.SessionResponse.parse(new JsonReader(new StringReader(response))).inAppMessages;
+   }
+
+   /**
+    * Makes a postSync whose response is streamed into a SessionResponse the same way on_session does
+    * @return the parsed in_app_messages, or null if the request failed
+    */
+   public static JSONArray OneSignalRestClient_postSyncStreamingSessionResponse(String url, JSONObject jsonBody) {
+      final JSONArray[] inAppMessages = new JSONArray[1];
+      com.onesignal.OneSignalRestClient.postSync(url, jsonBody, new com.onesignal.OneSignalRestClient.StreamingResponseHandler<UserStateSynchronizer.SessionResponse>() {
+         @Override
+         UserStateSynchronizer.SessionResponse parseResponse(@NonNull JsonReader reader) throws IOException, JSONException {
+            return UserStateSynchronizer.SessionResponse.parse(reader);
+         }
+
+         @Override
+         void onSuccess(UserStateSynchronizer.SessionResponse parsedResponse) {
+            inAppMessages[0] = parsedResponse.inAppMessages;
+         }
+      });
+      return inAppMessages[0];
+   }
+
+   public static class OutboxTable extends OneSignalDbContract.OutboxTable { }
+
+   public static class OSTestRequestOutbox {
+      public static final int MAX_ATTEMPTS = OSRequestOutbox.MAX_ATTEMPTS;
+      public static final long MAX_BACKOFF_MS = OSRequestOutbox.MAX_BACKOFF_MS;
+      public static final long MAX_REQUEST_AGE_MS = OSRequestOutbox.MAX_REQUEST_AGE_MS;
+
+      private final OSRequestOutbox outbox;
+
+      public OSTestRequestOutbox(OneSignalDb db) {
+         outbox = new OSRequestOutbox(db);
+      }
+
+      public void saveRequest(String url, String method, JSONObject jsonBody, OneSignalRestClient.ResponseHandler responseHandler) {
+         outbox.saveRequest(url, method, jsonBody, responseHandler);
+      }
+
+      public void sendDueRequests() {
+         outbox.sendDueRequests();
+      }
+
+      public long getBackoffMs(int attempts) {
+         return outbox.getBackoffMs(attempts);
+      }
+   }
    public static class NotificationRestorer extends com.onesignal.NotificationRestorer { }
    public static class NotificationGenerationJob extends com.onesignal.NotificationGenerationJob {
       NotificationGenerationJob(Context context) {
@@ -181,6 +366,26 @@ public class OneSignalPackagePrivateHelper {
    public static class PushRegistratorGCM extends com.onesignal.PushRegistratorGCM {}
 
    public static class OneSignalRestClient extends com.onesignal.OneSignalRestClient {
+      public static void setConnectionReuse(boolean enabled) {
+         com.onesignal.OneSignalRestClient.setConnectionReuse(enabled);
+      }
+
+      public static void setRequestCompression(boolean enabled) {
+         com.onesignal.OneSignalRestClient.setRequestCompression(enabled);
+      }
+
+      public static long getTotalBytesSent() {
+         return com.onesignal.OneSignalRestClient.getTotalBytesSent();
+      }
+
+      public static long getTotalBytesReceived() {
+         return com.onesignal.OneSignalRestClient.getTotalBytesReceived();
+      }
+
+      public static String readResponseBody(InputStream inputStream, int contentLength) throws IOException {
+         return com.onesignal.OneSignalRestClient.readResponseBody(inputStream, contentLength);
+      }
+
       public static abstract class ResponseHandler extends com.onesignal.OneSignalRestClient.ResponseHandler {
          @Override
          public void onSuccess(String response) {}
@@ -209,6 +414,49 @@ public class OneSignalPackagePrivateHelper {
 
    public class TestOneSignalPrefs extends com.onesignal.OneSignalPrefs {}
 
+   public static String OneSignalPrefs_getString(String prefsName, String key, String defValue) {
+      return OneSignalPrefs.getString(prefsName, key, defValue);
+   }
+
+   public static long OneSignalPrefs_getLong(String prefsName, String key, long defValue) {
+      return OneSignalPrefs.getLong(prefsName, key, defValue);
+   }
+
+   public static String OSBlobStore_read(Context context, String key) throws IOException {
+      return new OSBlobStore(OSBlobStore.getDirectory(context)).read(key);
+   }
+
+   public static void OSBlobStore_write(Context context, String key, String value) throws IOException {
+      new OSBlobStore(OSBlobStore.getDirectory(context)).write(key, value);
+   }
+
+   public static List<String> OSBlobStore_readLog(Context context, String key) throws IOException {
+      return new OSBlobStore(OSBlobStore.getDirectory(context)).readLog(key);
+   }
+
+   // Loads the user state as it would be on the next app start
+   public static JSONObject UserStatePush_loadPersistedSyncValues(String persistKey) {
+      return new UserStatePush(persistKey, true).syncValues;
+   }
+
+   public static class TestUserStatePush {
+      private final UserStatePush userState;
+
+      public TestUserStatePush(String persistKey, boolean load) {
+         userState = new UserStatePush(persistKey, load);
+      }
+
+      public JSONObject getSyncValues() {
+         return userState.syncValues;
+      }
+
+      public void persistState() {
+         userState.persistState();
+      }
+   }
+
+   public static final int UserState_MAX_CHANGE_LOG_ENTRIES = UserState.MAX_CHANGE_LOG_ENTRIES;
+
    public static void OneSignal_onAppLostFocus() {
       OneSignal.onAppLostFocus();
    }
@@ -248,6 +496,23 @@ public class OneSignalPackagePrivateHelper {
       public static void update(OneSignalDb db, Context context) {
          com.onesignal.BadgeCountUpdater.update(db, context);
       }
+
+      public static void updateCount(int count, Context context) {
+         com.onesignal.BadgeCountUpdater.updateCount(count, context);
+      }
+
+      public static int getReconcileCount() {
+         return com.onesignal.BadgeCountUpdater.getReconcileCount();
+      }
+
+      public static int getAppliedBroadcasts() {
+         return com.onesignal.BadgeCountUpdater.getAppliedBroadcasts();
+      }
+
+      public static void runPendingApply() {
+         Scheduler scheduler = shadowOf(com.onesignal.BadgeCountUpdater.getApplyHandler().getLooper()).getScheduler();
+         while (scheduler.runOneTask());
+      }
    }
 
    public static class NotificationLimitManager extends com.onesignal.NotificationLimitManager {
@@ -429,6 +694,139 @@ public class OneSignalPackagePrivateHelper {
       }
    }
 
+   public static class OSTestDynamicTriggerController {
+      private final OSDynamicTriggerController controller;
+
+      public OSTestDynamicTriggerController(final Runnable onTriggerFired) {
+         controller = new OSDynamicTriggerController(new OSDynamicTriggerController.OSDynamicTriggerControllerObserver() {
+            @Override
+            public void messageTriggerConditionChanged() {
+               onTriggerFired.run();
+            }
+         });
+      }
+
+      public boolean dynamicTriggerShouldFire(OSTestTrigger trigger) {
+         return controller.dynamicTriggerShouldFire(trigger);
+      }
+
+      public int getScheduledTriggerCount() {
+         return controller.getScheduledTriggerCount();
+      }
+
+      public void cancelScheduledTriggers() {
+         controller.cancelScheduledTriggers();
+      }
+   }
+
+   public static List<Integer> OSInAppMessageTriggerIndex_messagesToEvaluate(List<OSTestInAppMessage> messages, Collection<String> changedKeys) {
+      BitSet positions = new OSInAppMessageTriggerIndex(new ArrayList<com.onesignal.OSInAppMessage>(messages)).messagesToEvaluate(changedKeys);
+      List<Integer> result = new ArrayList<>();
+      for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1))
+         result.add(position);
+      return result;
+   }
+
+   public static class OSTestInAppMessageHtmlCache {
+      private final OSInAppMessageHtmlCache cache;
+
+      public OSTestInAppMessageHtmlCache(File directory, int maxMemorySize, int maxDiskSize) {
+         cache = new OSInAppMessageHtmlCache(directory, maxMemorySize, maxDiskSize);
+      }
+
+      public static String keyFor(String messageId, String variantId, String language) {
+         return OSInAppMessageHtmlCache.keyFor(messageId, variantId, language);
+      }
+
+      public void put(String key, String response, String eTag) {
+         cache.put(key, response, eTag);
+      }
+
+      public String getResponse(String key) {
+         OSInAppMessageHtmlCache.Entry entry = cache.get(key);
+         return entry == null ? null : entry.response;
+      }
+
+      public String getETag(String key) {
+         OSInAppMessageHtmlCache.Entry entry = cache.get(key);
+         return entry == null ? null : entry.eTag;
+      }
+
+      public void retainMessages(Collection<String> messageIds) {
+         cache.retainMessages(messageIds);
+      }
+
+      public int getMemoryEntryCount() {
+         return cache.getMemoryEntryCount();
+      }
+
+      public long getDiskSize() {
+         return cache.getDiskSize();
+      }
+   }
+
+   public static class OSTestNotificationImageLoader {
+      private final OSNotificationImageLoader loader;
+
+      public OSTestNotificationImageLoader(File directory, int maxMemorySize, int maxDiskSize) {
+         loader = new OSNotificationImageLoader(directory, maxMemorySize, maxDiskSize);
+      }
+
+      public static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+         return OSNotificationImageLoader.calculateInSampleSize(width, height, targetWidth, targetHeight);
+      }
+
+      public Bitmap load(String url, int targetWidth, int targetHeight) {
+         return loader.load(new OSNotificationImageLoader.ImageRequest(url, targetWidth, targetHeight));
+      }
+
+      public Map<String, Bitmap> loadAll(List<String> urls, int targetWidth, int targetHeight) {
+         List<OSNotificationImageLoader.ImageRequest> requests = new ArrayList<>();
+         for (String url : urls)
+            requests.add(new OSNotificationImageLoader.ImageRequest(url, targetWidth, targetHeight));
+         return loader.loadAll(requests);
+      }
+
+      public Map<String, Bitmap> loadAllAtSizes(String url, int... targetSizes) {
+         List<OSNotificationImageLoader.ImageRequest> requests = new ArrayList<>();
+         for (int targetSize : targetSizes)
+            requests.add(new OSNotificationImageLoader.ImageRequest(url, targetSize, targetSize));
+         return loader.loadAll(requests);
+      }
+
+      public void clearMemoryCache() {
+         loader.clearMemoryCache();
+      }
+
+      public long getDownloadCount() {
+         return loader.getDownloadCount();
+      }
+
+      public long getDiskHitCount() {
+         return loader.getDiskHitCount();
+      }
+
+      public long getMemoryHitCount() {
+         return loader.getMemoryHitCount();
+      }
+   }
+
+   public static boolean OSInAppMessageController_lastDisplayUsedCachedHtml() {
+      return com.onesignal.OSInAppMessageController.getController().getLastDisplayUsedCachedHtml();
+   }
+
+   public static long OSInAppMessageController_lastTimeToDisplay() {
+      return com.onesignal.OSInAppMessageController.getController().getLastTimeToDisplay();
+   }
+
+   public static int OSDynamicTriggerTimer_getPendingCount() {
+      return OSDynamicTriggerTimer.getPendingCount();
+   }
+
+   public static String OSDynamicTriggerTimer_threadNamePrefix() {
+      return OSDynamicTriggerTimer.THREAD_NAME_PREFIX;
+   }
+
    public static class OSTestInAppMessageAction extends com.onesignal.OSInAppMessageAction {
       public boolean closes() {
          return closesMessage;
@@ -514,8 +912,9 @@ public class OneSignalPackagePrivateHelper {
 
 
    public static class JSONUtils extends com.onesignal.JSONUtils {
-
-
+      public static JSONObject generateJsonDiff(JSONObject cur, JSONObject changedTo, JSONObject baseOutput, Set<String> includeFields) {
+         return com.onesignal.JSONUtils.generateJsonDiff(cur, changedTo, baseOutput, includeFields);
+      }
    }
 
    public static class GenerateNotification extends com.onesignal.GenerateNotification {}
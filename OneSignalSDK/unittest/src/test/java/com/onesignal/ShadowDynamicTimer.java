@@ -4,8 +4,9 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Implements(OSDynamicTriggerTimer.class)
 public class ShadowDynamicTimer {
@@ -20,8 +21,8 @@ public class ShadowDynamicTimer {
     private static long mostRecentlyScheduledTimerDelay = 0;
 
     // Timers are recorded and force stopped after test to ensure they don't carry over.
-    private static ArrayList<Timer> timers = new ArrayList<>();
-    private static ArrayList<TimerTask> timerTasks = new ArrayList<>();
+    private static ScheduledThreadPoolExecutor executor;
+    private static ArrayList<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
 
     public static void resetStatics() {
         cancelTimers();
@@ -30,27 +31,29 @@ public class ShadowDynamicTimer {
         mostRecentlyScheduledTimerDelay = 0;
     }
     private static void cancelTimers() {
-        for (Timer timer : timers)
-            timer.cancel();
-        timers = new ArrayList<>();
+        for (ScheduledFuture<?> scheduledTask : scheduledTasks)
+            scheduledTask.cancel(false);
+        scheduledTasks = new ArrayList<>();
 
-        for(TimerTask timerTask : timerTasks)
-            timerTask.cancel();
-        timerTasks = new ArrayList<>();
+        if (executor != null)
+            executor.shutdownNow();
+        executor = null;
     }
 
     /** Allows us to see when the OSDynamicTriggerController schedules a timer */
     @Implementation
-    public static void scheduleTrigger(TimerTask task, String triggerId, long delay) {
+    public static ScheduledFuture<?> scheduleTrigger(Runnable task, String triggerId, long delay) {
         mostRecentlyScheduledTimerDelay = delay;
 
-        if (shouldScheduleTimers) {
-            hasScheduledTimer = true;
-            Timer timer = new Timer("trigger_test:" + triggerId);
-            timer.schedule(task, delay);
-            timers.add(timer);
-            timerTasks.add(task);
-        }
+        if (!shouldScheduleTimers)
+            return null;
+
+        hasScheduledTimer = true;
+        if (executor == null)
+            executor = new ScheduledThreadPoolExecutor(1);
+        ScheduledFuture<?> scheduledTask = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        scheduledTasks.add(scheduledTask);
+        return scheduledTask;
     }
 
     public static double mostRecentTimerDelaySeconds() {
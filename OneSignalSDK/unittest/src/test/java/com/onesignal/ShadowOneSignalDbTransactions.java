@@ -0,0 +1,104 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.onesignal;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.robolectric.shadow.api.Shadow.directlyOn;
+
+// Runs the real transaction, optionally held open or rolled back after its body wrote its rows
+@Implements(OneSignalDbHelper.class)
+public class ShadowOneSignalDbTransactions {
+
+   @RealObject
+   private OneSignalDbHelper realInstance;
+
+   // Number of upcoming transactions to roll back
+   public static int rollbacks;
+   // When set the next transaction counts down transactionStarted, then waits on it before running its body
+   public static CountDownLatch holdTransaction;
+   public static CountDownLatch transactionStarted;
+
+   public static synchronized void resetStatics() {
+      rollbacks = 0;
+      holdTransaction = null;
+      transactionStarted = null;
+   }
+
+   public static synchronized void holdNextTransaction() {
+      holdTransaction = new CountDownLatch(1);
+      transactionStarted = new CountDownLatch(1);
+   }
+
+   @Implementation
+   public boolean runInTransaction(@NonNull String table, @NonNull final OneSignalDbHelper.TransactionBody body) {
+      final CountDownLatch hold;
+      final CountDownLatch started;
+      final boolean rollback;
+      synchronized (ShadowOneSignalDbTransactions.class) {
+         hold = holdTransaction;
+         started = transactionStarted;
+         holdTransaction = null;
+         rollback = rollbacks > 0;
+         if (rollback)
+            rollbacks--;
+      }
+
+      OneSignalDbHelper.TransactionBody wrapped = new OneSignalDbHelper.TransactionBody() {
+         @Override
+         public void run(@NonNull SQLiteDatabase writableDb) {
+            if (hold != null) {
+               started.countDown();
+               try {
+                  hold.await();
+               } catch (InterruptedException e) {
+                  throw new SQLiteException("Interrupted while held");
+               }
+            }
+
+            body.run(writableDb);
+            if (rollback)
+               throw new SQLiteException("Rolled back by test");
+         }
+      };
+
+      return directlyOn(realInstance, OneSignalDbHelper.class, "runInTransaction",
+         ClassParameter.from(String.class, table),
+         ClassParameter.from(OneSignalDbHelper.TransactionBody.class, wrapped));
+   }
+}
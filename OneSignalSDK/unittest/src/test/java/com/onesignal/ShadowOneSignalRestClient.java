@@ -293,6 +293,16 @@ public class ShadowOneSignalRestClient {
       responseHandler.onSuccess("{}");
    }
 
+   // Durable requests are tracked and answered the same as their one shot versions,
+   //   OSRequestOutbox retry behavior is covered with the real putSync and postSync shadows below.
+   public static void putDurable(String url, JSONObject jsonBody, OneSignalRestClient.ResponseHandler responseHandler) throws JSONException {
+      put(url, jsonBody, responseHandler);
+   }
+
+   public static void postDurable(String url, JSONObject jsonBody, OneSignalRestClient.ResponseHandler responseHandler) throws JSONException {
+      post(url, jsonBody, responseHandler);
+   }
+
    public static void get(final String url, final OneSignalRestClient.ResponseHandler responseHandler, String cacheKey) throws JSONException {
       trackRequest(REST_METHOD.GET, null, url);
       if (failGetParams && doFail(responseHandler, true)) return;
@@ -38,6 +38,9 @@ public class ShadowOneSignalRestClientWithMockConnection {
 
    public static MockHttpURLConnection lastConnection;
    public static MockHttpURLConnection.MockResponse mockResponse;
+   // When set requests are made over real sockets to this local server instead of the mock connection
+   public static MockHttpServer localServer;
+   public static int threadTimeout;
 
    public static void resetStatics() {
       mockResponse = new MockHttpURLConnection.MockResponse() {{
@@ -45,13 +48,18 @@ public class ShadowOneSignalRestClientWithMockConnection {
          status = 200;
       }};
       lastConnection = null;
+      localServer = null;
+      threadTimeout = 1;
    }
    
    public static int getThreadTimeout(int timeout) {
-      return 1;
+      return threadTimeout;
    }
 
    public static HttpURLConnection newHttpURLConnection(String url) throws IOException {
+      if (localServer != null)
+         return (HttpURLConnection) new URL(localServer.getBaseUrl() + url).openConnection();
+
       lastConnection = new MockHttpURLConnection(
          new URL("https://onesignal.com/api/v1/" + url),
          mockResponse
@@ -79,26 +79,27 @@ public class ShadowRoboNotificationManager extends ShadowNotificationManager {
       mInstance = this;
    }
    
+   // Restored notifications are posted from several worker threads
    @Override
-   public void cancelAll() {
+   public synchronized void cancelAll() {
       super.cancelAll();
       notifications.clear();
    }
    
    @Override
-   public void cancel(int id) {
+   public synchronized void cancel(int id) {
       super.cancel(id);
       notifications.remove(id);
    }
    
    @Override
-   public void cancel(String tag, int id) {
+   public synchronized void cancel(String tag, int id) {
       super.cancel(tag, id);
       notifications.remove(id);
    }
 
    @Override
-   public void notify(String tag, int id, Notification notification) {
+   public synchronized void notify(String tag, int id, Notification notification) {
       lastNotif = notification;
       lastNotifId = id;
       notifications.put(id, new PostedNotification(id, lastNotif));
@@ -43,6 +43,10 @@ public class StaticResetHelper {
       classes.add(new ClassState(OneSignalDbHelper.class, null));
       classes.add(new ClassState(LocationController.class, null));
       classes.add(new ClassState(OSInAppMessageController.class, null));
+      classes.add(new ClassState(OSRequestOutbox.class, null));
+      classes.add(new ClassState(OSNotificationDedupIndex.class, null));
+      classes.add(new ClassState(NotificationIngestQueue.class, null));
+      classes.add(new ClassState(BadgeCountUpdater.class, null));
       classes.add(new ClassState(ActivityLifecycleListener.class, null));
       classes.add(new ClassState(OSDynamicTriggerController.class, new OtherFieldHandler() {
          @Override
@@ -0,0 +1,114 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import android.app.Activity;
+
+import com.onesignal.OneSignalPackagePrivateHelper.BadgeCountUpdater;
+import com.onesignal.ShadowShortcutBadger;
+import com.onesignal.StaticResetHelper;
+import com.onesignal.example.BlankActivity;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        shadows = { ShadowShortcutBadger.class },
+        sdk = 21
+)
+@RunWith(RobolectricTestRunner.class)
+public class BadgeCountUpdaterRunner {
+
+   private Activity blankActivity;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+      ShadowShortcutBadger.resetStatics();
+      blankActivity = Robolectric.buildActivity(BlankActivity.class).create().get();
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void shouldDebounceBurstIntoOneBroadcast() {
+      for (int i = 1; i <= 20; i++)
+         BadgeCountUpdater.updateCount(i, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+
+      assertEquals(1, BadgeCountUpdater.getAppliedBroadcasts());
+   }
+
+   @Test
+   public void shouldNotBroadcastUnchangedCount() {
+      BadgeCountUpdater.updateCount(3, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+      BadgeCountUpdater.updateCount(3, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+      assertEquals(1, BadgeCountUpdater.getAppliedBroadcasts());
+
+      BadgeCountUpdater.updateCount(0, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+      assertEquals(2, BadgeCountUpdater.getAppliedBroadcasts());
+   }
+
+   @Test
+   public void shouldRetryCountTheLauncherFailedToApply() {
+      ShadowShortcutBadger.failApply = true;
+      BadgeCountUpdater.updateCount(3, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+
+      ShadowShortcutBadger.failApply = false;
+      BadgeCountUpdater.updateCount(3, blankActivity);
+      BadgeCountUpdater.runPendingApply();
+
+      assertEquals(Arrays.asList(3), ShadowShortcutBadger.appliedCounts);
+   }
+}
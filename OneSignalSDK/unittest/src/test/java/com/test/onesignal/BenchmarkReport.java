@@ -0,0 +1,75 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.test.onesignal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Measurement runners need SQLite or a Context so they can't run in the JMH module.
+ * They are skipped unless the tests are run with -Pbenchmarks, and write their results as JSON
+ *    to build/reports/benchmarks so runs can be compared.
+ */
+class BenchmarkReport {
+
+   private static final String ENABLED_PROPERTY = "onesignal.benchmarks";
+   private static final String DIR_PROPERTY = "onesignal.benchmarks.dir";
+
+   static void assumeEnabled() {
+      Assume.assumeTrue("Run with -Pbenchmarks to measure", Boolean.getBoolean(ENABLED_PROPERTY));
+   }
+
+   static void write(String name, JSONObject results) throws IOException, JSONException {
+      File dir = new File(System.getProperty(DIR_PROPERTY, "build/reports/benchmarks"));
+      if (!dir.isDirectory() && !dir.mkdirs())
+         throw new IOException("Could not create " + dir);
+
+      Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, name + ".json")), "UTF-8");
+      try {
+         writer.write(results.toString(2));
+      } finally {
+         writer.close();
+      }
+   }
+
+   static double perSecond(int count, long nanos) {
+      return count / (nanos / 1_000_000_000.0);
+   }
+
+   static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+   }
+}
@@ -0,0 +1,282 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.test.onesignal;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.onesignal.MockOneSignalDBHelper;
+import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+import com.onesignal.ShadowOneSignalDbTransactions;
+import com.onesignal.StaticResetHelper;
+import com.onesignal.outcomes.MockOSOutcomeEventsTable;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalDbHelper_insertInTransaction;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalDbHelper_isWriteAheadLoggingEnabled;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalDbHelper_simpleQueryForLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stresses OneSignalDbHelper with reader threads doing notification id lookups and restore style queries
+ *    while writer threads insert notifications and insert then delete outcome events.
+ * Reads only wait on writers inside SQLite, so they keep going while writes are committed.
+ */
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        shadows = { ShadowOneSignalDbTransactions.class },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseConcurrencyRunner {
+
+   private static final int SEEDED_NOTIFICATIONS = 500;
+   private static final int READER_THREADS = 4;
+   private static final int WRITER_THREADS = 2;
+   private static final int WRITES_PER_WRITER = 250;
+   private static final long AWAIT_TIMEOUT_MS = 10_000;
+
+   private static final String SQL_NOTIFICATION_ID_EXISTS =
+      "SELECT EXISTS(SELECT 1 FROM " + NotificationTable.TABLE_NAME +
+      " WHERE " + NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?)";
+
+   private MockOneSignalDBHelper dbHelper;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      dbHelper = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      TestHelpers.beforeTestInitAndCleanup();
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void writeAheadLoggingIsEnabled() {
+      assertTrue(OneSignalDbHelper_isWriteAheadLoggingEnabled(RuntimeEnvironment.application));
+   }
+
+   @Test
+   public void readsCompleteWhileAWriteTransactionIsOpen() throws Exception {
+      insertNotification("seeded", 1);
+
+      // The writer holds LOCK and its connection inside an uncommitted transaction until released
+      final AtomicBoolean committed = new AtomicBoolean();
+      ShadowOneSignalDbTransactions.holdNextTransaction();
+      final ContentValues values = newNotificationValues("held", 2);
+      Thread writer = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            committed.set(OneSignalDbHelper_insertInTransaction(RuntimeEnvironment.application, NotificationTable.TABLE_NAME, values));
+         }
+      }, "Test_DbWriter");
+      writer.start();
+
+      try {
+         assertTrue(ShadowOneSignalDbTransactions.transactionStarted.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+         final CountDownLatch readsDone = new CountDownLatch(1);
+         final AtomicReference<Throwable> failure = new AtomicReference<>();
+         final AtomicLong seededExists = new AtomicLong();
+         final AtomicLong unreadCount = new AtomicLong();
+         startThread(new CountDownLatch(0), failure, "Test_DbReader", new Runnable() {
+            @Override
+            public void run() {
+               seededExists.set(OneSignalDbHelper_simpleQueryForLong(RuntimeEnvironment.application, SQL_NOTIFICATION_ID_EXISTS, new String[] { "seeded" }));
+               unreadCount.set(unreadNotificationCount());
+               readsDone.countDown();
+            }
+         });
+
+         assertTrue(readsDone.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+         assertNull(failure.get());
+         assertTrue(writer.isAlive());
+         assertEquals(1, seededExists.get());
+         // The open transaction's row isn't visible until it commits
+         assertEquals(1, unreadCount.get());
+      } finally {
+         ShadowOneSignalDbTransactions.holdTransaction.countDown();
+         writer.join();
+      }
+
+      assertTrue(committed.get());
+      assertEquals(2, unreadNotificationCount());
+   }
+
+   @Test
+   public void mixedReadersAndWritersSeeConsistentRows() throws Exception {
+      for (int i = 0; i < SEEDED_NOTIFICATIONS; i++)
+         insertNotification("seeded_" + i, i);
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicBoolean writersDone = new AtomicBoolean();
+      final AtomicLong reads = new AtomicLong();
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+      List<Thread> readers = new ArrayList<>();
+      for (int t = 0; t < READER_THREADS; t++) {
+         final int threadIndex = t;
+         readers.add(startThread(start, failure, "Test_DbReader", new Runnable() {
+            @Override
+            public void run() {
+               int i = threadIndex;
+               do {
+                  String id = "seeded_" + (i % SEEDED_NOTIFICATIONS);
+                  assertEquals(1, OneSignalDbHelper_simpleQueryForLong(RuntimeEnvironment.application, SQL_NOTIFICATION_ID_EXISTS, new String[] { id }));
+                  // Every 10th read scans the unread notifications like a restore does
+                  if (i % 10 == 0)
+                     assertTrue(unreadNotificationCount() >= SEEDED_NOTIFICATIONS);
+                  reads.incrementAndGet();
+                  i += READER_THREADS;
+               } while (!writersDone.get());
+            }
+         }));
+      }
+
+      List<Thread> writers = new ArrayList<>();
+      for (int t = 0; t < WRITER_THREADS; t++) {
+         final int threadIndex = t;
+         writers.add(startThread(start, failure, "Test_DbWriter", new Runnable() {
+            @Override
+            public void run() {
+               for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                  int index = threadIndex * WRITES_PER_WRITER + i;
+                  insertNotification("written_" + index, SEEDED_NOTIFICATIONS + index);
+                  insertOutcome(index);
+                  // Keep every other outcome, like a send that failed and will be retried
+                  if (index % 2 == 0)
+                     deleteOutcome(index);
+               }
+            }
+         }));
+      }
+
+      start.countDown();
+      for (Thread writer : writers)
+         writer.join();
+      writersDone.set(true);
+      for (Thread reader : readers)
+         reader.join();
+
+      assertNull(failure.get());
+      int writes = WRITER_THREADS * WRITES_PER_WRITER;
+      assertEquals(SEEDED_NOTIFICATIONS + writes, unreadNotificationCount());
+      assertEquals(writes / 2, rowCount(MockOSOutcomeEventsTable.TABLE_NAME));
+      assertTrue(reads.get() > 0);
+   }
+
+   private static Thread startThread(final CountDownLatch start, final AtomicReference<Throwable> failure, String name, final Runnable body) {
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               start.await();
+               body.run();
+            } catch (Throwable t) {
+               failure.compareAndSet(null, t);
+            }
+         }
+      }, name);
+      thread.start();
+      return thread;
+   }
+
+   private void insertNotification(String notificationId, int androidNotificationId) {
+      dbHelper.insertOrThrow(NotificationTable.TABLE_NAME, null, newNotificationValues(notificationId, androidNotificationId));
+   }
+
+   private static ContentValues newNotificationValues(String notificationId, int androidNotificationId) {
+      ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, notificationId);
+      values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, androidNotificationId);
+      values.put(NotificationTable.COLUMN_NAME_OPENED, 0);
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, "{\"custom\":{\"i\":\"" + notificationId + "\"}}");
+      return values;
+   }
+
+   private void insertOutcome(int index) {
+      ContentValues values = new ContentValues();
+      values.put(MockOSOutcomeEventsTable.COLUMN_NAME_NAME, "outcome_" + index);
+      values.put(MockOSOutcomeEventsTable.COLUMN_NAME_WEIGHT, 1f);
+      values.put(MockOSOutcomeEventsTable.COLUMN_NAME_TIMESTAMP, 1_600_000_000L + index);
+      dbHelper.insert(MockOSOutcomeEventsTable.TABLE_NAME, null, values);
+   }
+
+   private void deleteOutcome(int index) {
+      dbHelper.delete(MockOSOutcomeEventsTable.TABLE_NAME,
+         MockOSOutcomeEventsTable.COLUMN_NAME_TIMESTAMP + " = ?",
+         new String[] { String.valueOf(1_600_000_000L + index) });
+   }
+
+   private int unreadNotificationCount() {
+      Cursor cursor = dbHelper.query(
+         NotificationTable.TABLE_NAME,
+         new String[] { NotificationTable._ID },
+         NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " + NotificationTable.COLUMN_NAME_DISMISSED + " = 0",
+         null, null, null, null);
+      int count = cursor.getCount();
+      cursor.close();
+      return count;
+   }
+
+   private int rowCount(String table) {
+      Cursor cursor = dbHelper.query(table, null, null, null, null, null, null);
+      int count = cursor.getCount();
+      cursor.close();
+      return count;
+   }
+}
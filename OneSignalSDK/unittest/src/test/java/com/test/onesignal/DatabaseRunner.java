@@ -10,6 +10,7 @@ import com.onesignal.OneSignalPackagePrivateHelper;
 import com.onesignal.OneSignalPackagePrivateHelper.InAppMessageTable;
 import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessage;
+import com.onesignal.OneSignalPackagePrivateHelper.OutboxTable;
 import com.onesignal.OutcomeEvent;
 import com.onesignal.ShadowOneSignalDbHelper;
 import com.onesignal.StaticResetHelper;
@@ -23,6 +24,7 @@ import com.onesignal.outcomes.model.OSCachedUniqueOutcomeName;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -645,4 +647,146 @@ public class DatabaseRunner {
         assertEquals(outcomeEventDB.getIamInfluenceType(), outcomeSaved.getIamInfluenceType());
     }
 
+    @Test
+    public void shouldUpgradeDbFromV8ToV9OutboxTable() {
+        // 1. Init DB as version 8
+        ShadowOneSignalDbHelper.DATABASE_VERSION = 8;
+        SQLiteDatabase writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+
+        Cursor cursor = writableDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type ='table' AND name='" + OutboxTable.TABLE_NAME + "'", null);
+
+        boolean exist = false;
+        if (cursor != null) {
+            exist = cursor.getCount() > 0;
+            cursor.close();
+        }
+        // 2. Table must not exist
+        assertFalse(exist);
+
+        writableDatabase.setVersion(8);
+        writableDatabase.close();
+
+        // 3. Clear the cache of the DB so it reloads the file and next getSQLiteDatabaseWithRetries will auto trigger the update
+        ShadowOneSignalDbHelper.restSetStaticFields();
+
+        // 4. Opening the DB will auto trigger the update to DB version 9.
+        writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+
+        cursor = writableDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type ='table' AND name='" + OutboxTable.TABLE_NAME + "'", null);
+        exist = false;
+        if (cursor != null) {
+            exist = cursor.getCount() > 0;
+            cursor.close();
+        }
+        // 5. Table must exist after the upgrade
+        assertTrue(exist);
+    }
+
+    @Test
+    public void shouldUpgradeDbFromV9ToV10CompressesFullData() throws JSONException {
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+            longMessage.append("Long notification message ");
+        String fullData = new JSONObject()
+            .put("alert", longMessage.toString())
+            .put("custom", new JSONObject().put("i", "UUID1"))
+            .toString();
+
+        // 1. Init DB as version 9 and add notifications with a long and a short payload
+        ShadowOneSignalDbHelper.DATABASE_VERSION = 9;
+        SQLiteDatabase writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+        ContentValues values = new ContentValues();
+        values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "UUID1");
+        values.put(NotificationTable.COLUMN_NAME_FULL_DATA, fullData);
+        writableDatabase.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+        values = new ContentValues();
+        values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "UUID2");
+        values.put(NotificationTable.COLUMN_NAME_FULL_DATA, "{}");
+        writableDatabase.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+        writableDatabase.setVersion(9);
+        writableDatabase.close();
+
+        // 2. Clear the cache of the DB so it reloads the file.
+        ShadowOneSignalDbHelper.restSetStaticFields();
+        ShadowOneSignalDbHelper.ignoreDuplicatedFieldsOnUpgrade = true;
+
+        // 3. Opening the DB will auto trigger the update to DB version 10.
+        writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+        Cursor cursor = writableDatabase.query(
+            NotificationTable.TABLE_NAME,
+            OneSignalPackagePrivateHelper.NotificationPayloadCodec_columns(),
+            null, null, null, null,
+            NotificationTable.COLUMN_NAME_NOTIFICATION_ID
+        );
+
+        // 4. Long payload must be moved to the compressed column, short payload is kept as text
+        assertTrue(cursor.moveToFirst());
+        assertTrue(cursor.isNull(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA)));
+        assertFalse(cursor.isNull(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED)));
+        assertEquals(fullData, OneSignalPackagePrivateHelper.NotificationPayloadCodec_read(cursor));
+
+        assertTrue(cursor.moveToNext());
+        assertTrue(cursor.isNull(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED)));
+        assertEquals("{}", OneSignalPackagePrivateHelper.NotificationPayloadCodec_read(cursor));
+        cursor.close();
+    }
+
+    @Test
+    public void shouldReadBackEveryCompressedPayloadWithRestoreColumns() throws Exception {
+        SQLiteDatabase writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+        long plainBytes = 0;
+        for (int i = 0; i < 500; i++) {
+            String fullData = buildLongPayload(i);
+            plainBytes += fullData.getBytes("UTF-8").length;
+
+            ContentValues values = new ContentValues();
+            values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "UUID" + i);
+            values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, i);
+            OneSignalPackagePrivateHelper.NotificationPayloadCodec_put(values, fullData);
+            assertTrue(values.containsKey(NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED));
+            writableDatabase.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+        }
+
+        // The stored payloads must take less space than the text they replace
+        Cursor sizeCursor = writableDatabase.rawQuery(
+            "SELECT SUM(LENGTH(" + NotificationTable.COLUMN_NAME_FULL_DATA_COMPRESSED + ")), " +
+                "COUNT(" + NotificationTable.COLUMN_NAME_FULL_DATA + ") FROM " + NotificationTable.TABLE_NAME,
+            null
+        );
+        assertTrue(sizeCursor.moveToFirst());
+        long compressedBytes = sizeCursor.getLong(0);
+        assertEquals(0, sizeCursor.getInt(1));
+        sizeCursor.close();
+        assertTrue(compressedBytes > 0);
+        assertTrue("Compressed " + compressedBytes + " bytes, plain " + plainBytes + " bytes", compressedBytes < plainBytes);
+
+        Cursor cursor = writableDatabase.query(
+            NotificationTable.TABLE_NAME,
+            OneSignalPackagePrivateHelper.NotificationRestorer_columnsForRestore(),
+            NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " + NotificationTable.COLUMN_NAME_DISMISSED + " = 0",
+            null, null, null,
+            NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID
+        );
+
+        int rows = 0;
+        while (cursor.moveToNext()) {
+            assertEquals(buildLongPayload(rows), OneSignalPackagePrivateHelper.NotificationPayloadCodec_read(cursor));
+            rows++;
+        }
+        cursor.close();
+        assertEquals(500, rows);
+    }
+
+    private static String buildLongPayload(int index) throws JSONException {
+        JSONObject additionalData = new JSONObject();
+        for (int i = 0; i < 8; i++)
+            additionalData.put("key_" + i, "value_" + i + "_" + index);
+
+        return new JSONObject()
+            .put("alert", "Message " + index + " with enough body text to wrap onto a second line of the shade")
+            .put("title", "Title " + index)
+            .put("custom", new JSONObject().put("i", "UUID" + index).put("u", "https://onesignal.com/landing/" + index).put("a", additionalData))
+            .toString();
+    }
+
 }
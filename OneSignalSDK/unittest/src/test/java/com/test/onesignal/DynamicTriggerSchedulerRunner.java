@@ -0,0 +1,163 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import com.onesignal.InAppMessagingHelpers;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestDynamicTriggerController;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger;
+import com.onesignal.StaticResetHelper;
+
+import org.json.JSONException;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.OSDynamicTriggerTimer_getPendingCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSDynamicTriggerTimer_threadNamePrefix;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger.OSTriggerKind;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger.OSTriggerOperator;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Runs without ShadowDynamicTimer so triggers go through the real shared scheduler
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 21
+)
+@RunWith(RobolectricTestRunner.class)
+public class DynamicTriggerSchedulerRunner {
+
+   private static final int TRIGGER_COUNT = 300;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+      InAppMessagingHelpers.resetSessionLaunchTime();
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void shouldScheduleHundredsOfTriggersOnOneThread() throws Exception {
+      final CountDownLatch fired = new CountDownLatch(TRIGGER_COUNT);
+      OSTestDynamicTriggerController controller = new OSTestDynamicTriggerController(new Runnable() {
+         @Override
+         public void run() {
+            fired.countDown();
+         }
+      });
+
+      for (OSTestTrigger trigger : buildSessionTimeTriggers(0.05))
+         assertFalse(controller.dynamicTriggerShouldFire(trigger));
+      assertEquals(TRIGGER_COUNT, controller.getScheduledTriggerCount());
+      assertTrue(schedulerThreadCount() <= 1);
+
+      assertTrue(fired.await(5, TimeUnit.SECONDS));
+      assertEquals(0, controller.getScheduledTriggerCount());
+      assertTrue(schedulerThreadCount() <= 1);
+   }
+
+   @Test
+   public void shouldNotScheduleTheSameTriggerTwice() throws Exception {
+      OSTestDynamicTriggerController controller = new OSTestDynamicTriggerController(new Runnable() {
+         @Override
+         public void run() { }
+      });
+      OSTestTrigger trigger = InAppMessagingHelpers.buildTrigger(OSTriggerKind.SESSION_TIME, null, OSTriggerOperator.GREATER_THAN.toString(), 60);
+
+      int pendingBefore = OSDynamicTriggerTimer_getPendingCount();
+      controller.dynamicTriggerShouldFire(trigger);
+      controller.dynamicTriggerShouldFire(trigger);
+
+      assertEquals(1, controller.getScheduledTriggerCount());
+      assertEquals(pendingBefore + 1, OSDynamicTriggerTimer_getPendingCount());
+      controller.cancelScheduledTriggers();
+   }
+
+   @Test
+   public void shouldCancelScheduledTriggersOnSessionEnd() throws Exception {
+      final CountDownLatch fired = new CountDownLatch(1);
+      OSTestDynamicTriggerController controller = new OSTestDynamicTriggerController(new Runnable() {
+         @Override
+         public void run() {
+            fired.countDown();
+         }
+      });
+
+      int pendingBefore = OSDynamicTriggerTimer_getPendingCount();
+      for (OSTestTrigger trigger : buildSessionTimeTriggers(0.2))
+         controller.dynamicTriggerShouldFire(trigger);
+      assertEquals(pendingBefore + TRIGGER_COUNT, OSDynamicTriggerTimer_getPendingCount());
+
+      controller.cancelScheduledTriggers();
+
+      // Cancelled triggers are removed from the scheduler and never fire
+      assertEquals(0, controller.getScheduledTriggerCount());
+      assertEquals(pendingBefore, OSDynamicTriggerTimer_getPendingCount());
+      assertFalse(fired.await(500, TimeUnit.MILLISECONDS));
+   }
+
+   private static List<OSTestTrigger> buildSessionTimeTriggers(double firstSeconds) throws JSONException {
+      List<OSTestTrigger> triggers = new ArrayList<>();
+      for (int i = 0; i < TRIGGER_COUNT; i++) {
+         double seconds = firstSeconds + (i % 10) / 100.0;
+         triggers.add(InAppMessagingHelpers.buildTrigger(OSTriggerKind.SESSION_TIME, null, OSTriggerOperator.GREATER_THAN.toString(), seconds));
+      }
+      return triggers;
+   }
+
+   private static int schedulerThreadCount() {
+      int count = 0;
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+         if (thread.getName().startsWith(OSDynamicTriggerTimer_threadNamePrefix()))
+            count++;
+      }
+      return count;
+   }
+}
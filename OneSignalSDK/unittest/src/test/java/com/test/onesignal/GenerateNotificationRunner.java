@@ -33,12 +33,14 @@ import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.job.JobScheduler;
 import android.content.ComponentName;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -51,6 +53,7 @@ import android.widget.Button;
 import com.onesignal.BundleCompat;
 import com.onesignal.GcmBroadcastReceiver;
 import com.onesignal.GcmIntentService;
+import com.onesignal.MockHttpServer;
 import com.onesignal.MockOneSignalDBHelper;
 import com.onesignal.NotificationExtenderService;
 import com.onesignal.OSNotification;
@@ -62,6 +65,7 @@ import com.onesignal.OneSignalNotificationManagerPackageHelper;
 import com.onesignal.OneSignalPackagePrivateHelper;
 import com.onesignal.OneSignalPackagePrivateHelper.NotificationRestorer;
 import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestNotificationImageLoader;
 import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
 import com.onesignal.RestoreJobService;
 import com.onesignal.ShadowBadgeCountUpdater;
@@ -98,8 +102,10 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowAlertDialog;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.File;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -111,9 +117,15 @@ import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProc
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProcessor.PUSH_MINIFIED_BUTTON_ID;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProcessor.PUSH_MINIFIED_BUTTON_TEXT;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProcessor_ProcessFromGCMIntentService;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationRestoreEngine_getLastRestoredCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationRestoreEngine_restoreBatch;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProcessor_ProcessFromGCMIntentService_NoWrap;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationOpenedProcessor_processFromContext;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationSummaryManager_updateSummaryNotificationAfterChildRemoved;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSNotificationDedupIndex_getDbHits;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSNotificationDedupIndex_getFilterMisses;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSNotificationDedupIndex_getRecentHits;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSNotificationDedupIndex_isDuplicate;
 import static com.onesignal.OneSignalPackagePrivateHelper.createInternalPayloadBundle;
 import static com.onesignal.ShadowRoboNotificationManager.getNotificationsInGroup;
 import static com.test.onesignal.RestClientAsserts.assertReportReceivedAtIndex;
@@ -750,6 +762,40 @@ public class GenerateNotificationRunner {
    }
    
 
+   @Test
+   public void shouldDetectDuplicateFromRecentIdsWithoutDbQuery() throws Exception {
+      Bundle bundle = getBaseNotifBundle("UUID1");
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, bundle, null);
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, bundle, null);
+
+      assertEquals(1, ShadowBadgeCountUpdater.lastCount);
+      assertEquals(1, OSNotificationDedupIndex_getRecentHits(blankActivity));
+      assertEquals(0, OSNotificationDedupIndex_getDbHits(blankActivity));
+   }
+
+   @Test
+   public void shouldSeedDedupIndexFromDbAfterRestart() throws Exception {
+      for (int i = 0; i < 50; i++)
+         NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID" + i), null);
+
+      fastColdRestartApp();
+
+      // Every saved id must be found again, a bloom filter never gives a false negative
+      for (int i = 0; i < 50; i++)
+         assertTrue(OSNotificationDedupIndex_isDuplicate(blankActivity, "UUID" + i));
+      assertEquals(50, OSNotificationDedupIndex_getDbHits(blankActivity));
+
+      // New ids are answered by the filter alone
+      for (int i = 50; i < 100; i++)
+         assertFalse(OSNotificationDedupIndex_isDuplicate(blankActivity, "UUID" + i));
+      assertTrue(OSNotificationDedupIndex_getFilterMisses(blankActivity) >= 45);
+
+      // Ids confirmed by the DB are now served from the recent ids
+      assertTrue(OSNotificationDedupIndex_isDuplicate(blankActivity, "UUID0"));
+      assertEquals(1, OSNotificationDedupIndex_getRecentHits(blankActivity));
+      assertEquals(50, OSNotificationDedupIndex_getDbHits(blankActivity));
+   }
+
    @Test
    public void shouldHandleBasicNotifications() throws Exception {
       // Make sure the notification got posted and the content is correct.
@@ -828,6 +874,55 @@ public class GenerateNotificationRunner {
       assertNull(Shadows.shadowOf(blankActivity).getNextStartedService());
    }
 
+   @Test
+   public void shouldRestoreNotificationsAsOneBatch() throws Exception {
+      Bundle bundle = getBaseNotifBundle("UUID1");
+      bundle.putString("grp", "test1");
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, bundle, null);
+      bundle = getBaseNotifBundle("UUID2");
+      bundle.putString("grp", "test1");
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, bundle, null);
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID3"), null);
+
+      NotificationManager notificationManager = OneSignalNotificationManagerPackageHelper.getNotificationManager(blankActivity);
+      notificationManager.cancelAll();
+
+      // All 3 notifications should be handed to a single RestoreJobService work item
+      restoreNotifications();
+      Intent intent = Shadows.shadowOf(blankActivity).getNextStartedService();
+      assertEquals(RestoreJobService.class.getName(), intent.getComponent().getClassName());
+      // Only the ids are sent, the service reads the payloads back from the DB
+      assertEquals(3, intent.getIntArrayExtra("android_notif_ids").length);
+      assertNull(intent.getStringExtra("json_payload"));
+      assertNull(Shadows.shadowOf(blankActivity).getNextStartedService());
+
+      // Running the batch should display all of them along with the group summary
+      NotificationRestoreEngine_restoreBatch(blankActivity, intent);
+      assertEquals(3, NotificationRestoreEngine_getLastRestoredCount());
+      assertEquals(2, ShadowRoboNotificationManager.getNotificationsInGroup("test1").size());
+      assertEquals(4, ShadowRoboNotificationManager.notifications.size());
+   }
+
+   @Test
+   public void shouldNotRestoreNotificationOpenedAfterBatchWasQueued() throws Exception {
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID1"), null);
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID2"), null);
+
+      NotificationManager notificationManager = OneSignalNotificationManagerPackageHelper.getNotificationManager(blankActivity);
+      notificationManager.cancelAll();
+
+      restoreNotifications();
+      Intent intent = Shadows.shadowOf(blankActivity).getNextStartedService();
+
+      ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_OPENED, 1);
+      dbHelper.update(NotificationTable.TABLE_NAME, values, NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?", new String[] { "UUID1" });
+
+      NotificationRestoreEngine_restoreBatch(blankActivity, intent);
+      assertEquals(1, NotificationRestoreEngine_getLastRestoredCount());
+      assertEquals(1, ShadowRoboNotificationManager.notifications.size());
+   }
+
    private void assertRestoreRan() {
       Intent intent = Shadows.shadowOf(blankActivity).getNextStartedService();
       assertEquals(RestoreJobService.class.getName(), intent.getComponent().getClassName());
@@ -871,6 +966,33 @@ public class GenerateNotificationRunner {
       helperShouldRestoreNotificationsPastExpireTime(true);
    }
 
+   @Test
+   public void badgeCountShouldIncrementInMemoryOnInserts() {
+      for (int i = 0; i < 3; i++)
+         NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID" + i), null);
+
+      // Only the first push counted the rows, the next ones incremented the in-memory count
+      assertEquals(3, ShadowBadgeCountUpdater.lastCount);
+      assertEquals(1, OneSignalPackagePrivateHelper.BadgeCountUpdater.getReconcileCount());
+
+      // Writes other than inserts call update, which counts the rows again
+      OneSignalPackagePrivateHelper.BadgeCountUpdater.update(dbHelper, blankActivity);
+      assertEquals(3, ShadowBadgeCountUpdater.lastCount);
+      assertEquals(2, OneSignalPackagePrivateHelper.BadgeCountUpdater.getReconcileCount());
+   }
+
+   @Test
+   public void badgeCountShouldReconcileAfterInterval() {
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID1"), null);
+      assertEquals(1, OneSignalPackagePrivateHelper.BadgeCountUpdater.getReconcileCount());
+
+      advanceSystemTimeBy(61);
+      NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle("UUID2"), null);
+
+      assertEquals(2, ShadowBadgeCountUpdater.lastCount);
+      assertEquals(2, OneSignalPackagePrivateHelper.BadgeCountUpdater.getReconcileCount());
+   }
+
    @Test
    public void badgeCountShouldNotIncludeOldNotifications() {
       NotificationBundleProcessor_ProcessFromGCMIntentService(blankActivity, getBaseNotifBundle(), null);
@@ -1440,6 +1562,63 @@ public class GenerateNotificationRunner {
       Map<Integer, PostedNotification> postedNotifs = ShadowRoboNotificationManager.notifications;
       assertEquals(3, postedNotifs.size());
    }
+
+   @Test
+   public void shouldSampleNotificationImagesDownToTheirDisplaySize() {
+      // Largest power of 2 that still covers the target in both dimensions
+      assertEquals(4, OSTestNotificationImageLoader.calculateInSampleSize(4_000, 2_000, 1_000, 500));
+      assertEquals(2, OSTestNotificationImageLoader.calculateInSampleSize(4_000, 2_000, 1_080, 672));
+      // Never scaled up, and the height limits sampling of a wide image
+      assertEquals(1, OSTestNotificationImageLoader.calculateInSampleSize(100, 100, 192, 192));
+      assertEquals(1, OSTestNotificationImageLoader.calculateInSampleSize(2_000, 300, 192, 192));
+   }
+
+   @Test
+   public void shouldNotDownloadTheSameNotificationImageAgain() throws Exception {
+      MockHttpServer server = new MockHttpServer();
+      server.responseBody = "image bytes";
+      File directory = new File(blankActivity.getCacheDir(), "notification_image_test");
+      String imageUrl = server.getBaseUrl() + "campaign.png";
+      String otherImageUrl = server.getBaseUrl() + "other_campaign.png";
+
+      try {
+         OSTestNotificationImageLoader loader = new OSTestNotificationImageLoader(directory, 1_024 * 1_024, 1_024 * 1_024);
+         assertNotNull(loader.load(imageUrl, 192, 192));
+         assertNotNull(loader.load(imageUrl, 192, 192));
+         assertEquals(1, loader.getDownloadCount());
+         assertEquals(1, loader.getMemoryHitCount());
+
+         // Without the memory cache, like after a cold start, the image is decoded from disk
+         loader.clearMemoryCache();
+         Map<String, Bitmap> bitmaps = loader.loadAll(Arrays.asList(imageUrl, otherImageUrl), 192, 192);
+         assertEquals(2, bitmaps.size());
+         assertEquals(2, loader.getDownloadCount());
+         assertEquals(1, loader.getDiskHitCount());
+         assertEquals(2, server.getRequests().size());
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   @Test
+   public void shouldLoadTheSameNotificationImageOncePerSize() throws Exception {
+      MockHttpServer server = new MockHttpServer();
+      server.responseBody = "image bytes";
+      File directory = new File(blankActivity.getCacheDir(), "notification_image_test");
+      String imageUrl = server.getBaseUrl() + "campaign.png";
+
+      try {
+         OSTestNotificationImageLoader loader = new OSTestNotificationImageLoader(directory, 1_024 * 1_024, 1_024 * 1_024);
+         // Like a large icon and big picture sharing a URL, each size gets its own bitmap
+         Map<String, Bitmap> bitmaps = loader.loadAllAtSizes(imageUrl, 192, 192, 1_080);
+         assertEquals(2, bitmaps.size());
+         // Downloaded once, the other size is decoded from the cached copy
+         assertEquals(1, loader.getDownloadCount());
+         assertEquals(1, loader.getDiskHitCount() + loader.getMemoryHitCount());
+      } finally {
+         server.shutdown();
+      }
+   }
    
    
    /* Helpers */
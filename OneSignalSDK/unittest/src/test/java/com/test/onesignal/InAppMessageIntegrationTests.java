@@ -171,6 +171,39 @@ public class InAppMessageIntegrationTests {
         assertFalse(OneSignalPackagePrivateHelper.isInAppMessageShowing());
     }
 
+    @Test
+    public void testInAppMessageHtmlIsPrefetchedAndDisplayedFromCache() throws Exception {
+        final OSTestInAppMessage testMessage = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "test_key", OSTestTrigger.OSTriggerOperator.EQUAL_TO.toString(), 3);
+
+        setMockRegistrationResponseWithMessages(new ArrayList<OSTestInAppMessage>() {{
+            add(testMessage);
+        }});
+
+        OneSignalInit();
+        threadAndTaskWait();
+
+        // Only one trigger is missing, so the HTML is downloaded before the message can be displayed
+        assertFalse(OneSignalPackagePrivateHelper.isInAppMessageShowing());
+        assertEquals(1, htmlRequestCount(testMessage));
+
+        OneSignal.addTrigger("test_key", 3);
+        threadAndTaskWait();
+
+        // Displaying uses the prefetched HTML instead of making another request
+        assertTrue(OneSignalPackagePrivateHelper.isInAppMessageShowing());
+        assertEquals(1, htmlRequestCount(testMessage));
+        assertTrue(OneSignalPackagePrivateHelper.OSInAppMessageController_lastDisplayUsedCachedHtml());
+    }
+
+    private static int htmlRequestCount(OSTestInAppMessage message) {
+        int count = 0;
+        for (ShadowOneSignalRestClient.Request request : ShadowOneSignalRestClient.requests) {
+            if (request.url.startsWith("in_app_messages/" + message.messageId + "/variants/"))
+                count++;
+        }
+        return count;
+    }
+
     /**
      * Since it is possible for multiple in-app messages to be valid at the same time, we've implemented
      * a queue so that the SDK does not try to display both messages at the same time.
@@ -10,6 +10,7 @@ import com.onesignal.OneSignal;
 import com.onesignal.OneSignalPackagePrivateHelper;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessage;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessageAction;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessageHtmlCache;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger;
 import com.onesignal.ShadowAdvertisingIdProviderGPS;
 import com.onesignal.ShadowCustomTabsClient;
@@ -33,14 +34,20 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
 
+import static com.onesignal.OneSignalPackagePrivateHelper.OSInAppMessageTriggerIndex_messagesToEvaluate;
 import static com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger.OSTriggerKind;
 import static com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger.OSTriggerOperator;
 import static com.test.onesignal.TestHelpers.advanceSystemTimeBy;
@@ -536,6 +543,75 @@ public class InAppMessagingUnitTests {
         assertTrue(InAppMessagingHelpers.evaluateMessage(testMessage));
     }
 
+    @Test
+    public void testTriggerIndexOnlyReturnsMessagesDependingOnChangedKeys() throws JSONException {
+        final List<OSTestInAppMessage> messages = new ArrayList<>();
+        messages.add(InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "prop1", OSTriggerOperator.EQUAL_TO.toString(), 1));
+        messages.add(InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "prop2", OSTriggerOperator.EQUAL_TO.toString(), 1));
+        messages.add(InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.SESSION_TIME, null, OSTriggerOperator.GREATER_THAN.toString(), 10));
+        messages.add(InAppMessagingHelpers.buildTestMessageWithMultipleTriggers(new ArrayList<ArrayList<OSTestTrigger>>() {{
+            add(new ArrayList<OSTestTrigger>() {{
+                add(InAppMessagingHelpers.buildTrigger(OSTriggerKind.CUSTOM, "prop2", OSTriggerOperator.EXISTS.toString(), null));
+            }});
+            add(new ArrayList<OSTestTrigger>() {{
+                add(InAppMessagingHelpers.buildTrigger(OSTriggerKind.CUSTOM, "prop3", OSTriggerOperator.EXISTS.toString(), null));
+            }});
+        }}));
+
+        // Time based messages are always evaluated since their result changes with time
+        assertEquals(Arrays.asList(0, 2), OSInAppMessageTriggerIndex_messagesToEvaluate(messages, Collections.singletonList("prop1")));
+        assertEquals(Arrays.asList(1, 2, 3), OSInAppMessageTriggerIndex_messagesToEvaluate(messages, Collections.singletonList("prop2")));
+        assertEquals(Arrays.asList(2, 3), OSInAppMessageTriggerIndex_messagesToEvaluate(messages, Collections.singletonList("prop3")));
+        assertEquals(Collections.singletonList(2), OSInAppMessageTriggerIndex_messagesToEvaluate(messages, Collections.singletonList("unknown")));
+    }
+
+    @Test
+    public void testNumericTriggerMatchesNumericStringValue() throws JSONException {
+        assertTrue(comparativeOperatorTest(OSTriggerOperator.GREATER_THAN, 2, "3"));
+        assertFalse(comparativeOperatorTest(OSTriggerOperator.GREATER_THAN, 2, "1"));
+        assertFalse(comparativeOperatorTest(OSTriggerOperator.GREATER_THAN, 2, "not a number"));
+    }
+
+    @Test
+    public void testHtmlCacheEvictsLeastRecentlyUsedEntry() {
+        File directory = new File(RuntimeEnvironment.application.getCacheDir(), "iam_html_lru_test");
+        // Room for two 100 char responses in memory and on disk
+        OSTestInAppMessageHtmlCache cache = new OSTestInAppMessageHtmlCache(directory, 250, 260);
+        String response = new String(new char[100]).replace('\0', 'a');
+
+        cache.put("message1_variant_en", response, null);
+        cache.put("message2_variant_en", response, null);
+        // Use the first entry so the second one is the least recently used
+        assertEquals(response, cache.getResponse("message1_variant_en"));
+        cache.put("message3_variant_en", response, null);
+
+        assertEquals(2, cache.getMemoryEntryCount());
+        assertTrue(cache.getDiskSize() <= 260);
+        assertNotNull(cache.getResponse("message1_variant_en"));
+        assertNull(cache.getResponse("message2_variant_en"));
+        assertNotNull(cache.getResponse("message3_variant_en"));
+    }
+
+    @Test
+    public void testHtmlCacheKeepsETagOnDiskAndDropsInactiveMessages() {
+        File directory = new File(RuntimeEnvironment.application.getCacheDir(), "iam_html_disk_test");
+        String activeKey = OSTestInAppMessageHtmlCache.keyFor("active_id", "variant_id", "en");
+        String inactiveKey = OSTestInAppMessageHtmlCache.keyFor("inactive_id", "variant_id", "en");
+
+        OSTestInAppMessageHtmlCache cache = new OSTestInAppMessageHtmlCache(directory, 1_024, 1_024);
+        cache.put(activeKey, "{\"html\": \"<html></html>\"}", "\"etag_1\"");
+        cache.put(inactiveKey, "{\"html\": \"<html></html>\"}", null);
+
+        // A new cache instance has an empty memory cache, so this is read back from disk
+        OSTestInAppMessageHtmlCache coldCache = new OSTestInAppMessageHtmlCache(directory, 1_024, 1_024);
+        assertEquals("{\"html\": \"<html></html>\"}", coldCache.getResponse(activeKey));
+        assertEquals("\"etag_1\"", coldCache.getETag(activeKey));
+
+        coldCache.retainMessages(Collections.singletonList("active_id"));
+        assertNotNull(coldCache.getResponse(activeKey));
+        assertNull(coldCache.getResponse(inactiveKey));
+    }
+
     private boolean roughlyEqualTimerValues(double desired, double actual) {
         return Math.abs(desired - actual) < REQUIRED_TIMER_ACCURACY;
     }
@@ -0,0 +1,310 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.test.onesignal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.JSONUtils.generateJsonDiff;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class JSONUtilsRunner {
+
+   private static final int KEY_COUNT = 12;
+   private static final String[] TOKENS = { "aa", "ab", "ba", "bb", "ca", "cb" };
+   private static final Set<String> INCLUDE_FIELDS = new HashSet<>(Arrays.asList("app_id", "key0"));
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+   }
+
+   @Test
+   public void testRandomDiffsMatchStringBasedDiff() throws Exception {
+      Random random = new Random(42);
+      for (int i = 0; i < 1_000; i++) {
+         JSONObject cur = randomObject(random, 0);
+         JSONObject changedTo = mutate(random, cur, 0);
+
+         assertSameDiff(cur, changedTo, BaseOutput.NONE, null);
+         assertSameDiff(cur, changedTo, BaseOutput.CUR, null);
+         assertSameDiff(cur, changedTo, BaseOutput.CUR, INCLUDE_FIELDS);
+         assertSameDiff(cur, changedTo, BaseOutput.SEPARATE, INCLUDE_FIELDS);
+      }
+   }
+
+   @Test
+   public void testArrayValueThatIsSubstringOfAnotherIsDiffed() throws Exception {
+      JSONObject cur = new JSONObject().put("segments", new JSONArray().put("premium_user").put("b"));
+      JSONObject changedTo = new JSONObject().put("segments", new JSONArray().put("premium").put("premium_user"));
+
+      JSONObject diff = generateJsonDiff(cur, changedTo, null, null);
+
+      assertEquals(new JSONArray().put("premium").toString(), diff.getJSONArray("segments_a").toString());
+      assertEquals(new JSONArray().put("b").toString(), diff.getJSONArray("segments_d").toString());
+   }
+
+   @Test
+   public void testDiffDoesNotShareNestedValuesWithChangedTo() throws Exception {
+      JSONObject cur = new JSONObject().put("tags", new JSONObject().put("key1", "value1"));
+      JSONObject changedTo = new JSONObject()
+         .put("tags", new JSONObject().put("key1", "value2"))
+         .put("location", new JSONObject().put("lat", 1.5))
+         .put("channels_a", new JSONArray().put("push"));
+
+      JSONObject diff = generateJsonDiff(cur, changedTo, null, null);
+      changedTo.getJSONObject("tags").put("key1", "value3");
+      changedTo.getJSONObject("location").put("lat", 2.5);
+      changedTo.getJSONArray("channels_a").put("email");
+
+      assertEquals("value2", diff.getJSONObject("tags").get("key1"));
+      assertEquals(1.5, diff.getJSONObject("location").getDouble("lat"), 0);
+      assertEquals(1, diff.getJSONArray("channels_a").length());
+   }
+
+   @Test
+   public void testUnchangedNestedObjectIsNotInDiff() throws Exception {
+      JSONObject cur = new JSONObject().put("tags", new JSONObject().put("key1", "value1"));
+
+      JSONObject diff = generateJsonDiff(cur, new JSONObject(cur.toString()), null, null);
+
+      assertFalse(diff.has("tags"));
+   }
+
+   private enum BaseOutput { NONE, CUR, SEPARATE }
+
+   // Runs both diffs on their own copies and compares the output and any object the diff was applied to
+   private static void assertSameDiff(JSONObject cur, JSONObject changedTo, BaseOutput baseOutputMode, Set<String> includeFields) throws JSONException {
+      Random random = new Random(cur.toString().hashCode());
+      JSONObject separateBase = baseOutputMode == BaseOutput.SEPARATE ? randomObject(random, 0) : null;
+
+      JSONObject expectedCur = new JSONObject(cur.toString());
+      JSONObject expectedBase = baseOutputFor(baseOutputMode, expectedCur, separateBase);
+      JSONObject expected = stringBasedDiff(expectedCur, new JSONObject(changedTo.toString()), expectedBase, includeFields);
+
+      JSONObject actualCur = new JSONObject(cur.toString());
+      JSONObject actualBase = baseOutputFor(baseOutputMode, actualCur, separateBase);
+      JSONObject actual = generateJsonDiff(actualCur, new JSONObject(changedTo.toString()), actualBase, includeFields);
+
+      String message = "cur: " + cur + " changedTo: " + changedTo + " baseOutput: " + baseOutputMode;
+      assertEquals(message, expected.toString(), actual.toString());
+      assertEquals(message, expectedCur.toString(), actualCur.toString());
+      if (expectedBase != null)
+         assertEquals(message, expectedBase.toString(), actualBase.toString());
+   }
+
+   private static JSONObject baseOutputFor(BaseOutput mode, JSONObject cur, JSONObject separateBase) throws JSONException {
+      switch (mode) {
+         case CUR:
+            return cur;
+         case SEPARATE:
+            return new JSONObject(separateBase.toString());
+         default:
+            return null;
+      }
+   }
+
+   // Every key has a fixed type, as the user state payloads do, so the same key is always comparable
+   private static JSONObject randomObject(Random random, int depth) throws JSONException {
+      JSONObject object = new JSONObject();
+      for (int k = 0; k < KEY_COUNT; k++) {
+         if (random.nextInt(3) != 0)
+            putRandomValue(random, object, k, depth);
+      }
+      if (depth == 0 && random.nextBoolean())
+         object.put("app_id", "app_" + random.nextInt(2));
+      return object;
+   }
+
+   private static JSONObject mutate(Random random, JSONObject object, int depth) throws JSONException {
+      JSONObject mutated = new JSONObject(object.toString());
+      for (int k = 0; k < KEY_COUNT; k++) {
+         String key = "key" + k;
+         int change = random.nextInt(4);
+         if (change == 0)
+            mutated.remove(key);
+         else if (change == 1 && mutated.has(key) && mutated.get(key) instanceof JSONObject)
+            mutated.put(key, mutate(random, mutated.getJSONObject(key), depth + 1));
+         else if (change == 1)
+            putRandomValue(random, mutated, k, depth);
+      }
+      return mutated;
+   }
+
+   private static void putRandomValue(Random random, JSONObject object, int k, int depth) throws JSONException {
+      String key = "key" + k;
+      switch (k % 6) {
+         case 0:
+            object.put(key, "value" + random.nextInt(3));
+            break;
+         case 1:
+            object.put(key, random.nextBoolean() ? random.nextInt(3) : random.nextInt(3) + 0.5);
+            break;
+         case 2:
+            object.put(key, random.nextBoolean());
+            break;
+         case 3:
+            if (depth < 2)
+               object.put(key, randomObject(random, depth + 1));
+            break;
+         case 4:
+            object.put(key, randomArray(random));
+            break;
+         default:
+            object.put(key + (random.nextBoolean() ? "_a" : "_d"), randomArray(random));
+      }
+   }
+
+   // Tokens all have the same length so none can be a substring of another in the string based diff
+   private static JSONArray randomArray(Random random) {
+      JSONArray array = new JSONArray();
+      int length = random.nextInt(5);
+      for (int i = 0; i < length; i++)
+         array.put(TOKENS[random.nextInt(TOKENS.length)]);
+      return array;
+   }
+
+   /**
+    * The diff as it was implemented before it was moved to a single structural walk,
+    *    nested objects are copied by re-parsing them and arrays are matched against their joined string.
+    */
+   private static JSONObject stringBasedDiff(JSONObject cur, JSONObject changedTo, JSONObject baseOutput, Set<String> includeFields) {
+      if (cur == null)
+         return null;
+      if (changedTo == null)
+         return baseOutput;
+
+      Iterator<String> keys = changedTo.keys();
+      JSONObject output = baseOutput != null ? baseOutput : new JSONObject();
+
+      while (keys.hasNext()) {
+         try {
+            String key = keys.next();
+            Object value = changedTo.get(key);
+
+            if (cur.has(key)) {
+               if (value instanceof JSONObject) {
+                  JSONObject curValue = cur.getJSONObject(key);
+                  JSONObject outValue = null;
+                  if (baseOutput != null && baseOutput.has(key))
+                     outValue = baseOutput.getJSONObject(key);
+                  String returnedJsonStr = stringBasedDiff(curValue, (JSONObject) value, outValue, includeFields).toString();
+                  if (!returnedJsonStr.equals("{}"))
+                     output.put(key, new JSONObject(returnedJsonStr));
+               }
+               else if (value instanceof JSONArray)
+                  stringBasedArrayDiff(key, (JSONArray) value, cur.getJSONArray(key), output);
+               else if (includeFields != null && includeFields.contains(key))
+                  output.put(key, value);
+               else {
+                  Object curValue = cur.get(key);
+                  if (!value.equals(curValue)) {
+                     if (curValue instanceof Integer && !"".equals(value)) {
+                        if (((Number) curValue).doubleValue() != ((Number) value).doubleValue())
+                           output.put(key, value);
+                     }
+                     else
+                        output.put(key, value);
+                  }
+               }
+            }
+            else {
+               if (value instanceof JSONObject)
+                  output.put(key, new JSONObject(value.toString()));
+               else if (value instanceof JSONArray)
+                  stringBasedArrayDiff(key, (JSONArray) value, null, output);
+               else
+                  output.put(key, value);
+            }
+         } catch (JSONException e) {
+            e.printStackTrace();
+         }
+      }
+
+      return output;
+   }
+
+   private static void stringBasedArrayDiff(String key, JSONArray newArray, JSONArray curArray, JSONObject output) throws JSONException {
+      if (key.endsWith("_a") || key.endsWith("_d")) {
+         output.put(key, newArray);
+         return;
+      }
+
+      String arrayStr = joinedString(newArray);
+      JSONArray newOutArray = new JSONArray();
+      JSONArray remOutArray = new JSONArray();
+      String curArrayStr = curArray == null ? null : joinedString(curArray);
+
+      for (int i = 0; i < newArray.length(); i++) {
+         String arrayValue = (String) newArray.get(i);
+         if (curArray == null || !curArrayStr.contains(arrayValue))
+            newOutArray.put(arrayValue);
+      }
+
+      if (curArray != null) {
+         for (int i = 0; i < curArray.length(); i++) {
+            String arrayValue = curArray.getString(i);
+            if (!arrayStr.contains(arrayValue))
+               remOutArray.put(arrayValue);
+         }
+      }
+
+      if (!newOutArray.toString().equals("[]"))
+         output.put(key + "_a", newOutArray);
+      if (!remOutArray.toString().equals("[]"))
+         output.put(key + "_d", remOutArray);
+   }
+
+   private static String joinedString(JSONArray jsonArray) throws JSONException {
+      StringBuilder joined = new StringBuilder("[");
+      for (int i = 0; i < jsonArray.length(); i++)
+         joined.append('"').append(jsonArray.getString(i)).append('"');
+      return joined.append(']').toString();
+   }
+}
@@ -119,16 +119,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import static com.onesignal.OneSignalPackagePrivateHelper.GcmBroadcastReceiver_processBundle;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationBundleProcessor_Process;
 import static com.onesignal.OneSignalPackagePrivateHelper.NotificationOpenedProcessor_processFromContext;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_execute;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_poolSize;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_threadPrefix;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_getSessionListener;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setAppId;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setSessionManager;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setTrackerFactory;
+import static com.onesignal.OneSignalPackagePrivateHelper.UserStatePush_loadPersistedSyncValues;
 import static com.onesignal.OneSignalPackagePrivateHelper.bundleAsJSONObject;
 import static com.onesignal.ShadowOneSignalRestClient.REST_METHOD;
 import static com.test.onesignal.GenerateNotificationRunner.getBaseNotifBundle;
@@ -299,6 +304,86 @@ public class MainOneSignalClassRunner {
       assertNotNull(ShadowOneSignalRestClient.lastPost);
    }
 
+   @Test
+   public void testAsyncInitRunsCallsMadeDuringInitAfterIt() throws Exception {
+      // The init builder isn't reset between tests
+      OneSignal.getCurrentOrNewInitBuilder().asyncInit(true);
+      try {
+         // Application.onCreate
+         OneSignal.init(RuntimeEnvironment.application, "123456789", ONESIGNAL_APP_ID);
+         OneSignal.sendTag("key", "value");
+         GetTags();
+         threadAndTaskWait();
+      } finally {
+         OneSignal.getCurrentOrNewInitBuilder().asyncInit(false);
+      }
+
+      assertNotNull(ShadowOneSignalRestClient.lastPost);
+      assertEquals("value", lastGetTags.getString("key"));
+
+      Map<String, Long> timings = OneSignal.getStartupTimings();
+      assertEquals(Arrays.asList(
+         "app_context",
+         "init_thread_start",
+         "privacy_consent",
+         "initialization_checks",
+         "user_state",
+         "app_id_change",
+         "permission_state",
+         "session_init",
+         "purchase_tracking",
+         "pending_tasks"
+      ), new ArrayList<>(timings.keySet()));
+   }
+
+   @Test
+   public void testActivityResumedDuringAsyncInitStartsSession() throws Exception {
+      // Register the user first so the next init doesn't make a call regardless of focus
+      OneSignal.init(RuntimeEnvironment.application, "123456789", ONESIGNAL_APP_ID);
+      threadAndTaskWait();
+      ShadowOneSignalRestClient.lastPost = null;
+      restartAppAndElapseTimeToNextSession();
+
+      // Hold the IO lane so the background init is still waiting to run when the Activity resumes
+      final CountDownLatch releaseLane = new CountDownLatch(1);
+      for (int i = 0; i < OSTaskScheduler_poolSize("IO"); i++) {
+         OSTaskScheduler_execute("IO", new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  releaseLane.await();
+               } catch (InterruptedException e) {}
+            }
+         });
+      }
+
+      OneSignal.getCurrentOrNewInitBuilder().asyncInit(true);
+      try {
+         // Application.onCreate
+         OneSignal.init(RuntimeEnvironment.application, "123456789", ONESIGNAL_APP_ID);
+         blankActivityController.resume();
+         releaseLane.countDown();
+         threadAndTaskWait();
+      } finally {
+         releaseLane.countDown();
+         OneSignal.getCurrentOrNewInitBuilder().asyncInit(false);
+      }
+
+      // The resume counts as the first Activity even though init finished after it
+      assertNotNull(ShadowOneSignalRestClient.lastPost);
+   }
+
+   @Test
+   public void testStartupTimingsOfSynchronousInit() throws Exception {
+      OneSignalInit();
+      threadAndTaskWait();
+
+      Map<String, Long> timings = OneSignal.getStartupTimings();
+      assertFalse(timings.containsKey("init_thread_start"));
+      assertTrue(timings.containsKey("session_init"));
+      assertTrue(timings.containsKey("pending_tasks"));
+   }
+
    @Test
    public void testDeviceTypeIsAndroid_forPlayerCreate() throws Exception {
       // 1. Init OneSignal so the app id is cached
@@ -2686,9 +2771,7 @@ public class MainOneSignalClassRunner {
       threadAndTaskWait();
 
       flushBufferedSharedPrefs();
-      final SharedPreferences prefs = blankActivity.getSharedPreferences(OneSignal.class.getSimpleName(), Context.MODE_PRIVATE);
-      String syncValues = prefs.getString("ONESIGNAL_USERSTATE_SYNCVALYES_CURRENT_STATE", null);
-      assertFalse(new JSONObject(syncValues).has("tags"));
+      assertFalse(UserStatePush_loadPersistedSyncValues("CURRENT_STATE").has("tags"));
    }
 
 
@@ -2711,9 +2794,7 @@ public class MainOneSignalClassRunner {
       assertEquals("{}", lastGetTags.toString());
 
       flushBufferedSharedPrefs();
-      final SharedPreferences prefs = blankActivity.getSharedPreferences(OneSignal.class.getSimpleName(), Context.MODE_PRIVATE);
-      JSONObject syncValues = new JSONObject(prefs.getString("ONESIGNAL_USERSTATE_SYNCVALYES_CURRENT_STATE", null));
-      assertFalse(syncValues.has("tags"));
+      assertFalse(UserStatePush_loadPersistedSyncValues("CURRENT_STATE").has("tags"));
    }
 
    @Test
@@ -4497,6 +4578,25 @@ public class MainOneSignalClassRunner {
       assertTrue(queue.take());
    }
 
+   @Test
+   public void testGetTagsHandlerRunsOnCallbackLane() throws Exception {
+      final BlockingQueue<String> threadNames = new ArrayBlockingQueue<>(1);
+
+      OneSignalInit();
+      threadAndTaskWait();
+
+      OneSignal.getTags(new OneSignal.GetTagsHandler() {
+         @Override
+         public void tagsAvailable(JSONObject tags) {
+            threadNames.offer(Thread.currentThread().getName());
+         }
+      });
+      threadAndTaskWait();
+
+      // Fetching the tags happens on the IO lane, the CALLBACK lane only runs the handler
+      assertTrue(threadNames.take().startsWith(OSTaskScheduler_threadPrefix("CALLBACK")));
+   }
+
    @Test
    public void testNestedGetTags() throws Exception {
       final BlockingQueue<Boolean> queue = new ArrayBlockingQueue<>(2);
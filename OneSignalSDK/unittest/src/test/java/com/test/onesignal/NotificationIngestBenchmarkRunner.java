@@ -0,0 +1,182 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.onesignal.MockOneSignalDBHelper;
+import com.onesignal.OneSignal;
+import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+import com.onesignal.StaticResetHelper;
+import com.onesignal.example.BlankActivity;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationIngestQueue_getCommittedBatches;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationIngestQueue_ingest;
+import static com.test.onesignal.BenchmarkReport.perSecond;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures notification ingest throughput for bursts of N pushes, written to notification-ingest.json.
+ * The baseline issues the update and insert as separate transactions like saveNotification used to,
+ *    the ingest queue writes both in one transaction and batches pushes arriving on several threads.
+ */
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class NotificationIngestBenchmarkRunner {
+
+   private static final int[] PUSH_COUNTS = { 10, 100, 500 };
+   private static final int RECEIVER_THREADS = 8;
+
+   private Activity blankActivity;
+   private MockOneSignalDBHelper dbHelper;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      BenchmarkReport.assumeEnabled();
+      blankActivity = Robolectric.buildActivity(BlankActivity.class).create().get();
+      dbHelper = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      TestHelpers.beforeTestInitAndCleanup();
+      OneSignal.setAppContext(blankActivity);
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void measureIngestThroughput() throws Exception {
+      JSONArray results = new JSONArray();
+      int pushOffset = 0;
+      for (int pushCount : PUSH_COUNTS) {
+         long start = System.nanoTime();
+         for (int i = pushOffset; i < pushOffset + pushCount; i++)
+            ingestWithSeparateTransactions("baseline_" + i, i);
+         long baselineNanos = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = pushOffset; i < pushOffset + pushCount; i++)
+            NotificationIngestQueue_ingest(blankActivity, "sequential_" + i, i);
+         long sequentialNanos = System.nanoTime() - start;
+
+         long batchesBefore = NotificationIngestQueue_getCommittedBatches();
+         long concurrentNanos = ingestConcurrently(pushOffset, pushCount);
+         long batches = NotificationIngestQueue_getCommittedBatches() - batchesBefore;
+
+         pushOffset += pushCount;
+         assertEquals(pushOffset * 3, notificationRowCount());
+
+         results.put(new JSONObject()
+            .put("pushes", pushCount)
+            .put("separateTransactionsPushesPerSecond", perSecond(pushCount, baselineNanos))
+            .put("sequentialIngestPushesPerSecond", perSecond(pushCount, sequentialNanos))
+            .put("concurrentIngestPushesPerSecond", perSecond(pushCount, concurrentNanos))
+            .put("concurrentIngestThreads", RECEIVER_THREADS)
+            .put("concurrentIngestTransactions", batches));
+      }
+
+      BenchmarkReport.write("notification-ingest", new JSONObject().put("results", results));
+   }
+
+   private long ingestConcurrently(final int pushOffset, final int pushCount) throws InterruptedException {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < RECEIVER_THREADS; t++) {
+         final int threadIndex = t;
+         Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               for (int i = pushOffset + threadIndex; i < pushOffset + pushCount; i += RECEIVER_THREADS)
+                  NotificationIngestQueue_ingest(blankActivity, "concurrent_" + i, i);
+            }
+         }, "Benchmark_IngestReceiver");
+         thread.start();
+         threads.add(thread);
+      }
+
+      long startNanos = System.nanoTime();
+      start.countDown();
+      for (Thread thread : threads)
+         thread.join();
+      return System.nanoTime() - startNanos;
+   }
+
+   private void ingestWithSeparateTransactions(String notificationId, int androidNotificationId) {
+      ContentValues dismissed = new ContentValues();
+      dismissed.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
+      dbHelper.update(NotificationTable.TABLE_NAME, dismissed, NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidNotificationId, null);
+
+      ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, notificationId);
+      values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, androidNotificationId);
+      values.put(NotificationTable.COLUMN_NAME_OPENED, 0);
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, "{\"custom\":{\"i\":\"" + notificationId + "\"}}");
+      dbHelper.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+   }
+
+   private int notificationRowCount() {
+      Cursor cursor = dbHelper.query(NotificationTable.TABLE_NAME, null, null, null, null, null, null);
+      int count = cursor.getCount();
+      cursor.close();
+      return count;
+   }
+}
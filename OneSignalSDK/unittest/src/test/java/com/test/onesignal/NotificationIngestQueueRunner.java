@@ -0,0 +1,228 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import android.app.Activity;
+import android.database.Cursor;
+
+import com.onesignal.MockOneSignalDBHelper;
+import com.onesignal.OneSignal;
+import com.onesignal.OneSignalPackagePrivateHelper.BadgeCountUpdater;
+import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+import com.onesignal.ShadowOneSignalDbTransactions;
+import com.onesignal.ShadowShortcutBadger;
+import com.onesignal.StaticResetHelper;
+import com.onesignal.example.BlankActivity;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationIngestQueue_getCommittedBatches;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationIngestQueue_getPendingCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationIngestQueue_ingest;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSNotificationDedupIndex_isDuplicate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        shadows = { ShadowOneSignalDbTransactions.class, ShadowShortcutBadger.class },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class NotificationIngestQueueRunner {
+
+   private static final int PUSH_COUNT = 500;
+   private static final int RECEIVER_THREADS = 8;
+   private static final long AWAIT_TIMEOUT_MS = 10_000;
+
+   private Activity blankActivity;
+   private MockOneSignalDBHelper dbHelper;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      blankActivity = Robolectric.buildActivity(BlankActivity.class).create().get();
+      dbHelper = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      TestHelpers.beforeTestInitAndCleanup();
+      ShadowShortcutBadger.resetStatics();
+      OneSignal.setAppContext(blankActivity);
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void testSequentialIngestSavesEveryPush() {
+      for (int i = 0; i < 100; i++)
+         assertTrue(NotificationIngestQueue_ingest(blankActivity, "sequential_" + i, i));
+
+      assertEquals(100, notificationRowCount(null));
+      assertEquals(0, notificationRowCount(NotificationTable.COLUMN_NAME_DISMISSED + " = 1"));
+      for (int i = 0; i < 100; i++)
+         assertTrue(OSNotificationDedupIndex_isDuplicate(blankActivity, "sequential_" + i));
+   }
+
+   @Test
+   public void testIngestDismissesEarlierNotificationWithSameAndroidId() {
+      assertTrue(NotificationIngestQueue_ingest(blankActivity, "first", 1));
+      assertTrue(NotificationIngestQueue_ingest(blankActivity, "second", 1));
+
+      assertEquals(2, notificationRowCount(null));
+      assertEquals(1, notificationRowCount(NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = 'first' AND " + NotificationTable.COLUMN_NAME_DISMISSED + " = 1"));
+      assertEquals(1, notificationRowCount(NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = 'second' AND " + NotificationTable.COLUMN_NAME_DISMISSED + " = 0"));
+   }
+
+   @Test
+   public void testConcurrentIngestSavesEveryPush() throws Exception {
+      AtomicInteger notSaved = new AtomicInteger();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < RECEIVER_THREADS; t++)
+         threads.add(startReceiver(t, PUSH_COUNT, notSaved));
+      for (Thread thread : threads)
+         thread.join();
+
+      // Every caller returns only after its row was committed
+      assertEquals(0, notSaved.get());
+      assertEquals(PUSH_COUNT, notificationRowCount(null));
+      for (int i = 0; i < PUSH_COUNT; i++)
+         assertTrue(OSNotificationDedupIndex_isDuplicate(blankActivity, "concurrent_" + i));
+      assertFalse(OSNotificationDedupIndex_isDuplicate(blankActivity, "concurrent_" + PUSH_COUNT));
+   }
+
+   @Test
+   public void testPushesQueuedDuringACommitAreWrittenInOneBatch() throws Exception {
+      long batchesBefore = NotificationIngestQueue_getCommittedBatches();
+      AtomicInteger notSaved = new AtomicInteger();
+      ShadowOneSignalDbTransactions.holdNextTransaction();
+
+      // The first receiver becomes the committer and is held inside its transaction
+      List<Thread> threads = new ArrayList<>();
+      threads.add(startReceiver(0, RECEIVER_THREADS, notSaved));
+      assertTrue(ShadowOneSignalDbTransactions.transactionStarted.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+      for (int t = 1; t < RECEIVER_THREADS; t++)
+         threads.add(startReceiver(t, RECEIVER_THREADS, notSaved));
+      long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+      while (NotificationIngestQueue_getPendingCount() < RECEIVER_THREADS - 1 && System.currentTimeMillis() < deadline)
+         Thread.sleep(1);
+      assertEquals(RECEIVER_THREADS - 1, NotificationIngestQueue_getPendingCount());
+
+      ShadowOneSignalDbTransactions.holdTransaction.countDown();
+      for (Thread thread : threads)
+         thread.join();
+
+      // The held push, then everything that queued behind it
+      assertEquals(0, notSaved.get());
+      assertEquals(RECEIVER_THREADS, notificationRowCount(null));
+      assertEquals(2, NotificationIngestQueue_getCommittedBatches() - batchesBefore);
+   }
+
+   @Test
+   @Config(sdk = 21)
+   public void testBatchIsRetriedAfterOneRollback() {
+      long batchesBefore = NotificationIngestQueue_getCommittedBatches();
+      ShadowOneSignalDbTransactions.rollbacks = 1;
+
+      assertTrue(NotificationIngestQueue_ingest(blankActivity, "retried", 1));
+
+      assertEquals(1, notificationRowCount(null));
+      assertEquals(1, NotificationIngestQueue_getCommittedBatches() - batchesBefore);
+      assertTrue(OSNotificationDedupIndex_isDuplicate(blankActivity, "retried"));
+      BadgeCountUpdater.runPendingApply();
+      assertEquals(Arrays.asList(1), ShadowShortcutBadger.appliedCounts);
+   }
+
+   @Test
+   @Config(sdk = 21)
+   public void testPushIsReleasedUnsavedAfterTwoRollbacks() {
+      long batchesBefore = NotificationIngestQueue_getCommittedBatches();
+      ShadowOneSignalDbTransactions.rollbacks = 2;
+
+      assertFalse(NotificationIngestQueue_ingest(blankActivity, "dropped", 1));
+
+      assertEquals(0, notificationRowCount(null));
+      assertEquals(0, NotificationIngestQueue_getCommittedBatches() - batchesBefore);
+      // A saved id would be answered from the recent ids without querying the table
+      assertFalse(OSNotificationDedupIndex_isDuplicate(blankActivity, "dropped"));
+      BadgeCountUpdater.runPendingApply();
+      assertEquals(Collections.emptyList(), ShadowShortcutBadger.appliedCounts);
+      assertEquals(0, BadgeCountUpdater.getReconcileCount());
+
+      // The next push counts only the rows that were saved
+      assertTrue(NotificationIngestQueue_ingest(blankActivity, "next", 2));
+      BadgeCountUpdater.runPendingApply();
+      assertEquals(Arrays.asList(1), ShadowShortcutBadger.appliedCounts);
+   }
+
+   // Ingests every RECEIVER_THREADS push starting at receiverIndex
+   private Thread startReceiver(final int receiverIndex, final int pushCount, final AtomicInteger notSaved) {
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            for (int i = receiverIndex; i < pushCount; i += RECEIVER_THREADS) {
+               if (!NotificationIngestQueue_ingest(blankActivity, "concurrent_" + i, i))
+                  notSaved.incrementAndGet();
+            }
+         }
+      }, "Test_IngestReceiver");
+      thread.start();
+      return thread;
+   }
+
+   private int notificationRowCount(String selection) {
+      Cursor cursor = dbHelper.query(NotificationTable.TABLE_NAME, null, selection, null, null, null, null);
+      int count = cursor.getCount();
+      cursor.close();
+      return count;
+   }
+}
@@ -0,0 +1,202 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationPayloadCodec_put;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationPayloadCodec_read;
+import static com.onesignal.OneSignalPackagePrivateHelper.NotificationRestorer_columnsForRestore;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalDbHelper_createNotificationTable;
+import static com.test.onesignal.BenchmarkReport.millis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares notification payload storage before and after DB version 10.
+ * The legacy DB keeps every payload as text in full_data, the current DB writes them through NotificationPayloadCodec.
+ * DB file sizes and restore query times are written to notification-payload-storage.json.
+ */
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class NotificationPayloadStorageBenchmarkRunner {
+
+   private static final int[] NOTIFICATION_COUNTS = { 49, 500, 2_000 };
+   private static final int RESTORE_ITERATIONS = 5;
+
+   private File legacyFile;
+   private File compressedFile;
+
+   @Before
+   public void beforeEachTest() throws IOException {
+      BenchmarkReport.assumeEnabled();
+      legacyFile = File.createTempFile("onesignal_legacy", ".db");
+      compressedFile = File.createTempFile("onesignal_compressed", ".db");
+   }
+
+   @After
+   public void afterEachTest() {
+      if (legacyFile == null)
+         return;
+      SQLiteDatabase.deleteDatabase(legacyFile);
+      SQLiteDatabase.deleteDatabase(compressedFile);
+   }
+
+   @Test
+   public void measurePayloadStorage() throws IOException, JSONException {
+      JSONArray results = new JSONArray();
+      for (int notificationCount : NOTIFICATION_COUNTS) {
+         afterEachTest();
+
+         SQLiteDatabase legacyDb = createDatabase(legacyFile);
+         SQLiteDatabase compressedDb = createDatabase(compressedFile);
+         insertNotifications(legacyDb, notificationCount, false);
+         insertNotifications(compressedDb, notificationCount, true);
+
+         long legacyRestoreNanos = timeRestoreQuery(legacyDb, notificationCount);
+         long compressedRestoreNanos = timeRestoreQuery(compressedDb, notificationCount);
+         legacyDb.close();
+         compressedDb.close();
+
+         assertTrue(compressedFile.length() <= legacyFile.length());
+
+         results.put(new JSONObject()
+            .put("notifications", notificationCount)
+            .put("legacyDbBytes", legacyFile.length())
+            .put("compressedDbBytes", compressedFile.length())
+            .put("legacyRestoreQueryMs", millis(legacyRestoreNanos) / RESTORE_ITERATIONS)
+            .put("compressedRestoreQueryMs", millis(compressedRestoreNanos) / RESTORE_ITERATIONS));
+      }
+
+      BenchmarkReport.write("notification-payload-storage", new JSONObject().put("results", results));
+   }
+
+   private static SQLiteDatabase createDatabase(File file) {
+      SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+      OneSignalDbHelper_createNotificationTable(db);
+      return db;
+   }
+
+   private static void insertNotifications(SQLiteDatabase db, int count, boolean useCodec) throws JSONException {
+      db.beginTransaction();
+      try {
+         for (int i = 0; i < count; i++) {
+            String fullData = buildPayload(i).toString();
+            ContentValues values = new ContentValues();
+            values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification_" + i);
+            values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, i);
+            values.put(NotificationTable.COLUMN_NAME_TITLE, "Title " + i);
+            values.put(NotificationTable.COLUMN_NAME_MESSAGE, "Message " + i);
+            values.put(NotificationTable.COLUMN_NAME_EXPIRE_TIME, Long.MAX_VALUE);
+            if (useCodec)
+               NotificationPayloadCodec_put(values, fullData);
+            else
+               values.put(NotificationTable.COLUMN_NAME_FULL_DATA, fullData);
+            db.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+         }
+         db.setTransactionSuccessful();
+      } finally {
+         db.endTransaction();
+      }
+   }
+
+   // Same query NotificationRestorer runs, including parsing each payload as restore does
+   private static long timeRestoreQuery(SQLiteDatabase db, int expectedRows) throws JSONException {
+      long start = System.nanoTime();
+      for (int iteration = 0; iteration < RESTORE_ITERATIONS; iteration++) {
+         Cursor cursor = db.query(
+            NotificationTable.TABLE_NAME,
+            NotificationRestorer_columnsForRestore(),
+            NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " + NotificationTable.COLUMN_NAME_DISMISSED + " = 0",
+            null,
+            null,
+            null,
+            NotificationTable._ID + " DESC"
+         );
+
+         int rows = 0;
+         while (cursor.moveToNext()) {
+            String fullData = NotificationPayloadCodec_read(cursor);
+            assertNotNull(fullData);
+            new JSONObject(fullData);
+            rows++;
+         }
+         cursor.close();
+         assertEquals(expectedRows, rows);
+      }
+      return System.nanoTime() - start;
+   }
+
+   // Sized like a typical push with additional data, a big picture and action buttons
+   private static JSONObject buildPayload(int index) throws JSONException {
+      JSONObject additionalData = new JSONObject();
+      for (int i = 0; i < 8; i++)
+         additionalData.put("key_" + i, "value_" + i + "_" + index);
+
+      JSONArray buttons = new JSONArray();
+      for (int i = 0; i < 3; i++)
+         buttons.put(new JSONObject().put("i", "button_" + i).put("n", "Button " + i));
+
+      return new JSONObject()
+         .put("alert", "Message " + index + " with enough body text to wrap onto a second line of the shade")
+         .put("title", "Title " + index)
+         .put("bicon", "https://img.onesignal.com/n/" + index + "/big_picture.png")
+         .put("licon", "https://img.onesignal.com/n/" + index + "/large_icon.png")
+         .put("grp", "group_" + (index % 4))
+         .put("pri", 5)
+         .put("google.sent_time", 1_600_000_000_000L + index)
+         .put("google.ttl", 259_200)
+         .put("o", buttons.toString())
+         .put("custom", new JSONObject()
+            .put("i", "notification_" + index)
+            .put("u", "https://onesignal.com/landing/" + index)
+            .put("a", additionalData)
+            .toString());
+   }
+}
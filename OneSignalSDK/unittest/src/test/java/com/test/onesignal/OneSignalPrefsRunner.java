@@ -20,7 +20,13 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import static com.onesignal.OneSignalPackagePrivateHelper.OSBlobStore_read;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSBlobStore_write;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalPrefs_getLong;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalPrefs_getString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 @Config(packageName = "com.onesignal.example",
         instrumentedPackages = { "com.onesignal" },
@@ -68,4 +74,138 @@ public class OneSignalPrefsRunner {
       String value = prefs.getString("key", "");
       assertEquals("value", value);
    }
+
+   @Test
+   public void testReadsSeeBufferedWritesBeforeFlush() {
+      OneSignal.setAppContext(blankActivity);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, "key", "value");
+      TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 123L);
+
+      assertEquals("value", OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, "key", null));
+      assertEquals(123L, OneSignalPrefs_getLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+
+      TestHelpers.flushBufferedSharedPrefs();
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, "key", "value2");
+
+      assertEquals("value2", OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, "key", null));
+      assertEquals(123L, OneSignalPrefs_getLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+   }
+
+   @Test
+   public void testHotKeysAreWrittenToTheirOwnFile() {
+      OneSignal.setAppContext(blankActivity);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, "key", "value");
+      TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 123L);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      SharedPreferences hotPrefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL_HOT, Context.MODE_PRIVATE);
+      assertEquals("value", prefs.getString("key", null));
+      assertFalse(prefs.contains(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME));
+      assertEquals(123L, hotPrefs.getLong(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+      assertFalse(hotPrefs.contains("key"));
+   }
+
+   @Test
+   public void testHotKeyWrittenBeforeSplitIsReadThenMoved() {
+      SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      prefs.edit().putLong(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 123L).commit();
+      OneSignal.setAppContext(blankActivity);
+
+      assertEquals(123L, OneSignalPrefs_getLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+
+      TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 456L);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      SharedPreferences hotPrefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL_HOT, Context.MODE_PRIVATE);
+      assertFalse(prefs.contains(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME));
+      assertEquals(456L, hotPrefs.getLong(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+      assertEquals(456L, OneSignalPrefs_getLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+   }
+
+   @Test
+   public void testFlushKeepsOtherKeysInLargePrefsFile() {
+      SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      SharedPreferences.Editor editor = prefs.edit();
+      for (int i = 0; i < 1_000; i++)
+         editor.putString("KEY_" + i, "value_" + i);
+      editor.commit();
+      OneSignal.setAppContext(blankActivity);
+
+      TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, "COLD_KEY", 1L);
+      TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 2L);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      SharedPreferences hotPrefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL_HOT, Context.MODE_PRIVATE);
+      assertEquals(1L, prefs.getLong("COLD_KEY", 0L));
+      assertEquals("value_0", prefs.getString("KEY_0", null));
+      assertEquals("value_999", prefs.getString("KEY_999", null));
+      assertEquals(2L, hotPrefs.getLong(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+   }
+
+   @Test
+   public void testRepeatedSavesBeforeFlushWriteLastValue() {
+      OneSignal.setAppContext(blankActivity);
+      for (int i = 0; i < 1_000; i++)
+         TestOneSignalPrefs.saveLong(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, i);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      SharedPreferences hotPrefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL_HOT, Context.MODE_PRIVATE);
+      assertEquals(999L, hotPrefs.getLong(TestOneSignalPrefs.PREFS_OS_LAST_SESSION_TIME, 0L));
+   }
+
+   @Test
+   public void testBlobKeysAreWrittenToTheirOwnFile() throws Exception {
+      OneSignal.setAppContext(blankActivity);
+      String cacheKey = TestOneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + "GET_TAGS";
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, "{\"tags\":{}}");
+
+      assertEquals("{\"tags\":{}}", OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, null));
+      TestHelpers.flushBufferedSharedPrefs();
+
+      SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      assertFalse(prefs.contains(cacheKey));
+      assertEquals("{\"tags\":{}}", OSBlobStore_read(blankActivity, cacheKey));
+      assertEquals("{\"tags\":{}}", OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, null));
+   }
+
+   @Test
+   public void testBlobKeyInSharedPreferencesIsReadThenMoved() throws Exception {
+      String stateKey = TestOneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_ + "CURRENT_STATE";
+      SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      prefs.edit().putString(stateKey, "{\"tags\":{\"int\":123}}").commit();
+      OneSignal.setAppContext(blankActivity);
+
+      assertEquals("{\"tags\":{\"int\":123}}", OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, stateKey, null));
+
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, stateKey, "{}");
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertFalse(prefs.contains(stateKey));
+      assertEquals("{}", OSBlobStore_read(blankActivity, stateKey));
+   }
+
+   @Test
+   public void testSavingNullDeletesBlob() throws Exception {
+      OneSignal.setAppContext(blankActivity);
+      String cacheKey = TestOneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + "GET_TAGS";
+      OSBlobStore_write(blankActivity, cacheKey, "{}");
+
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, null);
+      assertNull(OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, null));
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertNull(OSBlobStore_read(blankActivity, cacheKey));
+      assertNull(OneSignalPrefs_getString(TestOneSignalPrefs.PREFS_ONESIGNAL, cacheKey, null));
+   }
+
+   @Test
+   public void testLargeBlobIsReadBackFully() throws Exception {
+      StringBuilder value = new StringBuilder();
+      while (value.length() < 1_000_000)
+         value.append("{\"key\":\"value \u2713\"},");
+
+      OSBlobStore_write(blankActivity, "large", value.toString());
+      assertEquals(value.toString(), OSBlobStore_read(blankActivity, "large"));
+   }
 }
@@ -625,4 +625,51 @@ public class OutcomeEventV2UnitTests {
         assertEquals("{\"id\":\"testing\",\"weight\":1.1,\"device_type\":1}", service.getLastJsonObjectSent());
     }
 
+    private void cacheFailedOutcomes(int count) throws Exception {
+        service.setSuccess(false);
+        // Restart session by app open should set UNATTRIBUTED influence
+        sessionManager.restartSessionIfNeeded(OneSignal.AppEntryAction.APP_OPEN);
+        for (int i = 0; i < count; i++) {
+            // Cached outcomes are removed by timestamp so give each one it's own
+            lockTimeTo(i + 1);
+            controller.sendOutcomeEvent(OUTCOME_NAME + i);
+            threadAndTaskWait();
+        }
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+        threadAndTaskWait();
+        assertEquals(count, outcomeEvents.size());
+        service.resetPostCount();
+    }
+
+    @Test
+    public void testSendFailedOutcomesOnDBInBatches() throws Exception {
+        cacheFailedOutcomes(45);
+
+        service.setSuccess(true);
+        controller.sendSavedOutcomes();
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+        threadAndTaskWait();
+
+        assertEquals(45, service.getPostCount());
+        assertEquals(0, outcomeEvents.size());
+    }
+
+    @Test
+    public void testSendFailedOutcomesOnDBStopsAfterFailedBatch() throws Exception {
+        cacheFailedOutcomes(45);
+
+        controller.sendSavedOutcomes();
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+        threadAndTaskWait();
+
+        // Only the first batch is attempted while every request fails
+        assertEquals(OneSignalPackagePrivateHelper.OSOutcomeEventsController_SAVED_OUTCOMES_BATCH_SIZE, service.getPostCount());
+        assertEquals(45, outcomeEvents.size());
+    }
+
 }
\ No newline at end of file
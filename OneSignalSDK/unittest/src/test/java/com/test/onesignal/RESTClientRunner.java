@@ -27,24 +27,41 @@
 
 package com.test.onesignal;
 
+import com.onesignal.MockHttpServer;
 import com.onesignal.MockHttpURLConnection;
+import com.onesignal.MockOneSignalDBHelper;
 import com.onesignal.OneSignal;
+import com.onesignal.OneSignalPackagePrivateHelper;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestRequestOutbox;
+import com.onesignal.OneSignalPackagePrivateHelper.OutboxTable;
+import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
 import com.onesignal.OneSignalPackagePrivateHelper.OneSignalRestClient;
 import com.onesignal.ShadowOneSignalRestClientWithMockConnection;
 import com.onesignal.StaticResetHelper;
 
+import android.database.Cursor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import static com.test.onesignal.TestHelpers.advanceSystemTimeBy;
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 @Config(packageName = "com.onesignal.example",
@@ -71,6 +88,14 @@ public class RESTClientRunner {
       TestHelpers.beforeTestInitAndCleanup();
    }
 
+   @After
+   public void afterEachTest() throws Exception {
+      if (localServer != null)
+         localServer.shutdown();
+      localServer = null;
+      OneSignalRestClient.setRequestCompression(false);
+   }
+
    @AfterClass
    public static void afterEverything() throws Exception {
       StaticResetHelper.restSetStaticFields();
@@ -85,7 +110,56 @@ public class RESTClientRunner {
       OneSignalRestClient.get("URL", null, "");
       threadAndTaskWait();
 
-      assertTrue(ShadowOneSignalRestClientWithMockConnection.lastConnection.getDidInterruptMockHang());
+      assertTrue(ShadowOneSignalRestClientWithMockConnection.lastConnection.getDidDisconnectMockHang());
+   }
+
+   @Test
+   public void testSyncRequestOnHungConnectionReturnsWithoutTouchingCallerInterrupt() throws Exception {
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         mockThreadHang = true;
+      }};
+
+      final int[] failureCount = {0};
+      final boolean[] callerInterrupted = {false};
+      Thread caller = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            OneSignalRestClient.getSync("URL", new OneSignalRestClient.ResponseHandler() {
+               @Override
+               public void onFailure(int statusCode, String response, Throwable throwable) {
+                  failureCount[0]++;
+               }
+            }, "");
+            callerInterrupted[0] = Thread.currentThread().isInterrupted();
+         }
+      }, "Test_Sync_Caller");
+      caller.start();
+      caller.join(10_000);
+
+      assertEquals(Thread.State.TERMINATED, caller.getState());
+      assertEquals(1, failureCount[0]);
+      assertTrue(ShadowOneSignalRestClientWithMockConnection.lastConnection.getDidDisconnectMockHang());
+      assertFalse(callerInterrupted[0]);
+   }
+
+   @Test
+   public void testRequestBurstUsesBoundedThreadPools() throws Exception {
+      final int[] successCount = {0};
+      for (int i = 0; i < 25; i++) {
+         OneSignalRestClient.get("URL", new OneSignalRestClient.ResponseHandler() {
+            @Override
+            public void onSuccess(String response) {
+               synchronized (successCount) {
+                  successCount[0]++;
+               }
+            }
+         }, "");
+      }
+      threadAndTaskWait();
+
+      assertEquals(25, successCount[0]);
+      assertTrue(OneSignalPackagePrivateHelper.getLargestRestClientNetworkThreadCount() <= 4);
+      assertTrue(OneSignalPackagePrivateHelper.getLargestRestClientCallbackThreadCount() <= 2);
    }
 
    private static final String SDK_VERSION_HTTP_HEADER = "onesignal/android/" + OneSignal.VERSION;
@@ -118,6 +192,7 @@ public class RESTClientRunner {
    private final static String MOCK_ETAG_VALUE = "MOCK_ETAG_VALUE";
 
    private String firstResponse, secondResponse;
+   private MockHttpServer localServer;
 
    // Note Thread.sleep in the following two tests are used since we can't wait on threads
    //    created from callResponseHandlerOnSuccess due deadlock limitations with Scheduler
@@ -159,6 +234,18 @@ public class RESTClientRunner {
       assertEquals(MOCK_ETAG_VALUE, getLastHTTPHeaderProp("if-none-match"));
    }
 
+   @Test
+   public void testLegacyETagIsNotSentWithoutItsCachedResponse() throws Exception {
+      // Older versions stored the ETag and the body under separate keys, which could get out of sync
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_ETAG_PREFIX + MOCK_CACHE_KEY, MOCK_ETAG_VALUE);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, TestOneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + MOCK_CACHE_KEY, "{\"stale\": true}");
+
+      OneSignalRestClient.get("URL", null, MOCK_CACHE_KEY);
+      threadAndTaskWait();
+
+      assertNull(getLastHTTPHeaderProp("if-none-match"));
+   }
+
    @Test
    public void testReplacesCacheOn200() throws Exception {
       testReusesCache();
@@ -253,6 +340,385 @@ public class RESTClientRunner {
       assertEquals(statusCode, statusCodeResponse[0]);
    }
 
+   private MockHttpServer startLocalServer() throws Exception {
+      localServer = new MockHttpServer();
+      ShadowOneSignalRestClientWithMockConnection.localServer = localServer;
+      ShadowOneSignalRestClientWithMockConnection.threadTimeout = 10_000;
+      return localServer;
+   }
+
+   private int sendPostBurst(int count) throws Exception {
+      final int[] successCount = {0};
+      for (int i = 0; i < count; i++) {
+         OneSignalRestClient.post("players/a2f7f967-e8cc-11e4-bed1-118f05be4511/on_focus", new JSONObject().put("active_time", i), new OneSignalRestClient.ResponseHandler() {
+            @Override
+            public void onSuccess(String response) {
+               synchronized (successCount) {
+                  successCount[0]++;
+               }
+            }
+         });
+      }
+      threadAndTaskWait();
+      return successCount[0];
+   }
+
+   @Test
+   public void testBurstOfRequestsReusesSockets() throws Exception {
+      MockHttpServer server = startLocalServer();
+
+      assertEquals(12, sendPostBurst(12));
+      assertEquals(12, server.getRequests().size());
+      // At most one socket per network pool thread, the rest are served from the keep-alive pool
+      assertTrue(server.getAcceptedSocketCount() <= 4);
+   }
+
+   @Test
+   public void testBurstOfRequestsOpensSocketPerRequestWithoutConnectionReuse() throws Exception {
+      MockHttpServer server = startLocalServer();
+
+      OneSignalRestClient.setConnectionReuse(false);
+      try {
+         assertEquals(12, sendPostBurst(12));
+      } finally {
+         OneSignalRestClient.setConnectionReuse(true);
+      }
+
+      assertEquals(12, server.getAcceptedSocketCount());
+   }
+
+   @Test
+   public void testLargeResponseIsReadFully() throws Exception {
+      localServer = startLocalServer();
+      StringBuilder largeBody = new StringBuilder("{\"html\":\"");
+      // Multi-byte characters make sure Content-Length is treated as a byte count, not a char count
+      while (largeBody.length() < 500_000)
+         largeBody.append("<p>caf\u00e9 \u2713 message</p>");
+      largeBody.append("\"}");
+      localServer.responseBody = largeBody.toString();
+
+      final String[] response = {null};
+      OneSignalRestClient.get("in_app_messages/html", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String successResponse) {
+            response[0] = successResponse;
+         }
+      }, null);
+      threadAndTaskWait();
+
+      assertEquals(largeBody.toString(), response[0]);
+   }
+
+   @Test
+   public void testStreamingResponseIsParsedFromConnectionAndReusesSocket() throws Exception {
+      localServer = startLocalServer();
+      localServer.gzipResponses = true;
+      final JSONArray inAppMessages = new JSONArray()
+         .put(new JSONObject().put("id", "message_1").put("variants", new JSONObject().put("all", new JSONObject().put("en", "variant_1"))))
+         .put(new JSONObject().put("id", "message_2").put("triggers", new JSONArray()));
+      localServer.responseBody = new JSONObject()
+         .put("success", true)
+         .put(OneSignalPackagePrivateHelper.IN_APP_MESSAGES_JSON_KEY, inAppMessages)
+         .put("id", "player_id")
+         .toString();
+
+      final JSONArray[] parsedMessages = new JSONArray[2];
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            parsedMessages[0] = OneSignalPackagePrivateHelper.OneSignalRestClient_postSyncStreamingSessionResponse("players/id/on_session", new JSONObject());
+            parsedMessages[1] = OneSignalPackagePrivateHelper.OneSignalRestClient_postSyncStreamingSessionResponse("players/id/on_session", new JSONObject());
+         }
+      });
+
+      assertEquals(inAppMessages.toString(), parsedMessages[0].toString());
+      assertEquals(inAppMessages.toString(), parsedMessages[1].toString());
+      // The gzip trailer is only read by draining the stream after parsing, the socket can't be reused without it
+      assertEquals(1, localServer.getAcceptedSocketCount());
+   }
+
+   @Test
+   public void testStreamingSessionResponseMatchesJSONObjectParse() throws Exception {
+      JSONObject trigger = new JSONObject()
+         .put("id", "trigger_1")
+         .put("operator", "greater")
+         .put("value", 3);
+      JSONArray inAppMessages = new JSONArray()
+         .put(new JSONObject()
+            .put("id", "message_\u2713")
+            .put("triggers", new JSONArray().put(new JSONArray().put(trigger)))
+            .put("redisplay", new JSONObject().put("limit", 10).put("delay", 60))
+            .put("display_duration", 12.5)
+            .put("has_liquid", false)
+            .put("end_time", JSONObject.NULL));
+      String response = new JSONObject()
+         .put("id", "player_id")
+         .put("success", true)
+         .put(OneSignalPackagePrivateHelper.IN_APP_MESSAGES_JSON_KEY, inAppMessages)
+         .toString();
+
+      assertEquals(
+         new JSONObject(response).getJSONArray(OneSignalPackagePrivateHelper.IN_APP_MESSAGES_JSON_KEY).toString(),
+         OneSignalPackagePrivateHelper.UserStateSynchronizer_parseSessionResponseInAppMessages(response).toString()
+      );
+   }
+
+   @Test
+   public void testMalformedStreamingResponseIsAFailure() throws Exception {
+      localServer = startLocalServer();
+      localServer.responseBody = "{\"id\": \"player_id\", \"in_app_messages\": [";
+
+      final JSONArray[] parsedMessages = { new JSONArray() };
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            parsedMessages[0] = OneSignalPackagePrivateHelper.OneSignalRestClient_postSyncStreamingSessionResponse("players/id/on_session", new JSONObject());
+         }
+      });
+
+      assertNull(parsedMessages[0]);
+   }
+
+   @Test
+   public void testReadResponseBodyHandlesMismatchedContentLength() throws Exception {
+      String body = "{\"id\":\"caf\u00e9\"}";
+      byte[] bytes = body.getBytes("UTF-8");
+
+      assertEquals(body, OneSignalRestClient.readResponseBody(new ByteArrayInputStream(bytes), bytes.length));
+      assertEquals(body, OneSignalRestClient.readResponseBody(new ByteArrayInputStream(bytes), -1));
+      assertEquals(body, OneSignalRestClient.readResponseBody(new ByteArrayInputStream(bytes), bytes.length - 3));
+      assertEquals(body, OneSignalRestClient.readResponseBody(new ByteArrayInputStream(bytes), bytes.length + 10));
+      assertEquals("", OneSignalRestClient.readResponseBody(new ByteArrayInputStream(new byte[0]), 0));
+   }
+
+   private static JSONObject buildLargeTagsBody() throws Exception {
+      JSONObject tags = new JSONObject();
+      for (int i = 0; i < 200; i++)
+         tags.put("tag_key_" + i, "tag_value_" + i);
+      return new JSONObject().put("app_id", "b2f7f966-d8cc-11e4-bed1-df8f05be55ba").put("tags", tags);
+   }
+
+   @Test
+   public void testGzipResponseIsDecodedAndCountedCompressed() throws Exception {
+      localServer = startLocalServer();
+      localServer.gzipResponses = true;
+      localServer.responseBody = buildLargeTagsBody().toString();
+      long bytesReceivedBefore = OneSignalRestClient.getTotalBytesReceived();
+
+      final String[] response = {null};
+      OneSignalRestClient.get("players/id", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String successResponse) {
+            response[0] = successResponse;
+         }
+      }, null);
+      threadAndTaskWait();
+
+      assertEquals(localServer.responseBody, response[0]);
+      assertEquals("gzip", localServer.getRequests().get(0).headers.get("accept-encoding"));
+
+      long bytesReceived = OneSignalRestClient.getTotalBytesReceived() - bytesReceivedBefore;
+      assertTrue(bytesReceived > 0);
+      assertTrue(bytesReceived < localServer.responseBody.getBytes("UTF-8").length);
+   }
+
+   @Test
+   public void testLargeRequestBodyIsGzippedWhenEnabled() throws Exception {
+      localServer = startLocalServer();
+      OneSignalRestClient.setRequestCompression(true);
+      JSONObject body = buildLargeTagsBody();
+      long bytesSentBefore = OneSignalRestClient.getTotalBytesSent();
+
+      OneSignalRestClient.put("players/id", body, null);
+      threadAndTaskWait();
+
+      MockHttpServer.RecordedRequest request = localServer.getRequests().get(0);
+      assertEquals("gzip", request.headers.get("content-encoding"));
+      assertEquals(body.toString(), new String(MockHttpServer.gunzip(request.body), "UTF-8"));
+      assertEquals(request.body.length, OneSignalRestClient.getTotalBytesSent() - bytesSentBefore);
+   }
+
+   @Test
+   public void testSmallRequestBodyIsNotGzipped() throws Exception {
+      localServer = startLocalServer();
+      OneSignalRestClient.setRequestCompression(true);
+      JSONObject body = new JSONObject().put("app_id", "b2f7f966-d8cc-11e4-bed1-df8f05be55ba");
+
+      OneSignalRestClient.put("players/id", body, null);
+      threadAndTaskWait();
+
+      MockHttpServer.RecordedRequest request = localServer.getRequests().get(0);
+      assertNull(request.headers.get("content-encoding"));
+      assertEquals(body.toString(), new String(request.body, "UTF-8"));
+   }
+
+   private static void runOnBackgroundThread(Runnable runnable) throws Exception {
+      // Outbox sends are synchronous requests which may not be made from the main thread
+      Thread thread = new Thread(runnable);
+      thread.start();
+      thread.join();
+   }
+
+   private static int[] getOutboxAttempts(MockOneSignalDBHelper db) {
+      Cursor cursor = db.query(OutboxTable.TABLE_NAME, new String[] { OutboxTable.COLUMN_NAME_ATTEMPTS }, null, null, null, null, OutboxTable._ID);
+      int[] attempts = new int[cursor.getCount()];
+      for (int i = 0; cursor.moveToNext(); i++)
+         attempts[i] = cursor.getInt(0);
+      cursor.close();
+      return attempts;
+   }
+
+   private static void setMockStatus(final int statusCode) {
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = statusCode;
+         responseBody = "{}";
+      }};
+   }
+
+   @Test
+   public void testOutboxRemovesRequestAfterSuccess() throws Exception {
+      MockOneSignalDBHelper db = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      final OSTestRequestOutbox outbox = new OSTestRequestOutbox(db);
+      final String[] successResponse = {null};
+      setMockStatus(200);
+
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.saveRequest("notifications/id", "PUT", new JSONObject(), new OneSignalRestClient.ResponseHandler() {
+               @Override
+               public void onSuccess(String response) {
+                  successResponse[0] = response;
+               }
+            });
+            outbox.sendDueRequests();
+         }
+      });
+
+      assertEquals("{}", successResponse[0]);
+      assertEquals(0, getOutboxAttempts(db).length);
+   }
+
+   @Test
+   public void testOutboxRetriesServerErrorAfterBackoff() throws Exception {
+      MockOneSignalDBHelper db = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      final OSTestRequestOutbox outbox = new OSTestRequestOutbox(db);
+      final int[] callbackCount = {0};
+      setMockStatus(500);
+
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.saveRequest("in_app_messages/id/click", "POST", new JSONObject(), new OneSignalRestClient.ResponseHandler() {
+               @Override
+               public void onSuccess(String response) {
+                  callbackCount[0]++;
+               }
+
+               @Override
+               public void onFailure(int statusCode, String response, Throwable throwable) {
+                  callbackCount[0]++;
+               }
+            });
+            outbox.sendDueRequests();
+            // Still backing off, so nothing is sent
+            outbox.sendDueRequests();
+         }
+      });
+
+      // Request is kept with its attempt counted and the handler is not told about a temporary failure
+      assertEquals(0, callbackCount[0]);
+      assertEquals(1, getOutboxAttempts(db)[0]);
+
+      setMockStatus(200);
+      advanceSystemTimeBy(OSTestRequestOutbox.MAX_BACKOFF_MS / 1_000L);
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.sendDueRequests();
+         }
+      });
+
+      assertEquals(1, callbackCount[0]);
+      assertEquals(0, getOutboxAttempts(db).length);
+   }
+
+   @Test
+   public void testOutboxDropsRejectedRequest() throws Exception {
+      MockOneSignalDBHelper db = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      final OSTestRequestOutbox outbox = new OSTestRequestOutbox(db);
+      final int[] failureStatusCode = {0};
+      setMockStatus(400);
+
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.saveRequest("in_app_messages/id/impression", "POST", new JSONObject(), new OneSignalRestClient.ResponseHandler() {
+               @Override
+               public void onFailure(int statusCode, String response, Throwable throwable) {
+                  failureStatusCode[0] = statusCode;
+               }
+            });
+            outbox.sendDueRequests();
+         }
+      });
+
+      assertEquals(400, failureStatusCode[0]);
+      assertEquals(0, getOutboxAttempts(db).length);
+   }
+
+   @Test
+   public void testOutboxFailsHandlerOfExpiredRequest() throws Exception {
+      MockOneSignalDBHelper db = new MockOneSignalDBHelper(RuntimeEnvironment.application);
+      final OSTestRequestOutbox outbox = new OSTestRequestOutbox(db);
+      final int[] successCount = {0};
+      final int[] failureCount = {0};
+      setMockStatus(200);
+
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.saveRequest("in_app_messages/id/impression", "POST", new JSONObject(), new OneSignalRestClient.ResponseHandler() {
+               @Override
+               public void onSuccess(String response) {
+                  successCount[0]++;
+               }
+
+               @Override
+               public void onFailure(int statusCode, String response, Throwable throwable) {
+                  failureCount[0]++;
+               }
+            });
+         }
+      });
+
+      advanceSystemTimeBy(OSTestRequestOutbox.MAX_REQUEST_AGE_MS / 1_000L + 1);
+      runOnBackgroundThread(new Runnable() {
+         @Override
+         public void run() {
+            outbox.sendDueRequests();
+         }
+      });
+
+      // Expired requests are not sent, but their handler is told they were given up on
+      assertEquals(0, successCount[0]);
+      assertEquals(1, failureCount[0]);
+      assertEquals(0, getOutboxAttempts(db).length);
+   }
+
+   @Test
+   public void testOutboxBackoffIsJitteredAndCapped() throws Exception {
+      OSTestRequestOutbox outbox = new OSTestRequestOutbox(new MockOneSignalDBHelper(RuntimeEnvironment.application));
+
+      for (int i = 0; i < 20; i++) {
+         long firstBackoff = outbox.getBackoffMs(1);
+         assertTrue(firstBackoff >= 2_500 && firstBackoff <= 5_000);
+
+         long lastBackoff = outbox.getBackoffMs(OSTestRequestOutbox.MAX_ATTEMPTS);
+         assertTrue(lastBackoff >= OSTestRequestOutbox.MAX_BACKOFF_MS / 2 && lastBackoff <= OSTestRequestOutbox.MAX_BACKOFF_MS);
+      }
+   }
+
    private static String getLastHTTPHeaderProp(String prop) {
       return ShadowOneSignalRestClientWithMockConnection.lastConnection.getRequestProperty(prop);
    }
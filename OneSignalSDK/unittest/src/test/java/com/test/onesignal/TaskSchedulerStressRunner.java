@@ -0,0 +1,240 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.test.onesignal;
+
+import com.onesignal.StaticResetHelper;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_execute;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_getCompletedTaskCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_getLargestThreadCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_getQueueLength;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_poolSize;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_schedule;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSTaskScheduler_threadPrefix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Floods the SDK task scheduler from many threads at once, the way a cold start with a backlog of
+ *    cached outcomes, notifications to restore and queued API calls does.
+ * However much work is submitted the number of threads stays at the pool size of each lane.
+ */
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class TaskSchedulerStressRunner {
+
+   private static final String[] LANES = { "CALLBACK", "IO", "IMAGE", "BACKGROUND" };
+   private static final int SUBMITTER_THREADS = 8;
+   private static final int TASKS_PER_SUBMITTER = 150;
+   private static final long AWAIT_TIMEOUT_MS = 30_000;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() throws Exception {
+      TestHelpers.beforeTestInitAndCleanup();
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void stressManySubmittersUseBoundedThreads() throws Exception {
+      final int totalTasks = SUBMITTER_THREADS * TASKS_PER_SUBMITTER;
+      final long[] completedBefore = new long[LANES.length];
+      final AtomicInteger[] running = new AtomicInteger[LANES.length];
+      final int[] maxRunning = new int[LANES.length];
+      final List<Set<String>> threadNames = new ArrayList<>();
+      for (int lane = 0; lane < LANES.length; lane++) {
+         completedBefore[lane] = OSTaskScheduler_getCompletedTaskCount(LANES[lane]);
+         running[lane] = new AtomicInteger();
+         threadNames.add(Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+      }
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final CountDownLatch finished = new CountDownLatch(totalTasks);
+      final AtomicInteger maxSchedulerThreads = new AtomicInteger();
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+      List<Thread> submitters = new ArrayList<>();
+      for (int t = 0; t < SUBMITTER_THREADS; t++) {
+         final int submitterIndex = t;
+         Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+                  for (int i = 0; i < TASKS_PER_SUBMITTER; i++) {
+                     final int lane = (submitterIndex + i) % LANES.length;
+                     final boolean sampleThreads = i % 25 == 0;
+                     OSTaskScheduler_execute(LANES[lane], new Runnable() {
+                        @Override
+                        public void run() {
+                           int nowRunning = running[lane].incrementAndGet();
+                           synchronized (maxRunning) {
+                              maxRunning[lane] = Math.max(maxRunning[lane], nowRunning);
+                           }
+                           threadNames.get(lane).add(Thread.currentThread().getName());
+                           if (sampleThreads)
+                              recordMax(maxSchedulerThreads, countSchedulerThreads());
+
+                           // Simulates a short database write or prefs read
+                           busyWait(TimeUnit.MICROSECONDS.toNanos(200));
+                           running[lane].decrementAndGet();
+                           finished.countDown();
+                        }
+                     });
+                  }
+               } catch (Throwable throwable) {
+                  failure.compareAndSet(null, throwable);
+               }
+            }
+         }, "Stress_Submitter_" + t);
+         submitter.start();
+         submitters.add(submitter);
+      }
+
+      start.countDown();
+      for (Thread submitter : submitters)
+         submitter.join();
+      assertNull(failure.get());
+      assertTrue(finished.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+      int totalPoolSize = 0;
+      for (int lane = 0; lane < LANES.length; lane++) {
+         String name = LANES[lane];
+         int poolSize = OSTaskScheduler_poolSize(name);
+         totalPoolSize += poolSize;
+
+         awaitCompletedTasks(name, completedBefore[lane] + totalTasks / LANES.length);
+         assertEquals(0, OSTaskScheduler_getQueueLength(name));
+         assertTrue(maxRunning[lane] <= poolSize);
+         assertTrue(OSTaskScheduler_getLargestThreadCount(name) <= poolSize);
+         for (String threadName : threadNames.get(lane))
+            assertTrue(threadName.startsWith(OSTaskScheduler_threadPrefix(name)));
+      }
+      assertTrue(maxSchedulerThreads.get() <= totalPoolSize);
+   }
+
+   @Test
+   public void backgroundLaneRunsTasksInSubmissionOrder() throws Exception {
+      final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+      final CountDownLatch finished = new CountDownLatch(50);
+      for (int i = 0; i < 50; i++) {
+         final int index = i;
+         OSTaskScheduler_execute("BACKGROUND", new Runnable() {
+            @Override
+            public void run() {
+               order.add(index);
+               finished.countDown();
+            }
+         });
+      }
+
+      assertTrue(finished.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      for (int i = 0; i < 50; i++)
+         assertEquals(i, (int) order.get(i));
+   }
+
+   @Test
+   public void scheduledTaskRunsOnItsLaneAfterTheDelay() throws Exception {
+      final AtomicReference<String> threadName = new AtomicReference<>();
+      final CountDownLatch finished = new CountDownLatch(1);
+      long startNanos = System.nanoTime();
+      OSTaskScheduler_schedule("IO", new Runnable() {
+         @Override
+         public void run() {
+            threadName.set(Thread.currentThread().getName());
+            finished.countDown();
+         }
+      }, 100);
+
+      assertTrue(finished.await(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 100);
+      assertTrue(threadName.get().startsWith(OSTaskScheduler_threadPrefix("IO")));
+   }
+
+   // Lane counters are updated right after a task returns, so they can trail the task's own signal
+   private static void awaitCompletedTasks(String lane, long expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+      while (OSTaskScheduler_getCompletedTaskCount(lane) < expected && System.currentTimeMillis() < deadline)
+         Thread.sleep(1);
+      assertEquals(expected, OSTaskScheduler_getCompletedTaskCount(lane));
+   }
+
+   private static int countSchedulerThreads() {
+      int count = 0;
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+         if (thread.isAlive() && thread.getName().startsWith("OS_TASK_") && !thread.getName().startsWith("OS_TASK_TIMER_"))
+            count++;
+      }
+      return count;
+   }
+
+   private static void recordMax(AtomicInteger max, int value) {
+      int current = max.get();
+      while (value > current && !max.compareAndSet(current, value))
+         current = max.get();
+   }
+
+   private static void busyWait(long nanos) {
+      long end = System.nanoTime() + nanos;
+      while (System.nanoTime() < end);
+   }
+}
@@ -29,6 +29,7 @@ import com.onesignal.ShadowNotificationManagerCompat;
 import com.onesignal.ShadowOSUtils;
 import com.onesignal.ShadowOSWebView;
 import com.onesignal.ShadowOneSignalDbHelper;
+import com.onesignal.ShadowOneSignalDbTransactions;
 import com.onesignal.ShadowOneSignalRestClient;
 import com.onesignal.ShadowOneSignalRestClientWithMockConnection;
 import com.onesignal.ShadowPushRegistratorADM;
@@ -96,6 +97,7 @@ public class TestHelpers {
 
       ShadowGoogleApiClientCompatProxy.restSetStaticFields();
       ShadowOneSignalDbHelper.restSetStaticFields();
+      ShadowOneSignalDbTransactions.resetStatics();
       ShadowOneSignalRestClientWithMockConnection.resetStatics();
 
       ShadowOSWebView.resetStatics();
@@ -129,7 +131,9 @@ public class TestHelpers {
          Set<Thread> threadSet = Thread.getAllStackTraces().keySet();
 
          for (Thread thread : threadSet) {
-            if (thread.getName().startsWith("OS_")) {
+            if (thread.getName().startsWith("OS_") &&
+                !OneSignalPackagePrivateHelper.isIdleRestClientThread(thread) &&
+                !OneSignalPackagePrivateHelper.isIdleSchedulerThread(thread)) {
                thread.interrupt();
                joinedAThread = true;
             }
@@ -160,6 +164,11 @@ public class TestHelpers {
                continue;
             if (ShadowOneSignalRestClient.isAFrozenThread(thread))
                continue;
+            // Pooled REST client and scheduler threads stay alive while idle waiting for new work
+            if (OneSignalPackagePrivateHelper.isIdleRestClientThread(thread))
+               continue;
+            if (OneSignalPackagePrivateHelper.isIdleSchedulerThread(thread))
+               continue;
 
             thread.join(0, 1);
 
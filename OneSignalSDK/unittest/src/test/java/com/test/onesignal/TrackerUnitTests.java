@@ -31,8 +31,10 @@ import com.onesignal.MockOSLog;
 import com.onesignal.MockOSSharedPreferences;
 import com.onesignal.OneSignal;
 import com.onesignal.OneSignalPackagePrivateHelper;
+import com.onesignal.OneSignalRemoteParams;
 import com.onesignal.ShadowOSUtils;
 import com.onesignal.StaticResetHelper;
+import com.onesignal.influence.OSChannelTracker;
 import com.onesignal.influence.OSTrackerFactory;
 import com.onesignal.influence.model.OSInfluence;
 
@@ -49,6 +51,7 @@ import org.robolectric.shadows.ShadowLog;
 
 import java.util.List;
 
+import static com.test.onesignal.TestHelpers.advanceSystemTimeBy;
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -172,4 +175,59 @@ public class TrackerUnitTests {
         assertEquals(IAM_ID, trackerFactory.getChannelsToResetByEntryAction(OneSignal.AppEntryAction.NOTIFICATION_CLICK).get(0).getIdTag());
     }
 
+    @Test
+    public void testLastIdsKeepOnlyNewestUpToChannelLimit() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        OSChannelTracker notificationTracker = trackerFactory.getNotificationChannelTracker();
+
+        int limit = OneSignalRemoteParams.DEFAULT_NOTIFICATION_LIMIT;
+        for (int i = 0; i < limit + 5; i++)
+            notificationTracker.saveLastId(NOTIFICATION_ID + i);
+
+        JSONArray lastNotificationIds = notificationTracker.getLastReceivedIds();
+        assertEquals(limit, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID + 5, lastNotificationIds.get(0));
+        assertEquals(NOTIFICATION_ID + (limit + 4), lastNotificationIds.get(limit - 1));
+
+        // A redisplayed IAM moves to the newest position instead of being added twice
+        OSChannelTracker iamTracker = trackerFactory.getIAMChannelTracker();
+        iamTracker.saveLastId(IAM_ID + 1);
+        iamTracker.saveLastId(IAM_ID + 2);
+        iamTracker.saveLastId(IAM_ID + 1);
+
+        JSONArray lastIAMIds = iamTracker.getLastReceivedIds();
+        assertEquals(2, lastIAMIds.length());
+        assertEquals(IAM_ID + 2, lastIAMIds.get(0));
+        assertEquals(IAM_ID + 1, lastIAMIds.get(1));
+    }
+
+    @Test
+    public void testLastIdsOutsideAttributionWindowAreNotReturned() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        OSChannelTracker notificationTracker = trackerFactory.getNotificationChannelTracker();
+
+        notificationTracker.saveLastId(NOTIFICATION_ID + 1);
+        advanceSystemTimeBy(OneSignalRemoteParams.DEFAULT_INDIRECT_ATTRIBUTION_WINDOW * 60 / 2);
+        notificationTracker.saveLastId(NOTIFICATION_ID + 2);
+        advanceSystemTimeBy(OneSignalRemoteParams.DEFAULT_INDIRECT_ATTRIBUTION_WINDOW * 60 / 2 + 1);
+
+        JSONArray lastNotificationIds = notificationTracker.getLastReceivedIds();
+        assertEquals(1, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID + 2, lastNotificationIds.get(0));
+    }
+
+    @Test
+    public void testLastIdsSavedByAnotherTrackerAreRead() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        // Load the ids into memory before another tracker changes them
+        assertEquals(0, trackerFactory.getNotificationChannelTracker().getLastReceivedIds().length());
+
+        OSTrackerFactory otherTrackerFactory = new OSTrackerFactory(preferences, new MockOSLog());
+        otherTrackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID);
+
+        JSONArray lastNotificationIds = trackerFactory.getNotificationChannelTracker().getLastReceivedIds();
+        assertEquals(1, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID, lastNotificationIds.get(0));
+    }
+
 }
\ No newline at end of file
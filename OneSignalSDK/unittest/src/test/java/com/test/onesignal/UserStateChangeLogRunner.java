@@ -0,0 +1,245 @@
+/**
+ * Modified MIT License
+ *
+ * Copyright 2020 OneSignal
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * 1. The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * 2. All copies of substantial portions of the Software may only be used in connection
+ * with services provided by OneSignal.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.test.onesignal;
+
+import android.app.Activity;
+
+import com.onesignal.OneSignal;
+import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
+import com.onesignal.OneSignalPackagePrivateHelper.TestUserStatePush;
+import com.onesignal.StaticResetHelper;
+import com.onesignal.example.BlankActivity;
+
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.OSBlobStore_read;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSBlobStore_readLog;
+import static com.onesignal.OneSignalPackagePrivateHelper.UserStatePush_loadPersistedSyncValues;
+import static com.onesignal.OneSignalPackagePrivateHelper.UserState_MAX_CHANGE_LOG_ENTRIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@Config(packageName = "com.onesignal.example",
+        instrumentedPackages = { "com.onesignal" },
+        sdk = 26
+)
+@RunWith(RobolectricTestRunner.class)
+public class UserStateChangeLogRunner {
+
+   private static final String PERSIST_KEY = "TEST_STATE";
+   private static final String SYNC_VALUES_KEY = TestOneSignalPrefs.PREFS_ONESIGNAL_USERSTATE_SYNCVALYES_ + PERSIST_KEY;
+
+   private Activity blankActivity;
+
+   @BeforeClass // Runs only once, before any tests
+   public static void setUpClass() throws Exception {
+      ShadowLog.stream = System.out;
+      TestHelpers.beforeTestSuite();
+      StaticResetHelper.saveStaticValues();
+   }
+
+   @Before // Before each test
+   public void beforeEachTest() {
+      TestOneSignalPrefs.initializePool();
+      blankActivity = Robolectric.buildActivity(BlankActivity.class).create().get();
+      OneSignal.setAppContext(blankActivity);
+   }
+
+   @AfterClass
+   public static void afterEverything() throws Exception {
+      StaticResetHelper.restSetStaticFields();
+   }
+
+   @Test
+   public void testFirstPersistWritesFullValues() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      userState.getSyncValues().put("tags", new JSONObject().put("key1", "value1"));
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertEquals("value1", new JSONObject(OSBlobStore_read(blankActivity, SYNC_VALUES_KEY)).getJSONObject("tags").get("key1"));
+      assertTrue(OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).isEmpty());
+   }
+
+   @Test
+   public void testLaterPersistsOnlyAppendChangedTags() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      JSONObject tags = new JSONObject();
+      for (int i = 0; i < 100; i++)
+         tags.put("key" + i, "value" + i);
+      userState.getSyncValues().put("tags", tags);
+      userState.getSyncValues().put("language", "en");
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      tags.put("key1", "changed");
+      tags.remove("key2");
+      userState.getSyncValues().put("language", "fr");
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      List<String> log = OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY);
+      assertEquals(1, log.size());
+      JSONObject entry = new JSONObject(log.get(0));
+      assertEquals(1, entry.getJSONObject("set").length());
+      assertEquals("fr", entry.getJSONObject("set").get("language"));
+      JSONObject tagChanges = entry.getJSONObject("merge").getJSONObject("tags");
+      assertEquals(1, tagChanges.getJSONObject("set").length());
+      assertEquals("changed", tagChanges.getJSONObject("set").get("key1"));
+      assertEquals(1, tagChanges.getJSONArray("remove").length());
+      assertEquals("key2", tagChanges.getJSONArray("remove").get(0));
+
+      JSONObject loaded = UserStatePush_loadPersistedSyncValues(PERSIST_KEY);
+      assertEquals("fr", loaded.get("language"));
+      assertEquals("changed", loaded.getJSONObject("tags").get("key1"));
+      assertFalse(loaded.getJSONObject("tags").has("key2"));
+      assertEquals(99, loaded.getJSONObject("tags").length());
+   }
+
+   @Test
+   public void testPersistWithNoChangesAppendsNothing() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      userState.getSyncValues().put("tags", new JSONObject().put("key1", "value1"));
+      userState.persistState();
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertTrue(OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).isEmpty());
+   }
+
+   @Test
+   public void testChangeLogIsCompactedIntoFullValues() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      userState.persistState();
+      for (int i = 0; i < UserState_MAX_CHANGE_LOG_ENTRIES; i++) {
+         userState.getSyncValues().put("counter", i);
+         userState.persistState();
+      }
+      TestHelpers.flushBufferedSharedPrefs();
+      assertEquals(UserState_MAX_CHANGE_LOG_ENTRIES, OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).size());
+
+      userState.getSyncValues().put("counter", UserState_MAX_CHANGE_LOG_ENTRIES);
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertTrue(OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).isEmpty());
+      assertEquals(UserState_MAX_CHANGE_LOG_ENTRIES, new JSONObject(OSBlobStore_read(blankActivity, SYNC_VALUES_KEY)).getInt("counter"));
+   }
+
+   @Test
+   public void testLoadedStateOnlyAppendsChangesAfterLoad() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      userState.getSyncValues().put("tags", new JSONObject().put("key1", "value1"));
+      userState.persistState();
+      userState.getSyncValues().getJSONObject("tags").put("key2", "value2");
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      TestUserStatePush loadedState = new TestUserStatePush(PERSIST_KEY, true);
+      loadedState.getSyncValues().getJSONObject("tags").put("key3", "value3");
+      loadedState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      assertEquals(2, OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).size());
+      JSONObject tags = UserStatePush_loadPersistedSyncValues(PERSIST_KEY).getJSONObject("tags");
+      assertEquals(3, tags.length());
+      assertEquals("value3", tags.get("key3"));
+   }
+
+   @Test
+   public void testTagChangesWithManyTagsReloadToSameState() throws Exception {
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      JSONObject tags = new JSONObject();
+      for (int i = 0; i < 5_000; i++)
+         tags.put("tag_" + i, "value_" + i);
+      userState.getSyncValues().put("tags", tags);
+      userState.persistState();
+      TestHelpers.flushBufferedSharedPrefs();
+
+      for (int i = 0; i < 20; i++) {
+         tags.put("tag_" + (i * 250), "changed_" + i);
+         userState.persistState();
+         TestHelpers.flushBufferedSharedPrefs();
+      }
+
+      assertEquals(20, OSBlobStore_readLog(blankActivity, SYNC_VALUES_KEY).size());
+      JSONObject persisted = UserStatePush_loadPersistedSyncValues(PERSIST_KEY);
+      JsonAsserts.equals(userState.getSyncValues(), persisted);
+      assertEquals(5_000, persisted.getJSONObject("tags").length());
+   }
+
+   @Test
+   public void testRandomChangesReloadToSameState() throws Exception {
+      Random random = new Random(42);
+      TestUserStatePush userState = new TestUserStatePush(PERSIST_KEY, false);
+      JSONObject syncValues = userState.getSyncValues();
+
+      for (int i = 0; i < 200; i++) {
+         String key = "key" + random.nextInt(10);
+         switch (random.nextInt(5)) {
+            case 0:
+               syncValues.remove(key);
+               break;
+            case 1:
+               syncValues.put(key, random.nextInt(3));
+               break;
+            case 2:
+               syncValues.put(key, new JSONObject().put("nested" + random.nextInt(3), random.nextBoolean()));
+               break;
+            default:
+               JSONObject tags = syncValues.optJSONObject("tags");
+               if (tags == null) {
+                  tags = new JSONObject();
+                  syncValues.put("tags", tags);
+               }
+               if (random.nextBoolean())
+                  tags.remove(key);
+               else
+                  tags.put(key, "value" + random.nextInt(3));
+         }
+
+         userState.persistState();
+         if (random.nextInt(4) == 0)
+            TestHelpers.flushBufferedSharedPrefs();
+         JsonAsserts.equals(syncValues, UserStatePush_loadPersistedSyncValues(PERSIST_KEY));
+      }
+   }
+}